@@ -0,0 +1,54 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import edu.wpi.first.wpilibj.IterativeRobotBase;
+
+/**
+ * The cost of one whole teleop loop, teleopPeriodic and the robotPeriodic
+ * that follows it, with the robot running on the simulated HAL and the
+ * controllers held still. The robot runs headless, like in the simulations,
+ * so no telemetry file, camera or dashboard thread competes with the loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControlLoopBenchmark {
+  @Param({"Robot", "robotBackup"})
+  public String robotClass;
+
+  private IterativeRobotBase robot;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    SimSupport.initialize();
+    SimSupport.connectController(0);
+    SimSupport.connectController(1);
+    System.setProperty(RobotConfig.headlessProperty, "true");
+    robot = (IterativeRobotBase) Class.forName("frc.robot." + robotClass).getDeclaredConstructor().newInstance();
+    robot.robotInit();
+    SimSupport.enable();
+    robot.teleopInit();
+  }
+
+  @TearDown
+  public void tearDown() {
+    robot.disabledInit();
+  }
+
+  @Benchmark
+  public void teleopLoop() {
+    robot.teleopPeriodic();
+    robot.robotPeriodic();
+  }
+}
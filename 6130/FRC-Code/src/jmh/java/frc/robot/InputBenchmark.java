@@ -0,0 +1,83 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.wpilibj.XboxController;
+
+/**
+ * Reading the controllers the way the old teleopPeriodic did, going to the
+ * driver station for every value, against one InputSnapshot update per loop.
+ * Also times the dead zone check on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InputBenchmark {
+  private static final int port = 0;
+  private static final double joystickDeathZone = 0.3;
+
+  private XboxController controller;
+  private InputSnapshot inputs;
+  private double axisValue;
+
+  @Setup
+  public void setup() {
+    SimSupport.initialize();
+    SimSupport.connectController(port);
+    controller = new XboxController(port);
+    inputs = new InputSnapshot(joystickDeathZone, port);
+  }
+
+  // The old loop read axis 1 and axis 4 three times each plus the A and B edges
+  @Benchmark
+  public void directReads(Blackhole blackhole) {
+    blackhole.consume(checkZone(controller.getRawAxis(1)));
+    blackhole.consume(controller.getRawAxis(1));
+    blackhole.consume(controller.getRawAxis(1));
+    blackhole.consume(checkZone(controller.getRawAxis(4)));
+    blackhole.consume(controller.getRawAxis(4));
+    blackhole.consume(controller.getRawAxis(4));
+    blackhole.consume(controller.getAButtonPressed());
+    blackhole.consume(controller.getAButtonReleased());
+    blackhole.consume(controller.getBButtonPressed());
+    blackhole.consume(controller.getBButtonReleased());
+  }
+
+  @Benchmark
+  public void snapshotReads(Blackhole blackhole) {
+    inputs.update();
+    blackhole.consume(inputs.isOutsideDeathZone(0, 1));
+    blackhole.consume(inputs.getZonedAxis(0, 1));
+    blackhole.consume(inputs.getZonedAxis(0, 1));
+    blackhole.consume(inputs.isOutsideDeathZone(0, 4));
+    blackhole.consume(inputs.getZonedAxis(0, 4));
+    blackhole.consume(inputs.getZonedAxis(0, 4));
+    blackhole.consume(inputs.getButtonPressed(0, 1));
+    blackhole.consume(inputs.getButtonReleased(0, 1));
+    blackhole.consume(inputs.getButtonPressed(0, 2));
+    blackhole.consume(inputs.getButtonReleased(0, 2));
+  }
+
+  @Benchmark
+  public double deadZone() {
+    // Walk through the whole stick range so the branch is not always taken the same way
+    axisValue += 0.0137;
+    if (axisValue > 1) {
+      axisValue = -1;
+    }
+    return InputSnapshot.applyDeadZone(axisValue, joystickDeathZone);
+  }
+
+  private boolean checkZone(double controllerVal) {
+    return controllerVal < -joystickDeathZone || controllerVal > joystickDeathZone;
+  }
+}
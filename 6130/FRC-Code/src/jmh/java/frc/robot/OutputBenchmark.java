@@ -0,0 +1,121 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.PWMVictorSPX;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.SpeedControllerGroup;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+
+/**
+ * The drive math and the motor writes. tankDrive runs against motor
+ * controllers that do nothing, so only the math is timed, then the same
+ * drive is timed writing to simulated PWM channels directly and through the
+ * coalescing wrappers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutputBenchmark {
+  private static final double outputEpsilon = 0.005;
+
+  private DifferentialDrive mathDrive;
+  private DifferentialDrive directDrive;
+  private DifferentialDrive coalescedDrive;
+  private OutputCoalescer outputs;
+  private double speed;
+
+  // A motor controller that only remembers its speed
+  private static final class NullSpeedController implements SpeedController {
+    private double speed;
+    private boolean inverted;
+
+    @Override
+    public void set(double speed) {
+      this.speed = speed;
+    }
+
+    @Override
+    public double get() {
+      return speed;
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+      inverted = isInverted;
+    }
+
+    @Override
+    public boolean getInverted() {
+      return inverted;
+    }
+
+    @Override
+    public void disable() {
+      speed = 0;
+    }
+
+    @Override
+    public void stopMotor() {
+      speed = 0;
+    }
+
+    @Override
+    public void pidWrite(double output) {
+      set(output);
+    }
+  }
+
+  @Setup
+  public void setup() {
+    SimSupport.initialize();
+    mathDrive = new DifferentialDrive(new NullSpeedController(), new NullSpeedController());
+    mathDrive.setSafetyEnabled(false);
+
+    SpeedController left = new SpeedControllerGroup(new PWMVictorSPX(0), new PWMVictorSPX(1));
+    SpeedController right = new SpeedControllerGroup(new PWMVictorSPX(2), new PWMVictorSPX(3));
+    directDrive = new DifferentialDrive(left, right);
+    directDrive.setSafetyEnabled(false);
+
+    outputs = new OutputCoalescer();
+    coalescedDrive = new DifferentialDrive(outputs.add(new CoalescingSpeedController(left, outputEpsilon)),
+        outputs.add(new CoalescingSpeedController(right, outputEpsilon)));
+    coalescedDrive.setSafetyEnabled(false);
+  }
+
+  // Sticks that move a little every loop, like a driver holding them
+  private double nextSpeed() {
+    speed += 0.001;
+    if (speed > 1) {
+      speed = -1;
+    }
+    return speed;
+  }
+
+  @Benchmark
+  public void tankDriveMath() {
+    double value = nextSpeed();
+    mathDrive.tankDrive(value, -value);
+  }
+
+  @Benchmark
+  public void tankDriveDirect() {
+    double value = nextSpeed();
+    directDrive.tankDrive(value, -value);
+  }
+
+  @Benchmark
+  public void tankDriveCoalesced() {
+    double value = nextSpeed();
+    coalescedDrive.tankDrive(value, -value);
+    outputs.flush();
+  }
+}
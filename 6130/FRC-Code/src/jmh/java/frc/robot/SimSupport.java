@@ -0,0 +1,50 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Sets up the desktop HAL for the benchmarks. Every benchmark runs in its own
+ * fork, so this only has to work once per JVM.
+ */
+final class SimSupport {
+  private static boolean initialized;
+
+  private SimSupport() {
+  }
+
+  static synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+    initialized = true;
+  }
+
+  /**
+   * Enable the simulated robot in teleop.
+   */
+  static void enable() {
+    DriverStationSim driverStationSim = new DriverStationSim();
+    driverStationSim.setDsAttached(true);
+    driverStationSim.setAutonomous(false);
+    driverStationSim.setEnabled(true);
+    driverStationSim.notifyNewData();
+  }
+
+  /**
+   * Give a simulated controller six axes, twelve buttons and a POV, with the
+   * sticks held outside the dead zone.
+   */
+  static void connectController(int port) {
+    DriverStationDataJNI.setJoystickAxes((byte) port, new float[] {0.1f, -0.6f, 0, 0, 0.8f, 0});
+    DriverStationDataJNI.setJoystickButtons((byte) port, 0b101, 12);
+    DriverStationDataJNI.setJoystickPOVs((byte) port, new short[] {-1});
+    DriverStationDataJNI.notifyNewData();
+    DriverStation.getInstance().waitForData(0.1);
+  }
+}
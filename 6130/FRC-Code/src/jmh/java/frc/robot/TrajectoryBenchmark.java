@@ -0,0 +1,66 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The cost of mapping a trajectory file at startup and of one follower step,
+ * the trajectory lookup plus the Ramsete controller, in every loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrajectoryBenchmark {
+  private File file;
+  private Trajectory trajectory;
+  private RamseteController controller;
+  private double time;
+
+  @Setup
+  public void setup() throws IOException {
+    TrajectoryGenerator generator = new TrajectoryGenerator(2, 1.5, 0.6);
+    generator.addWaypoint(0, 0, 0);
+    generator.addWaypoint(3.3, -0.28, 0);
+    generator.addWaypoint(5, -1.5, -60);
+    file = File.createTempFile("benchmark", ".traj");
+    TrajectoryGenerator.write(generator.generate(), file);
+    trajectory = new Trajectory(file);
+    controller = new RamseteController(2, 0.7);
+  }
+
+  @TearDown
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Benchmark
+  public Trajectory load() throws IOException {
+    return new Trajectory(file);
+  }
+
+  @Benchmark
+  public double step() {
+    time += 0.02;
+    if (time > trajectory.getDuration()) {
+      time = 0;
+    }
+    trajectory.sample(time);
+    // The robot is a little off the path, like it would be on the field
+    controller.calculate(trajectory.getSampledX() - 0.05, trajectory.getSampledY() + 0.05,
+        trajectory.getSampledHeading() + 0.02, trajectory.getSampledX(), trajectory.getSampledY(),
+        trajectory.getSampledHeading(), trajectory.getSampledVelocity(),
+        trajectory.getSampledVelocity() * trajectory.getSampledCurvature());
+    // Left wheel speed, the right one is the same math
+    return controller.getVelocity() + controller.getAngularVelocity() * 0.3;
+  }
+}
@@ -0,0 +1,90 @@
+package frc.robot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The camera thread stages on synthetic frames: converting the full camera
+ * frame to gray like the old thread did, scaling down first like the vision
+ * pipeline does, the target detector on a frame without a target, and one
+ * whole processFrame call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisionBenchmark {
+  private static final int cameraWidth = 640;
+  private static final int cameraHeight = 480;
+  private static final int streamWidth = 320;
+  private static final int streamHeight = 240;
+  private static final double cameraFovDegrees = 61;
+  // High enough that the synthetic source and the frame budget never sleep
+  private static final int unlimitedFps = 1000000;
+
+  private Mat frame;
+  private Mat scaled;
+  private Mat gray;
+  private Size streamSize;
+  private TargetDetector detector;
+  private VisionPipeline pipeline;
+
+  @Setup
+  public void setup() {
+    // The synthetic source stamps frames with the FPGA time
+    SimSupport.initialize();
+    System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    frame = new Mat(cameraHeight, cameraWidth, CvType.CV_8UC3);
+    Core.randu(frame, 0, 256);
+    scaled = new Mat(streamHeight, streamWidth, CvType.CV_8UC3);
+    gray = new Mat();
+    streamSize = new Size(streamWidth, streamHeight);
+    detector = new TargetDetector(streamWidth, streamHeight, cameraFovDegrees, null);
+    pipeline = new VisionPipeline(new SyntheticFrameSource(cameraWidth, cameraHeight, unlimitedFps), null,
+        streamWidth, streamHeight, unlimitedFps);
+  }
+
+  @TearDown
+  public void tearDown() {
+    frame.release();
+    scaled.release();
+    gray.release();
+  }
+
+  @Benchmark
+  public Mat convertFullFrame() {
+    Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGR2GRAY);
+    return gray;
+  }
+
+  @Benchmark
+  public Mat scaleThenConvert() {
+    Imgproc.resize(frame, scaled, streamSize, 0, 0, Imgproc.INTER_AREA);
+    Imgproc.cvtColor(scaled, gray, Imgproc.COLOR_BGR2GRAY);
+    return gray;
+  }
+
+  // Without a target every frame is a full search, the slowest case
+  @Benchmark
+  public VisionTarget detectFullFrame() {
+    Imgproc.resize(frame, scaled, streamSize, 0, 0, Imgproc.INTER_AREA);
+    return detector.process(scaled, 0);
+  }
+
+  @Benchmark
+  public void pipelineFrame() {
+    pipeline.processFrame();
+  }
+}
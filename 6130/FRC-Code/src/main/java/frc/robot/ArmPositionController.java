@@ -0,0 +1,183 @@
+package frc.robot;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Moves a hand to a position in degrees with an encoder, using the limit
+ * switches as the reference.
+ *
+ * <p>The encoder only counts from where the robot was turned on, so the
+ * first goal starts with homing: the hand runs slowly to the reverse limit
+ * switch, which is 0 degrees, and then goes to the goal. Every time a
+ * switch is pressed after that the position is set again, the reverse one
+ * to 0 and the forward one to the travel, so slipping and lost counts do
+ * not add up over a match.
+ *
+ * <p>A MotionProfile moves the setpoint to the goal, and the output is a
+ * feedforward from the setpoint speed plus a PD correction from the
+ * measured position and speed. If the hand falls too far behind, because
+ * it was derated or blocked, the profile starts again from where the hand
+ * is instead of pulling it back at full power.
+ */
+public class ArmPositionController {
+  /**
+   * Whether the position of the hand is known.
+   */
+  public enum State {
+    kUnhomed, kHoming, kHomed
+  }
+
+  // The hand is at its goal within this, and the profile starts over when it lags more than the other
+  private static final double atGoalDegrees = 2;
+  private static final double maxLagDegrees = 15;
+
+  private final DoubleSupplier encoderDegrees;
+  private final BooleanSupplier reverseLimit;
+  private final BooleanSupplier forwardLimit;
+  private final double travelDegrees;
+  private final MotionProfile profile;
+  private final double kP;
+  private final double kD;
+  private final double kV;
+  private final double kS;
+  private final double homingSpeed;
+  private State state = State.kUnhomed;
+  private double offset;
+  private double goal = Double.NaN;
+  private double lastRaw = Double.NaN;
+  private double position;
+  private double velocity;
+
+  /**
+   * Create the controller.
+   *
+   * @param encoderDegrees encoder distance in degrees of the hand, counting up towards the forward switch
+   * @param reverseLimit whether the reverse limit switch, at 0 degrees, is pressed
+   * @param forwardLimit whether the forward limit switch, at the travel, is pressed
+   * @param travelDegrees degrees from the reverse switch to the forward switch
+   * @param profile top speed and acceleration of the moves, in degrees
+   * @param kP output per degree of position error
+   * @param kD output per degree per second of speed error
+   * @param kV output per degree per second of setpoint speed
+   * @param kS output needed to start moving
+   * @param homingSpeed output while looking for the reverse switch, from 0 to 1
+   */
+  public ArmPositionController(DoubleSupplier encoderDegrees, BooleanSupplier reverseLimit,
+      BooleanSupplier forwardLimit, double travelDegrees, MotionProfile profile, double kP, double kD, double kV,
+      double kS, double homingSpeed) {
+    this.encoderDegrees = encoderDegrees;
+    this.reverseLimit = reverseLimit;
+    this.forwardLimit = forwardLimit;
+    this.travelDegrees = travelDegrees;
+    this.profile = profile;
+    this.kP = kP;
+    this.kD = kD;
+    this.kV = kV;
+    this.kS = kS;
+    this.homingSpeed = homingSpeed;
+  }
+
+  /**
+   * Read the encoder and the switches. Call this every loop, also while
+   * the hand is driven by hand, so the switches keep the position right.
+   *
+   * @param dtSeconds time since the last update
+   */
+  public void update(double dtSeconds) {
+    double raw = encoderDegrees.getAsDouble();
+    velocity = Double.isNaN(lastRaw) || dtSeconds <= 0 ? 0 : (raw - lastRaw) / dtSeconds;
+    lastRaw = raw;
+    if (reverseLimit.getAsBoolean()) {
+      offset = raw;
+      if (state != State.kHomed) {
+        state = State.kHomed;
+        profile.reset(0, 0);
+      }
+    } else if (forwardLimit.getAsBoolean() && state == State.kHomed) {
+      offset = raw - travelDegrees;
+    }
+    position = raw - offset;
+  }
+
+  /**
+   * Set where the hand should go, between 0 and the travel. If the hand is
+   * not homed yet it homes first.
+   */
+  public void setGoal(double degrees) {
+    goal = Math.max(0, Math.min(travelDegrees, degrees));
+    if (state == State.kHomed) {
+      profile.reset(position, velocity);
+    } else {
+      state = State.kHoming;
+    }
+  }
+
+  /**
+   * Work out the output for this loop. Call update first.
+   *
+   * @param dtSeconds time since the last call
+   * @return output from -1 to 1
+   */
+  public double calculate(double dtSeconds) {
+    if (Double.isNaN(goal)) {
+      return 0;
+    }
+    if (state != State.kHomed) {
+      state = State.kHoming;
+      return -homingSpeed;
+    }
+    if (Math.abs(profile.getPosition() - position) > maxLagDegrees) {
+      profile.reset(position, velocity);
+    }
+    profile.calculate(goal, dtSeconds);
+    double setpointVelocity = profile.getVelocity();
+    double feedforward = kV * setpointVelocity + (setpointVelocity != 0 ? kS * Math.signum(setpointVelocity) : 0);
+    double output = feedforward + kP * (profile.getPosition() - position) + kD * (setpointVelocity - velocity);
+    return Math.max(-1, Math.min(1, output));
+  }
+
+  /**
+   * Forget the goal, the position is kept.
+   */
+  public void clearGoal() {
+    goal = Double.NaN;
+    if (state == State.kHoming) {
+      state = State.kUnhomed;
+    }
+  }
+
+  public boolean hasGoal() {
+    return !Double.isNaN(goal);
+  }
+
+  public double getGoal() {
+    return goal;
+  }
+
+  /**
+   * Whether the hand is homed, its profile is done and it is close to the goal.
+   */
+  public boolean atGoal() {
+    return state == State.kHomed && hasGoal() && profile.isFinished(goal) && Math.abs(goal - position) < atGoalDegrees;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public boolean isHomed() {
+    return state == State.kHomed;
+  }
+
+  /**
+   * Position of the hand in degrees from the reverse switch, only right once homed.
+   */
+  public double getPosition() {
+    return position;
+  }
+
+  public double getVelocity() {
+    return velocity;
+  }
+}
@@ -0,0 +1,101 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Turns the robot to face the vision target while the driver keeps control
+ * of the throttle.
+ *
+ * <p>A vision result describes the frame, which is 50 to 100 ms old by the
+ * time it gets here, and the robot has turned since then. So the target
+ * heading is the heading the robot had when the frame was captured, looked
+ * up in the pose history, plus the yaw to the target. The command then
+ * turns towards that heading with the gyro every loop, and every new
+ * result corrects it.
+ */
+public class AutoAlignCommand extends Command {
+  // Turn output per degree of error, the least output that still turns the robot, and the most we use
+  private static final double kP = 0.02;
+  private static final double minTurn = 0.08;
+  private static final double maxTurn = 0.5;
+  private static final double toleranceDegrees = 1;
+
+  private final DriveSubsystem drive;
+  private final Supplier<VisionTarget> targets;
+  private final PoseEstimator pose;
+  private final DoubleSupplier throttle;
+  private long lastCaptureTime;
+  private boolean hasTarget;
+  private double targetHeading;
+  private double latency;
+
+  /**
+   * Create the command.
+   *
+   * @param drive the drive train
+   * @param targets the latest vision result, with its capture time in FPGA microseconds
+   * @param pose the pose estimator, updated every loop before the commands run
+   * @param throttle forward speed from -1 to 1, already without the stick dead zone
+   */
+  public AutoAlignCommand(DriveSubsystem drive, Supplier<VisionTarget> targets, PoseEstimator pose,
+      DoubleSupplier throttle) {
+    super(drive);
+    this.drive = drive;
+    this.targets = targets;
+    this.pose = pose;
+    this.throttle = throttle;
+  }
+
+  @Override
+  protected void initialize() {
+    hasTarget = false;
+    lastCaptureTime = 0;
+  }
+
+  @Override
+  protected void execute() {
+    VisionTarget target = targets.get();
+    long captureTime = target.getCaptureTimeMicros();
+    if (target.isValid() && captureTime != lastCaptureTime) {
+      lastCaptureTime = captureTime;
+      double captureSeconds = captureTime / 1e6;
+      PoseHistory history = pose.getHistory();
+      // Results older than the history are too stale to use
+      if (history.sample(captureSeconds)) {
+        targetHeading = history.getSampledHeading() + target.getYawDegrees();
+        latency = pose.getTimestamp() - captureSeconds;
+        hasTarget = true;
+      }
+    }
+
+    double turn = 0;
+    if (hasTarget) {
+      double error = targetHeading - pose.getHeading();
+      if (Math.abs(error) > toleranceDegrees) {
+        turn = Math.max(-maxTurn, Math.min(maxTurn, kP * error + Math.copySign(minTurn, error)));
+      }
+    }
+    double forward = throttle.getAsDouble();
+    double left = forward + turn;
+    double right = forward - turn;
+    double largest = Math.max(1, Math.max(Math.abs(left), Math.abs(right)));
+    drive.setOutputs(left / largest, right / largest);
+  }
+
+  @Override
+  protected void end(boolean interrupted) {
+    drive.stop();
+  }
+
+  public boolean hasTarget() {
+    return hasTarget;
+  }
+
+  /**
+   * Age of the last vision result that was used, in seconds.
+   */
+  public double getLatency() {
+    return latency;
+  }
+}
@@ -0,0 +1,304 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.cscore.CvSink;
+import edu.wpi.cscore.UsbCamera;
+import edu.wpi.cscore.VideoSink;
+import edu.wpi.cscore.VideoSource;
+import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Owns the robot cameras and runs their vision pipelines on a small shared
+ * thread pool instead of one thread per camera.
+ *
+ * <p>One camera at a time is the active one: its pipeline runs and its frames
+ * go to the driver stream. The other cameras are paused, their sinks are
+ * disabled so their frames are not decoded, but the cameras stay open, so
+ * switching the feed does not wait for a USB camera to reconnect. The driver
+ * stream itself never changes, so the dashboard does not reconnect either.
+ * A paused camera can also be resumed without becoming the active one, to
+ * keep its pipeline running off stream.
+ *
+ * <p>The target detector of a camera is a separate task on the same pool. It
+ * takes the newest frame from the pipeline's FrameExchange after each
+ * published frame, so frames that arrive while it is busy are dropped instead
+ * of queued, and the stream never waits for it.
+ *
+ * <p>Once per second the frame rate and latency of every camera is put on
+ * NetworkTables under Cameras/name.
+ */
+public class CameraManager implements AutoCloseable {
+  private static final long metricsPeriodMillis = 1000;
+
+  private final StreamManager driverStream;
+  private final int outputWidth;
+  private final int outputHeight;
+  private final int fps;
+  private final ScheduledThreadPoolExecutor executor;
+  private final List<Camera> cameras = new ArrayList<>();
+  private ScheduledFuture<?> metricsTask;
+  private volatile int active = -1;
+
+  // One camera with its pipeline, and the task that runs the pipeline while it is not paused
+  private static final class Camera {
+    final String name;
+    final VisionPipeline pipeline;
+    final TargetDetector detector;
+    final AtomicBoolean detectQueued = new AtomicBoolean();
+    final VideoSink sink;
+    final NetworkTableEntry fpsEntry;
+    final NetworkTableEntry latencyEntry;
+    final NetworkTableEntry pausedEntry;
+    ScheduledFuture<?> task;
+    long lastFrameCount;
+    long lastLatencyNanos;
+
+    Runnable detectTask;
+
+    Camera(String name, VisionPipeline pipeline, TargetDetector detector, VideoSink sink) {
+      this.name = name;
+      this.pipeline = pipeline;
+      this.detector = detector;
+      this.sink = sink;
+      NetworkTable table = NetworkTableInstance.getDefault().getTable("Cameras").getSubTable(name);
+      fpsEntry = table.getEntry("FPS");
+      latencyEntry = table.getEntry("Latency ms");
+      pausedEntry = table.getEntry("Paused");
+    }
+  }
+
+  /**
+   * Create the manager.
+   *
+   * @param driverStream the stream the active camera goes to, or null for none
+   * @param outputWidth width of the processed frames of every camera
+   * @param outputHeight height of the processed frames of every camera
+   * @param fps frame rate every camera is processed at
+   * @param threads how many threads process frames, see spareCores
+   */
+  public CameraManager(StreamManager driverStream, int outputWidth, int outputHeight, int fps, int threads) {
+    this.driverStream = driverStream;
+    this.outputWidth = outputWidth;
+    this.outputHeight = outputHeight;
+    this.fps = fps;
+    executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Vision " + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    executor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * The cores left after the control loop takes one, at least one.
+   */
+  public static int spareCores() {
+    return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+  }
+
+  /**
+   * Add a USB camera. It is opened right away and kept open.
+   *
+   * @param name name of the camera on the dashboard
+   * @param device USB device number
+   * @param captureWidth width the camera captures at
+   * @param captureHeight height the camera captures at
+   * @param cameraLatencySeconds time from the exposure to the frame arriving
+   * @param detector target detector for this camera, or null
+   * @return the camera, for settings like the exposure
+   */
+  public UsbCamera addUsbCamera(String name, int device, int captureWidth, int captureHeight, double cameraLatencySeconds,
+      TargetDetector detector) {
+    UsbCamera camera = new UsbCamera(name, device);
+    camera.setResolution(captureWidth, captureHeight);
+    camera.setFPS(fps);
+    camera.setConnectionStrategy(VideoSource.ConnectionStrategy.kKeepOpen);
+    CvSink sink = CameraServer.getInstance().getVideo(camera);
+    addCamera(name, new CvSinkFrameSource(sink, cameraLatencySeconds), sink, detector);
+    return camera;
+  }
+
+  /**
+   * Add a camera from any frame source, for example a synthetic one on the desktop.
+   *
+   * @param name name of the camera
+   * @param source where the frames come from
+   * @param sink the sink to disable while the camera is paused, or null
+   * @param detector target detector for this camera, or null
+   * @return the index of the camera
+   */
+  public int addCamera(String name, FrameSource source, VideoSink sink, TargetDetector detector) {
+    VisionPipeline pipeline = new VisionPipeline(source, null, outputWidth, outputHeight, fps);
+    Camera camera = new Camera(name, pipeline, detector, sink);
+    // Made once, so queueing a detection does not allocate
+    camera.detectTask = () -> detect(camera);
+    if (sink != null) {
+      sink.setEnabled(false);
+    }
+    camera.pausedEntry.setBoolean(true);
+    cameras.add(camera);
+    return cameras.size() - 1;
+  }
+
+  /**
+   * Make the first camera active and start publishing the metrics.
+   */
+  public void start() {
+    metricsTask = executor.scheduleAtFixedRate(this::publishMetrics, metricsPeriodMillis, metricsPeriodMillis,
+        TimeUnit.MILLISECONDS);
+    if (!cameras.isEmpty()) {
+      setActive(0);
+    }
+  }
+
+  /**
+   * Send this camera to the driver stream and pause the one that was active.
+   */
+  public synchronized void setActive(int index) {
+    int previous = active;
+    if (index == previous) {
+      return;
+    }
+    Camera camera = cameras.get(index);
+    resume(index);
+    camera.pipeline.setOutputStream(driverStream);
+    active = index;
+    if (previous >= 0) {
+      cameras.get(previous).pipeline.setOutputStream(null);
+      pause(previous);
+    }
+  }
+
+  /**
+   * Make the next camera active, going back to the first after the last.
+   */
+  public void next() {
+    setActive((active + 1) % cameras.size());
+  }
+
+  /**
+   * Start running the pipeline of a camera.
+   */
+  public synchronized void resume(int index) {
+    Camera camera = cameras.get(index);
+    if (camera.task != null) {
+      return;
+    }
+    if (camera.sink != null) {
+      camera.sink.setEnabled(true);
+    }
+    // The grab waits for the camera, so a late run does not process frames twice
+    camera.task = executor.scheduleAtFixedRate(() -> processFrame(camera), 0, 1_000_000_000L / fps,
+        TimeUnit.NANOSECONDS);
+    camera.pausedEntry.setBoolean(false);
+  }
+
+  /**
+   * Stop running the pipeline of a camera. The active camera can not be paused.
+   */
+  public synchronized void pause(int index) {
+    Camera camera = cameras.get(index);
+    if (index == active || camera.task == null) {
+      return;
+    }
+    camera.task.cancel(false);
+    camera.task = null;
+    if (camera.sink != null) {
+      camera.sink.setEnabled(false);
+    }
+    camera.pausedEntry.setBoolean(true);
+  }
+
+  // An exception would cancel the scheduled task, so report it and keep going
+  private void processFrame(Camera camera) {
+    try {
+      // At most one detection is queued, it takes the newest frame when it runs
+      if (camera.pipeline.processFrame() && camera.detector != null && !executor.isShutdown()
+          && camera.detectQueued.compareAndSet(false, true)) {
+        executor.execute(camera.detectTask);
+      }
+    } catch (RuntimeException e) {
+      DriverStation.reportError("Camera " + camera.name + " failed: " + e, e.getStackTrace());
+    }
+  }
+
+  private void detect(Camera camera) {
+    try {
+      camera.detector.processLatest(camera.pipeline.getFrames());
+    } catch (RuntimeException e) {
+      DriverStation.reportError("Camera " + camera.name + " detector failed: " + e, e.getStackTrace());
+    } finally {
+      camera.detectQueued.set(false);
+    }
+  }
+
+  private void publishMetrics() {
+    for (Camera camera : cameras) {
+      StageTimer latency = camera.pipeline.getLatencyTimer();
+      long frames = latency.getCount();
+      long latencyNanos = latency.getTotalNanos();
+      long newFrames = frames - camera.lastFrameCount;
+      camera.fpsEntry.setDouble(newFrames * 1000.0 / metricsPeriodMillis);
+      if (newFrames > 0) {
+        camera.latencyEntry.setDouble((latencyNanos - camera.lastLatencyNanos) / 1e6 / newFrames);
+      }
+      camera.lastFrameCount = frames;
+      camera.lastLatencyNanos = latencyNanos;
+    }
+  }
+
+  public int getCameraCount() {
+    return cameras.size();
+  }
+
+  public int getActive() {
+    return active;
+  }
+
+  public String getName(int index) {
+    return cameras.get(index).name;
+  }
+
+  public VisionPipeline getPipeline(int index) {
+    return cameras.get(index).pipeline;
+  }
+
+  /**
+   * The target detector of a camera, or null if it has none.
+   */
+  public TargetDetector getDetector(int index) {
+    return cameras.get(index).detector;
+  }
+
+  public synchronized boolean isPaused(int index) {
+    return cameras.get(index).task == null;
+  }
+
+  /**
+   * Stop all processing and the threads.
+   */
+  @Override
+  public void close() {
+    if (metricsTask != null) {
+      metricsTask.cancel(false);
+    }
+    executor.shutdownNow();
+  }
+}
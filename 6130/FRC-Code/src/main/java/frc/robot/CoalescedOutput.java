@@ -0,0 +1,23 @@
+package frc.robot;
+
+/**
+ * An output that holds back writes until the end of the loop and skips the
+ * ones that would not change anything.
+ */
+public interface CoalescedOutput {
+  /**
+   * Send the latest wanted value to the hardware if it changed. Called once per loop.
+   */
+  void flush();
+
+  /**
+   * Forget the last written value so the next flush always writes. Use this
+   * when the hardware may have been changed behind our back, like when the
+   * robot is disabled.
+   */
+  void invalidate();
+
+  long getWritesIssued();
+
+  long getWritesSuppressed();
+}
@@ -0,0 +1,80 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Compressor;
+
+/**
+ * Wraps the compressor so start, stop and closed loop control are only sent
+ * at the end of the loop and only when the wanted state changed. The read
+ * methods go straight to the compressor.
+ */
+public class CoalescingCompressor implements CoalescedOutput {
+  private final Compressor compressor;
+  private boolean wanted;
+  private boolean written;
+  private boolean hasWanted;
+  private boolean hasWritten;
+  private long writesIssued;
+  private long writesSuppressed;
+
+  public CoalescingCompressor(Compressor compressor) {
+    this.compressor = compressor;
+  }
+
+  /**
+   * Turn closed loop control on or off. When it is on the compressor runs
+   * until the pressure switch says the tanks are full.
+   */
+  public void setEnabled(boolean enabled) {
+    wanted = enabled;
+    hasWanted = true;
+  }
+
+  public boolean isEnabled() {
+    return wanted;
+  }
+
+  public boolean getPressureSwitchValue() {
+    return compressor.getPressureSwitchValue();
+  }
+
+  public double getCompressorCurrent() {
+    return compressor.getCompressorCurrent();
+  }
+
+  public boolean isRunning() {
+    return compressor.enabled();
+  }
+
+  @Override
+  public void flush() {
+    if (hasWanted && (!hasWritten || wanted != written)) {
+      if (wanted) {
+        compressor.start();
+        compressor.setClosedLoopControl(true);
+      } else {
+        compressor.stop();
+        compressor.setClosedLoopControl(false);
+      }
+      written = wanted;
+      hasWritten = true;
+      writesIssued++;
+    } else {
+      writesSuppressed++;
+    }
+  }
+
+  @Override
+  public void invalidate() {
+    hasWritten = false;
+  }
+
+  @Override
+  public long getWritesIssued() {
+    return writesIssued;
+  }
+
+  @Override
+  public long getWritesSuppressed() {
+    return writesSuppressed;
+  }
+}
@@ -0,0 +1,53 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * Wraps a double solenoid so the valve is only written at the end of the
+ * loop and only when the wanted position changed.
+ */
+public class CoalescingDoubleSolenoid implements CoalescedOutput {
+  private final DoubleSolenoid solenoid;
+  private DoubleSolenoid.Value wanted;
+  private DoubleSolenoid.Value written;
+  private long writesIssued;
+  private long writesSuppressed;
+
+  public CoalescingDoubleSolenoid(DoubleSolenoid solenoid) {
+    this.solenoid = solenoid;
+  }
+
+  public void set(DoubleSolenoid.Value value) {
+    wanted = value;
+  }
+
+  public DoubleSolenoid.Value get() {
+    return wanted == null ? DoubleSolenoid.Value.kOff : wanted;
+  }
+
+  @Override
+  public void flush() {
+    if (wanted != null && wanted != written) {
+      solenoid.set(wanted);
+      written = wanted;
+      writesIssued++;
+    } else {
+      writesSuppressed++;
+    }
+  }
+
+  @Override
+  public void invalidate() {
+    written = null;
+  }
+
+  @Override
+  public long getWritesIssued() {
+    return writesIssued;
+  }
+
+  @Override
+  public long getWritesSuppressed() {
+    return writesSuppressed;
+  }
+}
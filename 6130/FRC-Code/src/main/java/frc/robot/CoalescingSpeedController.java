@@ -0,0 +1,98 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * Wraps a speed controller so that set only stores the wanted speed and flush
+ * sends it once per loop, and only if it moved more than epsilon from the
+ * last speed that was sent. Every write to a PWM or CAN controller goes
+ * through JNI into the HAL, and most loops ask for the same speed as the one
+ * before, so this removes most of that traffic.
+ *
+ * <p>Stopping is never delayed: stopMotor and disable go straight to the
+ * controller, and a change to exactly zero is always sent.
+ */
+public class CoalescingSpeedController implements SpeedController, CoalescedOutput {
+  private final SpeedController controller;
+  private final double epsilon;
+  private double wanted;
+  private double written;
+  private boolean hasWritten;
+  private long writesIssued;
+  private long writesSuppressed;
+
+  public CoalescingSpeedController(SpeedController controller, double epsilon) {
+    this.controller = controller;
+    this.epsilon = epsilon;
+  }
+
+  @Override
+  public void set(double speed) {
+    wanted = speed;
+  }
+
+  @Override
+  public double get() {
+    return wanted;
+  }
+
+  @Override
+  public void pidWrite(double output) {
+    set(output);
+  }
+
+  @Override
+  public void setInverted(boolean isInverted) {
+    controller.setInverted(isInverted);
+  }
+
+  @Override
+  public boolean getInverted() {
+    return controller.getInverted();
+  }
+
+  @Override
+  public void disable() {
+    controller.disable();
+    wanted = 0;
+    hasWritten = false;
+  }
+
+  @Override
+  public void stopMotor() {
+    controller.stopMotor();
+    wanted = 0;
+    written = 0;
+    hasWritten = true;
+  }
+
+  @Override
+  public void flush() {
+    boolean changed = !hasWritten
+        || Math.abs(wanted - written) > epsilon
+        || (wanted == 0 && written != 0);
+    if (changed) {
+      controller.set(wanted);
+      written = wanted;
+      hasWritten = true;
+      writesIssued++;
+    } else {
+      writesSuppressed++;
+    }
+  }
+
+  @Override
+  public void invalidate() {
+    hasWritten = false;
+  }
+
+  @Override
+  public long getWritesIssued() {
+    return writesIssued;
+  }
+
+  @Override
+  public long getWritesSuppressed() {
+    return writesSuppressed;
+  }
+}
@@ -0,0 +1,64 @@
+package frc.robot;
+
+/**
+ * An action that uses one or more subsystems until it finishes or another
+ * command needs the same subsystems.
+ */
+public abstract class Command {
+  private final Subsystem[] requirements;
+  private boolean interruptible = true;
+  private boolean scheduled;
+
+  protected Command(Subsystem... requirements) {
+    this.requirements = requirements;
+  }
+
+  /**
+   * Called once when the command starts.
+   */
+  protected void initialize() {
+  }
+
+  /**
+   * Called every loop while the command runs.
+   */
+  protected void execute() {
+  }
+
+  /**
+   * Return true when the command is done. By default a command runs until it is cancelled.
+   */
+  protected boolean isFinished() {
+    return false;
+  }
+
+  /**
+   * Called once when the command finishes or is interrupted.
+   */
+  protected void end(boolean interrupted) {
+  }
+
+  public Subsystem[] getRequirements() {
+    return requirements;
+  }
+
+  public boolean isInterruptible() {
+    return interruptible;
+  }
+
+  /**
+   * A command that is not interruptible keeps its subsystems until it finishes.
+   */
+  public Command setInterruptible(boolean interruptible) {
+    this.interruptible = interruptible;
+    return this;
+  }
+
+  public boolean isScheduled() {
+    return scheduled;
+  }
+
+  void setScheduled(boolean scheduled) {
+    this.scheduled = scheduled;
+  }
+}
@@ -0,0 +1,111 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * The air compressor. The compressor output skips writes that would not
+ * change its state.
+ *
+ * <p>The compressor draws around 10 A, so it is held off while the rest of
+ * the robot pulls a lot of current, mostly when the drive train accelerates
+ * or pushes. It runs again once the load stayed low for a moment, or right
+ * away if the pressure model says the pistons are running out of air.
+ */
+public class CompressorSubsystem extends Subsystem {
+  // Hold the compressor off above this load and let it run again after the load stayed under the resume level
+  private static final double deferCurrentAmps = 80;
+  private static final double resumeCurrentAmps = 60;
+  private static final double resumeDelaySeconds = 0.5;
+  // Never hold the compressor off with fewer actuations than this left
+  private static final int reserveActuations = 3;
+  private static final double maxStepSeconds = 0.1;
+
+  private final CoalescingCompressor compressor;
+  private final PressureModel pressureModel;
+  private final DoubleSupplier loadCurrent;
+  private boolean enabled;
+  private boolean deferred;
+  private double lowLoadSince = Double.NaN;
+  private double lastUpdate = Double.NaN;
+  private double deferredSeconds;
+
+  /**
+   * Create the compressor.
+   *
+   * @param compressor the compressor output
+   * @param enabled whether the compressor may run from the start
+   * @param pressureModel the pressure model, updated here every loop
+   * @param loadCurrent current of the rest of the robot in amps, without the compressor
+   */
+  public CompressorSubsystem(CoalescingCompressor compressor, boolean enabled, PressureModel pressureModel,
+      DoubleSupplier loadCurrent) {
+    super("Compressor", LoopProfiler.Section.kCompressor);
+    this.compressor = compressor;
+    this.enabled = enabled;
+    this.pressureModel = pressureModel;
+    this.loadCurrent = loadCurrent;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public void toggle() {
+    enabled = !enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Whether the compressor is held off because of the load right now.
+   */
+  public boolean isDeferred() {
+    return deferred;
+  }
+
+  /**
+   * Total time the compressor was held off because of the load.
+   */
+  public double getDeferredSeconds() {
+    return deferredSeconds;
+  }
+
+  public PressureModel getPressureModel() {
+    return pressureModel;
+  }
+
+  @Override
+  protected void writeOutputs() {
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastUpdate) ? 0 : Math.min(now - lastUpdate, maxStepSeconds);
+    lastUpdate = now;
+    pressureModel.update(dt, compressor.isRunning(), compressor.getPressureSwitchValue());
+
+    double load = loadCurrent.getAsDouble();
+    if (load > deferCurrentAmps) {
+      deferred = true;
+    }
+    if (load >= resumeCurrentAmps) {
+      // The load has to stay low for the whole delay, any loop above the resume level starts it over
+      lowLoadSince = Double.NaN;
+    } else if (deferred) {
+      if (Double.isNaN(lowLoadSince)) {
+        lowLoadSince = now;
+      } else if (now - lowLoadSince >= resumeDelaySeconds) {
+        deferred = false;
+      }
+    }
+    if (pressureModel.getRemainingActuations() < reserveActuations) {
+      deferred = false;
+    }
+    if (deferred && enabled) {
+      deferredSeconds += dt;
+    }
+
+    compressor.setEnabled(enabled && !deferred);
+  }
+}
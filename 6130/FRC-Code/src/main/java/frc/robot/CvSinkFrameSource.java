@@ -0,0 +1,46 @@
+package frc.robot;
+
+import org.opencv.core.Mat;
+
+import edu.wpi.cscore.CvSink;
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Frame source that reads from a camera through CameraServer.
+ *
+ * <p>The CvSink time is not on the FPGA clock, so frames are stamped with
+ * the FPGA time the grab returned, which is right after the frame arrived,
+ * minus the time the camera takes to expose and send a frame.
+ */
+public class CvSinkFrameSource implements FrameSource {
+  private final CvSink cvSink;
+  private final long cameraLatencyMicros;
+
+  public CvSinkFrameSource(CvSink cvSink) {
+    this(cvSink, 0);
+  }
+
+  /**
+   * Create the source.
+   *
+   * @param cvSink the sink to read from
+   * @param cameraLatencySeconds time from the exposure to the frame arriving here
+   */
+  public CvSinkFrameSource(CvSink cvSink, double cameraLatencySeconds) {
+    this.cvSink = cvSink;
+    this.cameraLatencyMicros = (long) (cameraLatencySeconds * 1e6);
+  }
+
+  @Override
+  public long grabFrame(Mat image, double timeoutSeconds) {
+    if (cvSink.grabFrame(image, timeoutSeconds) == 0) {
+      return 0;
+    }
+    return RobotController.getFPGATime() - cameraLatencyMicros;
+  }
+
+  @Override
+  public String getError() {
+    return cvSink.getError();
+  }
+}
@@ -0,0 +1,250 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+
+/**
+ * Puts the state of the robot on a NetworkTables table for the drivers'
+ * dashboard without slowing the robot loop down.
+ *
+ * <p>Every value is added once at startup with its entry and type. Once
+ * per flush period the robot loop samples them all into a StateBuffer,
+ * which is only a few reads and no NetworkTables calls. A Notifier thread
+ * picks the latest sample up at the same rate, writes only the values that
+ * changed and then flushes them to the dashboard together. Numbers can have
+ * a deadband so a noisy current does not update every time.
+ *
+ * <p>How many values were written, and how many flushes, are put on the
+ * "Publisher" sub table every second. Nothing in here allocates after
+ * start.
+ */
+public class DashboardPublisher {
+  private enum Type {
+    kDouble, kBoolean, kEnum
+  }
+
+  private static final class Value {
+    final NetworkTableEntry entry;
+    final Type type;
+    final DoubleSupplier supplier;
+    final double deadband;
+    final String[] names;
+
+    Value(NetworkTableEntry entry, Type type, DoubleSupplier supplier, double deadband, String[] names) {
+      this.entry = entry;
+      this.type = type;
+      this.supplier = supplier;
+      this.deadband = deadband;
+      this.names = names;
+    }
+  }
+
+  private static final double statsPeriodSeconds = 1;
+
+  private final NetworkTable table;
+  private final double flushPeriodSeconds;
+  private final long flushPeriodNanos;
+  private final List<Value> valueList = new ArrayList<>();
+  private Value[] values;
+  private double[] sentValues;
+  private boolean[] sent;
+  private StateBuffer buffer;
+  private Notifier notifier;
+  private long lastSampleNanos;
+  private long lastFlushedTimestamp;
+  private long lastStatsNanos;
+  private long lastStatsUpdates;
+  private volatile long updates;
+  private volatile long flushes;
+  private long failures;
+
+  private final NetworkTableEntry entriesEntry;
+  private final NetworkTableEntry updatesEntry;
+  private final NetworkTableEntry updateRateEntry;
+  private final NetworkTableEntry flushesEntry;
+
+  /**
+   * Create the publisher.
+   *
+   * @param tableName name of the table the values go on
+   * @param flushPeriodSeconds how often the values are sampled and sent, 0.1 is 10 times a second
+   */
+  public DashboardPublisher(String tableName, double flushPeriodSeconds) {
+    table = NetworkTableInstance.getDefault().getTable(tableName);
+    this.flushPeriodSeconds = flushPeriodSeconds;
+    flushPeriodNanos = (long) (flushPeriodSeconds * 1e9);
+
+    NetworkTable statsTable = table.getSubTable("Publisher");
+    entriesEntry = statsTable.getEntry("Entries");
+    updatesEntry = statsTable.getEntry("Updates");
+    updateRateEntry = statsTable.getEntry("Updates per s");
+    flushesEntry = statsTable.getEntry("Flushes");
+  }
+
+  /**
+   * Add a number.
+   *
+   * @param key name of the entry, "/" makes sub tables
+   * @param value read in the robot loop when it samples
+   * @param deadband changes this small or smaller are not sent
+   */
+  public void addDouble(String key, DoubleSupplier value, double deadband) {
+    add(key, Type.kDouble, value, deadband, null);
+  }
+
+  public void addDouble(String key, DoubleSupplier value) {
+    addDouble(key, value, 0);
+  }
+
+  public void addBoolean(String key, BooleanSupplier value) {
+    add(key, Type.kBoolean, () -> value.getAsBoolean() ? 1 : 0, 0, null);
+  }
+
+  /**
+   * Add a state, like the state of a hand. It shows as the name of the
+   * enum constant, or an empty string for null.
+   */
+  public <E extends Enum<E>> void addEnum(String key, Class<E> type, Supplier<E> value) {
+    E[] constants = type.getEnumConstants();
+    String[] names = new String[constants.length];
+    for (int i = 0; i < constants.length; i++) {
+      names[i] = constants[i].name();
+    }
+    add(key, Type.kEnum, () -> {
+      E state = value.get();
+      return state != null ? state.ordinal() : -1;
+    }, 0, names);
+  }
+
+  private void add(String key, Type type, DoubleSupplier supplier, double deadband, String[] names) {
+    if (notifier != null) {
+      throw new IllegalStateException("Dashboard values must be added before the publisher starts");
+    }
+    valueList.add(new Value(table.getEntry(key), type, supplier, deadband, names));
+  }
+
+  public void start() {
+    values = valueList.toArray(new Value[0]);
+    sentValues = new double[values.length];
+    sent = new boolean[values.length];
+    buffer = new StateBuffer(values.length);
+    entriesEntry.setDouble(values.length);
+    notifier = new Notifier(this::flush);
+    notifier.startPeriodic(flushPeriodSeconds);
+  }
+
+  public void stop() {
+    if (notifier != null) {
+      notifier.stop();
+    }
+  }
+
+  /**
+   * Read every value if the flush period passed since the last sample.
+   * Call this from the robot loop, every loop.
+   */
+  public void sample() {
+    long now = System.nanoTime();
+    if (buffer == null || now - lastSampleNanos < flushPeriodNanos) {
+      return;
+    }
+    lastSampleNanos = now;
+    double[] sample = buffer.writeBuffer();
+    for (int i = 0; i < values.length; i++) {
+      sample[i] = values[i].supplier.getAsDouble();
+    }
+    buffer.publish();
+  }
+
+  // This runs on the Notifier thread, it is the only one that writes the entries
+  private void flush() {
+    try {
+      double[] sample = buffer.read();
+      long timestamp = buffer.latestTimestamp();
+      if (timestamp != lastFlushedTimestamp) {
+        lastFlushedTimestamp = timestamp;
+        int changed = 0;
+        for (int i = 0; i < values.length; i++) {
+          if (write(i, sample[i])) {
+            changed++;
+          }
+        }
+        // The changed values leave together instead of waiting for the next NetworkTables update
+        if (changed > 0) {
+          NetworkTableInstance.getDefault().flush();
+          updates += changed;
+          flushes++;
+        }
+      }
+      publishStats();
+    } catch (RuntimeException e) {
+      // An exception would end the Notifier thread and the dashboard would freeze
+      if (failures++ == 0) {
+        DriverStation.reportError("Dashboard publisher failed: " + e, e.getStackTrace());
+      }
+    }
+  }
+
+  private boolean write(int index, double value) {
+    Value registered = values[index];
+    double last = sentValues[index];
+    if (sent[index] && (Double.compare(value, last) == 0 || Math.abs(value - last) <= registered.deadband)) {
+      return false;
+    }
+    switch (registered.type) {
+      case kBoolean:
+        registered.entry.setBoolean(value != 0);
+        break;
+      case kEnum:
+        registered.entry.setString(value >= 0 ? registered.names[(int) value] : "");
+        break;
+      default:
+        registered.entry.setDouble(value);
+        break;
+    }
+    sentValues[index] = value;
+    sent[index] = true;
+    return true;
+  }
+
+  private void publishStats() {
+    long now = System.nanoTime();
+    if (now - lastStatsNanos < statsPeriodSeconds * 1e9) {
+      return;
+    }
+    double seconds = lastStatsNanos == 0 ? statsPeriodSeconds : (now - lastStatsNanos) / 1e9;
+    long total = updates;
+    updatesEntry.setDouble(total);
+    updateRateEntry.setDouble((total - lastStatsUpdates) / seconds);
+    flushesEntry.setDouble(flushes);
+    lastStatsNanos = now;
+    lastStatsUpdates = total;
+  }
+
+  public int getEntryCount() {
+    return valueList.size();
+  }
+
+  /**
+   * Number of values written to NetworkTables since start.
+   */
+  public long getUpdateCount() {
+    return updates;
+  }
+
+  /**
+   * Number of flushes that wrote at least one value.
+   */
+  public long getFlushCount() {
+    return flushes;
+  }
+}
@@ -0,0 +1,114 @@
+package frc.robot;
+
+/**
+ * Turns driver commands into drive train outputs.
+ *
+ * <p>Stick values come without their dead zone, see InputSnapshot.getZonedAxis,
+ * and are squared here for finer control at low speed. Throttle
+ * and turn are mixed into one left and right command, scaled down together
+ * if either side would go past full speed. Every loop the commands are slew
+ * rate limited into the outputs. DriveSubsystem sends them to the motors, or
+ * as wanted speeds to a DriveVelocityLoop that holds them with the encoders.
+ */
+public class DriveController {
+  private final SlewRateLimiter leftLimiter;
+  private final SlewRateLimiter rightLimiter;
+  private double leftCommand;
+  private double rightCommand;
+  private double leftOutput;
+  private double rightOutput;
+
+  /**
+   * Create the controller.
+   *
+   * @param slewRate the most a side may change in one second, 2 means stop to full speed in half a second
+   */
+  public DriveController(double slewRate) {
+    leftLimiter = new SlewRateLimiter(slewRate);
+    rightLimiter = new SlewRateLimiter(slewRate);
+  }
+
+  /**
+   * Change how fast the sides may ramp, in full speed per second.
+   */
+  public void setSlewRate(double slewRate) {
+    leftLimiter.setRate(slewRate);
+    rightLimiter.setRate(slewRate);
+  }
+
+  private static double shape(double value) {
+    double clamped = Math.max(-1, Math.min(1, value));
+    return Math.copySign(clamped * clamped, clamped);
+  }
+
+  /**
+   * Drive with one stick for speed and one for turning.
+   *
+   * @param throttle forward is positive
+   * @param turn right is positive
+   */
+  public void arcadeDrive(double throttle, double turn) {
+    double forward = shape(throttle);
+    double rotation = shape(turn);
+    double left = forward + rotation;
+    double right = forward - rotation;
+    // Keep the ratio between the sides, so turning still works at full throttle
+    double largest = Math.max(1, Math.max(Math.abs(left), Math.abs(right)));
+    leftCommand = left / largest;
+    rightCommand = right / largest;
+  }
+
+  /**
+   * Drive each side with its own stick, forward is positive.
+   */
+  public void tankDrive(double left, double right) {
+    leftCommand = shape(left);
+    rightCommand = shape(right);
+  }
+
+  /**
+   * Set the side commands as they are, without squaring.
+   */
+  public void setCommands(double left, double right) {
+    leftCommand = Math.max(-1, Math.min(1, left));
+    rightCommand = Math.max(-1, Math.min(1, right));
+  }
+
+  /**
+   * Work out the outputs for this loop.
+   *
+   * @param dtSeconds time since the last update
+   */
+  public void update(double dtSeconds) {
+    leftOutput = leftLimiter.calculate(leftCommand, dtSeconds);
+    rightOutput = rightLimiter.calculate(rightCommand, dtSeconds);
+  }
+
+  /**
+   * Forget the ramps, so the robot starts from standstill.
+   */
+  public void reset() {
+    leftCommand = 0;
+    rightCommand = 0;
+    leftOutput = 0;
+    rightOutput = 0;
+    leftLimiter.reset(0);
+    rightLimiter.reset(0);
+  }
+
+  public double getLeftCommand() {
+    return leftCommand;
+  }
+
+  public double getRightCommand() {
+    return rightCommand;
+  }
+
+  public double getLeftOutput() {
+    return leftOutput;
+  }
+
+  public double getRightOutput() {
+    return rightOutput;
+  }
+}
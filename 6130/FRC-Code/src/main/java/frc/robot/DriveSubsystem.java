@@ -0,0 +1,117 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+
+/**
+ * The drive train. Commands set what the driver wants and once per loop the
+ * drive controller turns that into ramped, optionally closed loop outputs
+ * that are sent to the motors, multiplied with the output scale. With a
+ * DriveVelocityLoop the ramped speeds are sent to it instead, and it holds
+ * them on its own thread.
+ */
+public class DriveSubsystem extends Subsystem {
+  // Longest time step the ramps use, so a late loop does not allow a jump
+  private static final double maxStepSeconds = 0.1;
+
+  private final DifferentialDrive driveTrain;
+  private final DriveVelocityLoop velocityLoop;
+  private final DriveController controller;
+  private DoubleSupplier outputScale = () -> 1;
+  private double lastUpdate = Double.NaN;
+
+  public DriveSubsystem(DifferentialDrive driveTrain, DriveController controller) {
+    super("Drive", LoopProfiler.Section.kDrive);
+    this.driveTrain = driveTrain;
+    this.velocityLoop = null;
+    this.controller = controller;
+    // The sticks come without their dead zone already, a second one here would eat the start of every ramp
+    driveTrain.setDeadband(0);
+  }
+
+  /**
+   * Create a drive whose wheel speeds are held by a fast rate group.
+   *
+   * @param velocityLoop the loop that writes the motors, it gets the ramped speeds every loop
+   * @param controller an open loop controller, the velocity control is in the loop
+   */
+  public DriveSubsystem(DriveVelocityLoop velocityLoop, DriveController controller) {
+    super("Drive", LoopProfiler.Section.kDrive);
+    this.driveTrain = null;
+    this.velocityLoop = velocityLoop;
+    this.controller = controller;
+  }
+
+  /**
+   * Drive with stick values, see DriveController.arcadeDrive.
+   */
+  public void arcadeDrive(double throttle, double turn) {
+    controller.arcadeDrive(throttle, turn);
+  }
+
+  /**
+   * Drive each side with a stick value, see DriveController.tankDrive.
+   */
+  public void tankDrive(double leftSpeed, double rightSpeed) {
+    controller.tankDrive(leftSpeed, rightSpeed);
+  }
+
+  /**
+   * Set the side commands directly, for code that works out exact outputs.
+   */
+  public void setOutputs(double leftSpeed, double rightSpeed) {
+    controller.setCommands(leftSpeed, rightSpeed);
+  }
+
+  public void stop() {
+    controller.setCommands(0, 0);
+  }
+
+  /**
+   * Drop the ramps so the next enable starts from standstill.
+   */
+  public void reset() {
+    controller.reset();
+    lastUpdate = Double.NaN;
+    if (velocityLoop != null) {
+      velocityLoop.setSpeeds(0, 0);
+    }
+  }
+
+  /**
+   * Multiply both sides with this scale before they are written, see PowerBudgeter.
+   */
+  public void setOutputScale(DoubleSupplier outputScale) {
+    this.outputScale = outputScale;
+  }
+
+  public double getLeftSpeed() {
+    return controller.getLeftOutput();
+  }
+
+  public double getRightSpeed() {
+    return controller.getRightOutput();
+  }
+
+  public DriveController getController() {
+    return controller;
+  }
+
+  @Override
+  protected void writeOutputs() {
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastUpdate) ? 0 : Math.min(now - lastUpdate, maxStepSeconds);
+    lastUpdate = now;
+    controller.update(dt);
+    // We write every loop, even when stopped, to keep the motor safety timer fed
+    // The controller already shaped the values, so the drive must not square them again
+    double scale = outputScale.getAsDouble();
+    if (velocityLoop != null) {
+      velocityLoop.setSpeeds(controller.getLeftOutput() * scale, controller.getRightOutput() * scale);
+      return;
+    }
+    driveTrain.tankDrive(controller.getLeftOutput() * scale, controller.getRightOutput() * scale, false);
+  }
+}
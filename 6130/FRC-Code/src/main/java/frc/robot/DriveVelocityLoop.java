@@ -0,0 +1,134 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+
+/**
+ * Holds the wheel speeds of the drive train from a fast rate group instead
+ * of the robot loop.
+ *
+ * <p>The robot loop still reads the sticks, applies the dead band and the
+ * ramps, and sends the wanted side speeds with setSpeeds. Every run of the
+ * rate group takes the newest speeds, runs the velocity controllers with a
+ * fresh encoder rate and writes the motors. The motor outputs and speed
+ * errors go back the other way, sample reads them in the robot loop.
+ *
+ * <p>If the robot loop stops sending speeds for longer than the command
+ * timeout, because it hangs or the robot is disabled, the motors are
+ * stopped. The outputs are coalesced like the ones of the robot loop, but
+ * flushed on the fast thread, so they must not be added to an
+ * OutputCoalescer.
+ */
+public class DriveVelocityLoop implements RateGroup.Task {
+  private static final int leftSpeed = 0;
+  private static final int rightSpeed = 1;
+  private static final int leftOutput = 0;
+  private static final int rightOutput = 1;
+  private static final int leftError = 2;
+  private static final int rightError = 3;
+
+  private final CoalescingSpeedController left;
+  private final CoalescingSpeedController right;
+  private final DifferentialDrive driveTrain;
+  private final VelocityController leftVelocity;
+  private final VelocityController rightVelocity;
+  private final double maxSpeed;
+  private final long commandTimeoutNanos;
+  private final StateBuffer commands = new StateBuffer(2);
+  private final StateBuffer status = new StateBuffer(4);
+  private volatile long timeouts;
+  private boolean timedOut = true;
+  private double[] sampled = status.read();
+
+  /**
+   * Create the loop.
+   *
+   * @param leftMotors the left side motors
+   * @param rightMotors the right side motors
+   * @param outputEpsilon output changes smaller than this are not sent to the motors
+   * @param leftVelocity velocity controller of the left side
+   * @param rightVelocity velocity controller of the right side
+   * @param maxSpeed speed of a full command, in encoder distance units per second
+   * @param commandTimeoutSeconds stop the motors when no speeds came for this long
+   */
+  public DriveVelocityLoop(SpeedController leftMotors, SpeedController rightMotors, double outputEpsilon,
+      VelocityController leftVelocity, VelocityController rightVelocity, double maxSpeed,
+      double commandTimeoutSeconds) {
+    left = new CoalescingSpeedController(leftMotors, outputEpsilon);
+    right = new CoalescingSpeedController(rightMotors, outputEpsilon);
+    driveTrain = new DifferentialDrive(left, right);
+    // The sticks of the robot loop already come without their dead zone
+    driveTrain.setDeadband(0);
+    this.leftVelocity = leftVelocity;
+    this.rightVelocity = rightVelocity;
+    this.maxSpeed = maxSpeed;
+    commandTimeoutNanos = (long) (commandTimeoutSeconds * 1e9);
+  }
+
+  /**
+   * Send the wanted side speeds, from -1 to 1 of the top speed. Only call
+   * this from the robot loop.
+   */
+  public void setSpeeds(double left, double right) {
+    double[] speeds = commands.writeBuffer();
+    speeds[leftSpeed] = left;
+    speeds[rightSpeed] = right;
+    commands.publish();
+  }
+
+  // This runs on the rate group thread
+  @Override
+  public void run(double dtSeconds) {
+    double[] speeds = commands.read();
+    boolean stale = System.nanoTime() - commands.latestTimestamp() > commandTimeoutNanos;
+    if (stale && !timedOut) {
+      timeouts++;
+    }
+    timedOut = stale;
+    double leftWanted = stale ? 0 : speeds[leftSpeed] * maxSpeed;
+    double rightWanted = stale ? 0 : speeds[rightSpeed] * maxSpeed;
+
+    double[] values = status.writeBuffer();
+    values[leftOutput] = leftVelocity.calculate(leftWanted, dtSeconds);
+    values[rightOutput] = rightVelocity.calculate(rightWanted, dtSeconds);
+    values[leftError] = leftVelocity.getError();
+    values[rightError] = rightVelocity.getError();
+    status.publish();
+
+    // We write every run, even when stopped, to keep the motor safety timer fed
+    driveTrain.tankDrive(values[leftOutput], values[rightOutput], false);
+    left.flush();
+    right.flush();
+  }
+
+  /**
+   * Take the newest outputs and errors of the fast thread for the getters.
+   * Only call this from the robot loop.
+   */
+  public void sample() {
+    sampled = status.read();
+  }
+
+  public double getSampledLeftOutput() {
+    return sampled[leftOutput];
+  }
+
+  public double getSampledRightOutput() {
+    return sampled[rightOutput];
+  }
+
+  public double getSampledLeftError() {
+    return sampled[leftError];
+  }
+
+  public double getSampledRightError() {
+    return sampled[rightError];
+  }
+
+  /**
+   * How often the motors were stopped because the robot loop sent no speeds.
+   */
+  public long getTimeoutCount() {
+    return timeouts;
+  }
+}
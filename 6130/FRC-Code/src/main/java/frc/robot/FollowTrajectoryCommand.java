@@ -0,0 +1,107 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Drives a trajectory with the Ramsete controller.
+ *
+ * <p>The trajectory starts wherever the robot is when the command starts:
+ * the pose at that moment is taken as the first pose of the trajectory.
+ * Every loop the trajectory is looked up at the time since the start and
+ * the wheel speeds from the controller go to the drive as a part of the top
+ * speed, which the drive holds with its encoders or, without them, uses as
+ * the open loop output. Without encoders the pose estimator only knows the
+ * heading, so only the heading is corrected and the distance is driven by
+ * time.
+ */
+public class FollowTrajectoryCommand extends Command {
+  private final DriveSubsystem drive;
+  private final PoseEstimator pose;
+  private final Trajectory trajectory;
+  private final RamseteController controller;
+  private final double trackWidth;
+  private final double maxSpeed;
+  private double startTime;
+  private double startX;
+  private double startY;
+  private double startHeading;
+  private double trajectoryX;
+  private double trajectoryY;
+  private double trajectoryHeading;
+
+  /**
+   * Create the command.
+   *
+   * @param drive the drive train
+   * @param pose the pose estimator, updated every loop before the commands run
+   * @param trajectory the path to drive
+   * @param controller the controller that keeps the robot on the path
+   * @param trackWidth distance between the left and right wheels in meters
+   * @param maxSpeed wheel speed in meters per second that a drive output of 1 stands for
+   */
+  public FollowTrajectoryCommand(DriveSubsystem drive, PoseEstimator pose, Trajectory trajectory,
+      RamseteController controller, double trackWidth, double maxSpeed) {
+    super(drive);
+    this.drive = drive;
+    this.pose = pose;
+    this.trajectory = trajectory;
+    this.controller = controller;
+    this.trackWidth = trackWidth;
+    this.maxSpeed = maxSpeed;
+  }
+
+  @Override
+  protected void initialize() {
+    startTime = Timer.getFPGATimestamp();
+    startX = pose.getX();
+    startY = pose.getY();
+    startHeading = Math.toRadians(pose.getHeading());
+    trajectory.sample(0);
+    trajectoryX = trajectory.getSampledX();
+    trajectoryY = trajectory.getSampledY();
+    trajectoryHeading = trajectory.getSampledHeading();
+  }
+
+  @Override
+  protected void execute() {
+    trajectory.sample(Timer.getFPGATimestamp() - startTime);
+    double wantedX = trajectory.getSampledX();
+    double wantedY = trajectory.getSampledY();
+    double wantedHeading = trajectory.getSampledHeading();
+    double wantedVelocity = trajectory.getSampledVelocity();
+
+    // Turn the pose into the frame of the trajectory
+    double turn = trajectoryHeading - startHeading;
+    double heading = Math.toRadians(pose.getHeading()) + turn;
+    double x = wantedX;
+    double y = wantedY;
+    if (pose.hasPosition()) {
+      double dx = pose.getX() - startX;
+      double dy = pose.getY() - startY;
+      x = trajectoryX + dx * Math.cos(turn) - dy * Math.sin(turn);
+      y = trajectoryY + dx * Math.sin(turn) + dy * Math.cos(turn);
+    }
+
+    controller.calculate(x, y, heading, wantedX, wantedY, wantedHeading, wantedVelocity,
+        wantedVelocity * trajectory.getSampledCurvature());
+    double halfTurn = controller.getAngularVelocity() * trackWidth / 2;
+    double left = (controller.getVelocity() + halfTurn) / maxSpeed;
+    double right = (controller.getVelocity() - halfTurn) / maxSpeed;
+    double largest = Math.max(1, Math.max(Math.abs(left), Math.abs(right)));
+    drive.setOutputs(left / largest, right / largest);
+  }
+
+  @Override
+  protected boolean isFinished() {
+    return Timer.getFPGATimestamp() - startTime >= trajectory.getDuration();
+  }
+
+  @Override
+  protected void end(boolean interrupted) {
+    drive.stop();
+  }
+
+  public Trajectory getTrajectory() {
+    return trajectory;
+  }
+}
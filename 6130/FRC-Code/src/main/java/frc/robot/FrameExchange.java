@@ -0,0 +1,83 @@
+package frc.robot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.core.Mat;
+
+/**
+ * Hands the newest processed frame from the vision pipeline to one reader,
+ * like the target detector, without locks or allocation. It is a triple
+ * buffer: the writer fills one Mat, the reader holds another and the third is
+ * the latest finished frame. If the writer publishes again before the reader
+ * takes the latest frame, the older one is dropped.
+ *
+ * <p>The writer and the reader may each move between threads, like the tasks
+ * of an executor, as long as two calls on the same side never overlap.
+ */
+public class FrameExchange {
+  private static final int indexMask = 0b11;
+  private static final int freshFlag = 0b100;
+
+  private final Mat[] buffers = new Mat[3];
+  private final long[] timestamps = new long[3];
+  private final AtomicInteger ready = new AtomicInteger(1);
+  private int writeIndex = 0;
+  private int readIndex = 2;
+  private volatile long published;
+  private volatile long dropped;
+
+  public FrameExchange(int width, int height, int type) {
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = new Mat(height, width, type);
+    }
+  }
+
+  /**
+   * The Mat the writer should fill next. Only call this from the writer thread.
+   */
+  public Mat writeBuffer() {
+    return buffers[writeIndex];
+  }
+
+  /**
+   * Make the write buffer the latest frame. Only call this from the writer thread.
+   */
+  public void publish(long timestampMicros) {
+    timestamps[writeIndex] = timestampMicros;
+    int previous = ready.getAndSet(writeIndex | freshFlag);
+    if ((previous & freshFlag) != 0) {
+      dropped++;
+    }
+    writeIndex = previous & indexMask;
+    published++;
+  }
+
+  /**
+   * Take the latest frame if a new one was published since the last call,
+   * otherwise return null. The Mat stays valid until the next call. Only call
+   * this from the reader thread.
+   */
+  public Mat takeLatest() {
+    if ((ready.get() & freshFlag) == 0) {
+      return null;
+    }
+    int previous = ready.getAndSet(readIndex);
+    readIndex = previous & indexMask;
+    return buffers[readIndex];
+  }
+
+  /**
+   * Capture time of the frame last returned by takeLatest, in microseconds.
+   */
+  public long latestTimestamp() {
+    return timestamps[readIndex];
+  }
+
+  public long getPublishedCount() {
+    return published;
+  }
+
+  public long getDroppedCount() {
+    return dropped;
+  }
+}
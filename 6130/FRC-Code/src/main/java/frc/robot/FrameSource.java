@@ -0,0 +1,20 @@
+package frc.robot;
+
+import org.opencv.core.Mat;
+
+/**
+ * Something the vision pipeline can pull frames from. On the robot this is a
+ * camera's CvSink, on the desktop it can be a synthetic or file backed source.
+ */
+public interface FrameSource {
+  /**
+   * Wait for the next frame and copy it into the image. Returns the capture
+   * time in FPGA microseconds, or 0 if the source timed out or failed.
+   */
+  long grabFrame(Mat image, double timeoutSeconds);
+
+  /**
+   * Get the reason of the last failed grab.
+   */
+  String getError();
+}
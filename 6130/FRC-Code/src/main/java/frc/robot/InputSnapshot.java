@@ -0,0 +1,262 @@
+package frc.robot;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * All controller inputs of one loop.
+ *
+ * <p>Every call to a controller getter goes through the synchronized driver
+ * station cache, one call per axis or POV, and the old teleopPeriodic read the
+ * same axis up to three times per loop. Instead, update asks the HAL once for
+ * all axes, once for all POVs and once for the button bits of each controller
+ * at the start of the loop, copies them into plain arrays and takes the
+ * joystick dead zone out in the same pass. This is the only dead zone, the
+ * drive uses the zoned axes too. The rest of the loop only reads from here,
+ * so every consumer sees the same values. Buttons and POVs that a controller
+ * does not have read as released and -1.
+ *
+ * <p>Button presses and releases are latched between updates, the way the
+ * driver station does it for XboxController.getXButtonPressed. After start, a
+ * thread looks at the buttons of every driver station packet, so a press that
+ * begins and ends between two updates still shows up as pressed, released and
+ * held for one loop. Without it only the buttons seen at each update count.
+ */
+public class InputSnapshot {
+  // The most axes and POVs the driver station sends for one controller
+  private static final int maxAxes = 12;
+  private static final int maxPovs = 12;
+  // How long the button thread waits for a packet before it checks for an interrupt
+  private static final double packetTimeoutSeconds = 0.1;
+
+  private final DriverStation driverStation = DriverStation.getInstance();
+  private final int[] ports;
+  private double joystickDeathZone;
+  private final float[] axisBuffer = new float[maxAxes];
+  private final short[] povBuffer = new short[maxPovs];
+  private final ByteBuffer buttonCount = ByteBuffer.allocateDirect(1);
+  private final double[][] axes;
+  private final double[][] zonedAxes;
+  private final int[][] povs;
+  private final int[][] previousPovs;
+  private final int[] buttons;
+  private final int[] pressed;
+  private final int[] released;
+  private double timestamp;
+
+  // The button latches, shared with the button thread and guarded by latchLock
+  private final Object latchLock = new Object();
+  private final int[] seenButtons;
+  private final int[] heldSince;
+  private final int[] pressedSince;
+  private final int[] releasedSince;
+  private Thread buttonThread;
+
+  /**
+   * Create the snapshot.
+   *
+   * @param joystickDeathZone axis values closer to zero than this read as zero in getZonedAxis
+   * @param ports driver station ports of the controllers, the controller index is the order here
+   */
+  public InputSnapshot(double joystickDeathZone, int... ports) {
+    this.ports = ports.clone();
+    this.joystickDeathZone = joystickDeathZone;
+    axes = new double[ports.length][maxAxes];
+    zonedAxes = new double[ports.length][maxAxes];
+    povs = new int[ports.length][maxPovs];
+    previousPovs = new int[ports.length][maxPovs];
+    buttons = new int[ports.length];
+    pressed = new int[ports.length];
+    released = new int[ports.length];
+    seenButtons = new int[ports.length];
+    heldSince = new int[ports.length];
+    pressedSince = new int[ports.length];
+    releasedSince = new int[ports.length];
+    for (int controller = 0; controller < ports.length; controller++) {
+      Arrays.fill(povs[controller], -1);
+      Arrays.fill(previousPovs[controller], -1);
+    }
+  }
+
+  /**
+   * Start the thread that latches the buttons of every driver station packet.
+   */
+  public void start() {
+    buttonThread = new Thread(this::watchButtons, "Inputs");
+    buttonThread.setDaemon(true);
+    buttonThread.start();
+  }
+
+  public void stop() {
+    if (buttonThread != null) {
+      buttonThread.interrupt();
+    }
+  }
+
+  // This runs on the button thread
+  private void watchButtons() {
+    while (!Thread.currentThread().isInterrupted()) {
+      if (driverStation.waitForData(packetTimeoutSeconds)) {
+        latchPacket();
+      }
+    }
+  }
+
+  /**
+   * Latch the buttons of the newest driver station packet.
+   */
+  void latchPacket() {
+    synchronized (latchLock) {
+      for (int controller = 0; controller < ports.length; controller++) {
+        latchButtons(controller);
+      }
+    }
+  }
+
+  // Reading the buttons under the lock keeps the latches in the order the packets came in
+  private void latchButtons(int controller) {
+    int seen = HAL.getJoystickButtons((byte) ports[controller], buttonCount);
+    int last = seenButtons[controller];
+    pressedSince[controller] |= seen & ~last;
+    releasedSince[controller] |= last & ~seen;
+    heldSince[controller] |= seen;
+    seenButtons[controller] = seen;
+  }
+
+  /**
+   * Read all controllers. Call this once at the start of the loop.
+   */
+  public void update() {
+    timestamp = Timer.getFPGATimestamp();
+    synchronized (latchLock) {
+      for (int controller = 0; controller < ports.length; controller++) {
+        latchButtons(controller);
+        // A button counts as held if it was down at any time since the last update
+        buttons[controller] = heldSince[controller];
+        pressed[controller] = pressedSince[controller];
+        released[controller] = releasedSince[controller];
+        heldSince[controller] = 0;
+        pressedSince[controller] = 0;
+        releasedSince[controller] = 0;
+      }
+    }
+
+    for (int controller = 0; controller < ports.length; controller++) {
+      byte port = (byte) ports[controller];
+
+      int axisCount = Math.min(HAL.getJoystickAxes(port, axisBuffer), maxAxes);
+      double[] controllerAxes = axes[controller];
+      double[] controllerZonedAxes = zonedAxes[controller];
+      for (int axis = 0; axis < maxAxes; axis++) {
+        double value = axis < axisCount ? axisBuffer[axis] : 0;
+        controllerAxes[axis] = value;
+        controllerZonedAxes[axis] = applyDeadZone(value, joystickDeathZone);
+      }
+
+      int povCount = Math.min(HAL.getJoystickPOVs(port, povBuffer), maxPovs);
+      int[] controllerPovs = povs[controller];
+      int[] controllerPreviousPovs = previousPovs[controller];
+      for (int pov = 0; pov < maxPovs; pov++) {
+        controllerPreviousPovs[pov] = controllerPovs[pov];
+        controllerPovs[pov] = pov < povCount ? povBuffer[pov] : -1;
+      }
+    }
+  }
+
+  /**
+   * Change the dead zone, it applies from the next update.
+   */
+  public void setDeathZone(double joystickDeathZone) {
+    this.joystickDeathZone = joystickDeathZone;
+  }
+
+  /**
+   * Scale an axis value so the dead zone reads as zero and the rest of the
+   * travel goes smoothly from zero to one, instead of jumping to the edge
+   * of the dead zone.
+   */
+  public static double applyDeadZone(double value, double deadZone) {
+    double magnitude = Math.abs(value);
+    if (magnitude <= deadZone) {
+      return 0;
+    }
+    return Math.copySign(Math.min(1, (magnitude - deadZone) / (1 - deadZone)), value);
+  }
+
+  public int getControllerCount() {
+    return ports.length;
+  }
+
+  /**
+   * The driver station port of the controller.
+   */
+  public int getPort(int controller) {
+    return ports[controller];
+  }
+
+  /**
+   * FPGA time of the last update in seconds.
+   */
+  public double getTimestamp() {
+    return timestamp;
+  }
+
+  public double getAxis(int controller, int axis) {
+    return axes[controller][axis];
+  }
+
+  /**
+   * The axis value with the joystick dead zone taken out, see applyDeadZone.
+   */
+  public double getZonedAxis(int controller, int axis) {
+    return zonedAxes[controller][axis];
+  }
+
+  public boolean isOutsideDeathZone(int controller, int axis) {
+    return zonedAxes[controller][axis] != 0;
+  }
+
+  /**
+   * Whether the button is held, or was pressed at some point since the last
+   * update. Buttons are numbered from 1 like on the driver station.
+   */
+  public boolean getButton(int controller, int button) {
+    return (buttons[controller] & (1 << (button - 1))) != 0;
+  }
+
+  /**
+   * Whether the button went down since the last update, even if it came up again.
+   */
+  public boolean getButtonPressed(int controller, int button) {
+    return (pressed[controller] & (1 << (button - 1))) != 0;
+  }
+
+  /**
+   * Whether the button came up since the last update, even if it went down again.
+   */
+  public boolean getButtonReleased(int controller, int button) {
+    return (released[controller] & (1 << (button - 1))) != 0;
+  }
+
+  /**
+   * All buttons of the controller as bits, button 1 is the lowest bit.
+   */
+  public int getButtons(int controller) {
+    return buttons[controller];
+  }
+
+  /**
+   * The POV angle in degrees, or -1 when it is not pressed.
+   */
+  public int getPOV(int controller, int pov) {
+    return povs[controller][pov];
+  }
+
+  public boolean getPOVChanged(int controller, int pov) {
+    return povs[controller][pov] != previousPovs[controller][pov];
+  }
+}
@@ -0,0 +1,23 @@
+package frc.robot;
+
+/**
+ * Command that runs an action once and finishes right away.
+ */
+public class InstantCommand extends Command {
+  private final Runnable action;
+
+  public InstantCommand(Runnable action, Subsystem... requirements) {
+    super(requirements);
+    this.action = action;
+  }
+
+  @Override
+  protected void initialize() {
+    action.run();
+  }
+
+  @Override
+  protected boolean isFinished() {
+    return true;
+  }
+}
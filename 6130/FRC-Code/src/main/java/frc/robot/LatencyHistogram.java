@@ -0,0 +1,93 @@
+package frc.robot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ *
+ * <p>Buckets are laid out like an HDR histogram: every power of two is split
+ * into 16 linear sub buckets, so any recorded value is reported within about
+ * 6% of its real value. Recording is a few shifts and one atomic increment and
+ * never allocates, so it is safe to use inside the control loop.
+ */
+public class LatencyHistogram {
+  private static final int subBucketBits = 4;
+  private static final int subBucketCount = 1 << subBucketBits;
+  private static final int subBucketMask = subBucketCount - 1;
+  private static final int bucketCount = (64 - subBucketBits) * subBucketCount;
+
+  private final AtomicLongArray counts = new AtomicLongArray(bucketCount);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong maxValue = new AtomicLong();
+
+  /**
+   * Add one value. Negative values are counted as zero.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(indexFor(value));
+    totalCount.incrementAndGet();
+    long max = maxValue.get();
+    while (value > max && !maxValue.compareAndSet(max, value)) {
+      max = maxValue.get();
+    }
+  }
+
+  /**
+   * Get the value below which the given percentage (0 to 100) of the
+   * recorded values fall. Returns 0 if nothing was recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = totalCount.get();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100.0));
+    long seen = 0;
+    for (int i = 0; i < bucketCount; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), maxValue.get());
+      }
+    }
+    return maxValue.get();
+  }
+
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  public long getTotalCount() {
+    return totalCount.get();
+  }
+
+  /**
+   * Clear all values. Values recorded while the reset runs may be lost.
+   */
+  public void reset() {
+    for (int i = 0; i < bucketCount; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.set(0);
+    maxValue.set(0);
+  }
+
+  static int indexFor(long value) {
+    if (value < subBucketCount) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - subBucketBits;
+    return (shift + 1) * subBucketCount + (int) ((value >>> shift) & subBucketMask);
+  }
+
+  static long highestValueIn(int index) {
+    if (index < subBucketCount) {
+      return index;
+    }
+    int shift = index / subBucketCount - 1;
+    long lowest = (long) (subBucketCount + (index & subBucketMask)) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,259 @@
+package frc.robot;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.InterruptHandlerFunction;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Stops a mechanism as soon as it hits a limit switch instead of waiting for
+ * the next loop.
+ *
+ * <p>Polling the switches in teleopPeriodic lets a motor at full power run up
+ * to 20 ms plus loop jitter past the stop. Here each switch raises an
+ * interrupt when it is pressed, and if the last output sent to the motors
+ * goes towards it the motors are stopped right from the interrupt thread.
+ * Every stop records the time from the switch edge to the motors being
+ * stopped.
+ *
+ * <p>This is the only place the switches limit the outputs, so the outputs
+ * must be sent through the motors of getMotors, not straight to the
+ * controllers. They read the switch an output goes towards right before they
+ * write, under the same lock the interrupt takes, so an output towards a
+ * pressed switch is sent as zero even if it was worked out before the press.
+ * If the motors given are coalescing wrappers the guarded motors flush them
+ * under that lock too, so add the guarded motors to the OutputCoalescer
+ * instead of the wrappers. The wrappers then always know what the
+ * controllers were really sent.
+ */
+public class LimitSwitchGuard {
+  // The DIO channels of all guards and the presses their interrupts handled, so a replay can wait for them
+  private static final Set<Integer> guardedChannels = ConcurrentHashMap.newKeySet();
+  private static final AtomicLong pressesHandled = new AtomicLong();
+
+  private final Limit forwardLimit;
+  private final Limit reverseLimit;
+  private final SpeedController[] motors;
+  private final GuardedMotor[] guardedMotors;
+  private final LatencyHistogram stopLatency = new LatencyHistogram();
+  private final Object lock = new Object();
+  private double sentOutput;
+  private volatile long trips;
+
+  /**
+   * Create the guard and start listening for the switches.
+   *
+   * @param forwardSwitch the switch at the end of positive travel, or null
+   * @param reverseSwitch the switch at the end of negative travel, or null
+   * @param motors the motors to stop, the controllers or their coalescing wrappers
+   */
+  public LimitSwitchGuard(DigitalInput forwardSwitch, DigitalInput reverseSwitch, SpeedController... motors) {
+    this.motors = motors.clone();
+    guardedMotors = new GuardedMotor[motors.length];
+    for (int i = 0; i < motors.length; i++) {
+      guardedMotors[i] = new GuardedMotor(motors[i]);
+    }
+    forwardLimit = forwardSwitch != null ? new Limit(forwardSwitch, 1) : null;
+    reverseLimit = reverseSwitch != null ? new Limit(reverseSwitch, -1) : null;
+  }
+
+  // Whether an output may not be sent, call this with the lock held
+  private boolean blocks(double output) {
+    Limit limit = output > 0 ? forwardLimit : output < 0 ? reverseLimit : null;
+    if (limit == null) {
+      return false;
+    }
+    // Read the switch under the lock, so a press that comes in now is not cleared with an old reading
+    limit.latched = limit.isPressed();
+    return limit.latched;
+  }
+
+  /**
+   * The motors to send the outputs to, in the order they were given. They
+   * hold any output towards a pressed switch at zero.
+   */
+  public GuardedMotor[] getMotors() {
+    return guardedMotors.clone();
+  }
+
+  public boolean isForwardPressed() {
+    return forwardLimit != null && forwardLimit.isPressed();
+  }
+
+  public boolean isReversePressed() {
+    return reverseLimit != null && reverseLimit.isPressed();
+  }
+
+  /**
+   * Whether the forward switch was pressed when it was last checked, by its
+   * interrupt or by an output towards it.
+   */
+  public boolean isForwardLatched() {
+    return forwardLimit != null && forwardLimit.latched;
+  }
+
+  public boolean isReverseLatched() {
+    return reverseLimit != null && reverseLimit.latched;
+  }
+
+  /**
+   * Whether a guard listens for presses of the switch on this DIO channel.
+   */
+  static boolean isGuarded(int channel) {
+    return guardedChannels.contains(channel);
+  }
+
+  /**
+   * How many switch presses the interrupts of all guards handled so far.
+   */
+  static long getPressesHandled() {
+    return pressesHandled.get();
+  }
+
+  /**
+   * How many times an interrupt had to stop the motors.
+   */
+  public long getTrips() {
+    return trips;
+  }
+
+  /**
+   * Time from the switch edge to the motors being stopped, in nanoseconds.
+   */
+  public LatencyHistogram getStopLatency() {
+    return stopLatency;
+  }
+
+  // One switch and the direction of travel it ends
+  private final class Limit {
+    private final DigitalInput limitSwitch;
+    private final int direction;
+    private volatile boolean latched;
+
+    // The switch reads false while it is pressed
+    Limit(DigitalInput limitSwitch, int direction) {
+      this.limitSwitch = limitSwitch;
+      this.direction = direction;
+      limitSwitch.requestInterrupts(new InterruptHandlerFunction<Object>() {
+        @Override
+        public void interruptFired(int interruptAssertedMask, Object param) {
+          onPressed();
+        }
+      });
+      // Pressing the switch is a falling edge
+      limitSwitch.setUpSourceEdge(false, true);
+      limitSwitch.enableInterrupts();
+      guardedChannels.add(limitSwitch.getChannel());
+    }
+
+    boolean isPressed() {
+      return !limitSwitch.get();
+    }
+
+    // This runs on the interrupt thread
+    private void onPressed() {
+      synchronized (lock) {
+        latched = true;
+        if (sentOutput * direction > 0) {
+          for (SpeedController motor : motors) {
+            motor.stopMotor();
+          }
+          sentOutput = 0;
+          double stopTime = Timer.getFPGATimestamp();
+          stopLatency.record((long) ((stopTime - limitSwitch.readFallingTimestamp()) * 1e9));
+          trips++;
+        }
+      }
+      pressesHandled.incrementAndGet();
+    }
+  }
+
+  /**
+   * A motor behind the guard. Every motor of a guard gets the same output, so
+   * the last one written is the one the interrupts check.
+   */
+  public final class GuardedMotor implements SpeedController, CoalescedOutput {
+    private final SpeedController motor;
+
+    GuardedMotor(SpeedController motor) {
+      this.motor = motor;
+    }
+
+    @Override
+    public void set(double speed) {
+      synchronized (lock) {
+        double output = blocks(speed) ? 0 : speed;
+        motor.set(output);
+        sentOutput = output;
+      }
+    }
+
+    @Override
+    public double get() {
+      return motor.get();
+    }
+
+    @Override
+    public void pidWrite(double output) {
+      set(output);
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+      motor.setInverted(isInverted);
+    }
+
+    @Override
+    public boolean getInverted() {
+      return motor.getInverted();
+    }
+
+    @Override
+    public void disable() {
+      synchronized (lock) {
+        motor.disable();
+        sentOutput = 0;
+      }
+    }
+
+    @Override
+    public void stopMotor() {
+      synchronized (lock) {
+        motor.stopMotor();
+        sentOutput = 0;
+      }
+    }
+
+    @Override
+    public void flush() {
+      if (motor instanceof CoalescedOutput) {
+        synchronized (lock) {
+          ((CoalescedOutput) motor).flush();
+        }
+      }
+    }
+
+    @Override
+    public void invalidate() {
+      if (motor instanceof CoalescedOutput) {
+        synchronized (lock) {
+          ((CoalescedOutput) motor).invalidate();
+        }
+      }
+    }
+
+    @Override
+    public long getWritesIssued() {
+      return motor instanceof CoalescedOutput ? ((CoalescedOutput) motor).getWritesIssued() : 0;
+    }
+
+    @Override
+    public long getWritesSuppressed() {
+      return motor instanceof CoalescedOutput ? ((CoalescedOutput) motor).getWritesSuppressed() : 0;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package frc.robot;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Times each block of the periodic control loop and publishes the results.
+ *
+ * <p>Call beginLoop at the top of the mode's periodic method, wrap every block
+ * with begin and end, and call endLoop at the bottom of robotPeriodic, which
+ * runs right after it, so the loop includes the work done there too. Blocks
+ * timed outside a loop, like robotPeriodic while disabled, are not recorded,
+ * and endLoop does nothing there.
+ *
+ * <p>The timings go into one histogram per section plus one for the whole
+ * loop. Every publish period the p50, p99 and max of each histogram are
+ * written to the "LoopProfiler" table and the histograms are cleared, so the
+ * numbers are for the last period only and a slow patch late in a match shows
+ * up right away. The number of loops that took longer than the loop period
+ * counts from the start. Nothing in here allocates after construction.
+ */
+public class LoopProfiler {
+  /**
+   * The blocks of the control loop that we time.
+   */
+  public enum Section {
+    kInputs, kCommands, kDrive, kBallLauncher, kBallHand, kHatchHand, kPneumatics, kCompressor, kOutputs, kTelemetry,
+    kRobotPeriodic
+  }
+
+  private static final Section[] sections = Section.values();
+
+  private final long loopBudgetNanos;
+  private final long publishPeriodNanos;
+  private final LatencyHistogram loopHistogram = new LatencyHistogram();
+  private final LatencyHistogram[] sectionHistograms = new LatencyHistogram[sections.length];
+  private final long[] sectionStartNanos = new long[sections.length];
+  private long loopStartNanos;
+  private boolean inLoop;
+  private long lastPublishNanos;
+  private long overruns;
+
+  private final NetworkTableEntry[] p50Entries = new NetworkTableEntry[sections.length + 1];
+  private final NetworkTableEntry[] p99Entries = new NetworkTableEntry[sections.length + 1];
+  private final NetworkTableEntry[] maxEntries = new NetworkTableEntry[sections.length + 1];
+  private final NetworkTableEntry overrunEntry;
+
+  /**
+   * Create the profiler.
+   *
+   * @param loopPeriodSeconds the period of the control loop, anything longer is an overrun
+   * @param publishPeriodSeconds how often to write the results to NetworkTables
+   */
+  public LoopProfiler(double loopPeriodSeconds, double publishPeriodSeconds) {
+    loopBudgetNanos = (long) (loopPeriodSeconds * 1e9);
+    publishPeriodNanos = (long) (publishPeriodSeconds * 1e9);
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+    for (int i = 0; i < sections.length; i++) {
+      sectionHistograms[i] = new LatencyHistogram();
+      addEntries(table.getSubTable(sections[i].name().substring(1)), i);
+    }
+    addEntries(table.getSubTable("Loop"), sections.length);
+    overrunEntry = table.getEntry("Overruns");
+  }
+
+  private void addEntries(NetworkTable table, int index) {
+    p50Entries[index] = table.getEntry("p50 ms");
+    p99Entries[index] = table.getEntry("p99 ms");
+    maxEntries[index] = table.getEntry("max ms");
+  }
+
+  public void beginLoop() {
+    inLoop = true;
+    loopStartNanos = System.nanoTime();
+  }
+
+  public void begin(Section section) {
+    sectionStartNanos[section.ordinal()] = System.nanoTime();
+  }
+
+  public void end(Section section) {
+    if (!inLoop) {
+      return;
+    }
+    int index = section.ordinal();
+    sectionHistograms[index].record(System.nanoTime() - sectionStartNanos[index]);
+  }
+
+  public void endLoop() {
+    if (!inLoop) {
+      return;
+    }
+    inLoop = false;
+    long now = System.nanoTime();
+    long loopNanos = now - loopStartNanos;
+    loopHistogram.record(loopNanos);
+    if (loopNanos > loopBudgetNanos) {
+      overruns++;
+    }
+    if (now - lastPublishNanos >= publishPeriodNanos) {
+      lastPublishNanos = now;
+      publish();
+    }
+  }
+
+  private void publish() {
+    for (int i = 0; i < sections.length; i++) {
+      publish(sectionHistograms[i], i);
+    }
+    publish(loopHistogram, sections.length);
+    overrunEntry.setDouble(overruns);
+  }
+
+  private void publish(LatencyHistogram histogram, int index) {
+    p50Entries[index].setDouble(histogram.getValueAtPercentile(50) / 1e6);
+    p99Entries[index].setDouble(histogram.getValueAtPercentile(99) / 1e6);
+    maxEntries[index].setDouble(histogram.getMax() / 1e6);
+    // Everything runs on the loop thread, so nothing is recorded while the histogram is cleared
+    histogram.reset();
+  }
+
+  /**
+   * The timings of a section since the last publish.
+   */
+  public LatencyHistogram getHistogram(Section section) {
+    return sectionHistograms[section.ordinal()];
+  }
+
+  /**
+   * The loop timings since the last publish.
+   */
+  public LatencyHistogram getLoopHistogram() {
+    return loopHistogram;
+  }
+
+  public long getOverruns() {
+    return overruns;
+  }
+}
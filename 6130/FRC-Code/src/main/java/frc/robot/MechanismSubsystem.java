@@ -0,0 +1,138 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * One or more motors that move a mechanism together, like the ball hand, the
+ * hatch hand or the ball launcher. If the motors are the guarded motors of
+ * a LimitSwitchGuard they are stopped when the mechanism reaches the end it
+ * is moving towards, and the guard is passed in too so the switches can be
+ * read here. An output scale, usually from the PowerBudgeter, slows the
+ * motors down while the battery is low.
+ *
+ * <p>With an ArmPositionController the mechanism can also be sent to a goal
+ * in degrees with setGoal instead of a speed. The controller reads its
+ * encoder and switches every loop either way, so the position stays known
+ * while the mechanism is driven by speed.
+ */
+public class MechanismSubsystem extends Subsystem {
+  // Longest time step the position control uses, so a late loop does not make it jump
+  private static final double maxStepSeconds = 0.1;
+
+  private final SpeedController[] motors;
+  private final LimitSwitchGuard limits;
+  private DoubleSupplier outputScale = () -> 1;
+  private ArmPositionController positionControl;
+  private boolean positionMode;
+  private double speed;
+  private double output;
+  private double lastUpdate = Double.NaN;
+
+  /**
+   * Create the mechanism.
+   *
+   * @param name name for the dashboard
+   * @param section profiler section that the output writes are timed in
+   * @param limits the guard that the motors belong to, or null
+   * @param motors the motors to drive, all with the same speed
+   */
+  public MechanismSubsystem(String name, LoopProfiler.Section section, LimitSwitchGuard limits,
+      SpeedController... motors) {
+    super(name, section);
+    this.motors = motors;
+    this.limits = limits;
+  }
+
+  /**
+   * Drive with a speed from -1 to 1. This ends a move to a goal.
+   */
+  public void set(double speed) {
+    this.speed = speed;
+    if (positionMode) {
+      positionMode = false;
+      positionControl.clearGoal();
+    }
+  }
+
+  public void stop() {
+    set(0);
+  }
+
+  /**
+   * Let the controller move the mechanism to goals given with setGoal.
+   */
+  public void setPositionControl(ArmPositionController positionControl) {
+    this.positionControl = positionControl;
+  }
+
+  /**
+   * Move to a position and hold it, homing first if needed. Needs a position controller.
+   */
+  public void setGoal(double degrees) {
+    positionControl.setGoal(degrees);
+    positionMode = true;
+  }
+
+  /**
+   * Whether the output comes from the position controller holding a goal,
+   * not from a speed or from homing towards a switch.
+   */
+  public boolean isPositionControlled() {
+    return positionMode && positionControl.isHomed();
+  }
+
+  public ArmPositionController getPositionControl() {
+    return positionControl;
+  }
+
+  /**
+   * Multiply the output with this scale before it is written.
+   */
+  public void setOutputScale(DoubleSupplier outputScale) {
+    this.outputScale = outputScale;
+  }
+
+  /**
+   * The wanted speed before the scale, worked out by the position controller
+   * while it moves to a goal.
+   */
+  public double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * The output written last, after the scale. The guard still holds it at
+   * zero while it goes towards a pressed limit switch.
+   */
+  public double getOutput() {
+    return output;
+  }
+
+  public boolean atForwardLimit() {
+    return limits != null && limits.isForwardPressed();
+  }
+
+  public boolean atReverseLimit() {
+    return limits != null && limits.isReversePressed();
+  }
+
+  @Override
+  protected void writeOutputs() {
+    if (positionControl != null) {
+      double now = Timer.getFPGATimestamp();
+      double dt = Double.isNaN(lastUpdate) ? 0 : Math.min(now - lastUpdate, maxStepSeconds);
+      lastUpdate = now;
+      positionControl.update(dt);
+      if (positionMode) {
+        speed = positionControl.calculate(dt);
+      }
+    }
+    output = speed * outputScale.getAsDouble();
+    for (SpeedController motor : motors) {
+      motor.set(output);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package frc.robot;
+
+/**
+ * Moves a setpoint towards a goal with a top speed and acceleration, so a
+ * mechanism speeds up smoothly, cruises and slows down before it gets there
+ * instead of slamming in at full power.
+ *
+ * <p>Every step works out the fastest speed that can still stop at the goal
+ * with the acceleration, caps it at the top speed and changes the setpoint
+ * speed towards it by at most one step of acceleration. The goal can change
+ * at any time; the profile carries on from where the setpoint is.
+ */
+public class MotionProfile {
+  private final double maxVelocity;
+  private final double maxAcceleration;
+  private double position;
+  private double velocity;
+
+  /**
+   * Create the profile.
+   *
+   * @param maxVelocity top speed in units per second
+   * @param maxAcceleration acceleration in units per second per second
+   */
+  public MotionProfile(double maxVelocity, double maxAcceleration) {
+    this.maxVelocity = maxVelocity;
+    this.maxAcceleration = maxAcceleration;
+  }
+
+  /**
+   * Start the setpoint from where the mechanism is now.
+   */
+  public void reset(double position, double velocity) {
+    this.position = position;
+    this.velocity = Math.max(-maxVelocity, Math.min(maxVelocity, velocity));
+  }
+
+  /**
+   * Move the setpoint one step towards the goal.
+   *
+   * @param goal where the mechanism should end up
+   * @param dtSeconds length of the step
+   */
+  public void calculate(double goal, double dtSeconds) {
+    double distance = goal - position;
+    double stoppingSpeed = Math.sqrt(2 * maxAcceleration * Math.abs(distance));
+    double wanted = Math.copySign(Math.min(maxVelocity, stoppingSpeed), distance);
+    double maxChange = maxAcceleration * dtSeconds;
+    velocity += Math.max(-maxChange, Math.min(maxChange, wanted - velocity));
+    position += velocity * dtSeconds;
+    // The last step can pass the goal, the setpoint stops on it instead
+    if ((goal - position) * distance <= 0) {
+      position = goal;
+      velocity = 0;
+    }
+  }
+
+  public double getPosition() {
+    return position;
+  }
+
+  public double getVelocity() {
+    return velocity;
+  }
+
+  public boolean isFinished(double goal) {
+    return position == goal && velocity == 0;
+  }
+}
@@ -0,0 +1,261 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Watches the motors of a mechanism that runs until it hits a limit switch,
+ * like the ball hand and the hatch hand, and slows or stops them before they
+ * burn out.
+ *
+ * <p>Every loop update reads the output the mechanism wrote and the PDP
+ * current of each of its motors. A motor that pulls more than the stall
+ * current while it is driven is not moving: after a moment its output is
+ * derated, and if it keeps stalling it is cut. It is also cut when it runs
+ * longer than the travel time without reaching the limit switch, which is
+ * what a jammed hand or a broken switch looks like; a hand holding a
+ * position goal is left out of that check. A cut stays until the
+ * driver lets go of the button or drives the other way. When the current
+ * averaged over the last few seconds stays over the heat current the output
+ * is derated until it cools down.
+ *
+ * <p>Mean, RMS and peak current of every motor, the time under load and the
+ * number of stalls are written to the "Health" table every publish period.
+ * Nothing in here allocates after construction.
+ */
+public class MotorHealthMonitor {
+  /**
+   * What the monitor does to the output.
+   */
+  public enum State {
+    kOk, kDerated, kCut
+  }
+
+  // Outputs smaller than this do not count as driving the motor
+  private static final double loadThreshold = 0.05;
+  // How long the current may stay over the stall current before derating and before cutting
+  private static final double derateAfterSeconds = 0.25;
+  private static final double cutAfterSeconds = 1;
+  private static final double deratedScale = 0.5;
+  // The heat is judged by the RMS current of the last 5 seconds, with room for loops twice as fast as 20 ms
+  private static final double heatWindowSeconds = 5;
+  private static final int heatSamples = 500;
+  private static final double maxStepSeconds = 0.1;
+
+  private final String name;
+  private final MechanismSubsystem mechanism;
+  private final DoubleSupplier[] currents;
+  private final RollingStats[] currentStats;
+  private final double stallCurrentAmps;
+  private final double heatCurrentAmps;
+  private final double travelSeconds;
+  private final long publishPeriodNanos;
+  private State state = State.kOk;
+  private double output;
+  private double direction;
+  private double moveSeconds;
+  private double stallSeconds;
+  private double loadSeconds;
+  private int stalls;
+  private boolean overheated;
+  private double lastUpdate = Double.NaN;
+  private long lastPublishNanos;
+
+  private final NetworkTableEntry stateEntry;
+  private final NetworkTableEntry scaleEntry;
+  private final NetworkTableEntry outputEntry;
+  private final NetworkTableEntry loadEntry;
+  private final NetworkTableEntry stallsEntry;
+  private final NetworkTableEntry[] meanEntries;
+  private final NetworkTableEntry[] rmsEntries;
+  private final NetworkTableEntry[] peakEntries;
+
+  /**
+   * Create the monitor.
+   *
+   * @param name name of the sub table of "Health"
+   * @param mechanism the mechanism to watch, give it getScale as part of its output scale
+   * @param stallCurrentAmps a motor pulling more than this while driven is stalled
+   * @param heatCurrentAmps derate while the RMS current of a motor stays over this
+   * @param travelSeconds the longest the mechanism takes from one limit switch to the other
+   * @param publishPeriodSeconds how often to write the statistics to NetworkTables, infinite for never
+   * @param currents the current of each motor in amps, usually from its PDP channel
+   */
+  public MotorHealthMonitor(String name, MechanismSubsystem mechanism, double stallCurrentAmps,
+      double heatCurrentAmps, double travelSeconds, double publishPeriodSeconds, DoubleSupplier... currents) {
+    this.name = name;
+    this.mechanism = mechanism;
+    this.stallCurrentAmps = stallCurrentAmps;
+    this.heatCurrentAmps = heatCurrentAmps;
+    this.travelSeconds = travelSeconds;
+    this.currents = currents;
+    publishPeriodNanos = (long) (publishPeriodSeconds * 1e9);
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("Health").getSubTable(name);
+    stateEntry = table.getEntry("State");
+    scaleEntry = table.getEntry("Scale");
+    outputEntry = table.getEntry("Output");
+    loadEntry = table.getEntry("Load Seconds");
+    stallsEntry = table.getEntry("Stalls");
+    currentStats = new RollingStats[currents.length];
+    meanEntries = new NetworkTableEntry[currents.length];
+    rmsEntries = new NetworkTableEntry[currents.length];
+    peakEntries = new NetworkTableEntry[currents.length];
+    for (int i = 0; i < currents.length; i++) {
+      currentStats[i] = new RollingStats(heatWindowSeconds, heatSamples);
+      NetworkTable motorTable = table.getSubTable("Motor " + i);
+      meanEntries[i] = motorTable.getEntry("Mean A");
+      rmsEntries[i] = motorTable.getEntry("RMS A");
+      peakEntries[i] = motorTable.getEntry("Peak A");
+    }
+  }
+
+  /**
+   * Read the currents and decide the scale. Call this once per loop, before
+   * the subsystems write their outputs. The currents belong to the output
+   * written in the loop before, which is the one read here.
+   */
+  public void update() {
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastUpdate) ? 0 : Math.min(now - lastUpdate, maxStepSeconds);
+    lastUpdate = now;
+    output = mechanism.getOutput();
+
+    boolean stalling = false;
+    overheated = false;
+    for (int i = 0; i < currents.length; i++) {
+      RollingStats stats = currentStats[i];
+      stats.add(currents[i].getAsDouble(), dt);
+      stalling |= stats.getLatest() > stallCurrentAmps;
+      overheated |= stats.getRms() > heatCurrentAmps;
+    }
+
+    boolean loaded = Math.abs(output) > loadThreshold;
+    if (loaded) {
+      loadSeconds += dt;
+    }
+    if (loaded && stalling) {
+      stallSeconds += dt;
+    } else {
+      stallSeconds = 0;
+    }
+
+    // The travel time starts over whenever the mechanism stops or turns around
+    double wanted = Math.signum(mechanism.getSpeed());
+    if (wanted == 0 || wanted != direction) {
+      moveSeconds = 0;
+      direction = wanted;
+    } else if (loaded) {
+      moveSeconds += dt;
+    }
+    boolean atLimit = direction > 0 ? mechanism.atForwardLimit() : direction < 0 && mechanism.atReverseLimit();
+    if (atLimit) {
+      moveSeconds = 0;
+    }
+
+    if (state == State.kCut) {
+      // A cut holds until the driver lets go or drives the other way, moveSeconds was just reset then
+      if (moveSeconds == 0 && !atLimit) {
+        state = State.kOk;
+      }
+    }
+    if (state != State.kCut) {
+      boolean travelTimedOut = moveSeconds > travelSeconds && !mechanism.isPositionControlled();
+      if (stallSeconds > cutAfterSeconds || travelTimedOut) {
+        state = State.kCut;
+        stalls++;
+        moveSeconds = travelSeconds;
+      } else if (stallSeconds > derateAfterSeconds || overheated) {
+        state = State.kDerated;
+      } else {
+        state = State.kOk;
+      }
+    }
+
+    long nanos = System.nanoTime();
+    if (nanos - lastPublishNanos >= publishPeriodNanos) {
+      lastPublishNanos = nanos;
+      publish();
+    }
+  }
+
+  private void publish() {
+    stateEntry.setString(state.name().substring(1));
+    scaleEntry.setDouble(getScale());
+    outputEntry.setDouble(output);
+    loadEntry.setDouble(loadSeconds);
+    stallsEntry.setDouble(stalls);
+    for (int i = 0; i < currents.length; i++) {
+      meanEntries[i].setDouble(currentStats[i].getMean());
+      rmsEntries[i].setDouble(currentStats[i].getRms());
+      peakEntries[i].setDouble(currentStats[i].getPeak());
+    }
+  }
+
+  /**
+   * Let the motors run again and forget the stall, the statistics are kept.
+   */
+  public void reset() {
+    state = State.kOk;
+    direction = 0;
+    moveSeconds = 0;
+    stallSeconds = 0;
+    lastUpdate = Double.NaN;
+  }
+
+  /**
+   * Add the scale and the current of every motor to the telemetry, named
+   * like "health.BallHand.current0".
+   */
+  public void addColumns(TelemetryLogger telemetry) {
+    telemetry.addColumn("health." + name + ".scale", this::getScale);
+    for (int i = 0; i < currents.length; i++) {
+      RollingStats stats = currentStats[i];
+      telemetry.addColumn("health." + name + ".current" + i, stats::getLatest);
+    }
+  }
+
+  /**
+   * The scale to multiply the mechanism output with.
+   */
+  public double getScale() {
+    switch (state) {
+      case kCut:
+        return 0;
+      case kDerated:
+        return deratedScale;
+      default:
+        return 1;
+    }
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public RollingStats getCurrentStats(int motor) {
+    return currentStats[motor];
+  }
+
+  /**
+   * Total time the mechanism was driven.
+   */
+  public double getLoadSeconds() {
+    return loadSeconds;
+  }
+
+  /**
+   * How often the output was cut.
+   */
+  public int getStalls() {
+    return stalls;
+  }
+
+  public boolean isOverheated() {
+    return overheated;
+  }
+}
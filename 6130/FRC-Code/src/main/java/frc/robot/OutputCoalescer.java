@@ -0,0 +1,57 @@
+package frc.robot;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every coalesced output of the robot and flushes them together once
+ * at the end of the loop, in the order they were added.
+ */
+public class OutputCoalescer {
+  private CoalescedOutput[] outputs = new CoalescedOutput[0];
+
+  /**
+   * Add an output. Call this while the robot starts, not from the loop.
+   */
+  public <T extends CoalescedOutput> T add(T output) {
+    outputs = Arrays.copyOf(outputs, outputs.length + 1);
+    outputs[outputs.length - 1] = output;
+    return output;
+  }
+
+  public void flush() {
+    for (CoalescedOutput output : outputs) {
+      output.flush();
+    }
+  }
+
+  /**
+   * Make every output write again on the next flush.
+   */
+  public void invalidate() {
+    for (CoalescedOutput output : outputs) {
+      output.invalidate();
+    }
+  }
+
+  /**
+   * Total writes sent to the hardware by all outputs.
+   */
+  public long getWritesIssued() {
+    long total = 0;
+    for (CoalescedOutput output : outputs) {
+      total += output.getWritesIssued();
+    }
+    return total;
+  }
+
+  /**
+   * Total writes that were skipped because the value did not change.
+   */
+  public long getWritesSuppressed() {
+    long total = 0;
+    for (CoalescedOutput output : outputs) {
+      total += output.getWritesSuppressed();
+    }
+    return total;
+  }
+}
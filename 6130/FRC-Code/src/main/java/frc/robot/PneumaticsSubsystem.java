@@ -0,0 +1,48 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+
+/**
+ * The two pistons, which always move together. The solenoids skip writes
+ * that would not change the valve. Every time the pistons move, the pressure
+ * model is told about the air they used.
+ */
+public class PneumaticsSubsystem extends Subsystem {
+  private final CoalescingDoubleSolenoid firstSolenoid;
+  private final CoalescingDoubleSolenoid secondSolenoid;
+  private final PressureModel pressureModel;
+  private DoubleSolenoid.Value wanted = DoubleSolenoid.Value.kOff;
+  private DoubleSolenoid.Value lastMoved = DoubleSolenoid.Value.kOff;
+
+  public PneumaticsSubsystem(CoalescingDoubleSolenoid firstSolenoid, CoalescingDoubleSolenoid secondSolenoid,
+      PressureModel pressureModel) {
+    super("Pneumatics", LoopProfiler.Section.kPneumatics);
+    this.firstSolenoid = firstSolenoid;
+    this.secondSolenoid = secondSolenoid;
+    this.pressureModel = pressureModel;
+  }
+
+  public void forwardPiston() {
+    wanted = DoubleSolenoid.Value.kForward;
+  }
+
+  public void reversePiston() {
+    wanted = DoubleSolenoid.Value.kReverse;
+  }
+
+  public DoubleSolenoid.Value getPosition() {
+    return wanted;
+  }
+
+  @Override
+  protected void writeOutputs() {
+    if (wanted != DoubleSolenoid.Value.kOff) {
+      firstSolenoid.set(wanted);
+      secondSolenoid.set(wanted);
+      if (wanted != lastMoved) {
+        lastMoved = wanted;
+        pressureModel.recordActuation();
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+/**
+ * Keeps track of the robot heading from the gyro and, if the drive has
+ * encoders, the distance driven. Call update once per loop; every pose also
+ * goes into the pose history.
+ */
+public class PoseEstimator {
+  private final Gyro gyro;
+  private final Encoder leftEncoder;
+  private final Encoder rightEncoder;
+  private final PoseHistory history;
+  private double lastDistance;
+  private double x;
+  private double y;
+  private double heading;
+  private double timestamp;
+
+  /**
+   * Create the estimator.
+   *
+   * @param gyro the gyro, the heading goes up when the robot turns right
+   * @param leftEncoder left drive encoder, or null if there are no drive encoders
+   * @param rightEncoder right drive encoder, or null if there are no drive encoders
+   * @param history where every pose is added
+   */
+  public PoseEstimator(Gyro gyro, Encoder leftEncoder, Encoder rightEncoder, PoseHistory history) {
+    this.gyro = gyro;
+    this.leftEncoder = leftEncoder;
+    this.rightEncoder = rightEncoder;
+    this.history = history;
+  }
+
+  public void update() {
+    timestamp = Timer.getFPGATimestamp();
+    heading = gyro.getAngle();
+    if (leftEncoder != null) {
+      double distance = (leftEncoder.getDistance() + rightEncoder.getDistance()) / 2;
+      double step = distance - lastDistance;
+      lastDistance = distance;
+      double radians = Math.toRadians(heading);
+      x += step * Math.cos(radians);
+      y += step * Math.sin(radians);
+    }
+    history.add(timestamp, x, y, heading);
+  }
+
+  /**
+   * Whether x and y are tracked. Without drive encoders only the heading is.
+   */
+  public boolean hasPosition() {
+    return leftEncoder != null;
+  }
+
+  public double getX() {
+    return x;
+  }
+
+  public double getY() {
+    return y;
+  }
+
+  /**
+   * Gyro heading in degrees, not wrapped to one turn.
+   */
+  public double getHeading() {
+    return heading;
+  }
+
+  /**
+   * FPGA time of the last update in seconds.
+   */
+  public double getTimestamp() {
+    return timestamp;
+  }
+
+  public PoseHistory getHistory() {
+    return history;
+  }
+}
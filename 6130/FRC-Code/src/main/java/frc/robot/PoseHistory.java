@@ -0,0 +1,118 @@
+package frc.robot;
+
+/**
+ * Where the robot was over the last second or so, keyed by FPGA time.
+ *
+ * <p>The drive loop adds one pose per loop into a fixed ring of primitive
+ * arrays, so nothing is allocated. A vision result can then be matched with
+ * the pose the robot had when the frame was captured instead of the pose it
+ * has now. Samples between two stored poses are interpolated.
+ */
+public class PoseHistory {
+  private final double[] times;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] headings;
+  private int newest = -1;
+  private int size;
+  private double sampledX;
+  private double sampledY;
+  private double sampledHeading;
+
+  /**
+   * Create the history.
+   *
+   * @param capacity how many poses are kept, 50 per second at the default loop rate
+   */
+  public PoseHistory(int capacity) {
+    times = new double[capacity];
+    xs = new double[capacity];
+    ys = new double[capacity];
+    headings = new double[capacity];
+  }
+
+  /**
+   * Add the pose of this loop. Times must only go up.
+   *
+   * @param timeSeconds FPGA time of the pose
+   * @param x distance driven along the field x axis
+   * @param y distance driven along the field y axis
+   * @param headingDegrees gyro heading, not wrapped
+   */
+  public void add(double timeSeconds, double x, double y, double headingDegrees) {
+    newest = (newest + 1) % times.length;
+    times[newest] = timeSeconds;
+    xs[newest] = x;
+    ys[newest] = y;
+    headings[newest] = headingDegrees;
+    if (size < times.length) {
+      size++;
+    }
+  }
+
+  /**
+   * Look up the pose at a time. The result is read with the getSampled
+   * methods. Times after the newest pose give the newest pose.
+   *
+   * @return false if the time is older than everything in the history
+   */
+  public boolean sample(double timeSeconds) {
+    if (size == 0 || timeSeconds < times[slot(size - 1)]) {
+      return false;
+    }
+    if (timeSeconds >= times[newest]) {
+      copy(newest, newest, 0);
+      return true;
+    }
+
+    // Binary search for the first pose newer than the time, counting back from the newest
+    int low = 0;
+    int high = size - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (times[slot(middle)] > timeSeconds) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    int after = slot(low);
+    int before = slot(low + 1);
+    double span = times[after] - times[before];
+    copy(before, after, span > 0 ? (timeSeconds - times[before]) / span : 0);
+    return true;
+  }
+
+  // Ring slot of the pose that is the given number of poses older than the newest
+  private int slot(int age) {
+    int index = newest - age;
+    return index < 0 ? index + times.length : index;
+  }
+
+  private void copy(int before, int after, double fraction) {
+    sampledX = xs[before] + (xs[after] - xs[before]) * fraction;
+    sampledY = ys[before] + (ys[after] - ys[before]) * fraction;
+    sampledHeading = headings[before] + (headings[after] - headings[before]) * fraction;
+  }
+
+  public double getSampledX() {
+    return sampledX;
+  }
+
+  public double getSampledY() {
+    return sampledY;
+  }
+
+  public double getSampledHeading() {
+    return sampledHeading;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public void clear() {
+    newest = -1;
+    size = 0;
+  }
+}
@@ -0,0 +1,181 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Shares the battery between the motors so the robot does not brown out.
+ *
+ * <p>The roboRIO turns off every motor output when the battery drops under
+ * 6.8 V, which costs far more than running one mechanism slower for a
+ * moment. Every loop update reads the battery voltage and the total current
+ * once. While the voltage is under the guard level or the current is over
+ * the limit, a budget level goes down; once both are fine again it slowly
+ * comes back up.
+ *
+ * <p>Every consumer has a priority, 0 is the most important. The level runs
+ * from the number of priorities down to zero and a consumer with priority p
+ * gets the scale level - p, between its minimum scale and 1. So the least
+ * important consumers are scaled to their minimum first, and the drive is
+ * only touched once everything else already gave up its share.
+ */
+public class PowerBudgeter {
+  // How fast the level drops per volt under the guard, and how fast it comes back
+  private static final double dropPerVoltSecond = 20;
+  private static final double minDropPerSecond = 5;
+  private static final double recoverPerSecond = 2;
+  // The voltage must be this far over the guard level before the level comes back
+  private static final double recoverMarginVolts = 0.5;
+  private static final double maxStepSeconds = 0.1;
+
+  private final DoubleSupplier batteryVoltage;
+  private final DoubleSupplier totalCurrent;
+  private final double guardVolts;
+  private final double currentLimitAmps;
+  private final List<String> names = new ArrayList<>();
+  private final List<Integer> priorities = new ArrayList<>();
+  private final List<Double> minScales = new ArrayList<>();
+  private double[] scales = new double[0];
+  private int priorityCount;
+  private double level;
+  private double voltage;
+  private double current;
+  private double lastUpdate = Double.NaN;
+  private double limitedSeconds;
+
+  /**
+   * Create the budgeter.
+   *
+   * @param guardVolts start scaling outputs when the battery drops under this, above the brownout level
+   * @param currentLimitAmps start scaling outputs when the total current goes over this
+   * @param batteryVoltage the battery voltage in volts
+   * @param totalCurrent the current of the whole robot in amps
+   */
+  public PowerBudgeter(double guardVolts, double currentLimitAmps, DoubleSupplier batteryVoltage,
+      DoubleSupplier totalCurrent) {
+    this.guardVolts = guardVolts;
+    this.currentLimitAmps = currentLimitAmps;
+    this.batteryVoltage = batteryVoltage;
+    this.totalCurrent = totalCurrent;
+  }
+
+  /**
+   * Add a consumer. Add all of them while the robot starts.
+   *
+   * @param name name for the telemetry
+   * @param priority 0 for the most important consumer, higher numbers are scaled first
+   * @param minScale the consumer is never scaled below this
+   * @return the scale to multiply the consumer's outputs with
+   */
+  public DoubleSupplier addConsumer(String name, int priority, double minScale) {
+    int index = names.size();
+    names.add(name);
+    priorities.add(priority);
+    minScales.add(minScale);
+    priorityCount = Math.max(priorityCount, priority + 1);
+    scales = new double[names.size()];
+    reset();
+    return () -> scales[index];
+  }
+
+  /**
+   * Read the battery and work out the scale of every consumer. Call this
+   * once per loop, before the subsystems write their outputs.
+   */
+  public void update() {
+    double now = Timer.getFPGATimestamp();
+    double dt = Double.isNaN(lastUpdate) ? 0 : Math.min(now - lastUpdate, maxStepSeconds);
+    lastUpdate = now;
+    voltage = batteryVoltage.getAsDouble();
+    current = totalCurrent.getAsDouble();
+
+    if (voltage < guardVolts || current > currentLimitAmps) {
+      // Drop faster the deeper the battery sags, a low battery gets there quickly
+      double drop = Math.max(dropPerVoltSecond * (guardVolts - voltage), minDropPerSecond);
+      level = Math.max(level - drop * dt, 0);
+    } else if (voltage > guardVolts + recoverMarginVolts) {
+      level = Math.min(level + recoverPerSecond * dt, priorityCount);
+    }
+    if (level < priorityCount) {
+      limitedSeconds += dt;
+    }
+    computeScales();
+  }
+
+  private void computeScales() {
+    for (int i = 0; i < scales.length; i++) {
+      double scale = level - priorities.get(i);
+      scales[i] = Math.max(Math.min(scale, 1), minScales.get(i));
+    }
+  }
+
+  /**
+   * Give every consumer its full output again.
+   */
+  public void reset() {
+    level = priorityCount;
+    lastUpdate = Double.NaN;
+    computeScales();
+  }
+
+  /**
+   * Add the voltage, current, level and the scale of every consumer to the
+   * telemetry, named like "power.scale.Drive".
+   */
+  public void addColumns(TelemetryLogger telemetry) {
+    telemetry.addColumn("power.voltage", this::getVoltage);
+    telemetry.addColumn("power.current", this::getCurrent);
+    telemetry.addColumn("power.level", this::getLevel);
+    for (int i = 0; i < names.size(); i++) {
+      int index = i;
+      telemetry.addColumn("power.scale." + names.get(i), () -> scales[index]);
+    }
+  }
+
+  public int getConsumerCount() {
+    return names.size();
+  }
+
+  public String getName(int consumer) {
+    return names.get(consumer);
+  }
+
+  public double getScale(int consumer) {
+    return scales[consumer];
+  }
+
+  /**
+   * The budget level, the number of priorities when nothing is scaled.
+   */
+  public double getLevel() {
+    return level;
+  }
+
+  public boolean isLimiting() {
+    return level < priorityCount;
+  }
+
+  /**
+   * Total time any consumer was scaled.
+   */
+  public double getLimitedSeconds() {
+    return limitedSeconds;
+  }
+
+  /**
+   * The battery voltage read by the last update.
+   */
+  public double getVoltage() {
+    return voltage;
+  }
+
+  /**
+   * The total current read by the last update.
+   */
+  public double getCurrent() {
+    return current;
+  }
+}
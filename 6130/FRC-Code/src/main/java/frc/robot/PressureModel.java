@@ -0,0 +1,96 @@
+package frc.robot;
+
+/**
+ * Estimates the air pressure in the storage tanks, since the robot only has
+ * the pressure switch and no pressure sensor.
+ *
+ * <p>The compressor adds air at a flow that drops as the pressure rises,
+ * every piston actuation takes a cylinder full of air at the regulated
+ * working pressure, and the pressure switch corrects the estimate: it reads
+ * full only above the cut-off pressure, and going from full to low means the
+ * pressure just fell to the switch's reset pressure. From the estimate it
+ * works out how many more actuations the stored air is good for.
+ */
+public class PressureModel {
+  private static final double atmospherePsi = 14.7;
+  // The pressure switch opens at the cut-off pressure and closes again at the reset pressure
+  private static final double cutOffPsi = 120;
+  private static final double switchResetPsi = 95;
+  // Regulated pressure the pistons run at
+  private static final double workingPsi = 60;
+  // Free air flow of the kit compressor in liters per second, at no pressure and at the cut-off pressure
+  private static final double flowAtZero = 0.4;
+  private static final double flowAtCutOff = 0.2;
+
+  private final double tankLiters;
+  private final double actuationLiters;
+  private double pressure;
+  private boolean wasFull;
+  private long actuations;
+
+  /**
+   * Create the model. It starts at the working pressure until the switch says otherwise.
+   *
+   * @param tankLiters volume of all storage tanks together
+   * @param actuationLiters volume of air one actuation fills at the working pressure, all pistons together
+   */
+  public PressureModel(double tankLiters, double actuationLiters) {
+    this.tankLiters = tankLiters;
+    this.actuationLiters = actuationLiters;
+    this.pressure = workingPsi;
+  }
+
+  /**
+   * The pistons moved once.
+   */
+  public void recordActuation() {
+    actuations++;
+    double freeAirLiters = actuationLiters * (workingPsi + atmospherePsi) / atmospherePsi;
+    pressure = Math.max(0, pressure - freeAirLiters * atmospherePsi / tankLiters);
+  }
+
+  /**
+   * Move the estimate forward. Call once per loop.
+   *
+   * @param dtSeconds time since the last update
+   * @param compressorRunning whether the compressor motor is on
+   * @param pressureLow the pressure switch value, true while the tanks are not full
+   */
+  public void update(double dtSeconds, boolean compressorRunning, boolean pressureLow) {
+    if (compressorRunning) {
+      double fraction = Math.min(1, pressure / cutOffPsi);
+      double flow = flowAtZero + (flowAtCutOff - flowAtZero) * fraction;
+      pressure += flow * dtSeconds * atmospherePsi / tankLiters;
+    }
+
+    if (!pressureLow) {
+      pressure = Math.max(pressure, cutOffPsi);
+    } else if (wasFull) {
+      pressure = Math.min(pressure, switchResetPsi);
+    } else {
+      // The switch says low, so we can not be at the cut-off yet
+      pressure = Math.min(pressure, cutOffPsi - 1);
+    }
+    wasFull = !pressureLow;
+  }
+
+  /**
+   * Estimated tank pressure in psi.
+   */
+  public double getPressure() {
+    return pressure;
+  }
+
+  /**
+   * How many more times the pistons can move before the tanks fall under the working pressure.
+   */
+  public int getRemainingActuations() {
+    double usableFreeAir = tankLiters * Math.max(0, pressure - workingPsi) / atmospherePsi;
+    double freeAirPerActuation = actuationLiters * (workingPsi + atmospherePsi) / atmospherePsi;
+    return (int) (usableFreeAir / freeAirPerActuation);
+  }
+
+  public long getActuations() {
+    return actuations;
+  }
+}
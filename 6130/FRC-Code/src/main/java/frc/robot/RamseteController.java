@@ -0,0 +1,75 @@
+package frc.robot;
+
+/**
+ * Keeps a differential drive on a trajectory.
+ *
+ * <p>Given the pose the trajectory wants and the pose the robot has, the
+ * Ramsete law works out a forward speed and a turn rate that bring the
+ * robot back onto the path while it keeps following the path's own speeds.
+ * The result is read with getVelocity and getAngularVelocity, so nothing is
+ * allocated per loop.
+ */
+public class RamseteController {
+  private final double b;
+  private final double zeta;
+  private double velocity;
+  private double angularVelocity;
+
+  /**
+   * Create the controller. 2 and 0.7 work for most robots.
+   *
+   * @param b how hard to correct, larger values pull the robot back faster
+   * @param zeta damping between 0 and 1, larger values overshoot less
+   */
+  public RamseteController(double b, double zeta) {
+    this.b = b;
+    this.zeta = zeta;
+  }
+
+  /**
+   * Work out the speeds for this loop. Headings are in radians, turn rates in
+   * radians per second, both going up when the robot turns right.
+   *
+   * @param x where the robot is
+   * @param y where the robot is
+   * @param heading where the robot points
+   * @param wantedX where the trajectory is
+   * @param wantedY where the trajectory is
+   * @param wantedHeading where the trajectory points
+   * @param wantedVelocity speed of the trajectory
+   * @param wantedAngularVelocity turn rate of the trajectory
+   */
+  public void calculate(double x, double y, double heading, double wantedX, double wantedY,
+      double wantedHeading, double wantedVelocity, double wantedAngularVelocity) {
+    // The error in the robot's own frame, ahead and to the side
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    double errorAhead = cos * (wantedX - x) + sin * (wantedY - y);
+    double errorSide = -sin * (wantedX - x) + cos * (wantedY - y);
+    double errorHeading = Math.atan2(Math.sin(wantedHeading - heading), Math.cos(wantedHeading - heading));
+
+    double gain = 2 * zeta * Math.sqrt(wantedAngularVelocity * wantedAngularVelocity
+        + b * wantedVelocity * wantedVelocity);
+    velocity = wantedVelocity * Math.cos(errorHeading) + gain * errorAhead;
+    angularVelocity = wantedAngularVelocity + gain * errorHeading
+        + b * wantedVelocity * sinc(errorHeading) * errorSide;
+  }
+
+  private static double sinc(double value) {
+    return Math.abs(value) < 1e-9 ? 1 : Math.sin(value) / value;
+  }
+
+  /**
+   * Forward speed from the last calculate.
+   */
+  public double getVelocity() {
+    return velocity;
+  }
+
+  /**
+   * Turn rate from the last calculate.
+   */
+  public double getAngularVelocity() {
+    return angularVelocity;
+  }
+}
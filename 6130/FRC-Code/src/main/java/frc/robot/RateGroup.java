@@ -0,0 +1,190 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+
+/**
+ * Runs a few control tasks faster than the 20 ms robot loop, on their own
+ * Notifier thread.
+ *
+ * <p>Closed loops like the drive wheel speeds react sooner and hold better
+ * at 200 Hz or more. Tasks in a group run one after the other every period
+ * and talk to the robot loop only through StateBuffers, so neither side
+ * waits for a lock. Every run records how far the start of the run was off
+ * the period, the jitter, and how long the tasks took. A run that starts
+ * more than a whole period late counts as late. publish writes the results
+ * to the "RateGroups" table and is called from the robot loop, so the fast
+ * thread never touches NetworkTables.
+ */
+public class RateGroup {
+  /**
+   * Work that runs once per period of a rate group.
+   */
+  public interface Task {
+    /**
+     * Do one step.
+     *
+     * @param dtSeconds time since the step before, the period on the first step
+     */
+    void run(double dtSeconds);
+  }
+
+  // Real time priority of the thread on the roboRIO, under the 40 of the HAL threads
+  private static final int threadPriority = 15;
+  // Longest time step the tasks get, so a stall does not make the integrals jump
+  private static final double maxStepSeconds = 0.1;
+
+  private final String name;
+  private final double periodSeconds;
+  private final long periodNanos;
+  private final long publishPeriodNanos;
+  private final List<Task> taskList = new ArrayList<>();
+  private Task[] tasks;
+  private Notifier notifier;
+  private final LatencyHistogram jitter = new LatencyHistogram();
+  private final LatencyHistogram runTime = new LatencyHistogram();
+  private long lastStartNanos;
+  private volatile long late;
+  private volatile long failures;
+  private long lastPublishNanos;
+
+  private final NetworkTableEntry jitterP50Entry;
+  private final NetworkTableEntry jitterP99Entry;
+  private final NetworkTableEntry jitterMaxEntry;
+  private final NetworkTableEntry runMaxEntry;
+  private final NetworkTableEntry lateEntry;
+  private final NetworkTableEntry runsEntry;
+
+  /**
+   * Create the group.
+   *
+   * @param name name of the sub table of "RateGroups" and of the thread
+   * @param periodSeconds time between runs, 0.005 is 200 Hz
+   * @param publishPeriodSeconds how often publish writes the results to NetworkTables
+   */
+  public RateGroup(String name, double periodSeconds, double publishPeriodSeconds) {
+    this.name = name;
+    this.periodSeconds = periodSeconds;
+    periodNanos = (long) (periodSeconds * 1e9);
+    publishPeriodNanos = (long) (publishPeriodSeconds * 1e9);
+
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("RateGroups").getSubTable(name);
+    jitterP50Entry = table.getEntry("Jitter p50 ms");
+    jitterP99Entry = table.getEntry("Jitter p99 ms");
+    jitterMaxEntry = table.getEntry("Jitter max ms");
+    runMaxEntry = table.getEntry("Run max ms");
+    lateEntry = table.getEntry("Late");
+    runsEntry = table.getEntry("Runs");
+  }
+
+  /**
+   * Add a task. Tasks run in the order they were added.
+   */
+  public void add(Task task) {
+    if (notifier != null) {
+      throw new IllegalStateException("Tasks must be added before the rate group starts");
+    }
+    taskList.add(task);
+  }
+
+  public void start() {
+    tasks = taskList.toArray(new Task[0]);
+    notifier = new Notifier(this::run);
+    notifier.startPeriodic(periodSeconds);
+  }
+
+  public void stop() {
+    if (notifier != null) {
+      notifier.stop();
+    }
+  }
+
+  // This runs on the Notifier thread
+  private void run() {
+    long start = System.nanoTime();
+    double dt;
+    if (lastStartNanos == 0) {
+      // The priority can only be set from the thread itself, in the simulator it is not allowed and stays normal
+      Threads.setCurrentThreadPriority(true, threadPriority);
+      dt = periodSeconds;
+    } else {
+      long interval = start - lastStartNanos;
+      jitter.record(Math.abs(interval - periodNanos));
+      if (interval > 2 * periodNanos) {
+        late++;
+      }
+      dt = Math.min(interval / 1e9, maxStepSeconds);
+    }
+    lastStartNanos = start;
+
+    for (Task task : tasks) {
+      try {
+        task.run(dt);
+      } catch (RuntimeException e) {
+        // An exception would end the Notifier thread, and with it every task of the group
+        if (failures++ == 0) {
+          DriverStation.reportError("Rate group " + name + " task failed: " + e, e.getStackTrace());
+        }
+      }
+    }
+    runTime.record(System.nanoTime() - start);
+  }
+
+  /**
+   * Write the jitter and run time to NetworkTables if the publish period
+   * passed. Call this from the robot loop.
+   */
+  public void publish() {
+    long now = System.nanoTime();
+    if (now - lastPublishNanos < publishPeriodNanos) {
+      return;
+    }
+    lastPublishNanos = now;
+    jitterP50Entry.setDouble(jitter.getValueAtPercentile(50) / 1e6);
+    jitterP99Entry.setDouble(jitter.getValueAtPercentile(99) / 1e6);
+    jitterMaxEntry.setDouble(jitter.getMax() / 1e6);
+    runMaxEntry.setDouble(runTime.getMax() / 1e6);
+    lateEntry.setDouble(late);
+    runsEntry.setDouble(runTime.getTotalCount());
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public double getPeriodSeconds() {
+    return periodSeconds;
+  }
+
+  /**
+   * How far the start of each run was off the period, in nanoseconds.
+   */
+  public LatencyHistogram getJitter() {
+    return jitter;
+  }
+
+  public LatencyHistogram getRunTime() {
+    return runTime;
+  }
+
+  /**
+   * Number of runs that started more than a whole period late.
+   */
+  public long getLateCount() {
+    return late;
+  }
+
+  /**
+   * Number of task runs that threw.
+   */
+  public long getFailureCount() {
+    return failures;
+  }
+}
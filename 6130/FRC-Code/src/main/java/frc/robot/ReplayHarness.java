@@ -0,0 +1,344 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DIOSim;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.PCMSim;
+import edu.wpi.first.hal.sim.PDPSim;
+import edu.wpi.first.hal.sim.PWMSim;
+import edu.wpi.first.hal.sim.RoboRioSim;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.IterativeRobotBase;
+
+/**
+ * Replays a telemetry log through a robot class in the desktop simulator.
+ *
+ * <p>For every record the recorded controller axes, buttons and POVs are fed
+ * to the simulated driver station, the limit switches to the simulated DIO
+ * channels, and the PDP currents, battery voltage and pressure switch to the
+ * simulated PDP, roboRIO and PCM. The simulator clock is paused and stepped
+ * by the time between the recorded loops, so the robot code sees the same
+ * loop times as on the field. Then autonomousPeriodic or teleopPeriodic is
+ * called once, whichever the "robot.mode" column says the loop ran in, with
+ * the matching init when the mode changes, followed by robotPeriodic. The
+ * motor and solenoid outputs it produces are compared with the ones in the
+ * record. Loops are run back to back, so an hour of matches replays in
+ * seconds, and the CPU time of every loop is measured.
+ *
+ * <p>A limit switch press fires the interrupt of its LimitSwitchGuard on
+ * another thread. Before the loop runs, the harness waits until the guards
+ * handled every press it fed in, so the loop always sees the switches the
+ * same way and the replay gives the same result every time.
+ *
+ * <p>The robot runs headless, see RobotConfig: no cameras, no dashboard and
+ * no new telemetry log.
+ *
+ * <p>Run it with the desktop HAL libraries on the library path:
+ * ./gradlew replay -PreplayRobot=robotBackup -PtelemetryLog=path/to/telemetry-123.bin
+ */
+public class ReplayHarness {
+  private static final int pcmModule = 0;
+  private static final int pdpModule = 0;
+  // Longest wait for the guards to handle the limit switch presses of one record
+  private static final long pressTimeoutNanos = 1_000_000_000;
+
+  private final TelemetryLogReader log;
+  private final IterativeRobotBase robot;
+  private final double tolerance;
+  private final DriverStation driverStation;
+  private final LatencyHistogram loopCost = new LatencyHistogram();
+
+  private final List<ControllerColumns> controllers = new ArrayList<>();
+  private final List<Integer> dioColumns = new ArrayList<>();
+  private final List<Integer> dioChannels = new ArrayList<>();
+  private final List<DIOSim> dioSims = new ArrayList<>();
+  private boolean[] dioValues;
+  private int modeColumn = -1;
+  private final List<Integer> pwmColumns = new ArrayList<>();
+  private final List<PWMSim> pwmSims = new ArrayList<>();
+  private final List<Integer> solenoidColumns = new ArrayList<>();
+  private final List<int[]> solenoidChannels = new ArrayList<>();
+  private final PDPSim pdpSim = new PDPSim(pdpModule);
+  private final RoboRioSim roboRioSim = new RoboRioSim(0);
+  private final List<Integer> pdpColumns = new ArrayList<>();
+  private final List<Integer> pdpChannels = new ArrayList<>();
+  private int batteryColumn = -1;
+  private final List<Integer> pressureSwitchColumns = new ArrayList<>();
+  private final List<PCMSim> pressureSwitchSims = new ArrayList<>();
+  private final List<Integer> compressorCurrentColumns = new ArrayList<>();
+  private final List<PCMSim> compressorCurrentSims = new ArrayList<>();
+  private long[] mismatches;
+  private long firstMismatchRecord = -1;
+
+  // The columns of one controller, -1 where the log does not have that value
+  private static final class ControllerColumns {
+    final byte port;
+    final int[] axes = new int[12];
+    int buttons = -1;
+    int pov = -1;
+    int axisCount;
+    float[] axisValues;
+    final short[] povValues = new short[1];
+
+    ControllerColumns(int port) {
+      this.port = (byte) port;
+      Arrays.fill(axes, -1);
+    }
+  }
+
+  /**
+   * Set up the replay. The HAL must be initialized before the robot is created.
+   *
+   * @param log the recorded match
+   * @param robot the robot to drive, robotInit is called here with the headless switch on
+   * @param tolerance how far a motor output may be from the recorded one
+   */
+  public ReplayHarness(TelemetryLogReader log, IterativeRobotBase robot, double tolerance) {
+    this.log = log;
+    this.robot = robot;
+    this.tolerance = tolerance;
+    this.driverStation = DriverStation.getInstance();
+    mapColumns();
+    System.setProperty(RobotConfig.headlessProperty, "true");
+    robot.robotInit();
+  }
+
+  private void mapColumns() {
+    for (int column = 0; column < log.getColumnCount(); column++) {
+      String[] parts = log.getColumnName(column).split("\\.");
+      if (parts[0].startsWith("joystick") && parts.length == 2) {
+        ControllerColumns controller = controllerFor(Integer.parseInt(parts[0].substring(8)));
+        if (parts[1].startsWith("axis")) {
+          int axis = Integer.parseInt(parts[1].substring(4));
+          controller.axes[axis] = column;
+          controller.axisCount = Math.max(controller.axisCount, axis + 1);
+        } else if (parts[1].equals("buttons")) {
+          controller.buttons = column;
+        } else if (parts[1].equals("pov0")) {
+          controller.pov = column;
+        }
+      } else if (parts[0].equals("dio") && parts.length == 2) {
+        int channel = Integer.parseInt(parts[1]);
+        dioColumns.add(column);
+        dioChannels.add(channel);
+        dioSims.add(new DIOSim(channel));
+      } else if (log.getColumnName(column).equals("robot.mode")) {
+        modeColumn = column;
+      } else if (parts[0].equals("pwm") && parts.length == 2) {
+        pwmColumns.add(column);
+        pwmSims.add(new PWMSim(Integer.parseInt(parts[1])));
+      } else if (parts[0].equals("solenoid") && parts.length == 3) {
+        solenoidColumns.add(column);
+        solenoidChannels.add(new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+      } else if (parts[0].equals("pdp") && parts.length == 2) {
+        pdpColumns.add(column);
+        pdpChannels.add(Integer.parseInt(parts[1]));
+      } else if (log.getColumnName(column).equals("battery.voltage")) {
+        batteryColumn = column;
+      } else if (parts[0].equals("pcm") && parts.length == 3 && parts[2].equals("pressureSwitch")) {
+        pressureSwitchColumns.add(column);
+        pressureSwitchSims.add(new PCMSim(Integer.parseInt(parts[1])));
+      } else if (parts[0].equals("pcm") && parts.length == 3 && parts[2].equals("current")) {
+        compressorCurrentColumns.add(column);
+        compressorCurrentSims.add(new PCMSim(Integer.parseInt(parts[1])));
+      }
+    }
+    for (ControllerColumns controller : controllers) {
+      controller.axisValues = new float[controller.axisCount];
+    }
+    // The switches read true while they are open
+    dioValues = new boolean[dioColumns.size()];
+    Arrays.fill(dioValues, true);
+    mismatches = new long[log.getColumnCount()];
+  }
+
+  private ControllerColumns controllerFor(int port) {
+    for (ControllerColumns controller : controllers) {
+      if (controller.port == port) {
+        return controller;
+      }
+    }
+    ControllerColumns controller = new ControllerColumns(port);
+    controllers.add(controller);
+    return controller;
+  }
+
+  /**
+   * Replay every record of the log.
+   */
+  public void run() {
+    PCMSim pcm = new PCMSim(pcmModule);
+    DriverStationSim driverStationSim = new DriverStationSim();
+    driverStationSim.setDsAttached(true);
+    driverStationSim.setEnabled(true);
+    int mode = 0;
+    // From here on the FPGA time only moves by the recorded loop times
+    SimulatorJNI.pauseTiming();
+    for (long record = 0; record < log.getRecordCount(); record++) {
+      if (record > 0) {
+        double loopSeconds = log.getTime(record) - log.getTime(record - 1);
+        SimulatorJNI.stepTiming((long) (Math.max(loopSeconds, 0) * 1e6));
+      }
+      // Logs from before the mode column only have teleop loops
+      int recordMode = modeColumn >= 0 ? (int) log.get(record, modeColumn) : TelemetryLogger.teleopMode;
+      boolean autonomous = recordMode == TelemetryLogger.autonomousMode;
+      driverStationSim.setAutonomous(autonomous);
+      applyInputs(record);
+
+      if (recordMode != mode) {
+        mode = recordMode;
+        if (autonomous) {
+          robot.autonomousInit();
+        } else {
+          robot.teleopInit();
+        }
+      }
+
+      long start = System.nanoTime();
+      if (autonomous) {
+        robot.autonomousPeriodic();
+      } else {
+        robot.teleopPeriodic();
+      }
+      robot.robotPeriodic();
+      loopCost.record(System.nanoTime() - start);
+
+      for (int i = 0; i < pwmColumns.size(); i++) {
+        int column = pwmColumns.get(i);
+        compare(record, column, pwmSims.get(i).getSpeed());
+      }
+      for (int i = 0; i < solenoidColumns.size(); i++) {
+        int[] channels = solenoidChannels.get(i);
+        double value = pcm.getSolenoidOutput(channels[0]) ? 1 : pcm.getSolenoidOutput(channels[1]) ? 2 : 0;
+        compare(record, solenoidColumns.get(i), value);
+      }
+    }
+  }
+
+  private void applyInputs(long record) {
+    for (ControllerColumns controller : controllers) {
+      float[] axes = controller.axisValues;
+      for (int axis = 0; axis < axes.length; axis++) {
+        axes[axis] = controller.axes[axis] < 0 ? 0 : (float) log.get(record, controller.axes[axis]);
+      }
+      DriverStationDataJNI.setJoystickAxes(controller.port, axes);
+      if (controller.buttons >= 0) {
+        DriverStationDataJNI.setJoystickButtons(controller.port, (int) log.get(record, controller.buttons), 12);
+      }
+      if (controller.pov >= 0) {
+        controller.povValues[0] = (short) log.get(record, controller.pov);
+        DriverStationDataJNI.setJoystickPOVs(controller.port, controller.povValues);
+      }
+    }
+    long presses = LimitSwitchGuard.getPressesHandled();
+    for (int i = 0; i < dioColumns.size(); i++) {
+      boolean value = log.get(record, dioColumns.get(i)) != 0;
+      // Pressing a guarded switch is a falling edge, its guard handles it on the interrupt thread
+      if (dioValues[i] && !value && LimitSwitchGuard.isGuarded(dioChannels.get(i))) {
+        presses++;
+      }
+      dioValues[i] = value;
+      dioSims.get(i).setValue(value);
+    }
+    for (int i = 0; i < pdpColumns.size(); i++) {
+      pdpSim.setCurrent(pdpChannels.get(i), log.get(record, pdpColumns.get(i)));
+    }
+    if (batteryColumn >= 0) {
+      double voltage = log.get(record, batteryColumn);
+      roboRioSim.setVInVoltage(voltage);
+      pdpSim.setVoltage(voltage);
+    }
+    for (int i = 0; i < pressureSwitchColumns.size(); i++) {
+      pressureSwitchSims.get(i).setPressureSwitch(log.get(record, pressureSwitchColumns.get(i)) != 0);
+    }
+    for (int i = 0; i < compressorCurrentColumns.size(); i++) {
+      compressorCurrentSims.get(i).setCompressorCurrent(log.get(record, compressorCurrentColumns.get(i)));
+    }
+
+    // Wait until the driver station thread copied the new data into its cache
+    DriverStationDataJNI.notifyNewData();
+    driverStation.waitForData(0.1);
+    waitForPresses(presses);
+  }
+
+  private void waitForPresses(long presses) {
+    long start = System.nanoTime();
+    while (LimitSwitchGuard.getPressesHandled() < presses) {
+      if (System.nanoTime() - start > pressTimeoutNanos) {
+        throw new IllegalStateException("The limit switch guards did not handle the presses in time");
+      }
+      Thread.yield();
+    }
+  }
+
+  private void compare(long record, int column, double actual) {
+    if (Math.abs(actual - log.get(record, column)) > tolerance) {
+      if (firstMismatchRecord < 0) {
+        firstMismatchRecord = record;
+      }
+      mismatches[column]++;
+    }
+  }
+
+  /**
+   * Total number of outputs that did not match the recording.
+   */
+  public long getMismatchCount() {
+    long total = 0;
+    for (long count : mismatches) {
+      total += count;
+    }
+    return total;
+  }
+
+  public LatencyHistogram getLoopCost() {
+    return loopCost;
+  }
+
+  public void printReport() {
+    System.out.println("Replayed " + log.getRecordCount() + " loops");
+    System.out.printf("Loop cost: p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+        loopCost.getValueAtPercentile(50) / 1e6, loopCost.getValueAtPercentile(99) / 1e6,
+        loopCost.getMax() / 1e6);
+    if (firstMismatchRecord < 0) {
+      System.out.println("All outputs match the recording");
+      return;
+    }
+    System.out.println("First mismatch at loop " + firstMismatchRecord);
+    for (int column = 0; column < mismatches.length; column++) {
+      if (mismatches[column] > 0) {
+        System.out.println("  " + log.getColumnName(column) + ": " + mismatches[column] + " loops differ");
+      }
+    }
+  }
+
+  public static void main(String... args) throws IOException, ReflectiveOperationException {
+    if (args.length < 2) {
+      System.err.println("Usage: ReplayHarness <Robot|robotBackup> <telemetry.bin> [tolerance]");
+      System.exit(1);
+    }
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+
+    long mismatchCount;
+    try (TelemetryLogReader log = new TelemetryLogReader(new File(args[1]))) {
+      IterativeRobotBase robot = (IterativeRobotBase) Class.forName("frc.robot." + args[0])
+          .getDeclaredConstructor().newInstance();
+      ReplayHarness harness = new ReplayHarness(log, robot, tolerance);
+      harness.run();
+      harness.printReport();
+      mismatchCount = harness.getMismatchCount();
+    }
+    System.exit(mismatchCount == 0 ? 0 : 2);
+  }
+}
@@ -7,16 +7,19 @@
 
 package frc.robot;
 
-import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
+import java.io.File;
+import java.io.IOException;
 
-import edu.wpi.cscore.CvSink;
-import edu.wpi.cscore.CvSource;
-import edu.wpi.cscore.UsbCamera;
-import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.ADXRS450_Gyro;
 import edu.wpi.first.wpilibj.Compressor;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Encoder;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.PWMVictorSPX;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.SpeedControllerGroup;
 import edu.wpi.first.wpilibj.TimedRobot;
@@ -33,116 +36,416 @@ import edu.wpi.first.wpilibj.drive.DifferentialDrive;
  * range from -1 to 1 making it easy to work together.
  */
 public class Robot extends TimedRobot {
-  private static final int masterLeftPort = 0;
-  private static final int slaveLeftPort = 1;
-  private static final int masterRightPort = 2;
-  private static final int slaveRightPort = 3;
-  private static final int controllerPort = 0;
-  private static final int compressorPort = 0;
+  // The ports and settings are in deploy/config, common.properties and Robot.properties
+  private static final String configName = "Robot";
 
-  // Define a zone to activate pneumatic
-  private static final double joystickDeathZone = 0.3;
+  // Index of each controller in the input snapshot
+  private static final int driver = 0;
 
+  // Number of loops of robot poses kept to match with vision results, 50 loops is one second
+  private static final int poseHistoryCapacity = 50;
 
+  // Encoder distance per pulse for a 6 inch wheel and a 360 count encoder
+  private static final double driveMetersPerPulse = Math.PI * 0.1524 / 360;
+
+  // Ramsete gains for the sandstorm trajectory, they work for most robots
+  private static final double ramseteB = 2;
+  private static final double ramseteZeta = 0.7;
+
+  // With encoders the wheel speeds are held at 200 Hz on their own thread
+  // The motors stop if the robot loop sends no speeds for 0.1 s
+  private static final double driveControlPeriodSeconds = 0.005;
+  private static final double driveCommandTimeoutSeconds = 0.1;
+  private static final double rateGroupPublishSeconds = 0.5;
+
+  // While disabled the hot paths of the loop run this often, at most 5 ms per disabled loop, so the JIT compiles them
+  private static final int warmupIterations = 20000;
+  private static final double warmupBudgetSeconds = 0.005;
+
+  // Air storage and use for the pressure model, two 574 mL tanks and two 3/4 inch bore, 6 inch stroke pistons
+  private static final double airTankLiters = 1.148;
+  private static final double actuationLiters = 0.087;
+
+  // Motor speed changes smaller than this are not sent to the motor controllers
+  private static final double outputEpsilon = 0.005;
+
+  // Number of loops kept in the telemetry log, 30000 loops is 10 minutes
+  private static final int telemetryCapacity = 30000;
+  // Number of telemetry logs kept on the roboRIO. A full one holds 8 bytes for the time and for each
+  // of the 38 to 42 columns per loop, so it is 9 to 10 MB
+  private static final int telemetryFiles = 10;
+
+  // Small changes of these are not sent to the dashboard
+  private static final double pressureDeadbandPsi = 1;
+  private static final double poseDeadbandMeters = 0.02;
+  private static final double headingDeadbandDegrees = 1;
+  private static final double voltageDeadband = 0.05;
+
+
+  private RobotConfig config;
   private SpeedController masterLeftMotor, slaveLeftMotor, masterRightMotor, slaveRightMotor;
-  private XboxController driverController;
+  private InputSnapshot inputs;
   private DifferentialDrive driveTrain;
   private SpeedControllerGroup leftDrive;
   private SpeedControllerGroup rightDrive;
   private Compressor compressor;
+  private PowerDistributionPanel pdp;
+  private PressureModel pressureModel;
   private DoubleSolenoid firstSolenoid, secondSolenoid;
+  // Set by the startup thread once the cameras run
+  private volatile CameraManager cameraManager;
+  private volatile TargetDetector targetDetector;
+  private Encoder leftEncoder, rightEncoder;
+  private DriveVelocityLoop velocityLoop;
+  private RateGroup driveRateGroup;
+  private ADXRS450_Gyro gyro;
+  private PoseEstimator poseEstimator;
+  private LoopProfiler profiler;
+  private OutputCoalescer outputs;
+  private TelemetryLogger telemetry;
+  private DashboardPublisher dashboard;
+  private Scheduler scheduler;
+  private DriveSubsystem drive;
+  private PneumaticsSubsystem pneumatics;
+  private CompressorSubsystem compressorSystem;
+  private FollowTrajectoryCommand autoCommand;
+  private RobotStartup startup;
+  private DriveController warmupDrive;
+  private RamseteController warmupRamsete;
+  private int warmupStep;
 
+  /**
+   * The config robotInit loaded, null before it.
+   */
+  RobotConfig getConfig() {
+    return config;
+  }
 
   @Override
   public void robotInit() {
-    masterLeftMotor = new PWMVictorSPX(masterLeftPort);
-    slaveLeftMotor = new PWMVictorSPX(slaveLeftPort);
-    masterRightMotor = new PWMVictorSPX(masterRightPort);
-    slaveRightMotor = new PWMVictorSPX(slaveRightPort);
-    driverController = new XboxController(controllerPort);
+    config = RobotConfig.load(configName);
+    masterLeftMotor = new PWMVictorSPX(config.masterLeftPort);
+    slaveLeftMotor = new PWMVictorSPX(config.slaveLeftPort);
+    masterRightMotor = new PWMVictorSPX(config.masterRightPort);
+    slaveRightMotor = new PWMVictorSPX(config.slaveRightPort);
+    inputs = new InputSnapshot(config.joystickDeathZone.get(), config.driverControllerPort);
+    // A replay hands the loop one packet at a time, so it needs no button thread
+    if (!config.headless){
+      inputs.start();
+    }
     leftDrive =  new SpeedControllerGroup(masterLeftMotor, slaveLeftMotor);
     rightDrive = new SpeedControllerGroup(masterRightMotor, slaveRightMotor);
-    driveTrain = new DifferentialDrive(leftDrive, rightDrive);
-    compressor = new Compressor(compressorPort);
-    firstSolenoid = new DoubleSolenoid(0, 2);
-    secondSolenoid = new DoubleSolenoid(1, 3);
-
-    // This code here is used to control the camera or the robot vision
-    new Thread(() -> {
-      UsbCamera camera = CameraServer.getInstance().startAutomaticCapture();
-      camera.setResolution(1366, 768);
-      
-      CvSink cvSink = CameraServer.getInstance().getVideo();
-      CvSource outputStream = CameraServer.getInstance().putVideo("Blur", 640, 480);
-      
-      Mat source = new Mat();
-      Mat output = new Mat();
-      
-      while(!Thread.interrupted()) {
-          cvSink.grabFrame(source);
-          Imgproc.cvtColor(source, output, Imgproc.COLOR_BGR2GRAY);
-          outputStream.putFrame(output);
-      }
-  }).start();
-}
+    outputs = new OutputCoalescer();
+    compressor = new Compressor(config.compressorModule);
+    firstSolenoid = new DoubleSolenoid(config.firstSolenoidForward, config.firstSolenoidReverse);
+    secondSolenoid = new DoubleSolenoid(config.secondSolenoidForward, config.secondSolenoidReverse);
+    pdp = new PowerDistributionPanel();
+    pressureModel = new PressureModel(airTankLiters, actuationLiters);
+    profiler = new LoopProfiler(getPeriod(), 0.5);
+
+    // Every part of the robot is a subsystem, the scheduler writes their outputs once per loop
+    drive = createDrive();
+    gyro = new ADXRS450_Gyro();
+    poseEstimator = new PoseEstimator(gyro, leftEncoder, rightEncoder, new PoseHistory(poseHistoryCapacity));
+    pneumatics = new PneumaticsSubsystem(outputs.add(new CoalescingDoubleSolenoid(firstSolenoid)),
+        outputs.add(new CoalescingDoubleSolenoid(secondSolenoid)), pressureModel);
+    // The compressor waits while the rest of the robot pulls a lot of current
+    compressorSystem = new CompressorSubsystem(outputs.add(new CoalescingCompressor(compressor)), true,
+        pressureModel, () -> pdp.getTotalCurrent() - compressor.getCompressorCurrent());
+    scheduler = new Scheduler(8, profiler);
+    scheduler.register(drive, pneumatics, compressorSystem);
+    // The tuned settings apply as soon as they change on the Config table
+    config.joystickDeathZone.onChange(inputs::setDeathZone);
+    config.driveSlewRate.onChange(drive.getController()::setSlewRate);
+    loadAutonomous();
+    configureBindings();
+    startTelemetry();
+    startDashboard();
+    startBackground();
+    if (driveRateGroup != null){
+      driveRateGroup.start();
+    }
+  }
+
+  // This code here is used to start the robot quickly
+  // The robot can drive without the cameras, so they start on a background thread
+  // While disabled the loop code runs without moving anything, so the first teleop loops are not slow
+  private void startBackground(){
+    startup = new RobotStartup(warmupIterations, warmupBudgetSeconds);
+    // A replay runs without cameras
+    if (!config.headless){
+      startup.runInBackground("vision", this::startVision);
+    }
+    warmupDrive = new DriveController(config.driveSlewRate.get());
+    warmupRamsete = new RamseteController(ramseteB, ramseteZeta);
+    // The inputs and the pose run on spares too, they only read the hardware
+    // So the pose history and the button edges of the real ones stay right
+    InputSnapshot warmupInputs = new InputSnapshot(config.joystickDeathZone.get(), config.driverControllerPort);
+    PoseEstimator warmupPose = new PoseEstimator(gyro, leftEncoder, rightEncoder, new PoseHistory(poseHistoryCapacity));
+    startup.addWarmup(warmupInputs::update);
+    startup.addWarmup(warmupPose::update);
+    startup.addWarmup(this::warmUpDrive);
+    startup.addWarmup(telemetry::warmUp);
+    startup.start();
+  }
+
+  // The drive math runs on a spare controller, so the real one keeps its state
+  private void warmUpDrive(){
+    warmupStep++;
+    double stick = (warmupStep % 200 - 100) / 100.0;
+    warmupDrive.arcadeDrive(stick, -stick / 2);
+    warmupDrive.update(0.02);
+    if (autoCommand != null){
+      Trajectory trajectory = autoCommand.getTrajectory();
+      trajectory.sample(warmupStep % 200 * 0.02);
+      warmupRamsete.calculate(stick, stick, stick, trajectory.getSampledX(), trajectory.getSampledY(),
+          trajectory.getSampledHeading(), trajectory.getSampledVelocity(), stick);
+    }
+  }
+
+  // This code here is used to control the camera or the robot vision
+  private void startVision(){
+    // Both cameras capture at a small size and share one thread pool with the spare cores
+    // Only the camera on the driver stream is processed, the other one is paused
+    StreamManager driverStream = StreamManager.create("Blur", config.streamWidth, config.streamHeight,
+        config.cameraFps, config.streamBudgetMbps.get());
+    CameraManager manager = new CameraManager(driverStream, config.streamWidth, config.streamHeight,
+        config.cameraFps, CameraManager.spareCores());
+    // The target detector looks for the vision tape in every frame and puts the result on NetworkTables
+    TargetDetector detector = new TargetDetector(config.streamWidth, config.streamHeight, config.cameraFovDegrees,
+        NetworkTableInstance.getDefault().getTable("Vision").getEntry("target"));
+    manager.addUsbCamera("Hatch", config.hatchCameraDevice, config.cameraWidth, config.cameraHeight,
+        config.cameraLatencySeconds, detector);
+    manager.addUsbCamera("Cargo", config.cargoCameraDevice, config.cameraWidth, config.cameraHeight,
+        config.cameraLatencySeconds, null);
+    manager.start();
+    config.streamBudgetMbps.onChange(driverStream::setBudgetMbps);
+    targetDetector = detector;
+    cameraManager = manager;
+  }
+
+  // Until the cameras run there is no target and nothing to switch
+  private VisionTarget getVisionTarget(){
+    TargetDetector detector = targetDetector;
+    return detector != null ? detector.getLatest() : VisionTarget.none;
+  }
+
+  private void nextCamera(){
+    CameraManager manager = cameraManager;
+    if (manager != null){
+      manager.next();
+    }
+  }
+
+  // This code here is used to load the sandstorm trajectory
+  // The file is mapped into memory now, so following it does not read the disk during the match
+  // TrajectoryBenchmark measures how long the load takes
+  private void loadAutonomous(){
+    File file = new File(Filesystem.getDeployDirectory(), "trajectories/" + config.autoTrajectory + ".traj");
+    try {
+      Trajectory trajectory = new Trajectory(file);
+      autoCommand = new FollowTrajectoryCommand(drive, poseEstimator, trajectory,
+          new RamseteController(ramseteB, ramseteZeta), config.driveTrackWidth, config.driveMaxSpeed);
+    } catch (IOException e) {
+      DriverStation.reportError("Could not load trajectory " + file + ": " + e.getMessage(), false);
+    }
+  }
+
+  // This code here is used to set up the drive
+  // Without encoders the drive runs open loop from the robot loop
+  // With them the wheel speeds are held by a fast loop on its own thread, the robot loop only sends the wanted speeds
+  private DriveSubsystem createDrive(){
+    DriveController controller = new DriveController(config.driveSlewRate.get());
+    if (!config.driveEncodersInstalled){
+      driveTrain = new DifferentialDrive(outputs.add(new CoalescingSpeedController(leftDrive, outputEpsilon)),
+          outputs.add(new CoalescingSpeedController(rightDrive, outputEpsilon)));
+      return new DriveSubsystem(driveTrain, controller);
+    }
+    leftEncoder = new Encoder(config.leftEncoderChannelA, config.leftEncoderChannelB);
+    rightEncoder = new Encoder(config.rightEncoderChannelA, config.rightEncoderChannelB, true);
+    leftEncoder.setDistancePerPulse(driveMetersPerPulse);
+    rightEncoder.setDistancePerPulse(driveMetersPerPulse);
+    // A full command is the top speed, so the feed forward is one over it
+    double kV = 1 / config.driveMaxSpeed;
+    // The fast loop writes the drive motors itself, they are not flushed with the other outputs
+    velocityLoop = new DriveVelocityLoop(leftDrive, rightDrive, outputEpsilon,
+        new VelocityController(leftEncoder, config.driveKP, config.driveKI, kV, config.driveKS),
+        new VelocityController(rightEncoder, config.driveKP, config.driveKI, kV, config.driveKS),
+        config.driveMaxSpeed, driveCommandTimeoutSeconds);
+    driveRateGroup = new RateGroup("Drive", driveControlPeriodSeconds, rateGroupPublishSeconds);
+    driveRateGroup.add(velocityLoop);
+    return new DriveSubsystem(velocityLoop, controller);
+  }
 
   // Running forward or backward depended on the vertical value of the joystick
   // Running left or right depended on the horizontal value of the joystick
   // Note: Check the direction of the robot to see if the robot runs in the right direction
   // If the robot turns left, the left side will run backward and the right side will run forward
   // If the robot turns right, the left side will run forward and the right side will run backward
-  // Changing the direction of the robot to left or right need to be done first
-  // Running forward and backward will be done after the robot changes it horizontal direction
-  // This code from here will control the pneumatic system
-
-  private void forwardPiston(){
-    firstSolenoid.set(DoubleSolenoid.Value.kForward);
-    secondSolenoid.set(DoubleSolenoid.Value.kForward);
+  // Both sticks are mixed together, so the robot can turn while it drives forward
+  private void rcDriving(){
+    drive.arcadeDrive(-inputs.getZonedAxis(driver, 1), inputs.getZonedAxis(driver, 4));
   }
 
-  private void reversePiston(){
-    firstSolenoid.set(DoubleSolenoid.Value.kReverse);
-    secondSolenoid.set(DoubleSolenoid.Value.kReverse);
-  }
+  // This code here is used to connect the controller to the commands
+  private void configureBindings(){
+    // This code is used to control robot driving
+    drive.setDefaultCommand(new RunCommand(this::rcDriving, drive));
 
-  private boolean checkJoystickZone(double controllerVal){
-    if (controllerVal < -joystickDeathZone || controllerVal > joystickDeathZone){
-      return true;
+    // This code here is used to give the driver the robot back during the sandstorm path
+    if (autoCommand != null){
+      scheduler.bind(() -> inputs.isOutsideDeathZone(driver, 1) || inputs.isOutsideDeathZone(driver, 4))
+          .whenPressed(new InstantCommand(() -> scheduler.cancel(autoCommand)));
     }
-    else {
-      return false;
+
+    // This code here is used to control pneumatic system
+    scheduler.bind(() -> inputs.getButton(driver, XboxController.Button.kA.value))
+        .whenPressed(new InstantCommand(pneumatics::forwardPiston, pneumatics))
+        .whenReleased(new InstantCommand(pneumatics::reversePiston, pneumatics));
+
+    // This code here is used to turn the robot to the vision target while X is held
+    // The driver still controls the speed with the left stick
+    scheduler.bind(() -> inputs.getButton(driver, XboxController.Button.kX.value))
+        .whileHeld(new AutoAlignCommand(drive, this::getVisionTarget, poseEstimator,
+            () -> -inputs.getZonedAxis(driver, 1)));
+
+    // This code here is used to switch the driver stream between the hatch and cargo cameras
+    scheduler.bind(() -> inputs.getButton(driver, XboxController.Button.kY.value))
+        .whenPressed(new InstantCommand(this::nextCamera));
+
+    // This code here is used to control the air compressor, it runs while B is held
+    scheduler.bind(() -> inputs.getButton(driver, XboxController.Button.kB.value))
+        .whileHeld(new StartEndCommand(() -> compressorSystem.setEnabled(true),
+            () -> compressorSystem.setEnabled(false), compressorSystem));
   }
-}
 
-  @Override
-  public void teleopPeriodic() {
-    // This code is used to control robot driving
-    if (checkJoystickZone(driverController.getRawAxis(1))){
-      driveTrain.tankDrive(-driverController.getRawAxis(1), -driverController.getRawAxis(1));
+  // This code here is used to record what the robot does in every loop
+  // Use TelemetryCsv to read the log after the match
+  private void startTelemetry(){
+    telemetry = new TelemetryLogger(TelemetryLogger.defaultDirectory(), telemetryCapacity, telemetryFiles);
+    // A replay runs each loop in the mode it was recorded in
+    telemetry.addModeColumn();
+    telemetry.addControllerColumns(inputs, driver, 6);
+    telemetry.addPwmColumn(config.masterLeftPort, masterLeftMotor);
+    telemetry.addPwmColumn(config.slaveLeftPort, slaveLeftMotor);
+    telemetry.addPwmColumn(config.masterRightPort, masterRightMotor);
+    telemetry.addPwmColumn(config.slaveRightPort, slaveRightMotor);
+    telemetry.addSolenoidColumn(config.firstSolenoidForward, config.firstSolenoidReverse, firstSolenoid);
+    telemetry.addSolenoidColumn(config.secondSolenoidForward, config.secondSolenoidReverse, secondSolenoid);
+    // The sensors a replay feeds back to the simulator
+    telemetry.addCompressorColumns(config.compressorModule, compressor);
+    telemetry.addPdpColumns(pdp);
+    telemetry.addBatteryColumn();
+    telemetry.addColumn("compressor.enabled", () -> compressorSystem.isEnabled() ? 1 : 0);
+    telemetry.addColumn("compressor.deferred", () -> compressorSystem.isDeferred() ? 1 : 0);
+    telemetry.addColumn("pneumatics.pressureEstimate", pressureModel::getPressure);
+    telemetry.addColumn("pneumatics.remainingActuations", pressureModel::getRemainingActuations);
+    if (velocityLoop != null){
+      telemetry.addColumn("drive.leftOutput", velocityLoop::getSampledLeftOutput);
+      telemetry.addColumn("drive.rightOutput", velocityLoop::getSampledRightOutput);
+      telemetry.addColumn("drive.leftError", velocityLoop::getSampledLeftError);
+      telemetry.addColumn("drive.rightError", velocityLoop::getSampledRightError);
     }
-    if (checkJoystickZone(driverController.getRawAxis(4))){
-      driveTrain.tankDrive(driverController.getRawAxis(4), -driverController.getRawAxis(4));
+    // A replay does not write a new log, record does nothing until the logger started
+    if (!config.headless){
+      telemetry.start();
     }
+  }
 
-    // This code here is used to control pneumatic system
-    if (driverController.getAButtonPressed()){
-      forwardPiston();
+  // This code here is used to show the compressor, the pistons and the drive on the Dashboard table
+  // The values are sampled in robotPeriodic and sent from their own thread, only when they change
+  private void startDashboard(){
+    dashboard = new DashboardPublisher("Dashboard", config.dashboardFlushPeriod);
+    dashboard.addBoolean("Compressor/Enabled", compressorSystem::isEnabled);
+    dashboard.addBoolean("Compressor/Running", compressor::enabled);
+    dashboard.addBoolean("Compressor/Pressure Low", compressor::getPressureSwitchValue);
+    dashboard.addBoolean("Compressor/Deferred", compressorSystem::isDeferred);
+    dashboard.addEnum("Pneumatics/Pistons", DoubleSolenoid.Value.class, pneumatics::getPosition);
+    dashboard.addDouble("Pneumatics/Pressure Estimate", pressureModel::getPressure, pressureDeadbandPsi);
+    dashboard.addDouble("Pneumatics/Actuations Left", pressureModel::getRemainingActuations);
+    dashboard.addDouble("Drive/Left Output", drive::getLeftSpeed, outputEpsilon);
+    dashboard.addDouble("Drive/Right Output", drive::getRightSpeed, outputEpsilon);
+    dashboard.addDouble("Drive/Heading", poseEstimator::getHeading, headingDeadbandDegrees);
+    if (poseEstimator.hasPosition()){
+      dashboard.addDouble("Drive/X", poseEstimator::getX, poseDeadbandMeters);
+      dashboard.addDouble("Drive/Y", poseEstimator::getY, poseDeadbandMeters);
     }
+    dashboard.addDouble("Battery Voltage", RobotController::getBatteryVoltage, voltageDeadband);
+    if (!config.headless){
+      dashboard.start();
+    }
+  }
 
-    if (driverController.getAButtonReleased()){
-      reversePiston();
+  @Override
+  public void disabledInit() {
+    scheduler.cancelAll();
+    outputs.invalidate();
+    drive.reset();
+  }
+
+  // This code here runs after every loop, also while disabled
+  // In the sandstorm and teleop it is timed as the last part of the loop runLoop began
+  @Override
+  public void robotPeriodic() {
+    profiler.begin(LoopProfiler.Section.kRobotPeriodic);
+    config.applyChanges();
+    dashboard.sample();
+    if (driveRateGroup != null){
+      driveRateGroup.publish();
     }
+    profiler.end(LoopProfiler.Section.kRobotPeriodic);
+    profiler.endLoop();
+  }
 
-    // This code here is used to control the air compressor
-    if (driverController.getBButtonPressed()){
-     compressor.start();
-     compressor.setClosedLoopControl(true);
+  @Override
+  public void disabledPeriodic() {
+    startup.warmUp();
+  }
+
+  @Override
+  public void autonomousInit() {
+    // The path starts from the pose the robot has now
+    poseEstimator.update();
+    if (autoCommand != null) {
+      scheduler.schedule(autoCommand);
     }
+  }
+
+  @Override
+  public void autonomousPeriodic() {
+    runLoop();
+  }
 
-    if (driverController.getBButtonReleased()){
-      compressor.stop();
-      compressor.setClosedLoopControl(false);
+  @Override
+  public void teleopPeriodic() {
+    runLoop();
+  }
+
+  // The sandstorm and teleop run the same loop, only the commands differ
+  private void runLoop() {
+    profiler.beginLoop();
+
+    // Read the controllers once, everything else in this loop uses this copy
+    profiler.begin(LoopProfiler.Section.kInputs);
+    inputs.update();
+    poseEstimator.update();
+    // The newest outputs of the fast drive loop, for the telemetry
+    if (velocityLoop != null){
+      velocityLoop.sample();
     }
+    profiler.end(LoopProfiler.Section.kInputs);
+
+    scheduler.run();
+
+    // The subsystems only set the wanted values, this sends the ones that changed
+    profiler.begin(LoopProfiler.Section.kOutputs);
+    outputs.flush();
+    profiler.end(LoopProfiler.Section.kOutputs);
+
+    profiler.begin(LoopProfiler.Section.kTelemetry);
+    telemetry.record();
+    profiler.end(LoopProfiler.Section.kTelemetry);
+    // robotPeriodic runs next and ends the loop
   }
 }
 
@@ -1,12 +1,6 @@
 package frc.robot;
 
-import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
-
-import edu.wpi.cscore.CvSink;
-import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.UsbCamera;
-import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.wpilibj.Compressor;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
 import edu.wpi.first.wpilibj.PWMVictorSPX;
@@ -18,19 +12,10 @@ import edu.wpi.first.wpilibj.GenericHID.Hand;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
 
 public class RobotBackup extends TimedRobot {
-  private static final int masterLeftPort = 0;
-  private static final int slaveLeftPort = 1;
-  private static final int masterRightPort = 2;
-  private static final int slaveRightPort = 3;
-  private static final int controllerPort = 0;
-  private static final int compressorPort = 0;
-  private static final int ballLauncherPort = 5;
-  private static final int ballHandPort = 4;
-  private static final int hatchHandPort = 6;
-
-  // Making a death zone to control the joystick
-  private static final double joystickDeathZone = 0.3;
+  // The ports and settings are in deploy/config, common.properties and pollingBackup.properties
+  private static final String configName = "pollingBackup";
 
+  private RobotConfig config;
   private SpeedController masterLeftMotor, slaveLeftMotor, masterRightMotor, slaveRightMotor;
   private XboxController driverController;
   private DifferentialDrive driveTrain, ballLauncher;
@@ -40,46 +25,55 @@ public class RobotBackup extends TimedRobot {
   private SpeedController hatchHand;
   private Compressor compressor;
   private DoubleSolenoid firstSolenoid, secondSolenoid;
+  private CameraManager cameraManager;
+
+  /**
+   * The config robotInit loaded, null before it.
+   */
+  RobotConfig getConfig() {
+    return config;
+  }
 
   @Override
   public void robotInit() {
-    ballHand = new PWMVictorSPX(ballHandPort);
-    ballLauncherMotor = new PWMVictorSPX(ballLauncherPort);
-    hatchHand = new PWMVictorSPX(hatchHandPort);
-    masterLeftMotor = new PWMVictorSPX(masterLeftPort);
-    slaveLeftMotor = new PWMVictorSPX(slaveLeftPort);
-    masterRightMotor = new PWMVictorSPX(masterRightPort);
-    slaveRightMotor = new PWMVictorSPX(slaveRightPort);
-    driverController = new XboxController(controllerPort);
+    config = RobotConfig.load(configName);
+    ballHand = new PWMVictorSPX(config.ballHandPort);
+    ballLauncherMotor = new PWMVictorSPX(config.ballLauncherPort);
+    hatchHand = new PWMVictorSPX(config.hatchHandPort);
+    masterLeftMotor = new PWMVictorSPX(config.masterLeftPort);
+    slaveLeftMotor = new PWMVictorSPX(config.slaveLeftPort);
+    masterRightMotor = new PWMVictorSPX(config.masterRightPort);
+    slaveRightMotor = new PWMVictorSPX(config.slaveRightPort);
+    driverController = new XboxController(config.driverControllerPort);
     leftDrive =  new SpeedControllerGroup(masterLeftMotor, slaveLeftMotor);
     rightDrive = new SpeedControllerGroup(masterRightMotor, slaveRightMotor);
     driveTrain = new DifferentialDrive(leftDrive, rightDrive);
     ballLauncher = new DifferentialDrive(ballLauncherMotor, ballLauncherMotor);
-    compressor = new Compressor(compressorPort);
-    firstSolenoid = new DoubleSolenoid(0, 1);
-    secondSolenoid = new DoubleSolenoid(2, 3);
-
-    // This code here is used to control the camera or the robot vision
-    new Thread(() -> {
-      UsbCamera camera = CameraServer.getInstance().startAutomaticCapture();
-      camera.setResolution(1920, 1080);
-      camera.setBrightness(1);
-      camera.setFPS(60);
-      
-      CvSink cvSink = CameraServer.getInstance().getVideo();
-      CvSource outputStream = CameraServer.getInstance().putVideo("Blur", 640, 480);
-      
-      Mat source = new Mat();
-      Mat output = new Mat();
-      
-      while(!Thread.interrupted()) {
-          cvSink.grabFrame(source);
-          Imgproc.cvtColor(source, output, Imgproc.COLOR_BGR2GRAY);
-          outputStream.putFrame(output);
-      }
-  }).start();
+    compressor = new Compressor(config.compressorModule);
+    firstSolenoid = new DoubleSolenoid(config.firstSolenoidForward, config.firstSolenoidReverse);
+    secondSolenoid = new DoubleSolenoid(config.secondSolenoidForward, config.secondSolenoidReverse);
+
+    // Headless, like in the match tests, there is no camera
+    if (!config.headless){
+      startCamera();
+    }
 }
 
+  // This code here is used to control the camera or the robot vision
+  // The camera captures at a small size and the camera manager runs it at a fixed frame rate
+  // on the spare cores, so it does not take the CPU time that the control loop needs
+  private void startCamera(){
+    StreamManager stream = StreamManager.create("Blur", config.streamWidth, config.streamHeight, config.cameraFps,
+        config.streamBudgetMbps.get());
+    config.streamBudgetMbps.onChange(stream::setBudgetMbps);
+    cameraManager = new CameraManager(stream, config.streamWidth, config.streamHeight, config.cameraFps,
+        CameraManager.spareCores());
+    UsbCamera camera = cameraManager.addUsbCamera("Camera", config.hatchCameraDevice, config.cameraWidth,
+        config.cameraHeight, config.cameraLatencySeconds, null);
+    config.cameraBrightness.onChange(brightness -> camera.setBrightness((int) brightness));
+    cameraManager.start();
+  }
+
   // Running forward or backward depended on the vertical value of the joystick
   // Running left or right depended on the horizontal value of the joystick
   // Note: Check the direction of the robot to see if the robot runs in the right direction
@@ -101,6 +95,7 @@ public class RobotBackup extends TimedRobot {
 
   // Check joystcick zone is used in order to operate the robot driving command
   private boolean checkJoystickZone(double controllerVal){
+    double joystickDeathZone = config.joystickDeathZone.get();
     if (controllerVal < -joystickDeathZone || controllerVal > joystickDeathZone){
       return true;
     }
@@ -127,6 +122,12 @@ public class RobotBackup extends TimedRobot {
     return false;
   }
 
+  // This code here is used to apply the settings changed on the Config table
+  @Override
+  public void robotPeriodic() {
+    config.applyChanges();
+  }
+
   @Override
   public void teleopPeriodic() {
     // This code here is used to control the robot driving
@@ -163,7 +164,7 @@ public class RobotBackup extends TimedRobot {
     // This code here is used to control the hand of the ball launcher mechanism
     // We reduce the speed of the motor down to reduce the heat
     if (driverController.getYButtonPressed()){
-      ballHand.set(0.5);
+      ballHand.set(config.ballHandSpeed.get());
     }
 
     if (driverController.getYButtonReleased()){
@@ -171,7 +172,7 @@ public class RobotBackup extends TimedRobot {
     }
 
     if (driverController.getXButtonPressed()){
-      ballHand.set(-0.5);
+      ballHand.set(-config.ballHandSpeed.get());
     }
 
     if (driverController.getXButtonReleased()){
@@ -180,7 +181,7 @@ public class RobotBackup extends TimedRobot {
 
     // This code here is used to control the hand of the hatch mechanism
     if (checkPOVsts(driverController, 0)){
-      hatchHand.set(0.5);
+      hatchHand.set(config.hatchHandSpeed.get());
     }
 
     if (checkPOVsts(driverController, 0) == false){
@@ -188,7 +189,7 @@ public class RobotBackup extends TimedRobot {
     }
 
     if (checkPOVsts(driverController, 2)){
-      hatchHand.set(-0.5);
+      hatchHand.set(-config.hatchHandSpeed.get());
     }
 
     if (checkPOVsts(driverController, 2) == false){
@@ -198,4 +199,4 @@ public class RobotBackup extends TimedRobot {
 }
 
 // Test this code with the robot for tomorrow
-// If the code work, include the function to control the robot in like the original driving
\ No newline at end of file
+// If the code work, include the function to control the robot in like the original driving
\ No newline at end of file
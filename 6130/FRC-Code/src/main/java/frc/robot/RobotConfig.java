@@ -0,0 +1,342 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * The ports and settings of the robot, read once at startup from the config
+ * folder that is deployed with the code.
+ *
+ * <p>common.properties has the values all robot classes share. A file for
+ * each robot, like robotBackup.properties, can override any of them for the
+ * wiring of that robot. Every key must be in one of the two files and have
+ * the right type, otherwise load throws with all the problems at once, so a
+ * typo shows up in the pit and not on the field.
+ *
+ * <p>Ports and other values that only make sense at startup are final
+ * fields. The settings we tune, like dead bands, speeds and the stream
+ * budget, are Tunables that can be changed from the dashboard; call
+ * applyChanges once per loop so the changes reach the code that uses them.
+ *
+ * <p>Tools that run the robot code without a robot, like ReplayHarness, set
+ * the headless system property before robotInit. The robot classes then
+ * leave the cameras, the telemetry log and the dashboard off.
+ */
+public final class RobotConfig {
+  public static final String headlessProperty = "frc.robot.headless";
+
+  // Drive
+  public final int masterLeftPort;
+  public final int slaveLeftPort;
+  public final int masterRightPort;
+  public final int slaveRightPort;
+  public final boolean driveEncodersInstalled;
+  public final int leftEncoderChannelA;
+  public final int leftEncoderChannelB;
+  public final int rightEncoderChannelA;
+  public final int rightEncoderChannelB;
+  public final double driveMaxSpeed;
+  public final double driveTrackWidth;
+  public final double driveKP;
+  public final double driveKI;
+  public final double driveKS;
+  public final String autoTrajectory;
+
+  // Mechanisms
+  public final int ballLauncherPort;
+  public final int ballHandPort;
+  public final int secondaryBallHandPort;
+  public final int hatchHandPort;
+  public final int limitSwitchHatchFrontPort;
+  public final int limitSwitchHatchBackPort;
+  public final int limitSwitchBallFrontPort;
+  public final int limitSwitchBallBackPort;
+  public final int ballHandPdpChannel;
+  public final int secondaryBallHandPdpChannel;
+  public final int hatchHandPdpChannel;
+  public final double ballHandStallCurrent;
+  public final double ballHandHeatCurrent;
+  public final double ballHandTravelSeconds;
+  public final double hatchHandStallCurrent;
+  public final double hatchHandHeatCurrent;
+  public final double hatchHandTravelSeconds;
+  public final boolean handEncodersInstalled;
+  public final Hand hatchHand;
+  public final Hand ballHand;
+
+  // Pneumatics
+  public final int compressorModule;
+  public final int firstSolenoidForward;
+  public final int firstSolenoidReverse;
+  public final int secondSolenoidForward;
+  public final int secondSolenoidReverse;
+
+  // Controllers
+  public final int robotFuncControllerPort;
+  public final int driverControllerPort;
+
+  // Cameras
+  public final int hatchCameraDevice;
+  public final int cargoCameraDevice;
+  public final int cameraWidth;
+  public final int cameraHeight;
+  public final int cameraFps;
+  public final int streamWidth;
+  public final int streamHeight;
+  public final double cameraFovDegrees;
+  public final double cameraLatencySeconds;
+
+  // Dashboard
+  public final double dashboardFlushPeriod;
+
+  // Set by the headless system property, not by the config files
+  public final boolean headless;
+
+  // Tuned from the dashboard
+  public final Tunable joystickDeathZone;
+  public final Tunable driveSlewRate;
+  public final Tunable ballLauncherSpeed;
+  public final Tunable ballLauncherReverseSpeed;
+  public final Tunable ballHandSpeed;
+  public final Tunable hatchHandSpeed;
+  public final Tunable streamBudgetMbps;
+  public final Tunable cameraBrightness;
+  public final Tunable hatchStowDegrees;
+  public final Tunable hatchLowDegrees;
+  public final Tunable hatchMidDegrees;
+  public final Tunable ballStowDegrees;
+  public final Tunable ballCargoDegrees;
+
+  private final Properties properties;
+  private final NetworkTable table;
+  private final Set<String> usedKeys = new HashSet<>();
+  private final List<String> errors = new ArrayList<>();
+  private final List<Tunable> tunables = new ArrayList<>();
+
+  private RobotConfig(Properties properties, NetworkTable table) {
+    this.properties = properties;
+    this.table = table;
+
+    masterLeftPort = getInt("drive.masterLeftPort");
+    slaveLeftPort = getInt("drive.slaveLeftPort");
+    masterRightPort = getInt("drive.masterRightPort");
+    slaveRightPort = getInt("drive.slaveRightPort");
+    driveEncodersInstalled = getBoolean("drive.encodersInstalled");
+    leftEncoderChannelA = getInt("drive.leftEncoderChannelA");
+    leftEncoderChannelB = getInt("drive.leftEncoderChannelB");
+    rightEncoderChannelA = getInt("drive.rightEncoderChannelA");
+    rightEncoderChannelB = getInt("drive.rightEncoderChannelB");
+    driveMaxSpeed = getDouble("drive.maxSpeed");
+    driveTrackWidth = getDouble("drive.trackWidth");
+    driveKP = getDouble("drive.kP");
+    driveKI = getDouble("drive.kI");
+    driveKS = getDouble("drive.kS");
+    autoTrajectory = getString("auto.trajectory");
+
+    ballLauncherPort = getInt("ballLauncher.port");
+    ballHandPort = getInt("ballHand.port");
+    secondaryBallHandPort = getInt("ballHand.secondaryPort");
+    hatchHandPort = getInt("hatchHand.port");
+    limitSwitchHatchFrontPort = getInt("limitSwitch.hatchFront");
+    limitSwitchHatchBackPort = getInt("limitSwitch.hatchBack");
+    limitSwitchBallFrontPort = getInt("limitSwitch.ballFront");
+    limitSwitchBallBackPort = getInt("limitSwitch.ballBack");
+    ballHandPdpChannel = getInt("ballHand.pdpChannel");
+    secondaryBallHandPdpChannel = getInt("ballHand.secondaryPdpChannel");
+    hatchHandPdpChannel = getInt("hatchHand.pdpChannel");
+    ballHandStallCurrent = getDouble("ballHand.stallCurrentAmps");
+    ballHandHeatCurrent = getDouble("ballHand.heatCurrentAmps");
+    ballHandTravelSeconds = getDouble("ballHand.travelSeconds");
+    hatchHandStallCurrent = getDouble("hatchHand.stallCurrentAmps");
+    hatchHandHeatCurrent = getDouble("hatchHand.heatCurrentAmps");
+    hatchHandTravelSeconds = getDouble("hatchHand.travelSeconds");
+    handEncodersInstalled = getBoolean("hand.encodersInstalled");
+    hatchHand = new Hand(this, "hatchHand.");
+    ballHand = new Hand(this, "ballHand.");
+
+    compressorModule = getInt("compressor.module");
+    firstSolenoidForward = getInt("solenoid.first.forward");
+    firstSolenoidReverse = getInt("solenoid.first.reverse");
+    secondSolenoidForward = getInt("solenoid.second.forward");
+    secondSolenoidReverse = getInt("solenoid.second.reverse");
+
+    robotFuncControllerPort = getInt("controller.robotFunc");
+    driverControllerPort = getInt("controller.driver");
+
+    hatchCameraDevice = getInt("camera.hatchDevice");
+    cargoCameraDevice = getInt("camera.cargoDevice");
+    cameraWidth = getInt("camera.width");
+    cameraHeight = getInt("camera.height");
+    cameraFps = getInt("camera.fps");
+    streamWidth = getInt("stream.width");
+    streamHeight = getInt("stream.height");
+    cameraFovDegrees = getDouble("camera.fovDegrees");
+    cameraLatencySeconds = getDouble("camera.latencySeconds");
+
+    dashboardFlushPeriod = getDouble("dashboard.flushPeriodSeconds");
+    headless = Boolean.getBoolean(headlessProperty);
+
+    joystickDeathZone = getTunable("input.joystickDeathZone");
+    driveSlewRate = getTunable("drive.slewRate");
+    ballLauncherSpeed = getTunable("ballLauncher.speed");
+    ballLauncherReverseSpeed = getTunable("ballLauncher.reverseSpeed");
+    ballHandSpeed = getTunable("ballHand.speed");
+    hatchHandSpeed = getTunable("hatchHand.speed");
+    streamBudgetMbps = getTunable("stream.budgetMbps");
+    cameraBrightness = getTunable("camera.brightness");
+    hatchStowDegrees = getTunable("hatchHand.stowDegrees");
+    hatchLowDegrees = getTunable("hatchHand.lowDegrees");
+    hatchMidDegrees = getTunable("hatchHand.midDegrees");
+    ballStowDegrees = getTunable("ballHand.stowDegrees");
+    ballCargoDegrees = getTunable("ballHand.cargoDegrees");
+  }
+
+  /**
+   * The encoder and motion settings of a hand with position control. Both
+   * hands have the same keys, like hatchHand.kP and ballHand.kP.
+   */
+  public static final class Hand {
+    public final int encoderChannelA;
+    public final int encoderChannelB;
+    public final double degreesPerPulse;
+    public final double travelDegrees;
+    public final double maxVelocity;
+    public final double maxAcceleration;
+    public final double kP;
+    public final double kD;
+    public final double kV;
+    public final double kS;
+    public final double homingSpeed;
+
+    private Hand(RobotConfig config, String prefix) {
+      encoderChannelA = config.getInt(prefix + "encoderChannelA");
+      encoderChannelB = config.getInt(prefix + "encoderChannelB");
+      degreesPerPulse = config.getDouble(prefix + "degreesPerPulse");
+      travelDegrees = config.getDouble(prefix + "travelDegrees");
+      maxVelocity = config.getDouble(prefix + "maxVelocity");
+      maxAcceleration = config.getDouble(prefix + "maxAcceleration");
+      kP = config.getDouble(prefix + "kP");
+      kD = config.getDouble(prefix + "kD");
+      kV = config.getDouble(prefix + "kV");
+      kS = config.getDouble(prefix + "kS");
+      homingSpeed = config.getDouble(prefix + "homingSpeed");
+    }
+  }
+
+  /**
+   * Read the config of a robot from the deploy folder.
+   *
+   * @param robotName name of the file with the robot's own values, without .properties
+   * @throws IllegalStateException if a file can not be read or a key is missing or has the wrong type
+   */
+  public static RobotConfig load(String robotName) {
+    return load(robotName, new Properties());
+  }
+
+  /**
+   * Read the config of a robot with some values replaced, for the tests
+   * that run a robot class with hardware it does not have yet.
+   *
+   * @param robotName name of the file with the robot's own values, without .properties
+   * @param overrides values that replace the ones in the files
+   * @throws IllegalStateException if a file can not be read or a key is missing or has the wrong type
+   */
+  static RobotConfig load(String robotName, Properties overrides) {
+    File folder = new File(Filesystem.getDeployDirectory(), "config");
+    Properties common = new Properties();
+    read(new File(folder, "common.properties"), common, true);
+    Properties properties = new Properties(common);
+    read(new File(folder, robotName + ".properties"), properties, false);
+    properties.putAll(overrides);
+
+    RobotConfig config = new RobotConfig(properties, NetworkTableInstance.getDefault().getTable("Config"));
+    if (!config.errors.isEmpty()) {
+      throw new IllegalStateException("Bad robot config in " + folder + ": " + String.join(", ", config.errors));
+    }
+    // A key nobody reads is most likely a typo of one that fell back to the common value
+    for (String key : properties.stringPropertyNames()) {
+      if (!config.usedKeys.contains(key)) {
+        DriverStation.reportWarning("Unknown robot config key " + key, false);
+      }
+    }
+    return config;
+  }
+
+  private static void read(File file, Properties properties, boolean required) {
+    if (!required && !file.exists()) {
+      return;
+    }
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read robot config " + file + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Run the change actions of the tunables that changed. Call this once per
+   * loop, in every mode, so changes made in the pit apply right away.
+   */
+  public void applyChanges() {
+    for (int i = 0; i < tunables.size(); i++) {
+      tunables.get(i).apply();
+    }
+  }
+
+  private String getString(String key) {
+    usedKeys.add(key);
+    String value = properties.getProperty(key);
+    if (value == null) {
+      errors.add(key + " is missing");
+      return "";
+    }
+    return value.trim();
+  }
+
+  private int getInt(String key) {
+    String value = getString(key);
+    try {
+      return value.isEmpty() ? 0 : Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      errors.add(key + " is not a whole number");
+      return 0;
+    }
+  }
+
+  private double getDouble(String key) {
+    String value = getString(key);
+    try {
+      return value.isEmpty() ? 0 : Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      errors.add(key + " is not a number");
+      return 0;
+    }
+  }
+
+  private boolean getBoolean(String key) {
+    String value = getString(key);
+    if (!value.isEmpty() && !value.equals("true") && !value.equals("false")) {
+      errors.add(key + " is not true or false");
+    }
+    return value.equals("true");
+  }
+
+  private Tunable getTunable(String key) {
+    Tunable tunable = new Tunable(table, key, getDouble(key));
+    tunables.add(tunable);
+    return tunable;
+  }
+}
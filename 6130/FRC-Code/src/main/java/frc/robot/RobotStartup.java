@@ -0,0 +1,149 @@
+package frc.robot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Gets the robot ready to play without making robotInit or the first teleop
+ * loops slow.
+ *
+ * <p>Parts the robot can drive without, like the cameras, are started on a
+ * background thread, one after the other. While the robot is disabled,
+ * warmUp runs the hot paths of the loop again and again, a few milliseconds
+ * per disabled loop, so the classes are loaded, the native methods bound and
+ * the code compiled by the JIT before the match instead of during its first
+ * seconds. The robot is ready once both are done. The time from the start
+ * of the program to ready is written to the "Startup" table.
+ */
+public class RobotStartup {
+  private final int warmupIterations;
+  private final long warmupBudgetNanos;
+  private final List<String> taskNames = new ArrayList<>();
+  private final List<Runnable> tasks = new ArrayList<>();
+  private final List<Runnable> warmups = new ArrayList<>();
+  private Runnable[] hotPaths;
+  private Thread thread;
+  private volatile boolean backgroundDone;
+  private volatile double backgroundSeconds;
+  private int iterations;
+  private double timeToReady = Double.NaN;
+
+  private final NetworkTableEntry readyEntry;
+  private final NetworkTableEntry timeToReadyEntry;
+  private final NetworkTableEntry backgroundEntry;
+  private final NetworkTableEntry iterationsEntry;
+
+  /**
+   * Create the startup.
+   *
+   * @param warmupIterations how often every hot path runs, the JIT compiles a method after about 10000 calls
+   * @param warmupBudgetSeconds the longest warmUp may take in one disabled loop
+   */
+  public RobotStartup(int warmupIterations, double warmupBudgetSeconds) {
+    this.warmupIterations = warmupIterations;
+    this.warmupBudgetNanos = (long) (warmupBudgetSeconds * 1e9);
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("Startup");
+    readyEntry = table.getEntry("Ready");
+    timeToReadyEntry = table.getEntry("Time To Ready");
+    backgroundEntry = table.getEntry("Background Init");
+    iterationsEntry = table.getEntry("Warmup Iterations");
+    readyEntry.setBoolean(false);
+  }
+
+  /**
+   * Run a task on the startup thread. Tasks run in the order they were added.
+   */
+  public void runInBackground(String name, Runnable task) {
+    if (thread != null) {
+      throw new IllegalStateException("Tasks must be added before the startup starts");
+    }
+    taskNames.add(name);
+    tasks.add(task);
+  }
+
+  /**
+   * Add a hot path to run while disabled. It must not move anything.
+   */
+  public void addWarmup(Runnable hotPath) {
+    warmups.add(hotPath);
+  }
+
+  /**
+   * Start the background tasks. Call this at the end of robotInit.
+   */
+  public void start() {
+    hotPaths = warmups.toArray(new Runnable[0]);
+    thread = new Thread(this::runTasks, "Robot Startup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void runTasks() {
+    long start = System.nanoTime();
+    for (int i = 0; i < tasks.size(); i++) {
+      try {
+        tasks.get(i).run();
+      } catch (RuntimeException e) {
+        // One part failing to start should not keep the rest from starting
+        DriverStation.reportError("Could not start " + taskNames.get(i) + ": " + e, e.getStackTrace());
+      }
+    }
+    backgroundSeconds = (System.nanoTime() - start) / 1e9;
+    backgroundDone = true;
+  }
+
+  /**
+   * Run the hot paths for a few milliseconds. Call this from disabledPeriodic.
+   */
+  public void warmUp() {
+    if (isReady()) {
+      return;
+    }
+    long start = System.nanoTime();
+    while (iterations < warmupIterations && System.nanoTime() - start < warmupBudgetNanos) {
+      for (Runnable hotPath : hotPaths) {
+        hotPath.run();
+      }
+      iterations++;
+    }
+    iterationsEntry.setDouble(iterations);
+    if (iterations >= warmupIterations && backgroundDone) {
+      timeToReady = ManagementFactory.getRuntimeMXBean().getUptime() / 1e3;
+      readyEntry.setBoolean(true);
+      timeToReadyEntry.setDouble(timeToReady);
+      backgroundEntry.setDouble(backgroundSeconds);
+    }
+  }
+
+  /**
+   * Whether the background tasks are done and the hot paths are warm.
+   */
+  public boolean isReady() {
+    return !Double.isNaN(timeToReady);
+  }
+
+  public boolean isBackgroundDone() {
+    return backgroundDone;
+  }
+
+  /**
+   * Seconds from the start of the program until ready, or NaN while not ready.
+   */
+  public double getTimeToReady() {
+    return timeToReady;
+  }
+
+  public double getBackgroundSeconds() {
+    return backgroundSeconds;
+  }
+
+  public int getWarmupIterations() {
+    return iterations;
+  }
+}
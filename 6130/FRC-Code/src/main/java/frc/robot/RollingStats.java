@@ -0,0 +1,120 @@
+package frc.robot;
+
+/**
+ * Mean, RMS and peak of a value, like a motor current, over the last few
+ * seconds.
+ *
+ * <p>Every sample counts for the time it was held, the time since the
+ * sample before, so the window is a time and not a number of samples. A
+ * sample held for no time, like a second one in the same loop, only counts
+ * for the latest and the peak, it does not push older samples out. The
+ * samples sit in a ring and the weighted sum and sum of squares are kept up
+ * to date as samples come and go, so adding one and reading the results
+ * costs the same no matter how long the window is. If samples come so fast
+ * that the ring fills up, the oldest ones are dropped before they leave the
+ * window. The peak is the largest sample since the last reset, not just in
+ * the window.
+ */
+public class RollingStats {
+  private final double windowSeconds;
+  private final double[] samples;
+  private final double[] durations;
+  private int oldest;
+  private int count;
+  private double seconds;
+  private double sum;
+  private double sumOfSquares;
+  private double peak;
+  private double latest;
+
+  /**
+   * Create the statistics.
+   *
+   * @param windowSeconds how far back the mean and RMS go
+   * @param capacity most samples kept, at least the loops in the window
+   */
+  public RollingStats(double windowSeconds, int capacity) {
+    this.windowSeconds = windowSeconds;
+    samples = new double[capacity];
+    durations = new double[capacity];
+  }
+
+  /**
+   * Add a sample.
+   *
+   * @param value the sample
+   * @param heldSeconds how long the value was held, the time since the sample before
+   */
+  public void add(double value, double heldSeconds) {
+    peak = Math.max(peak, value);
+    latest = value;
+    if (heldSeconds <= 0) {
+      return;
+    }
+    if (count == samples.length) {
+      removeOldest();
+    }
+    int next = (oldest + count) % samples.length;
+    samples[next] = value;
+    durations[next] = heldSeconds;
+    count++;
+    seconds += heldSeconds;
+    sum += value * heldSeconds;
+    sumOfSquares += value * value * heldSeconds;
+    // Drop the samples the window no longer reaches, the newest one always stays
+    while (count > 1 && seconds - durations[oldest] >= windowSeconds) {
+      removeOldest();
+    }
+  }
+
+  private void removeOldest() {
+    double value = samples[oldest];
+    double held = durations[oldest];
+    seconds -= held;
+    sum -= value * held;
+    sumOfSquares -= value * value * held;
+    oldest = (oldest + 1) % samples.length;
+    count--;
+  }
+
+  public double getMean() {
+    return seconds <= 0 ? 0 : sum / seconds;
+  }
+
+  /**
+   * Root mean square over the window, for currents this is what heats the motor.
+   */
+  public double getRms() {
+    // Rounding in the running sum can leave it a hair under zero
+    return seconds <= 0 ? 0 : Math.sqrt(Math.max(sumOfSquares, 0) / seconds);
+  }
+
+  public double getPeak() {
+    return peak;
+  }
+
+  public double getLatest() {
+    return latest;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * The time the samples in the window were held, at most a sample longer than the window.
+   */
+  public double getSeconds() {
+    return seconds;
+  }
+
+  public void reset() {
+    oldest = 0;
+    count = 0;
+    seconds = 0;
+    sum = 0;
+    sumOfSquares = 0;
+    peak = 0;
+    latest = 0;
+  }
+}
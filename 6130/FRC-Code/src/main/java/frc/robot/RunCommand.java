@@ -0,0 +1,18 @@
+package frc.robot;
+
+/**
+ * Command that runs an action every loop until it is cancelled.
+ */
+public class RunCommand extends Command {
+  private final Runnable action;
+
+  public RunCommand(Runnable action, Subsystem... requirements) {
+    super(requirements);
+    this.action = action;
+  }
+
+  @Override
+  protected void execute() {
+    action.run();
+  }
+}
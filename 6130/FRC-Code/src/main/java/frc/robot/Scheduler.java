@@ -0,0 +1,162 @@
+package frc.robot;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Runs commands on subsystems from the periodic loop.
+ *
+ * <p>Each call to run does the same steps in the same order: poll the
+ * triggers, start default commands for idle subsystems, execute the running
+ * commands, then let every subsystem write its outputs once, in the order the
+ * subsystems were registered. A subsystem only runs one command at a time;
+ * scheduling a command interrupts whatever was using its subsystems unless
+ * that command is not interruptible. All arrays are sized while the robot
+ * starts, so running the loop does not allocate.
+ */
+public class Scheduler {
+  private final LoopProfiler profiler;
+  private final Command[] running;
+  private int runningCount;
+  private Subsystem[] subsystems = new Subsystem[0];
+  private Trigger[] triggers = new Trigger[0];
+
+  /**
+   * Create the scheduler.
+   *
+   * @param maxRunningCommands how many commands can run at the same time
+   * @param profiler profiler that times the commands and each subsystem
+   */
+  public Scheduler(int maxRunningCommands, LoopProfiler profiler) {
+    this.running = new Command[maxRunningCommands];
+    this.profiler = profiler;
+  }
+
+  /**
+   * Add subsystems. Their outputs are written in the order they are registered.
+   */
+  public void register(Subsystem... newSubsystems) {
+    int start = subsystems.length;
+    subsystems = Arrays.copyOf(subsystems, start + newSubsystems.length);
+    System.arraycopy(newSubsystems, 0, subsystems, start, newSubsystems.length);
+  }
+
+  /**
+   * Create a trigger for the condition and poll it every loop.
+   */
+  public Trigger bind(BooleanSupplier condition) {
+    Trigger trigger = new Trigger(condition);
+    triggers = Arrays.copyOf(triggers, triggers.length + 1);
+    triggers[triggers.length - 1] = trigger;
+    return trigger;
+  }
+
+  /**
+   * Start a command. Returns false if one of its subsystems is used by a
+   * command that can not be interrupted.
+   */
+  public boolean schedule(Command command) {
+    if (command.isScheduled()) {
+      return true;
+    }
+    Subsystem[] requirements = command.getRequirements();
+    for (Subsystem requirement : requirements) {
+      Command current = requirement.getCurrentCommand();
+      if (current != null && !current.isInterruptible()) {
+        return false;
+      }
+    }
+    for (Subsystem requirement : requirements) {
+      Command current = requirement.getCurrentCommand();
+      if (current != null) {
+        remove(current, true);
+      }
+    }
+    if (runningCount == running.length) {
+      DriverStation.reportWarning("Scheduler is full, command not started", false);
+      return false;
+    }
+
+    running[runningCount++] = command;
+    command.setScheduled(true);
+    for (Subsystem requirement : requirements) {
+      requirement.setCurrentCommand(command);
+    }
+    command.initialize();
+    return true;
+  }
+
+  /**
+   * Stop a command if it is running.
+   */
+  public void cancel(Command command) {
+    if (command.isScheduled()) {
+      remove(command, true);
+    }
+  }
+
+  /**
+   * Stop every running command, for example when the robot is disabled.
+   */
+  public void cancelAll() {
+    while (runningCount > 0) {
+      remove(running[runningCount - 1], true);
+    }
+  }
+
+  /**
+   * Run one loop of the scheduler. Call this once from every periodic method.
+   */
+  public void run() {
+    profiler.begin(LoopProfiler.Section.kCommands);
+    for (Trigger trigger : triggers) {
+      trigger.poll(this);
+    }
+    for (Subsystem subsystem : subsystems) {
+      Command defaultCommand = subsystem.getDefaultCommand();
+      if (subsystem.getCurrentCommand() == null && defaultCommand != null) {
+        schedule(defaultCommand);
+      }
+    }
+    int i = 0;
+    while (i < runningCount) {
+      Command command = running[i];
+      command.execute();
+      if (command.isFinished()) {
+        remove(command, false);
+      } else {
+        i++;
+      }
+    }
+    profiler.end(LoopProfiler.Section.kCommands);
+
+    for (Subsystem subsystem : subsystems) {
+      profiler.begin(subsystem.getSection());
+      subsystem.writeOutputs();
+      profiler.end(subsystem.getSection());
+    }
+  }
+
+  private void remove(Command command, boolean interrupted) {
+    int index = 0;
+    while (index < runningCount && running[index] != command) {
+      index++;
+    }
+    if (index == runningCount) {
+      return;
+    }
+    // Shift the rest down so the commands keep running in the order they started
+    System.arraycopy(running, index + 1, running, index, runningCount - index - 1);
+    running[--runningCount] = null;
+
+    command.setScheduled(false);
+    for (Subsystem requirement : command.getRequirements()) {
+      if (requirement.getCurrentCommand() == command) {
+        requirement.setCurrentCommand(null);
+      }
+    }
+    command.end(interrupted);
+  }
+}
@@ -0,0 +1,45 @@
+package frc.robot;
+
+/**
+ * Limits how fast a value may change. Used on the drive outputs so a stick
+ * slammed from full reverse to full forward ramps the motors instead of
+ * pulling a current spike that browns out the robot.
+ */
+public class SlewRateLimiter {
+  private double ratePerSecond;
+  private double value;
+
+  /**
+   * Create the limiter.
+   *
+   * @param ratePerSecond the most the value may change in one second
+   */
+  public SlewRateLimiter(double ratePerSecond) {
+    this.ratePerSecond = ratePerSecond;
+  }
+
+  /**
+   * Move towards the wanted value by at most the rate times the time step.
+   *
+   * @param wanted the value to move towards
+   * @param dtSeconds time since the last call
+   * @return the limited value
+   */
+  public double calculate(double wanted, double dtSeconds) {
+    double maxStep = ratePerSecond * dtSeconds;
+    value += Math.max(-maxStep, Math.min(maxStep, wanted - value));
+    return value;
+  }
+
+  public void setRate(double ratePerSecond) {
+    this.ratePerSecond = ratePerSecond;
+  }
+
+  public double get() {
+    return value;
+  }
+
+  public void reset(double value) {
+    this.value = value;
+  }
+}
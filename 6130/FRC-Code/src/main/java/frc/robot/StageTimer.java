@@ -0,0 +1,45 @@
+package frc.robot;
+
+/**
+ * Running count, total and max of one processing stage's time in nanoseconds.
+ * It has a single writer; other threads may read the values at any time.
+ */
+public class StageTimer {
+  private final String name;
+  private volatile long count;
+  private volatile long totalNanos;
+  private volatile long maxNanos;
+
+  public StageTimer(String name) {
+    this.name = name;
+  }
+
+  public void record(long nanos) {
+    count++;
+    totalNanos += nanos;
+    if (nanos > maxNanos) {
+      maxNanos = nanos;
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public double getAverageMillis() {
+    long samples = count;
+    return samples == 0 ? 0 : totalNanos / 1e6 / samples;
+  }
+
+  public double getMaxMillis() {
+    return maxNanos / 1e6;
+  }
+}
@@ -0,0 +1,26 @@
+package frc.robot;
+
+/**
+ * Command that runs one action when it starts and another when it ends.
+ * Useful for "do this while the button is held" bindings.
+ */
+public class StartEndCommand extends Command {
+  private final Runnable onStart;
+  private final Runnable onEnd;
+
+  public StartEndCommand(Runnable onStart, Runnable onEnd, Subsystem... requirements) {
+    super(requirements);
+    this.onStart = onStart;
+    this.onEnd = onEnd;
+  }
+
+  @Override
+  protected void initialize() {
+    onStart.run();
+  }
+
+  @Override
+  protected void end(boolean interrupted) {
+    onEnd.run();
+  }
+}
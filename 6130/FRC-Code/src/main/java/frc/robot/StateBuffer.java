@@ -0,0 +1,77 @@
+package frc.robot;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands a few numbers, like the wanted wheel speeds, from one thread to
+ * another without locks or allocation. It works like FrameExchange: the
+ * writer fills one array, the reader holds another and the third is the
+ * latest one published. The reader always sees all the values of one
+ * publish together, never half of an old one and half of a new one.
+ *
+ * <p>There must be only one writer thread and one reader thread. The write
+ * array still holds the values of an older publish, so the writer sets
+ * every value before it publishes.
+ */
+public class StateBuffer {
+  private static final int indexMask = 0b11;
+  private static final int freshFlag = 0b100;
+
+  private final double[][] buffers;
+  private final long[] timestamps = new long[3];
+  private final AtomicInteger ready = new AtomicInteger(1);
+  private int writeIndex = 0;
+  private int readIndex = 2;
+  private volatile long published;
+
+  /**
+   * Create the buffer.
+   *
+   * @param size how many values are passed, all start at zero
+   */
+  public StateBuffer(int size) {
+    buffers = new double[3][size];
+  }
+
+  /**
+   * The array the writer fills next. Only call this from the writer thread.
+   */
+  public double[] writeBuffer() {
+    return buffers[writeIndex];
+  }
+
+  /**
+   * Make the write array the latest values. Only call this from the writer thread.
+   */
+  public void publish() {
+    timestamps[writeIndex] = System.nanoTime();
+    int previous = ready.getAndSet(writeIndex | freshFlag);
+    writeIndex = previous & indexMask;
+    published++;
+  }
+
+  /**
+   * The latest values. If nothing was published since the last call the
+   * same array is returned again. The array stays valid until the next
+   * call. Only call this from the reader thread.
+   */
+  public double[] read() {
+    if ((ready.get() & freshFlag) != 0) {
+      int previous = ready.getAndSet(readIndex);
+      readIndex = previous & indexMask;
+    }
+    return buffers[readIndex];
+  }
+
+  /**
+   * System.nanoTime of the publish of the array last returned by read, zero
+   * before the first publish.
+   */
+  public long latestTimestamp() {
+    return timestamps[readIndex];
+  }
+
+  public long getPublishedCount() {
+    return published;
+  }
+}
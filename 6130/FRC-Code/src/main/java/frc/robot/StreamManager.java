@@ -0,0 +1,251 @@
+package frc.robot;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.cscore.CvSource;
+import edu.wpi.cscore.MjpegServer;
+import edu.wpi.cscore.VideoMode;
+import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Keeps a driver camera stream inside a bandwidth budget.
+ *
+ * <p>The stream steps through a ladder of quality levels, each a resolution,
+ * frame rate and JPEG quality for the MJPEG server. Once per second one sent
+ * frame is JPEG encoded here at the current level to measure its size, and
+ * with the frame rate that was actually sent that gives the bitrate. Over
+ * budget the stream drops a level right away; it only goes back up after a
+ * few seconds well under budget, so it does not flip between two levels.
+ * Frames are not sent at all while no client is watching the stream.
+ *
+ * <p>The achieved bitrate and frame rate are put on NetworkTables under
+ * CameraStream/name.
+ */
+public class StreamManager {
+  // Width, height, frames per second and JPEG quality of each level, best first
+  private static final int[][] levels = {
+      {320, 240, 30, 60},
+      {320, 240, 20, 45},
+      {240, 180, 20, 40},
+      {160, 120, 15, 35},
+      {160, 120, 10, 25},
+  };
+  private static final long measurePeriodNanos = 1_000_000_000L;
+  // Go up a level only after this many measurements under this part of the budget
+  private static final double stepUpFraction = 0.5;
+  private static final int stepUpMeasurements = 3;
+
+  private final CvSource source;
+  private final MjpegServer server;
+  private final Mat sample = new Mat();
+  private final MatOfByte encoded = new MatOfByte();
+  private final MatOfInt encodeParams = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 0);
+  private final Size sampleSize = new Size();
+  private final NetworkTableEntry mbpsEntry;
+  private final NetworkTableEntry fpsEntry;
+  private final NetworkTableEntry levelEntry;
+  private final NetworkTableEntry skippedEntry;
+  private volatile double budgetMbps;
+  private volatile int level = -1;
+  private int underBudgetCount;
+  private double frameCredit;
+  private long lastFrameNanos;
+  private long measureStartNanos;
+  private int framesSinceMeasure;
+  private boolean sampleNext = true;
+  private double bytesPerFrame;
+  private volatile double achievedMbps;
+  private volatile double achievedFps;
+  private volatile long framesSent;
+  private volatile long framesSkipped;
+
+  /**
+   * Create the manager.
+   *
+   * @param source the source the frames are put on
+   * @param server the MJPEG server that streams the source
+   * @param budgetMbps the most this stream may use, in megabits per second
+   */
+  public StreamManager(CvSource source, MjpegServer server, double budgetMbps) {
+    this.source = source;
+    this.server = server;
+    this.budgetMbps = budgetMbps;
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("CameraStream").getSubTable(source.getName());
+    mbpsEntry = table.getEntry("Mbps");
+    fpsEntry = table.getEntry("FPS");
+    levelEntry = table.getEntry("Level");
+    skippedEntry = table.getEntry("Skipped");
+    setLevel(0);
+  }
+
+  /**
+   * Create a stream with its own MJPEG server and add it to CameraServer, so
+   * the dashboards find it like a camera.
+   *
+   * @param name name of the stream on the dashboard
+   * @param width width of the frames that are put on it
+   * @param height height of the frames that are put on it
+   * @param fps frame rate of the frames that are put on it
+   * @param budgetMbps the most this stream may use, in megabits per second
+   */
+  public static StreamManager create(String name, int width, int height, int fps, double budgetMbps) {
+    CvSource source = new CvSource(name, VideoMode.PixelFormat.kMJPEG, width, height, fps);
+    CameraServer.getInstance().addCamera(source);
+    MjpegServer server = CameraServer.getInstance().addServer("serve_" + name);
+    server.setSource(source);
+    return new StreamManager(source, server, budgetMbps);
+  }
+
+  /**
+   * Offer a frame to the stream. It is only sent if someone is watching and
+   * the frame rate of the current level allows it. Several cameras may share
+   * the stream, so this is synchronized; only one of them offers frames at a
+   * time, so the lock is almost never contended.
+   */
+  public void putFrame(Mat frame) {
+    putFrame(frame, System.nanoTime());
+  }
+
+  // The time is given by the tests, so they can stream whole seconds without waiting for them
+  synchronized void putFrame(Mat frame, long now) {
+    if (measureStartNanos == 0) {
+      measureStartNanos = now;
+      lastFrameNanos = now;
+    }
+    if (now - measureStartNanos >= measurePeriodNanos) {
+      measure(now);
+    }
+
+    if (!source.isEnabled()) {
+      // Nobody is connected, do not spend the CPU on a frame nobody gets
+      framesSkipped++;
+      lastFrameNanos = now;
+      return;
+    }
+
+    // Earn a frame every 1 / fps seconds, a little credit is kept so jitter does not cost frames
+    frameCredit = Math.min(2, frameCredit + (now - lastFrameNanos) * 1e-9 * levels[level][2]);
+    lastFrameNanos = now;
+    if (frameCredit < 1) {
+      return;
+    }
+    frameCredit -= 1;
+
+    source.putFrame(frame);
+    framesSent++;
+    framesSinceMeasure++;
+    if (sampleNext) {
+      sampleNext = false;
+      sampleFrameSize(frame);
+    }
+  }
+
+  public void notifyError(String message) {
+    source.notifyError(message);
+  }
+
+  // Encode the frame like the server would to see how big the frames of this level are
+  private void sampleFrameSize(Mat frame) {
+    int[] current = levels[level];
+    Mat scaled = frame;
+    if (frame.cols() != current[0] || frame.rows() != current[1]) {
+      sampleSize.width = current[0];
+      sampleSize.height = current[1];
+      Imgproc.resize(frame, sample, sampleSize, 0, 0, Imgproc.INTER_AREA);
+      scaled = sample;
+    }
+    if (Imgcodecs.imencode(".jpg", scaled, encoded, encodeParams)) {
+      bytesPerFrame = encoded.total();
+    }
+  }
+
+  private void measure(long now) {
+    double seconds = (now - measureStartNanos) * 1e-9;
+    achievedFps = framesSinceMeasure / seconds;
+    achievedMbps = bytesPerFrame * 8 * achievedFps / 1e6;
+    measureStartNanos = now;
+    framesSinceMeasure = 0;
+    sampleNext = true;
+
+    if (achievedFps > 0) {
+      adapt();
+    }
+    mbpsEntry.setDouble(achievedMbps);
+    fpsEntry.setDouble(achievedFps);
+    levelEntry.setDouble(level);
+    skippedEntry.setDouble(framesSkipped);
+  }
+
+  private void adapt() {
+    double budget = budgetMbps;
+    if (achievedMbps > budget && level < levels.length - 1) {
+      underBudgetCount = 0;
+      setLevel(level + 1);
+    } else if (achievedMbps < budget * stepUpFraction && level > 0) {
+      underBudgetCount++;
+      if (underBudgetCount >= stepUpMeasurements) {
+        underBudgetCount = 0;
+        setLevel(level - 1);
+      }
+    } else {
+      underBudgetCount = 0;
+    }
+  }
+
+  private void setLevel(int newLevel) {
+    level = newLevel;
+    int[] current = levels[level];
+    server.setResolution(current[0], current[1]);
+    server.setFPS(current[2]);
+    server.setCompression(current[3]);
+    encodeParams.fromArray(Imgcodecs.IMWRITE_JPEG_QUALITY, current[3]);
+  }
+
+  /**
+   * Change the budget, for example when the field network is busier than expected.
+   */
+  public void setBudgetMbps(double budgetMbps) {
+    this.budgetMbps = budgetMbps;
+  }
+
+  public double getBudgetMbps() {
+    return budgetMbps;
+  }
+
+  /**
+   * Bitrate of the last second, from the sampled JPEG size and the frames sent.
+   */
+  public double getAchievedMbps() {
+    return achievedMbps;
+  }
+
+  public double getAchievedFps() {
+    return achievedFps;
+  }
+
+  /**
+   * The current quality level, 0 is the best.
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  public long getFramesSent() {
+    return framesSent;
+  }
+
+  /**
+   * Frames that were not sent because nobody was watching.
+   */
+  public long getFramesSkipped() {
+    return framesSkipped;
+  }
+}
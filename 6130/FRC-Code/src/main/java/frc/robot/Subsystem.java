@@ -0,0 +1,54 @@
+package frc.robot;
+
+/**
+ * A part of the robot that owns some outputs, like the drive train or the
+ * hatch hand.
+ *
+ * <p>Commands only change what a subsystem wants its outputs to be. The
+ * scheduler then calls writeOutputs once per loop, so every motor, solenoid
+ * and compressor is written at most once per cycle no matter how many
+ * commands touched it.
+ */
+public abstract class Subsystem {
+  private final String name;
+  private final LoopProfiler.Section section;
+  private Command currentCommand;
+  private Command defaultCommand;
+
+  protected Subsystem(String name, LoopProfiler.Section section) {
+    this.name = name;
+    this.section = section;
+  }
+
+  /**
+   * Write the wanted values to the hardware. Called once per loop by the scheduler.
+   */
+  protected abstract void writeOutputs();
+
+  public String getName() {
+    return name;
+  }
+
+  public LoopProfiler.Section getSection() {
+    return section;
+  }
+
+  /**
+   * Set the command that runs whenever no other command needs this subsystem.
+   */
+  public void setDefaultCommand(Command command) {
+    defaultCommand = command;
+  }
+
+  public Command getDefaultCommand() {
+    return defaultCommand;
+  }
+
+  public Command getCurrentCommand() {
+    return currentCommand;
+  }
+
+  void setCurrentCommand(Command command) {
+    currentCommand = command;
+  }
+}
@@ -0,0 +1,118 @@
+package frc.robot;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Stand-in for a camera CvSink so the vision code can run on the desktop.
+ * It either plays back a list of image files in a loop or draws a moving
+ * bar on a plain background. Frames are handed out at the given frame rate.
+ * A latency can be set to make the frames look older than they are, like
+ * the frames of a real camera.
+ */
+public class SyntheticFrameSource implements FrameSource {
+  private final Mat[] frames;
+  private final Mat pattern;
+  private final Scalar background = new Scalar(40, 40, 40);
+  private final Scalar bar = new Scalar(60, 255, 60);
+  private final Point barTopLeft = new Point();
+  private final Point barBottomRight = new Point();
+  private final long framePeriodNanos;
+  private long nextFrameNanos;
+  private long frameCount;
+  private long latencyMicros;
+  private String error = "";
+
+  /**
+   * Create a source that draws a moving bar on a frame of the given size.
+   */
+  public SyntheticFrameSource(int width, int height, int fps) {
+    this.frames = null;
+    this.pattern = new Mat(height, width, CvType.CV_8UC3);
+    this.framePeriodNanos = 1_000_000_000L / fps;
+  }
+
+  /**
+   * Create a source that plays back image files in a loop.
+   */
+  public SyntheticFrameSource(int fps, String... imagePaths) {
+    this.frames = new Mat[imagePaths.length];
+    for (int i = 0; i < imagePaths.length; i++) {
+      frames[i] = Imgcodecs.imread(imagePaths[i]);
+      if (frames[i] == null || frames[i].empty()) {
+        throw new IllegalArgumentException("Cannot read image " + imagePaths[i]);
+      }
+    }
+    this.pattern = null;
+    this.framePeriodNanos = 1_000_000_000L / fps;
+  }
+
+  @Override
+  public long grabFrame(Mat image, double timeoutSeconds) {
+    long now = System.nanoTime();
+    if (nextFrameNanos == 0) {
+      nextFrameNanos = now;
+    }
+    long waitNanos = nextFrameNanos - now;
+    if (waitNanos > (long) (timeoutSeconds * 1e9)) {
+      error = "timed out";
+      return 0;
+    }
+    if (waitNanos > 0) {
+      try {
+        Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        error = "interrupted";
+        return 0;
+      }
+    }
+    nextFrameNanos += framePeriodNanos;
+
+    if (frames != null) {
+      frames[(int) (frameCount % frames.length)].copyTo(image);
+    } else {
+      drawPattern();
+      pattern.copyTo(image);
+    }
+    frameCount++;
+    return RobotController.getFPGATime() - latencyMicros;
+  }
+
+  /**
+   * Stamp every frame this much earlier than it is handed out.
+   */
+  public void setLatency(double seconds) {
+    latencyMicros = (long) (seconds * 1e6);
+  }
+
+  @Override
+  public String getError() {
+    return error;
+  }
+
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  // Move a bright bar across the frame so every frame is different
+  private void drawPattern() {
+    int width = pattern.cols();
+    int height = pattern.rows();
+    int barWidth = Math.max(1, width / 10);
+    int x = (int) ((frameCount * 4) % Math.max(1, width - barWidth));
+    pattern.setTo(background);
+    barTopLeft.x = x;
+    barTopLeft.y = height / 4;
+    barBottomRight.x = x + barWidth;
+    barBottomRight.y = height * 3 / 4;
+    Imgproc.rectangle(pattern, barTopLeft, barBottomRight, bar, Core.FILLED);
+  }
+}
@@ -0,0 +1,325 @@
+package frc.robot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * Finds the 2019 vision target, two strips of retro reflective tape leaning
+ * towards each other, in a BGR frame lit by the green ring light.
+ *
+ * <p>The frame is thresholded in HSV, the outer contours are filtered by
+ * size, fill and shape, and neighbouring strips that lean like "/ \" are
+ * paired. Once a target is found only a window around it is searched in the
+ * next frame, which is a fraction of the pixels; if the target is not in the
+ * window the whole frame is searched again.
+ *
+ * <p>The HSV and mask Mats and the strips are allocated once. The Java
+ * binding of findContours can not reuse Mats: it makes a new MatOfPoint for
+ * every contour, and minAreaRect a new RotatedRect. The contours are
+ * released as soon as the strip is measured. A found target is a new
+ * VisionTarget, it is immutable so the robot loop can keep the one it got
+ * while the next frame is processed.
+ *
+ * <p>Every result is put on NetworkTables as one double array, so a reader
+ * never sees half of an update: valid (1 or 0), yaw degrees, pitch degrees,
+ * distance meters, skew, capture time microseconds.
+ */
+public class TargetDetector {
+  // Distance between the centers of the two tape strips
+  private static final double stripSeparationMeters = 0.2815;
+
+  // Filters for a single strip, the tape is 2 by 5.5 inches
+  private static final double minStripArea = 12;
+  private static final double minStripFill = 0.6;
+  private static final double minStripAspect = 1.6;
+  private static final double maxStripAspect = 5;
+  private static final int maxStrips = 16;
+
+  // HSV range of the green ring light on the tape, OpenCV hue goes from 0 to 180
+  private static final Scalar hsvLow = new Scalar(55, 100, 80);
+  private static final Scalar hsvHigh = new Scalar(95, 255, 255);
+
+  private final int width;
+  private final int height;
+  private final double focalLengthPixels;
+  private final NetworkTableEntry output;
+  private final double[] published = new double[6];
+  private final StageTimer detectTimer = new StageTimer("detect");
+
+  private final Mat hsv;
+  private final Mat mask;
+  private final Mat hierarchy = new Mat();
+  private final MatOfPoint2f points = new MatOfPoint2f();
+  private final List<MatOfPoint> contours = new ArrayList<>();
+  private final Strip[] strips = new Strip[maxStrips];
+  private final Rect fullFrame;
+  private final Rect roi = new Rect();
+  private final Point roiOffset = new Point();
+  private int stripCount;
+  private boolean locked;
+  private double lastCenterX;
+  private double lastCenterY;
+  private volatile VisionTarget latest = VisionTarget.none;
+  private volatile long roiHits;
+  private volatile long fullSearches;
+
+  // One tape strip, reused between frames
+  private static final class Strip {
+    double centerX;
+    double centerY;
+    double length;
+    double area;
+    boolean leansRight;
+
+    void set(RotatedRect rect, double area) {
+      centerX = rect.center.x;
+      centerY = rect.center.y;
+      this.area = area;
+      double angle = Math.toRadians(rect.angle);
+      // Direction of the long side, turned so it points up in the image
+      double dx;
+      double dy;
+      if (rect.size.width >= rect.size.height) {
+        length = rect.size.width;
+        dx = Math.cos(angle);
+        dy = Math.sin(angle);
+      } else {
+        length = rect.size.height;
+        dx = -Math.sin(angle);
+        dy = Math.cos(angle);
+      }
+      if (dy > 0) {
+        dx = -dx;
+      }
+      leansRight = dx > 0;
+    }
+  }
+
+  /**
+   * Create the detector.
+   *
+   * @param width width of the frames it gets
+   * @param height height of the frames it gets
+   * @param horizontalFovDegrees horizontal field of view of the camera
+   * @param output NetworkTables entry for the results, or null to skip publishing
+   */
+  public TargetDetector(int width, int height, double horizontalFovDegrees, NetworkTableEntry output) {
+    this.width = width;
+    this.height = height;
+    this.focalLengthPixels = width / 2.0 / Math.tan(Math.toRadians(horizontalFovDegrees) / 2);
+    this.output = output;
+    this.hsv = new Mat(height, width, CvType.CV_8UC3);
+    this.mask = new Mat(height, width, CvType.CV_8UC1);
+    this.fullFrame = new Rect(0, 0, width, height);
+    for (int i = 0; i < strips.length; i++) {
+      strips[i] = new Strip();
+    }
+  }
+
+  /**
+   * Look for the target in one frame and publish the result.
+   *
+   * @param frame BGR frame of the size given to the constructor
+   * @param captureTimeMicros capture time of the frame
+   * @return the target, or VisionTarget.none
+   */
+  public VisionTarget process(Mat frame, long captureTimeMicros) {
+    VisionTarget target = null;
+    if (locked) {
+      roiHits++;
+      target = search(frame, roi, captureTimeMicros);
+    }
+    if (target == null) {
+      fullSearches++;
+      target = search(frame, fullFrame, captureTimeMicros);
+    }
+    locked = target != null;
+    if (target == null) {
+      target = VisionTarget.none;
+    }
+    latest = target;
+    publish(target);
+    return target;
+  }
+
+  /**
+   * Take the newest frame from the exchange, if the detector has not seen it
+   * yet, and look for the target in it. Returns false if there was no new
+   * frame. Only one thread at a time may take frames from the exchange.
+   */
+  public boolean processLatest(FrameExchange frames) {
+    Mat frame = frames.takeLatest();
+    if (frame == null) {
+      return false;
+    }
+    long start = System.nanoTime();
+    process(frame, frames.latestTimestamp());
+    detectTimer.record(System.nanoTime() - start);
+    return true;
+  }
+
+  private VisionTarget search(Mat frame, Rect window, long captureTimeMicros) {
+    // The submats are only headers on the same pixels, but they are new objects too
+    Mat frameWindow = frame.submat(window);
+    Mat hsvWindow = hsv.submat(window);
+    Mat maskWindow = mask.submat(window);
+    Imgproc.cvtColor(frameWindow, hsvWindow, Imgproc.COLOR_BGR2HSV);
+    Core.inRange(hsvWindow, hsvLow, hsvHigh, maskWindow);
+    roiOffset.x = window.x;
+    roiOffset.y = window.y;
+    Imgproc.findContours(maskWindow, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE,
+        roiOffset);
+    frameWindow.release();
+    hsvWindow.release();
+    maskWindow.release();
+
+    findStrips();
+    return pairStrips(captureTimeMicros);
+  }
+
+  private void findStrips() {
+    stripCount = 0;
+    for (MatOfPoint contour : contours) {
+      double area = Imgproc.contourArea(contour);
+      if (area >= minStripArea && stripCount < strips.length) {
+        contour.convertTo(points, CvType.CV_32F);
+        RotatedRect rect = Imgproc.minAreaRect(points);
+        double longSide = Math.max(rect.size.width, rect.size.height);
+        double shortSide = Math.max(1, Math.min(rect.size.width, rect.size.height));
+        double aspect = longSide / shortSide;
+        double fill = area / (longSide * shortSide);
+        if (fill >= minStripFill && aspect >= minStripAspect && aspect <= maxStripAspect) {
+          strips[stripCount++].set(rect, area);
+        }
+      }
+      contour.release();
+    }
+    contours.clear();
+
+    // Sort the strips from left to right, there are only a few of them
+    for (int i = 1; i < stripCount; i++) {
+      Strip strip = strips[i];
+      int j = i - 1;
+      while (j >= 0 && strips[j].centerX > strip.centerX) {
+        strips[j + 1] = strips[j];
+        j--;
+      }
+      strips[j + 1] = strip;
+    }
+  }
+
+  private VisionTarget pairStrips(long captureTimeMicros) {
+    int best = -1;
+    double bestScore = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i + 1 < stripCount; i++) {
+      Strip left = strips[i];
+      Strip right = strips[i + 1];
+      if (!left.leansRight || right.leansRight) {
+        continue;
+      }
+      double score;
+      if (locked) {
+        // Stay on the target we had, even if another one is bigger
+        score = -Math.hypot((left.centerX + right.centerX) / 2 - lastCenterX,
+            (left.centerY + right.centerY) / 2 - lastCenterY);
+      } else {
+        score = left.area + right.area;
+      }
+      if (score > bestScore) {
+        bestScore = score;
+        best = i;
+      }
+    }
+    if (best < 0) {
+      return null;
+    }
+
+    Strip left = strips[best];
+    Strip right = strips[best + 1];
+    double centerX = (left.centerX + right.centerX) / 2;
+    double centerY = (left.centerY + right.centerY) / 2;
+    double separation = Math.max(1, right.centerX - left.centerX);
+    lastCenterX = centerX;
+    lastCenterY = centerY;
+    setRoi(left, right);
+
+    double yaw = Math.toDegrees(Math.atan((centerX - width / 2.0) / focalLengthPixels));
+    double pitch = Math.toDegrees(Math.atan((height / 2.0 - centerY) / focalLengthPixels));
+    double distance = stripSeparationMeters * focalLengthPixels / separation;
+    double skew = (left.length - right.length) / (left.length + right.length);
+    return new VisionTarget(true, yaw, pitch, distance, skew, captureTimeMicros);
+  }
+
+  // Search a window as big again as the target on every side in the next frame
+  private void setRoi(Strip left, Strip right) {
+    double reach = Math.max(left.length, right.length);
+    double minX = left.centerX - reach;
+    double maxX = right.centerX + reach;
+    double minY = Math.min(left.centerY, right.centerY) - reach;
+    double maxY = Math.max(left.centerY, right.centerY) + reach;
+    double marginX = maxX - minX;
+    double marginY = maxY - minY;
+    int x0 = (int) Math.max(0, minX - marginX / 2);
+    int y0 = (int) Math.max(0, minY - marginY / 2);
+    int x1 = (int) Math.min(width, maxX + marginX / 2);
+    int y1 = (int) Math.min(height, maxY + marginY / 2);
+    roi.x = x0;
+    roi.y = y0;
+    roi.width = Math.max(1, x1 - x0);
+    roi.height = Math.max(1, y1 - y0);
+  }
+
+  private void publish(VisionTarget target) {
+    if (output == null) {
+      return;
+    }
+    published[0] = target.isValid() ? 1 : 0;
+    published[1] = target.getYawDegrees();
+    published[2] = target.getPitchDegrees();
+    published[3] = target.getDistanceMeters();
+    published[4] = target.getSkew();
+    published[5] = target.getCaptureTimeMicros();
+    output.setDoubleArray(published);
+  }
+
+  /**
+   * The result of the last processed frame. Safe to call from any thread.
+   */
+  public VisionTarget getLatest() {
+    return latest;
+  }
+
+  /**
+   * Time processLatest spent on each frame.
+   */
+  public StageTimer getDetectTimer() {
+    return detectTimer;
+  }
+
+  /**
+   * How many frames were searched in the window around the last target.
+   */
+  public long getRoiHits() {
+    return roiHits;
+  }
+
+  /**
+   * How many frames had to be searched in full.
+   */
+  public long getFullSearches() {
+    return fullSearches;
+  }
+}
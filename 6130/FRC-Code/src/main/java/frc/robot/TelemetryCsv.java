@@ -0,0 +1,48 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Turns a telemetry log written by TelemetryLogger into CSV, oldest record
+ * first. Run it on a desktop with the log file and an optional output file;
+ * without an output file the CSV goes to the console.
+ */
+public final class TelemetryCsv {
+  private TelemetryCsv() {
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: TelemetryCsv <telemetry.bin> [output.csv]");
+      System.exit(1);
+    }
+    try (PrintWriter out = args.length > 1 ? new PrintWriter(args[1], "UTF-8")
+        : new PrintWriter(System.out)) {
+      convert(new File(args[0]), out);
+    }
+  }
+
+  /**
+   * Write the log as CSV. The first column is the FPGA time in seconds.
+   */
+  public static void convert(File log, PrintWriter out) throws IOException {
+    try (TelemetryLogReader reader = new TelemetryLogReader(log)) {
+      StringBuilder line = new StringBuilder("time");
+      for (int column = 0; column < reader.getColumnCount(); column++) {
+        line.append(',').append(reader.getColumnName(column));
+      }
+      out.println(line);
+
+      for (long record = 0; record < reader.getRecordCount(); record++) {
+        line.setLength(0);
+        line.append(reader.getTime(record));
+        for (int column = 0; column < reader.getColumnCount(); column++) {
+          line.append(',').append(reader.get(record, column));
+        }
+        out.println(line);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a telemetry log written by TelemetryLogger. Records are numbered
+ * from 0 for the oldest one still in the ring.
+ */
+public class TelemetryLogReader implements AutoCloseable {
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final String[] columnNames;
+  private final int capacity;
+  private final int headerSize;
+  private final int recordSize;
+  private final long firstRecord;
+  private final long recordCount;
+
+  public TelemetryLogReader(File log) throws IOException {
+    channel = FileChannel.open(log.toPath(), StandardOpenOption.READ);
+    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    if (buffer.getInt(0) != TelemetryLogger.magic) {
+      channel.close();
+      throw new IOException(log + " is not a telemetry log");
+    }
+    if (buffer.getInt(4) != TelemetryLogger.version) {
+      channel.close();
+      throw new IOException(log + " has unknown version " + buffer.getInt(4));
+    }
+    int columnCount = buffer.getInt(8);
+    capacity = buffer.getInt(12);
+    long recordsWritten = buffer.getLong(TelemetryLogger.recordsWrittenOffset);
+    headerSize = buffer.getInt(TelemetryLogger.headerSizeOffset);
+    recordSize = 8 * (columnCount + 1);
+
+    columnNames = new String[columnCount];
+    buffer.position(TelemetryLogger.namesOffset);
+    for (int i = 0; i < columnCount; i++) {
+      byte[] name = new byte[buffer.getShort()];
+      buffer.get(name);
+      columnNames[i] = new String(name, StandardCharsets.UTF_8);
+    }
+
+    // Once the ring wrapped the oldest record is the one after the newest
+    recordCount = Math.min(recordsWritten, capacity);
+    firstRecord = recordsWritten - recordCount;
+  }
+
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+
+  /**
+   * Index of the column with this name, or -1 if there is none.
+   */
+  public int findColumn(String name) {
+    for (int i = 0; i < columnNames.length; i++) {
+      if (columnNames[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * FPGA time of the record in seconds.
+   */
+  public double getTime(long record) {
+    return buffer.getDouble(offsetOf(record));
+  }
+
+  public double get(long record, int column) {
+    return buffer.getDouble(offsetOf(record) + 8 * (column + 1));
+  }
+
+  private int offsetOf(long record) {
+    if (record < 0 || record >= recordCount) {
+      throw new IndexOutOfBoundsException("Record " + record + " of " + recordCount);
+    }
+    return headerSize + (int) ((firstRecord + record) % capacity) * recordSize;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,323 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Compressor;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.SpeedController;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Records the inputs and outputs of every loop into a binary ring file so a
+ * match can be looked at or replayed afterwards.
+ *
+ * <p>Columns are added while the robot starts, then start creates the file.
+ * Every record is the FPGA time followed by one double per column, written
+ * straight into a memory mapped file. Once the ring is full the oldest
+ * records are overwritten. The loop thread never allocates or waits on the
+ * disk here; a background thread asks the OS to write the mapped pages out
+ * once per second.
+ *
+ * <p>File layout, all numbers big endian: int magic, int version, int column
+ * count, int capacity in records, long records written, int header size, then
+ * the column names as length prefixed UTF-8 strings. The records start at the
+ * header size. Use TelemetryCsv to turn a file into CSV.
+ *
+ * <p>Every start makes a new file, so before it does, the oldest log files
+ * in the folder are deleted until only the newest ones are left. That way a
+ * season of restarts can not fill the disk of the roboRIO.
+ */
+public class TelemetryLogger {
+  static final int magic = 0x36313330;
+  static final int version = 1;
+  static final int recordsWrittenOffset = 16;
+  static final int headerSizeOffset = 24;
+  static final int namesOffset = 28;
+  static final String filePrefix = "telemetry-";
+  static final String fileSuffix = ".bin";
+  static final int pdpChannels = 16;
+  // Values of the "robot.mode" column
+  static final int autonomousMode = 1;
+  static final int teleopMode = 2;
+
+  private final File directory;
+  private final int capacity;
+  private final int maxFiles;
+  private final List<String> names = new ArrayList<>();
+  private final List<DoubleSupplier> suppliers = new ArrayList<>();
+  private DoubleSupplier[] columns;
+  private MappedByteBuffer buffer;
+  private FileChannel channel;
+  private Thread flusher;
+  private File file;
+  private int headerSize;
+  private int recordSize;
+  private long recordsWritten;
+
+  /**
+   * Create the logger.
+   *
+   * @param directory where to put the log files
+   * @param capacity how many records the ring holds before it overwrites the oldest
+   * @param maxFiles how many log files are kept in the folder, counting the new one
+   */
+  public TelemetryLogger(File directory, int capacity, int maxFiles) {
+    this.directory = directory;
+    this.capacity = capacity;
+    this.maxFiles = maxFiles;
+  }
+
+  /**
+   * The folder for log files: /home/lvuser/telemetry on the robot, the temp folder on a desktop.
+   */
+  public static File defaultDirectory() {
+    if (RobotBase.isReal()) {
+      return new File("/home/lvuser/telemetry");
+    }
+    return new File(System.getProperty("java.io.tmpdir"), "telemetry");
+  }
+
+  public void addColumn(String name, DoubleSupplier value) {
+    if (buffer != null) {
+      throw new IllegalStateException("Columns must be added before the logger starts");
+    }
+    names.add(name);
+    suppliers.add(value);
+  }
+
+  /**
+   * Add the axes, buttons and first POV of a controller. The columns are
+   * named after the driver station port, like "joystick0.axis1".
+   */
+  public void addControllerColumns(InputSnapshot inputs, int controller, int axisCount) {
+    String prefix = "joystick" + inputs.getPort(controller) + ".";
+    for (int axis = 0; axis < axisCount; axis++) {
+      int axisIndex = axis;
+      addColumn(prefix + "axis" + axis, () -> inputs.getAxis(controller, axisIndex));
+    }
+    addColumn(prefix + "buttons", () -> inputs.getButtons(controller));
+    addColumn(prefix + "pov0", () -> inputs.getPOV(controller, 0));
+  }
+
+  /**
+   * Add the speed last sent to a motor controller, named like "pwm.4".
+   */
+  public void addPwmColumn(int channel, SpeedController motor) {
+    addColumn("pwm." + channel, motor::get);
+  }
+
+  /**
+   * Add a digital input as 1 or 0, named like "dio.2".
+   */
+  public void addDioColumn(int channel, DigitalInput input) {
+    addColumn("dio." + channel, () -> input.get() ? 1 : 0);
+  }
+
+  /**
+   * Add a double solenoid as 0 for off, 1 for forward and 2 for reverse, named like "solenoid.0.1".
+   */
+  public void addSolenoidColumn(int forwardChannel, int reverseChannel, DoubleSolenoid solenoid) {
+    addColumn("solenoid." + forwardChannel + "." + reverseChannel, () -> solenoid.get().ordinal());
+  }
+
+  /**
+   * Add the current of every PDP channel, named like "pdp.4". The total
+   * current of the PDP is the sum of these.
+   */
+  public void addPdpColumns(PowerDistributionPanel pdp) {
+    for (int channel = 0; channel < pdpChannels; channel++) {
+      int pdpChannel = channel;
+      addColumn("pdp." + channel, () -> pdp.getCurrent(pdpChannel));
+    }
+  }
+
+  /**
+   * Add whether the loop ran in the sandstorm or in teleop, named "robot.mode".
+   */
+  public void addModeColumn() {
+    DriverStation driverStation = DriverStation.getInstance();
+    addColumn("robot.mode", () -> driverStation.isAutonomous() ? autonomousMode : teleopMode);
+  }
+
+  /**
+   * Add the battery voltage the roboRIO measures, named "battery.voltage".
+   */
+  public void addBatteryColumn() {
+    addColumn("battery.voltage", RobotController::getBatteryVoltage);
+  }
+
+  /**
+   * Add the pressure switch of a PCM as 1 while the pressure is low and the
+   * compressor current, named like "pcm.0.pressureSwitch" and "pcm.0.current".
+   */
+  public void addCompressorColumns(int module, Compressor compressor) {
+    addColumn("pcm." + module + ".pressureSwitch", () -> compressor.getPressureSwitchValue() ? 1 : 0);
+    addColumn("pcm." + module + ".current", compressor::getCompressorCurrent);
+  }
+
+  /**
+   * Create the log file and start the flusher. If the file can not be
+   * created the error is reported and the logger does nothing.
+   */
+  public void start() {
+    columns = suppliers.toArray(new DoubleSupplier[0]);
+    recordSize = 8 * (columns.length + 1);
+
+    byte[][] encodedNames = new byte[names.size()][];
+    int namesSize = 0;
+    for (int i = 0; i < encodedNames.length; i++) {
+      encodedNames[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+      namesSize += 2 + encodedNames[i].length;
+    }
+    // Keep the records 8 byte aligned
+    headerSize = (namesOffset + namesSize + 7) & ~7;
+
+    try {
+      directory.mkdirs();
+      deleteOldFiles(maxFiles - 1);
+      file = new File(directory, filePrefix + System.currentTimeMillis() + fileSuffix);
+      channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      long size = headerSize + (long) recordSize * capacity;
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+      mapped.putInt(0, magic);
+      mapped.putInt(4, version);
+      mapped.putInt(8, columns.length);
+      mapped.putInt(12, capacity);
+      mapped.putLong(recordsWrittenOffset, 0);
+      mapped.putInt(headerSizeOffset, headerSize);
+      mapped.position(namesOffset);
+      for (byte[] name : encodedNames) {
+        mapped.putShort((short) name.length);
+        mapped.put(name);
+      }
+
+      // Touch every page now so the loop does not take the page faults later
+      for (long offset = headerSize; offset < size; offset += 4096) {
+        mapped.put((int) offset, (byte) 0);
+      }
+      buffer = mapped;
+    } catch (IOException e) {
+      DriverStation.reportError("Could not create telemetry log: " + e.getMessage(), false);
+      return;
+    }
+
+    flusher = new Thread(this::flushLoop, "Telemetry Flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Write one record with the current value of every column. Call this once per loop.
+   */
+  public void record() {
+    MappedByteBuffer out = buffer;
+    if (out == null) {
+      return;
+    }
+    writeNext(out);
+    recordsWritten++;
+    out.putLong(recordsWrittenOffset, recordsWritten);
+  }
+
+  /**
+   * Run the same code as record without keeping the record, so the JIT
+   * compiles it before the match. The next record overwrites it. Once the
+   * ring wrapped this does nothing, the slot would be the oldest record.
+   */
+  public void warmUp() {
+    MappedByteBuffer out = buffer;
+    if (out != null && recordsWritten < capacity) {
+      writeNext(out);
+    }
+  }
+
+  private void writeNext(MappedByteBuffer out) {
+    int offset = headerSize + (int) (recordsWritten % capacity) * recordSize;
+    out.putDouble(offset, Timer.getFPGATimestamp());
+    for (int i = 0; i < columns.length; i++) {
+      offset += 8;
+      out.putDouble(offset, columns[i].getAsDouble());
+    }
+  }
+
+  /**
+   * Delete the oldest log files until at most keep are left. The names hold
+   * the time the file was made, so the oldest ones sort first. Other files
+   * in the folder are left alone.
+   */
+  void deleteOldFiles(int keep) {
+    File[] files = directory.listFiles((dir, name) -> name.startsWith(filePrefix) && name.endsWith(fileSuffix));
+    if (files == null || files.length <= keep) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(TelemetryLogger::createdMillis));
+    for (int i = 0; i < files.length - Math.max(keep, 0); i++) {
+      if (!files[i].delete()) {
+        DriverStation.reportWarning("Could not delete old telemetry log " + files[i], false);
+      }
+    }
+  }
+
+  private static long createdMillis(File logFile) {
+    String name = logFile.getName();
+    try {
+      return Long.parseLong(name.substring(filePrefix.length(), name.length() - fileSuffix.length()));
+    } catch (NumberFormatException e) {
+      return logFile.lastModified();
+    }
+  }
+
+  private void flushLoop() {
+    MappedByteBuffer mapped = buffer;
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      mapped.force();
+    }
+  }
+
+  /**
+   * Stop the flusher and write everything out.
+   */
+  public void close() {
+    if (buffer == null) {
+      return;
+    }
+    flusher.interrupt();
+    buffer.force();
+    buffer = null;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      DriverStation.reportError("Could not close telemetry log: " + e.getMessage(), false);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public long getRecordsWritten() {
+    return recordsWritten;
+  }
+}
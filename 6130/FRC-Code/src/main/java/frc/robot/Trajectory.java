@@ -0,0 +1,136 @@
+package frc.robot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A drive path with its speeds, worked out ahead of time by
+ * TrajectoryGenerator and read from a memory mapped file.
+ *
+ * <p>The samples are evenly spaced in time, so looking one up is an index
+ * and an interpolation, without a search or any allocation. The result is
+ * read with the getSampled methods. The pose uses the same axes as the pose
+ * estimator: x forward, y to the right and the heading going up when the
+ * robot turns right.
+ *
+ * <p>File layout, all numbers big endian: int magic, int version, int sample
+ * count, float seconds between samples, then per sample the floats x and y
+ * in meters, heading in radians, speed in meters per second and curvature
+ * in radians per meter.
+ */
+public class Trajectory {
+  static final int magic = 0x5452414A;
+  static final int version = 1;
+  static final int headerSize = 16;
+  static final int sampleSize = 20;
+
+  private final MappedByteBuffer buffer;
+  private final int sampleCount;
+  private final double step;
+  private final double duration;
+  private double sampledX;
+  private double sampledY;
+  private double sampledHeading;
+  private double sampledVelocity;
+  private double sampledCurvature;
+
+  /**
+   * Map a trajectory file. Every page is read in here, so following the path
+   * does not take page faults later.
+   */
+  public Trajectory(File file) throws IOException {
+    // The mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.capacity() < headerSize || buffer.getInt(0) != magic) {
+      throw new IOException(file + " is not a trajectory");
+    }
+    if (buffer.getInt(4) != version) {
+      throw new IOException(file + " has unknown version " + buffer.getInt(4));
+    }
+    sampleCount = buffer.getInt(8);
+    step = buffer.getFloat(12);
+    if (sampleCount < 1 || buffer.capacity() < headerSize + (long) sampleCount * sampleSize) {
+      throw new IOException(file + " is cut off");
+    }
+    duration = (sampleCount - 1) * step;
+    buffer.load();
+  }
+
+  /**
+   * Look up the path at a time since its start. Times before the start give
+   * the first sample and times after the end give the last one.
+   */
+  public void sample(double timeSeconds) {
+    if (timeSeconds <= 0) {
+      copy(0, 0, 0);
+      return;
+    }
+    if (timeSeconds >= duration) {
+      copy(sampleCount - 1, sampleCount - 1, 0);
+      return;
+    }
+    double position = timeSeconds / step;
+    int before = (int) position;
+    copy(before, before + 1, position - before);
+  }
+
+  private void copy(int before, int after, double fraction) {
+    int from = headerSize + before * sampleSize;
+    int to = headerSize + after * sampleSize;
+    sampledX = interpolate(from, to, fraction);
+    sampledY = interpolate(from + 4, to + 4, fraction);
+    sampledHeading = interpolate(from + 8, to + 8, fraction);
+    sampledVelocity = interpolate(from + 12, to + 12, fraction);
+    sampledCurvature = interpolate(from + 16, to + 16, fraction);
+  }
+
+  private double interpolate(int from, int to, double fraction) {
+    double start = buffer.getFloat(from);
+    return start + (buffer.getFloat(to) - start) * fraction;
+  }
+
+  public double getSampledX() {
+    return sampledX;
+  }
+
+  public double getSampledY() {
+    return sampledY;
+  }
+
+  /**
+   * Heading in radians, not wrapped to one turn.
+   */
+  public double getSampledHeading() {
+    return sampledHeading;
+  }
+
+  /**
+   * Speed along the path in meters per second.
+   */
+  public double getSampledVelocity() {
+    return sampledVelocity;
+  }
+
+  /**
+   * How much the path turns per meter, in radians.
+   */
+  public double getSampledCurvature() {
+    return sampledCurvature;
+  }
+
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Time from the start to the end of the path in seconds.
+   */
+  public double getDuration() {
+    return duration;
+  }
+}
@@ -0,0 +1,270 @@
+package frc.robot;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns waypoint files into trajectory files for the robot. This runs on a
+ * desktop before a deploy, never on the robot.
+ *
+ * <p>Between every two waypoints the path is a quintic spline that leaves
+ * and enters them at their headings. The spline is cut into short pieces,
+ * the speed at every piece is limited so the outer wheel stays under the
+ * top speed in turns, and a forward and a backward pass keep the
+ * acceleration in limits, starting and ending at standstill. The result is
+ * sampled every 20 ms and written in the format Trajectory reads.
+ *
+ * <p>A waypoint file has one setting or waypoint per line, lengths in meters
+ * and headings in degrees, with y to the right and the heading going up when
+ * the robot turns right. Lines starting with # are comments:
+ * <pre>
+ * maxVelocity 2.5
+ * maxAcceleration 2
+ * trackWidth 0.6
+ * waypoint 0 0 0
+ * waypoint 3 -1 0
+ * </pre>
+ *
+ * <p>Run it on every .path file in a folder with:
+ * ./gradlew generateTrajectories
+ */
+public class TrajectoryGenerator {
+  // Time between the samples in the file, one per robot loop
+  public static final double sampleSeconds = 0.02;
+  // Spline pieces per waypoint segment, for the arc length and the speed limits
+  private static final int piecesPerSegment = 500;
+  // The spline leaves a waypoint with this much speed per meter to the next one
+  private static final double tangentScale = 1.2;
+
+  private final double maxVelocity;
+  private final double maxAcceleration;
+  private final double trackWidth;
+  private final List<double[]> waypoints = new ArrayList<>();
+
+  /**
+   * Create the generator.
+   *
+   * @param maxVelocity top wheel speed in meters per second
+   * @param maxAcceleration top acceleration along the path in meters per second squared
+   * @param trackWidth distance between the left and right wheels in meters
+   */
+  public TrajectoryGenerator(double maxVelocity, double maxAcceleration, double trackWidth) {
+    this.maxVelocity = maxVelocity;
+    this.maxAcceleration = maxAcceleration;
+    this.trackWidth = trackWidth;
+  }
+
+  /**
+   * Add the next waypoint of the path.
+   */
+  public void addWaypoint(double x, double y, double headingDegrees) {
+    waypoints.add(new double[] {x, y, Math.toRadians(headingDegrees)});
+  }
+
+  /**
+   * Read the settings and waypoints from a waypoint file.
+   */
+  public static TrajectoryGenerator read(File file) throws IOException {
+    double velocity = Double.NaN;
+    double acceleration = Double.NaN;
+    double track = Double.NaN;
+    List<String[]> points = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.split("\\s+");
+        if (parts[0].equals("maxVelocity") && parts.length == 2) {
+          velocity = Double.parseDouble(parts[1]);
+        } else if (parts[0].equals("maxAcceleration") && parts.length == 2) {
+          acceleration = Double.parseDouble(parts[1]);
+        } else if (parts[0].equals("trackWidth") && parts.length == 2) {
+          track = Double.parseDouble(parts[1]);
+        } else if (parts[0].equals("waypoint") && parts.length == 4) {
+          points.add(parts);
+        } else {
+          throw new IOException(file + ": can not read line \"" + line + "\"");
+        }
+      }
+    }
+    if (Double.isNaN(velocity) || Double.isNaN(acceleration) || Double.isNaN(track) || points.size() < 2) {
+      throw new IOException(file + " needs maxVelocity, maxAcceleration, trackWidth and two waypoints");
+    }
+    TrajectoryGenerator generator = new TrajectoryGenerator(velocity, acceleration, track);
+    for (String[] point : points) {
+      generator.addWaypoint(Double.parseDouble(point[1]), Double.parseDouble(point[2]),
+          Double.parseDouble(point[3]));
+    }
+    return generator;
+  }
+
+  /**
+   * Work out the path. Every row is x, y, heading, speed and curvature, one row per sample.
+   */
+  public float[][] generate() {
+    int segments = waypoints.size() - 1;
+    int count = segments * piecesPerSegment + 1;
+    double[] xs = new double[count];
+    double[] ys = new double[count];
+    double[] headings = new double[count];
+    double[] curvatures = new double[count];
+    double[] distances = new double[count];
+
+    // Cut the splines into pieces and add up their lengths
+    double[] point = new double[4];
+    for (int segment = 0; segment < segments; segment++) {
+      double[] from = waypoints.get(segment);
+      double[] to = waypoints.get(segment + 1);
+      int first = segment == 0 ? 0 : 1;
+      for (int piece = first; piece <= piecesPerSegment; piece++) {
+        int index = segment * piecesPerSegment + piece;
+        evaluate(from, to, (double) piece / piecesPerSegment, point);
+        xs[index] = point[0];
+        ys[index] = point[1];
+        headings[index] = point[2];
+        curvatures[index] = point[3];
+        if (index > 0) {
+          distances[index] = distances[index - 1] + Math.hypot(xs[index] - xs[index - 1], ys[index] - ys[index - 1]);
+          // Keep the heading continuous so it can be interpolated
+          headings[index] = headings[index - 1] + wrap(headings[index] - headings[index - 1]);
+        }
+      }
+    }
+
+    // The outer wheel goes faster than the middle of the robot in a turn
+    double[] velocities = new double[count];
+    for (int i = 0; i < count; i++) {
+      velocities[i] = maxVelocity / (1 + Math.abs(curvatures[i]) * trackWidth / 2);
+    }
+    velocities[0] = 0;
+    velocities[count - 1] = 0;
+    for (int i = 1; i < count; i++) {
+      double step = distances[i] - distances[i - 1];
+      velocities[i] = Math.min(velocities[i], Math.sqrt(velocities[i - 1] * velocities[i - 1]
+          + 2 * maxAcceleration * step));
+    }
+    for (int i = count - 2; i >= 0; i--) {
+      double step = distances[i + 1] - distances[i];
+      velocities[i] = Math.min(velocities[i], Math.sqrt(velocities[i + 1] * velocities[i + 1]
+          + 2 * maxAcceleration * step));
+    }
+
+    // Time at every piece, with the average speed over the piece
+    double[] times = new double[count];
+    for (int i = 1; i < count; i++) {
+      double speed = (velocities[i] + velocities[i - 1]) / 2;
+      double step = distances[i] - distances[i - 1];
+      times[i] = times[i - 1] + (speed > 0 ? step / speed : 0);
+    }
+
+    int sampleCount = (int) Math.ceil(times[count - 1] / sampleSeconds) + 1;
+    float[][] samples = new float[sampleCount][];
+    int piece = 1;
+    for (int sample = 0; sample < sampleCount; sample++) {
+      double time = Math.min(sample * sampleSeconds, times[count - 1]);
+      while (piece < count - 1 && times[piece] < time) {
+        piece++;
+      }
+      double span = times[piece] - times[piece - 1];
+      double fraction = span > 0 ? (time - times[piece - 1]) / span : 1;
+      samples[sample] = new float[] {
+          (float) lerp(xs, piece, fraction), (float) lerp(ys, piece, fraction),
+          (float) lerp(headings, piece, fraction), (float) lerp(velocities, piece, fraction),
+          (float) lerp(curvatures, piece, fraction)};
+    }
+    return samples;
+  }
+
+  private static double lerp(double[] values, int piece, double fraction) {
+    return values[piece - 1] + (values[piece] - values[piece - 1]) * fraction;
+  }
+
+  private static double wrap(double radians) {
+    return Math.atan2(Math.sin(radians), Math.cos(radians));
+  }
+
+  // Point, heading and curvature of the quintic spline between two waypoints, with no acceleration at the ends
+  private static void evaluate(double[] from, double[] to, double t, double[] out) {
+    double scale = tangentScale * Math.hypot(to[0] - from[0], to[1] - from[1]);
+    double fromDx = scale * Math.cos(from[2]);
+    double fromDy = scale * Math.sin(from[2]);
+    double toDx = scale * Math.cos(to[2]);
+    double toDy = scale * Math.sin(to[2]);
+
+    double t2 = t * t;
+    double t3 = t2 * t;
+    double t4 = t3 * t;
+    double t5 = t4 * t;
+    double h0 = 1 - 10 * t3 + 15 * t4 - 6 * t5;
+    double h1 = t - 6 * t3 + 8 * t4 - 3 * t5;
+    double h4 = -4 * t3 + 7 * t4 - 3 * t5;
+    double h5 = 10 * t3 - 15 * t4 + 6 * t5;
+    double d0 = -30 * t2 + 60 * t3 - 30 * t4;
+    double d1 = 1 - 18 * t2 + 32 * t3 - 15 * t4;
+    double d4 = -12 * t2 + 28 * t3 - 15 * t4;
+    double dd0 = -60 * t + 180 * t2 - 120 * t3;
+    double dd1 = -36 * t + 96 * t2 - 60 * t3;
+    double dd4 = -24 * t + 84 * t2 - 60 * t3;
+
+    // The fifth basis is one minus the first, so its derivatives are the negated ones
+    double x = h0 * from[0] + h1 * fromDx + h4 * toDx + h5 * to[0];
+    double y = h0 * from[1] + h1 * fromDy + h4 * toDy + h5 * to[1];
+    double dx = d0 * (from[0] - to[0]) + d1 * fromDx + d4 * toDx;
+    double dy = d0 * (from[1] - to[1]) + d1 * fromDy + d4 * toDy;
+    double ddx = dd0 * (from[0] - to[0]) + dd1 * fromDx + dd4 * toDx;
+    double ddy = dd0 * (from[1] - to[1]) + dd1 * fromDy + dd4 * toDy;
+
+    out[0] = x;
+    out[1] = y;
+    out[2] = Math.atan2(dy, dx);
+    out[3] = (dx * ddy - dy * ddx) / Math.pow(dx * dx + dy * dy, 1.5);
+  }
+
+  /**
+   * Write samples from generate in the format Trajectory reads.
+   */
+  public static void write(float[][] samples, File file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeInt(Trajectory.magic);
+      out.writeInt(Trajectory.version);
+      out.writeInt(samples.length);
+      out.writeFloat((float) sampleSeconds);
+      for (float[] sample : samples) {
+        for (float value : sample) {
+          out.writeFloat(value);
+        }
+      }
+    }
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: TrajectoryGenerator <folder with .path files> <output folder>");
+      System.exit(1);
+    }
+    File[] paths = new File(args[0]).listFiles((dir, name) -> name.endsWith(".path"));
+    if (paths == null) {
+      System.err.println(args[0] + " is not a folder");
+      System.exit(1);
+    }
+    File output = new File(args[1]);
+    output.mkdirs();
+    for (File path : paths) {
+      float[][] samples = read(path).generate();
+      File file = new File(output, path.getName().replaceAll("\\.path$", ".traj"));
+      write(samples, file);
+      System.out.printf("%s: %d samples, %.2f s, %d bytes%n", file, samples.length,
+          (samples.length - 1) * sampleSeconds, file.length());
+    }
+  }
+}
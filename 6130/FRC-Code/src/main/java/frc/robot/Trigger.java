@@ -0,0 +1,86 @@
+package frc.robot;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * A button or other condition that starts commands on its edges.
+ *
+ * <p>The scheduler polls every trigger once per loop and only acts when the
+ * value changed since the last loop, so a held button does not reschedule its
+ * command every cycle.
+ */
+public class Trigger {
+  private final BooleanSupplier condition;
+  private boolean lastValue;
+  private Command pressedCommand;
+  private Command releasedCommand;
+  private Command heldCommand;
+  private Command toggledCommand;
+
+  public Trigger(BooleanSupplier condition) {
+    this.condition = condition;
+  }
+
+  /**
+   * Start the command when the trigger becomes active.
+   */
+  public Trigger whenPressed(Command command) {
+    pressedCommand = command;
+    return this;
+  }
+
+  /**
+   * Start the command when the trigger becomes inactive.
+   */
+  public Trigger whenReleased(Command command) {
+    releasedCommand = command;
+    return this;
+  }
+
+  /**
+   * Start the command when the trigger becomes active and cancel it when it becomes inactive.
+   */
+  public Trigger whileHeld(Command command) {
+    heldCommand = command;
+    return this;
+  }
+
+  /**
+   * Start the command on one press and cancel it on the next.
+   */
+  public Trigger toggleWhenPressed(Command command) {
+    toggledCommand = command;
+    return this;
+  }
+
+  void poll(Scheduler scheduler) {
+    boolean value = condition.getAsBoolean();
+    if (value == lastValue) {
+      return;
+    }
+    lastValue = value;
+
+    if (value) {
+      if (pressedCommand != null) {
+        scheduler.schedule(pressedCommand);
+      }
+      if (heldCommand != null) {
+        scheduler.schedule(heldCommand);
+      }
+      if (toggledCommand != null) {
+        if (toggledCommand.isScheduled()) {
+          scheduler.cancel(toggledCommand);
+        } else {
+          scheduler.schedule(toggledCommand);
+        }
+      }
+    } else {
+      if (heldCommand != null) {
+        scheduler.cancel(heldCommand);
+      }
+      if (releasedCommand != null) {
+        scheduler.schedule(releasedCommand);
+      }
+    }
+  }
+}
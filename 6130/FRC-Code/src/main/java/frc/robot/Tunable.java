@@ -0,0 +1,82 @@
+package frc.robot;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.networktables.EntryListenerFlags;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+
+/**
+ * A setting from the config file that can be changed from the dashboard
+ * while the robot code runs.
+ *
+ * <p>The value starts at the one in the file and is put on the "Config"
+ * table under its key. A NetworkTables listener keeps a copy of the newest
+ * value, so get is a plain field read. Code that keeps its own copy of the
+ * setting, like the drive controller, gives an onChange action instead,
+ * which RobotConfig.applyChanges runs on the robot thread. A setting can
+ * have several actions, they all run in the order they were given.
+ * Changes are lost on restart, put the values that work into the config
+ * file.
+ */
+public class Tunable implements DoubleSupplier {
+  private final String key;
+  private final NetworkTableEntry entry;
+  private volatile double value;
+  private double applied;
+  // Added from the startup thread too, the robot thread may be running them at the same time
+  private final List<DoubleConsumer> onChange = new CopyOnWriteArrayList<>();
+
+  Tunable(NetworkTable table, String key, double value) {
+    this.key = key;
+    this.value = value;
+    applied = value;
+    entry = table.getEntry(key);
+    entry.setDouble(value);
+    entry.addListener(notification -> {
+      if (notification.value.isDouble()) {
+        this.value = notification.value.getDouble();
+      }
+    }, EntryListenerFlags.kUpdate);
+  }
+
+  public double get() {
+    return value;
+  }
+
+  @Override
+  public double getAsDouble() {
+    return value;
+  }
+
+  /**
+   * Run an action with the new value whenever it changes. The action is
+   * also run right away with the current value. Actions given before keep
+   * running too.
+   */
+  public void onChange(DoubleConsumer action) {
+    onChange.add(action);
+    action.accept(value);
+  }
+
+  // Run the change action if the value changed since the last call, on the robot thread
+  boolean apply() {
+    double current = value;
+    if (current == applied) {
+      return false;
+    }
+    applied = current;
+    // Indexed, so no iterator is made
+    for (int i = 0; i < onChange.size(); i++) {
+      onChange.get(i).accept(current);
+    }
+    return true;
+  }
+
+  public String getKey() {
+    return key;
+  }
+}
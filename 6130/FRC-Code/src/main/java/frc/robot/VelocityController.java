@@ -0,0 +1,82 @@
+package frc.robot;
+
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.Encoder;
+
+/**
+ * Closes the loop on the speed of one side of the drive train.
+ *
+ * <p>The output is a feedforward guess from the wanted speed, a static term
+ * that overcomes friction, and a PI correction from the encoder rate. The
+ * feedforward does most of the work, so the gains can stay small. It runs
+ * in a DriveVelocityLoop on a fast rate group.
+ */
+public class VelocityController {
+  private final DoubleSupplier rate;
+  private final double kP;
+  private final double kI;
+  private final double kV;
+  private final double kS;
+  private double integral;
+  private double error;
+
+  /**
+   * Create the controller.
+   *
+   * @param encoder the encoder of this side, with its distance per pulse set
+   * @param kP output per unit of speed error
+   * @param kI output per unit of speed error times seconds
+   * @param kV output per unit of wanted speed
+   * @param kS output needed to start moving
+   */
+  public VelocityController(Encoder encoder, double kP, double kI, double kV, double kS) {
+    this(encoder::getRate, kP, kI, kV, kS);
+  }
+
+  /**
+   * Create the controller with any source of the measured speed.
+   *
+   * @param rate the measured speed in the same units as the wanted speed
+   */
+  public VelocityController(DoubleSupplier rate, double kP, double kI, double kV, double kS) {
+    this.rate = rate;
+    this.kP = kP;
+    this.kI = kI;
+    this.kV = kV;
+    this.kS = kS;
+  }
+
+  /**
+   * Work out the motor output for the wanted speed.
+   *
+   * @param wantedSpeed speed in encoder distance units per second
+   * @param dtSeconds time since the last call
+   * @return output from -1 to 1
+   */
+  public double calculate(double wantedSpeed, double dtSeconds) {
+    if (wantedSpeed == 0) {
+      // Let the robot coast to a stop instead of fighting the last bit of speed
+      integral = 0;
+      error = 0;
+      return 0;
+    }
+    error = wantedSpeed - rate.getAsDouble();
+    double feedforward = kS * Math.signum(wantedSpeed) + kV * wantedSpeed;
+    double output = feedforward + kP * error + kI * (integral + error * dtSeconds);
+    // Only integrate while the output is not saturated, so the integral can not wind up
+    if (Math.abs(output) < 1) {
+      integral += error * dtSeconds;
+    }
+    return Math.max(-1, Math.min(1, output));
+  }
+
+  public double getError() {
+    return error;
+  }
+
+  public void reset() {
+    integral = 0;
+    error = 0;
+  }
+}
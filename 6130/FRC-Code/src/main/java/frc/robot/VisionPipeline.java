@@ -0,0 +1,168 @@
+package frc.robot;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Camera processing loop that runs on its own thread, or one frame at a time
+ * from the camera manager's executor.
+ *
+ * <p>The frame Mats are allocated once up front. Frames are scaled down to
+ * the stream size before the gray conversion so the expensive work is done on
+ * the small image, and the loop sleeps until the next frame slot so it never
+ * uses more than the target frame rate worth of CPU. The scaled color frame
+ * is handed to the target detector through a FrameExchange, so a slow
+ * detection never holds up the stream; if the detector is still busy when
+ * the next frame is published, the older frame is dropped. The latency timer
+ * has the age of every frame when it was published.
+ */
+public class VisionPipeline implements Runnable {
+  private final FrameSource source;
+  private volatile StreamManager outputStream;
+  private final Size outputSize;
+  private final long framePeriodNanos;
+  private final double grabTimeoutSeconds;
+
+  private final Mat captured;
+  private final Mat gray;
+  private final FrameExchange frames;
+
+  private final StageTimer grabTimer = new StageTimer("grab");
+  private final StageTimer scaleTimer = new StageTimer("scale");
+  private final StageTimer convertTimer = new StageTimer("convert");
+  private final StageTimer publishTimer = new StageTimer("publish");
+  private final StageTimer latencyTimer = new StageTimer("latency");
+  private volatile long grabFailures;
+  private volatile long overruns;
+
+  /**
+   * Create the pipeline.
+   *
+   * @param source where the frames come from
+   * @param outputStream stream manager to offer the processed frames to, or null to skip it
+   * @param outputWidth width of the processed frames
+   * @param outputHeight height of the processed frames
+   * @param targetFps how many frames per second to process at most
+   */
+  public VisionPipeline(FrameSource source, StreamManager outputStream, int outputWidth, int outputHeight,
+      int targetFps) {
+    this.source = source;
+    this.outputStream = outputStream;
+    this.outputSize = new Size(outputWidth, outputHeight);
+    this.framePeriodNanos = 1_000_000_000L / targetFps;
+    // Give the camera two frame slots before we call the grab a failure
+    this.grabTimeoutSeconds = 2.0 / targetFps;
+    this.captured = new Mat();
+    this.gray = new Mat(outputHeight, outputWidth, CvType.CV_8UC1);
+    this.frames = new FrameExchange(outputWidth, outputHeight, CvType.CV_8UC3);
+  }
+
+  @Override
+  public void run() {
+    long nextFrameNanos = System.nanoTime();
+    while (!Thread.currentThread().isInterrupted()) {
+      processFrame();
+
+      nextFrameNanos += framePeriodNanos;
+      long sleepNanos = nextFrameNanos - System.nanoTime();
+      if (sleepNanos > 0) {
+        try {
+          Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      } else {
+        // We are behind, start the next frame now instead of trying to catch up
+        overruns++;
+        nextFrameNanos = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Grab, scale, convert and publish one frame.
+   * Returns false if no frame was grabbed.
+   */
+  public boolean processFrame() {
+    // Read the stream once, the camera manager may switch it while we work
+    StreamManager stream = outputStream;
+    long start = System.nanoTime();
+    long frameTime = source.grabFrame(captured, grabTimeoutSeconds);
+    long grabbed = System.nanoTime();
+    grabTimer.record(grabbed - start);
+    if (frameTime == 0 || captured.empty()) {
+      grabFailures++;
+      if (stream != null) {
+        stream.notifyError(source.getError());
+      }
+      return false;
+    }
+
+    // The scaled frame goes straight into the exchange, it is published after the stream got it
+    Mat scaled = frames.writeBuffer();
+    Imgproc.resize(captured, scaled, outputSize, 0, 0, Imgproc.INTER_AREA);
+    long resized = System.nanoTime();
+    scaleTimer.record(resized - grabbed);
+
+    Imgproc.cvtColor(scaled, gray, Imgproc.COLOR_BGR2GRAY);
+    long converted = System.nanoTime();
+    convertTimer.record(converted - resized);
+
+    if (stream != null) {
+      stream.putFrame(gray);
+    }
+    frames.publish(frameTime);
+    publishTimer.record(System.nanoTime() - converted);
+    latencyTimer.record((RobotController.getFPGATime() - frameTime) * 1000);
+    return true;
+  }
+
+  /**
+   * Newest scaled color frames for the target detector.
+   */
+  public FrameExchange getFrames() {
+    return frames;
+  }
+
+  public StageTimer getGrabTimer() {
+    return grabTimer;
+  }
+
+  public StageTimer getScaleTimer() {
+    return scaleTimer;
+  }
+
+  public StageTimer getConvertTimer() {
+    return convertTimer;
+  }
+
+  public StageTimer getPublishTimer() {
+    return publishTimer;
+  }
+
+  /**
+   * Time from the frame capture to its publish.
+   */
+  public StageTimer getLatencyTimer() {
+    return latencyTimer;
+  }
+
+  /**
+   * Change the stream the frames are offered to, null stops offering them.
+   */
+  public void setOutputStream(StreamManager outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  public long getGrabFailures() {
+    return grabFailures;
+  }
+
+  public long getOverruns() {
+    return overruns;
+  }
+}
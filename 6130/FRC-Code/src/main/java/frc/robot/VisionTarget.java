@@ -0,0 +1,63 @@
+package frc.robot;
+
+/**
+ * Where the vision target was in one camera frame. Angles are from the
+ * camera center line, positive yaw is to the right and positive pitch is up.
+ */
+public final class VisionTarget {
+  /**
+   * A result for frames where no target was found.
+   */
+  public static final VisionTarget none = new VisionTarget(false, 0, 0, 0, 0, 0);
+
+  private final boolean valid;
+  private final double yawDegrees;
+  private final double pitchDegrees;
+  private final double distanceMeters;
+  private final double skew;
+  private final long captureTimeMicros;
+
+  public VisionTarget(boolean valid, double yawDegrees, double pitchDegrees, double distanceMeters, double skew,
+      long captureTimeMicros) {
+    this.valid = valid;
+    this.yawDegrees = yawDegrees;
+    this.pitchDegrees = pitchDegrees;
+    this.distanceMeters = distanceMeters;
+    this.skew = skew;
+    this.captureTimeMicros = captureTimeMicros;
+  }
+
+  public boolean isValid() {
+    return valid;
+  }
+
+  public double getYawDegrees() {
+    return yawDegrees;
+  }
+
+  public double getPitchDegrees() {
+    return pitchDegrees;
+  }
+
+  /**
+   * Rough distance to the target from the spacing of the two tape strips.
+   */
+  public double getDistanceMeters() {
+    return distanceMeters;
+  }
+
+  /**
+   * How much taller the left strip looks than the right one, from -1 to 1.
+   * Zero means the robot is square to the target.
+   */
+  public double getSkew() {
+    return skew;
+  }
+
+  /**
+   * Capture time of the frame in FPGA microseconds.
+   */
+  public long getCaptureTimeMicros() {
+    return captureTimeMicros;
+  }
+}
@@ -1,102 +1,318 @@
 package frc.robot;
-import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
+import java.util.Properties;
+import java.util.function.DoubleSupplier;
 
-import edu.wpi.cscore.CvSink;
-import edu.wpi.cscore.CvSource;
 import edu.wpi.cscore.UsbCamera;
-import edu.wpi.first.cameraserver.CameraServer;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.ADXRS450_Gyro;
 import edu.wpi.first.wpilibj.Compressor;
 import edu.wpi.first.wpilibj.DigitalInput;
 import edu.wpi.first.wpilibj.DoubleSolenoid;
+import edu.wpi.first.wpilibj.Encoder;
 import edu.wpi.first.wpilibj.PWMVictorSPX;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.Spark;
 import edu.wpi.first.wpilibj.SpeedController;
 import edu.wpi.first.wpilibj.SpeedControllerGroup;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.XboxController;
-import edu.wpi.first.wpilibj.GenericHID.Hand;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
 
 public class robotBackup extends TimedRobot {
-  private static final int masterLeftPort = 0;
-  private static final int slaveLeftPort = 1;
-  private static final int masterRightPort = 2;
-  private static final int slaveRightPort = 3;
-  private static final int controllerPort = 1;
-  private static final int robotFuncControllerPort = 0;
-  private static final int compressorPort = 0;
-  private static final int ballLauncherPort = 5;
-  private static final int ballHandPort = 4;
-  private static final int secondaryBallHandPort = 6;
-  private static final int hatchHandPort = 7;
-  private static final int limitSwitchHatchMeFPort = 1;
-  private static final int limitSwitchHatchMeBPort = 0;
-  private static final int limitSwitchBallMeFPort = 2;
-  private static final int limitSwitchBallMeBPort = 3;
-
-  // Making a death zone to control the joystick
-  // private static final double joystickDeathZone = 0.3;
+  // The ports and settings are in deploy/config, common.properties and robotBackup.properties
+  private static final String configName = "robotBackup";
 
+  // Number of loops of robot poses kept to match with vision results, 50 loops is one second
+  private static final int poseHistoryCapacity = 50;
+
+  // Index of the controller in the input snapshot, it drives the robot and runs the mechanisms
+  private static final int robotFunc = 0;
+
+  // The drive sticks keep the response they had straight on DifferentialDrive, its dead band and squaring
+  private static final double driveStickDeadband = 0.02;
+
+  // Air storage and use for the pressure model, two 574 mL tanks and two 3/4 inch bore, 6 inch stroke pistons
+  private static final double airTankLiters = 1.148;
+  private static final double actuationLiters = 0.087;
+
+  // The roboRIO cuts the motors at 6.8 V, the power budgeter scales outputs down from here on
+  // It also scales them when the whole robot pulls more current than the limit
+  private static final double brownoutGuardVolts = 8;
+  private static final double totalCurrentLimitAmps = 250;
+
+  // Who keeps power when the battery sags, 0 is the most important and is scaled last
+  private static final int drivePowerPriority = 0;
+  private static final int hatchPowerPriority = 1;
+  private static final int ballHandPowerPriority = 2;
+  private static final int launcherPowerPriority = 3;
+  // The drive keeps at least half its output so the robot can always get out of the way
+  private static final double driveMinPowerScale = 0.5;
+
+  // The hand health statistics are put on the Health table twice a second
+  private static final double healthPublishSeconds = 0.5;
+
+  // Motor speed changes smaller than this are not sent to the motor controllers
+  private static final double outputEpsilon = 0.005;
+
+  // Number of loops kept in the telemetry log, 30000 loops is 10 minutes
+  private static final int telemetryCapacity = 30000;
+  // Number of telemetry logs kept on the roboRIO. A full one holds 8 bytes for the time and for each
+  // of the 58 to 60 columns per loop, so it is about 14 MB
+  private static final int telemetryFiles = 10;
+
+  // Small changes of these are not sent to the dashboard
+  private static final double pressureDeadbandPsi = 1;
+  private static final double handDeadbandDegrees = 1;
+  private static final double headingDeadbandDegrees = 1;
+  private static final double voltageDeadband = 0.05;
+
+  // While disabled the hot paths of the loop run this often, at most 5 ms per disabled loop, so the JIT compiles them
+  private static final int warmupIterations = 20000;
+  private static final double warmupBudgetSeconds = 0.005;
+
+  private RobotConfig config;
   private SpeedController masterLeftMotor, slaveLeftMotor, masterRightMotor, slaveRightMotor;
-  private XboxController driverController;
-  private XboxController robotFuncController;
+  private InputSnapshot inputs;
   private DifferentialDrive driveTrain;
   private SpeedControllerGroup leftDrive;
   private SpeedControllerGroup rightDrive;
   private SpeedController ballHand, secondaryBallHand, ballLauncher;
   private SpeedController hatchHand;
   private Compressor compressor;
+  private PowerDistributionPanel pdp;
+  private PressureModel pressureModel;
+  private PowerBudgeter powerBudgeter;
+  private MotorHealthMonitor ballHandHealth, hatchHandHealth;
   private DoubleSolenoid firstSolenoid, secondSolenoid;
+  // Set by the startup thread once the cameras run
+  private volatile CameraManager cameraManager;
+  private volatile TargetDetector targetDetector;
+  private ADXRS450_Gyro gyro;
+  private PoseEstimator poseEstimator;
+  private LoopProfiler profiler;
+  private OutputCoalescer outputs;
+  private TelemetryLogger telemetry;
+  private DashboardPublisher dashboard;
   private DigitalInput limitSwitchHatchMeFront, limitSwitchHatchMeBack;
   private DigitalInput limitSwitchBallMeFront, limitSwitchBallMeBack;
-  private boolean compressorSts = true;
-  private boolean compressorPreSts = false;
-  private boolean bButtonSts;
+  private LimitSwitchGuard hatchHandGuard, ballHandGuard;
+  private Scheduler scheduler;
+  private DriveSubsystem drive;
+  private MechanismSubsystem ballLauncherSystem, ballHandSystem, hatchHandSystem;
+  private PneumaticsSubsystem pneumatics;
+  private CompressorSubsystem compressorSystem;
+  private RobotStartup startup;
+  private DriveController warmupDrive;
+  private int warmupStep;
+  private final Properties configOverrides;
+
+  public robotBackup() {
+    this(new Properties());
+  }
+
+  /**
+   * A robot with some config values replaced, so the tests can run it with the hand encoders.
+   *
+   * @param configOverrides values that replace the ones in the config files
+   */
+  robotBackup(Properties configOverrides) {
+    this.configOverrides = configOverrides;
+  }
+
+  /**
+   * The config robotInit loaded, null before it.
+   */
+  RobotConfig getConfig() {
+    return config;
+  }
 
   @Override
   public void robotInit() {
-    ballHand = new PWMVictorSPX(ballHandPort);
-    secondaryBallHand = new PWMVictorSPX(secondaryBallHandPort);
-    ballLauncher = new PWMVictorSPX(ballLauncherPort);
-    hatchHand = new Spark(hatchHandPort);
-    masterLeftMotor = new PWMVictorSPX(masterLeftPort);
-    slaveLeftMotor = new PWMVictorSPX(slaveLeftPort);
-    masterRightMotor = new PWMVictorSPX(masterRightPort);
-    slaveRightMotor = new PWMVictorSPX(slaveRightPort);
-    driverController = new XboxController(controllerPort);
-    robotFuncController = new XboxController(robotFuncControllerPort);
+    config = RobotConfig.load(configName, configOverrides);
+    ballHand = new PWMVictorSPX(config.ballHandPort);
+    secondaryBallHand = new PWMVictorSPX(config.secondaryBallHandPort);
+    ballLauncher = new PWMVictorSPX(config.ballLauncherPort);
+    hatchHand = new Spark(config.hatchHandPort);
+    masterLeftMotor = new PWMVictorSPX(config.masterLeftPort);
+    slaveLeftMotor = new PWMVictorSPX(config.slaveLeftPort);
+    masterRightMotor = new PWMVictorSPX(config.masterRightPort);
+    slaveRightMotor = new PWMVictorSPX(config.slaveRightPort);
+    inputs = new InputSnapshot(config.joystickDeathZone.get(), config.robotFuncControllerPort);
+    // A replay hands the loop one packet at a time, so it needs no button thread
+    if (!config.headless){
+      inputs.start();
+    }
     leftDrive =  new SpeedControllerGroup(masterLeftMotor, slaveLeftMotor);
     rightDrive = new SpeedControllerGroup(masterRightMotor, slaveRightMotor);
-    driveTrain = new DifferentialDrive(leftDrive, rightDrive);
-    compressor = new Compressor(compressorPort);
-    firstSolenoid = new DoubleSolenoid(0, 1);
-    secondSolenoid = new DoubleSolenoid(2, 3);
-    limitSwitchHatchMeFront = new DigitalInput(limitSwitchHatchMeFPort);
-    limitSwitchHatchMeBack = new DigitalInput(limitSwitchHatchMeBPort);
-    limitSwitchBallMeFront = new DigitalInput(limitSwitchBallMeFPort);
-    limitSwitchBallMeBack = new DigitalInput(limitSwitchBallMeBPort);
-
-    // This code here is used to control the camera or the robot vision
-    new Thread(() -> {
-      UsbCamera camera = CameraServer.getInstance().startAutomaticCapture();
-      camera.setResolution(1920, 1080);
-      camera.setBrightness(1);
-      camera.setFPS(60);
-      
-      CvSink cvSink = CameraServer.getInstance().getVideo();
-      CvSource outputStream = CameraServer.getInstance().putVideo("Blur", 640, 480);
-      
-      Mat source = new Mat();
-      Mat output = new Mat();
-      
-      while(!Thread.interrupted()) {
-          cvSink.grabFrame(source);
-          Imgproc.cvtColor(source, output, Imgproc.COLOR_BGR2GRAY);
-          outputStream.putFrame(output);
-      }
-  }).start();
-}
+    outputs = new OutputCoalescer();
+    driveTrain = new DifferentialDrive(outputs.add(new CoalescingSpeedController(leftDrive, outputEpsilon)),
+        outputs.add(new CoalescingSpeedController(rightDrive, outputEpsilon)));
+    compressor = new Compressor(config.compressorModule);
+    firstSolenoid = new DoubleSolenoid(config.firstSolenoidForward, config.firstSolenoidReverse);
+    secondSolenoid = new DoubleSolenoid(config.secondSolenoidForward, config.secondSolenoidReverse);
+    limitSwitchHatchMeFront = new DigitalInput(config.limitSwitchHatchFrontPort);
+    limitSwitchHatchMeBack = new DigitalInput(config.limitSwitchHatchBackPort);
+    limitSwitchBallMeFront = new DigitalInput(config.limitSwitchBallFrontPort);
+    limitSwitchBallMeBack = new DigitalInput(config.limitSwitchBallBackPort);
+    pdp = new PowerDistributionPanel();
+    pressureModel = new PressureModel(airTankLiters, actuationLiters);
+    profiler = new LoopProfiler(getPeriod(), 0.5);
+
+    // The limit switches stop their motors from an interrupt, without waiting for the next loop
+    // The guards sit right above the hardware, below the coalescing, and are the only check of the switches
+    ballHandGuard = new LimitSwitchGuard(limitSwitchBallMeFront, limitSwitchBallMeBack,
+        new CoalescingSpeedController(ballHand, outputEpsilon),
+        new CoalescingSpeedController(secondaryBallHand, outputEpsilon));
+    hatchHandGuard = new LimitSwitchGuard(limitSwitchHatchMeFront, limitSwitchHatchMeBack,
+        new CoalescingSpeedController(hatchHand, outputEpsilon));
+    LimitSwitchGuard.GuardedMotor[] guardedBallHand = ballHandGuard.getMotors();
+    LimitSwitchGuard.GuardedMotor[] guardedHatchHand = hatchHandGuard.getMotors();
+
+    // Every part of the robot is a subsystem, the scheduler writes their outputs once per loop
+    drive = new DriveSubsystem(driveTrain,
+        new DriveController(config.driveSlewRate.get()));
+    // There are no drive encoders, so only the heading is tracked
+    gyro = new ADXRS450_Gyro();
+    poseEstimator = new PoseEstimator(gyro, null, null, new PoseHistory(poseHistoryCapacity));
+    ballLauncherSystem = new MechanismSubsystem("Ball Launcher", LoopProfiler.Section.kBallLauncher,
+        null, outputs.add(new CoalescingSpeedController(ballLauncher, outputEpsilon)));
+    ballHandSystem = new MechanismSubsystem("Ball Hand", LoopProfiler.Section.kBallHand,
+        ballHandGuard, outputs.add(guardedBallHand[0]), outputs.add(guardedBallHand[1]));
+    hatchHandSystem = new MechanismSubsystem("Hatch Hand", LoopProfiler.Section.kHatchHand,
+        hatchHandGuard, outputs.add(guardedHatchHand[0]));
+    pneumatics = new PneumaticsSubsystem(outputs.add(new CoalescingDoubleSolenoid(firstSolenoid)),
+        outputs.add(new CoalescingDoubleSolenoid(secondSolenoid)), pressureModel);
+    // The compressor waits while the rest of the robot pulls a lot of current
+    compressorSystem = new CompressorSubsystem(outputs.add(new CoalescingCompressor(compressor)), true,
+        pressureModel, () -> pdp.getTotalCurrent() - compressor.getCompressorCurrent());
+    // The motors share the battery by priority, lower priority mechanisms slow down first when it sags
+    powerBudgeter = new PowerBudgeter(brownoutGuardVolts, totalCurrentLimitAmps, RobotController::getBatteryVoltage,
+        pdp::getTotalCurrent);
+    drive.setOutputScale(powerBudgeter.addConsumer("Drive", drivePowerPriority, driveMinPowerScale));
+    // The hands run at full power until a limit switch, so they are slowed or stopped when they stall or get hot
+    ballHandHealth = createBallHandHealth("BallHand", healthPublishSeconds);
+    hatchHandHealth = createHatchHandHealth("HatchHand", healthPublishSeconds);
+    DoubleSupplier hatchHandPower = powerBudgeter.addConsumer("HatchHand", hatchPowerPriority, 0);
+    DoubleSupplier ballHandPower = powerBudgeter.addConsumer("BallHand", ballHandPowerPriority, 0);
+    hatchHandSystem.setOutputScale(() -> hatchHandPower.getAsDouble() * hatchHandHealth.getScale());
+    ballHandSystem.setOutputScale(() -> ballHandPower.getAsDouble() * ballHandHealth.getScale());
+    ballLauncherSystem.setOutputScale(powerBudgeter.addConsumer("BallLauncher", launcherPowerPriority, 0));
+    if (config.handEncodersInstalled){
+      startHandControl();
+    }
+    scheduler = new Scheduler(8, profiler);
+    scheduler.register(drive, ballLauncherSystem, ballHandSystem, hatchHandSystem, pneumatics, compressorSystem);
+    // The tuned settings apply as soon as they change on the Config table
+    config.joystickDeathZone.onChange(inputs::setDeathZone);
+    config.driveSlewRate.onChange(drive.getController()::setSlewRate);
+    configureBindings();
+    startTelemetry();
+    startDashboard();
+    startBackground();
+  }
+
+  // This code here is used to start the robot quickly
+  // The robot can drive without the cameras, so they start on a background thread
+  // While disabled the loop code runs without moving anything, so the first teleop loops are not slow
+  private void startBackground(){
+    startup = new RobotStartup(warmupIterations, warmupBudgetSeconds);
+    // A replay runs without cameras
+    if (!config.headless){
+      startup.runInBackground("vision", this::startVision);
+    }
+    warmupDrive = new DriveController(config.driveSlewRate.get());
+    // The other hot paths run on spares too, they only read the hardware
+    // So the pose history, the current statistics, the budget level and the button edges of the real ones stay right
+    InputSnapshot warmupInputs = new InputSnapshot(config.joystickDeathZone.get(), config.robotFuncControllerPort);
+    PoseEstimator warmupPose = new PoseEstimator(gyro, null, null, new PoseHistory(poseHistoryCapacity));
+    PowerBudgeter warmupBudgeter = new PowerBudgeter(brownoutGuardVolts, totalCurrentLimitAmps,
+        RobotController::getBatteryVoltage, pdp::getTotalCurrent);
+    warmupBudgeter.addConsumer("Drive", drivePowerPriority, driveMinPowerScale);
+    warmupBudgeter.addConsumer("HatchHand", hatchPowerPriority, 0);
+    warmupBudgeter.addConsumer("BallHand", ballHandPowerPriority, 0);
+    warmupBudgeter.addConsumer("BallLauncher", launcherPowerPriority, 0);
+    // The spare monitors never publish, so they do not show up on the Health table
+    MotorHealthMonitor warmupBallHand = createBallHandHealth("WarmupBallHand", Double.POSITIVE_INFINITY);
+    MotorHealthMonitor warmupHatchHand = createHatchHandHealth("WarmupHatchHand", Double.POSITIVE_INFINITY);
+    startup.addWarmup(warmupInputs::update);
+    startup.addWarmup(warmupPose::update);
+    startup.addWarmup(warmupBudgeter::update);
+    startup.addWarmup(warmupBallHand::update);
+    startup.addWarmup(warmupHatchHand::update);
+    startup.addWarmup(this::warmUpDrive);
+    startup.addWarmup(telemetry::warmUp);
+    startup.start();
+  }
+
+  private MotorHealthMonitor createBallHandHealth(String name, double publishSeconds){
+    return new MotorHealthMonitor(name, ballHandSystem, config.ballHandStallCurrent, config.ballHandHeatCurrent,
+        config.ballHandTravelSeconds, publishSeconds, () -> pdp.getCurrent(config.ballHandPdpChannel),
+        () -> pdp.getCurrent(config.secondaryBallHandPdpChannel));
+  }
+
+  private MotorHealthMonitor createHatchHandHealth(String name, double publishSeconds){
+    return new MotorHealthMonitor(name, hatchHandSystem, config.hatchHandStallCurrent, config.hatchHandHeatCurrent,
+        config.hatchHandTravelSeconds, publishSeconds, () -> pdp.getCurrent(config.hatchHandPdpChannel));
+  }
+
+  // The drive math runs on a spare controller, so the real one keeps its state
+  private void warmUpDrive(){
+    warmupStep++;
+    double stick = (warmupStep % 200 - 100) / 100.0;
+    warmupDrive.tankDrive(stick, -stick);
+    warmupDrive.update(0.02);
+  }
+
+  // This code here is used to control the camera or the robot vision
+  private void startVision(){
+    // Both cameras capture at a small size and share one thread pool with the spare cores
+    // Only the camera on the driver stream is processed, the other one is paused
+    StreamManager driverStream = StreamManager.create("Blur", config.streamWidth, config.streamHeight,
+        config.cameraFps, config.streamBudgetMbps.get());
+    CameraManager manager = new CameraManager(driverStream, config.streamWidth, config.streamHeight,
+        config.cameraFps, CameraManager.spareCores());
+    // The target detector looks for the vision tape in every frame and puts the result on NetworkTables
+    TargetDetector detector = new TargetDetector(config.streamWidth, config.streamHeight, config.cameraFovDegrees,
+        NetworkTableInstance.getDefault().getTable("Vision").getEntry("target"));
+    UsbCamera hatchCamera = manager.addUsbCamera("Hatch", config.hatchCameraDevice, config.cameraWidth,
+        config.cameraHeight, config.cameraLatencySeconds, detector);
+    manager.addUsbCamera("Cargo", config.cargoCameraDevice, config.cameraWidth, config.cameraHeight,
+        config.cameraLatencySeconds, null);
+    manager.start();
+    config.streamBudgetMbps.onChange(driverStream::setBudgetMbps);
+    config.cameraBrightness.onChange(brightness -> hatchCamera.setBrightness((int) brightness));
+    targetDetector = detector;
+    cameraManager = manager;
+  }
+
+  // Until the cameras run there is no target and nothing to switch
+  private VisionTarget getVisionTarget(){
+    TargetDetector detector = targetDetector;
+    return detector != null ? detector.getLatest() : VisionTarget.none;
+  }
+
+  private void nextCamera(){
+    CameraManager manager = cameraManager;
+    if (manager != null){
+      manager.next();
+    }
+  }
+
+  // This code here is used to move the hands to their setpoints with the encoders
+  // The back limit switch is 0 degrees, the first move of a hand goes there slowly before it goes to the setpoint
+  private void startHandControl(){
+    hatchHandSystem.setPositionControl(createHandControl(config.hatchHand, hatchHandSystem));
+    ballHandSystem.setPositionControl(createHandControl(config.ballHand, ballHandSystem));
+  }
+
+  private ArmPositionController createHandControl(RobotConfig.Hand hand, MechanismSubsystem mechanism){
+    Encoder encoder = new Encoder(hand.encoderChannelA, hand.encoderChannelB);
+    encoder.setDistancePerPulse(hand.degreesPerPulse);
+    return new ArmPositionController(encoder::getDistance, mechanism::atReverseLimit, mechanism::atForwardLimit,
+        hand.travelDegrees, new MotionProfile(hand.maxVelocity, hand.maxAcceleration), hand.kP, hand.kD, hand.kV,
+        hand.kS, hand.homingSpeed);
+  }
 
   // Running forward or backward depended on the vertical value of the joystick
   // Running left or right depended on the horizontal value of the joystick
@@ -105,123 +321,214 @@ public class robotBackup extends TimedRobot {
   // If the robot turns right, the left side will run forward and the right side will run backward
   // Changing the direction of the robot to left or right need to be done first
   // Running forward and backward will be done after the robot changes it horizontal direction
-  // This code from here will control the pneumatic system
 
-  private void forwardPiston(){
-    firstSolenoid.set(DoubleSolenoid.Value.kForward);
-    secondSolenoid.set(DoubleSolenoid.Value.kForward);
-  }
+  // This code here is used to connect the controller to the commands
+  // Every binding only acts when its button changes, the subsystems write the outputs once per loop
+  private void configureBindings(){
+    // This code here is used to control the robot driving
+    // The joystick dead zone is only for the mechanisms, the drive has always used the small one of DifferentialDrive
+    drive.setDefaultCommand(new RunCommand(() -> drive.tankDrive(
+        -InputSnapshot.applyDeadZone(inputs.getAxis(robotFunc, 1), driveStickDeadband),
+        -InputSnapshot.applyDeadZone(inputs.getAxis(robotFunc, 5), driveStickDeadband)), drive));
 
-  private void reversePiston(){
-    firstSolenoid.set(DoubleSolenoid.Value.kReverse);
-    secondSolenoid.set(DoubleSolenoid.Value.kReverse);
-  }
-  
-  // This function here is used to control the pneumatic controller
-  private void compressorSwitch(boolean compressorCMD){
-    if (compressorCMD == true){
-      compressor.start();
-      compressor.setClosedLoopControl(true);
+    // This code here is used to turn the robot to the vision target while Start is held
+    // The driver still controls the speed, with both sticks together
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kStart.value))
+        .whileHeld(new AutoAlignCommand(drive, this::getVisionTarget, poseEstimator,
+            () -> -(inputs.getZonedAxis(robotFunc, 1) + inputs.getZonedAxis(robotFunc, 5)) / 2));
+
+    // This code here is used to control the ball launcher
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kBumperLeft.value))
+        .whileHeld(new StartEndCommand(() -> ballLauncherSystem.set(-config.ballLauncherReverseSpeed.get()), ballLauncherSystem::stop, ballLauncherSystem));
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kBumperRight.value))
+        .whileHeld(new StartEndCommand(() -> ballLauncherSystem.set(config.ballLauncherSpeed.get()), ballLauncherSystem::stop, ballLauncherSystem));
+
+    // This code here is used to control pneumatic system
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kA.value))
+        .whenPressed(new InstantCommand(pneumatics::forwardPiston, pneumatics))
+        .whenReleased(new InstantCommand(pneumatics::reversePiston, pneumatics));
+
+    // This code here is used to switch the driver stream between the hatch and cargo cameras
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kBack.value))
+        .whenPressed(new InstantCommand(this::nextCamera));
+
+    // This code here is used to control the air compressor, B turns it on or off
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kB.value))
+        .whenPressed(new InstantCommand(compressorSystem::toggle, compressorSystem));
+
+    // This code here is used to control the hands, with encoders they go to setpoints
+    if (config.handEncodersInstalled){
+      configureHandSetpoints();
     } else {
-      compressor.stop();
-      compressor.setClosedLoopControl(false);
+      configureHandSpeeds();
     }
   }
 
-  private void compressorCtrl(){
-    bButtonSts = robotFuncController.getBButton();
+  private void configureHandSpeeds(){
+    // This code here is used to control the hand of the ball launcher mechanism
+    // The subsystem stops the motors when the limit switch is reached
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kY.value))
+        .whileHeld(new StartEndCommand(() -> ballHandSystem.set(config.ballHandSpeed.get()), ballHandSystem::stop, ballHandSystem));
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kX.value))
+        .whileHeld(new StartEndCommand(() -> ballHandSystem.set(-config.ballHandSpeed.get()), ballHandSystem::stop, ballHandSystem));
 
-    if (bButtonSts == true && compressorPreSts == false){
-      if (compressorSts == true){
-        compressorSts = false;
-      } else {
-        compressorSts = true;
-      }
-    }
-    compressorPreSts = bButtonSts;
-    compressorSwitch(compressorSts);
+    // This code here is used to control the hand of the hatch mechanism
+    scheduler.bind(() -> inputs.getPOV(robotFunc, 0) == 0)
+        .whileHeld(new StartEndCommand(() -> hatchHandSystem.set(config.hatchHandSpeed.get()), hatchHandSystem::stop, hatchHandSystem));
+    scheduler.bind(() -> inputs.getPOV(robotFunc, 0) == 180)
+        .whileHeld(new StartEndCommand(() -> hatchHandSystem.set(-config.hatchHandSpeed.get()), hatchHandSystem::stop, hatchHandSystem));
   }
 
-  @Override
-  public void teleopPeriodic() {
-    // This code here is used to control the robot driving
-    driveTrain.tankDrive(-robotFuncController.getRawAxis(1), -robotFuncController.getRawAxis(5));
+  // This code here is used to send the hands to their setpoints, they hold them until the next button
+  // The setpoints can be tuned on the Config table
+  private void configureHandSetpoints(){
+    // Ball hand: Y goes to the cargo setpoint, X stows it
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kY.value))
+        .whenPressed(new InstantCommand(() -> ballHandSystem.setGoal(config.ballCargoDegrees.get()), ballHandSystem));
+    scheduler.bind(() -> inputs.getButton(robotFunc, XboxController.Button.kX.value))
+        .whenPressed(new InstantCommand(() -> ballHandSystem.setGoal(config.ballStowDegrees.get()), ballHandSystem));
 
-    // This code here is used to control the ball launcher
-    if (robotFuncController.getBumperPressed(Hand.kLeft)){
-      ballLauncher.set(-0.3);
-    }
+    // Hatch hand: up on the POV is the middle setpoint, right the low one and down stows it
+    scheduler.bind(() -> inputs.getPOV(robotFunc, 0) == 0)
+        .whenPressed(new InstantCommand(() -> hatchHandSystem.setGoal(config.hatchMidDegrees.get()), hatchHandSystem));
+    scheduler.bind(() -> inputs.getPOV(robotFunc, 0) == 90)
+        .whenPressed(new InstantCommand(() -> hatchHandSystem.setGoal(config.hatchLowDegrees.get()), hatchHandSystem));
+    scheduler.bind(() -> inputs.getPOV(robotFunc, 0) == 180)
+        .whenPressed(new InstantCommand(() -> hatchHandSystem.setGoal(config.hatchStowDegrees.get()), hatchHandSystem));
+  }
 
-    if (robotFuncController.getBumperReleased(Hand.kLeft)){
-      ballLauncher.set(0);
+  // This code here is used to record what the robot does in every loop
+  // Use TelemetryCsv to read the log after the match
+  private void startTelemetry(){
+    telemetry = new TelemetryLogger(TelemetryLogger.defaultDirectory(), telemetryCapacity, telemetryFiles);
+    // A replay runs each loop in the mode it was recorded in
+    telemetry.addModeColumn();
+    telemetry.addControllerColumns(inputs, robotFunc, 6);
+    telemetry.addPwmColumn(config.masterLeftPort, masterLeftMotor);
+    telemetry.addPwmColumn(config.slaveLeftPort, slaveLeftMotor);
+    telemetry.addPwmColumn(config.masterRightPort, masterRightMotor);
+    telemetry.addPwmColumn(config.slaveRightPort, slaveRightMotor);
+    telemetry.addPwmColumn(config.ballLauncherPort, ballLauncher);
+    telemetry.addPwmColumn(config.ballHandPort, ballHand);
+    telemetry.addPwmColumn(config.secondaryBallHandPort, secondaryBallHand);
+    telemetry.addPwmColumn(config.hatchHandPort, hatchHand);
+    telemetry.addSolenoidColumn(config.firstSolenoidForward, config.firstSolenoidReverse, firstSolenoid);
+    telemetry.addSolenoidColumn(config.secondSolenoidForward, config.secondSolenoidReverse, secondSolenoid);
+    telemetry.addDioColumn(config.limitSwitchHatchFrontPort, limitSwitchHatchMeFront);
+    telemetry.addDioColumn(config.limitSwitchHatchBackPort, limitSwitchHatchMeBack);
+    telemetry.addDioColumn(config.limitSwitchBallFrontPort, limitSwitchBallMeFront);
+    telemetry.addDioColumn(config.limitSwitchBallBackPort, limitSwitchBallMeBack);
+    // The sensors a replay feeds back to the simulator
+    telemetry.addCompressorColumns(config.compressorModule, compressor);
+    telemetry.addPdpColumns(pdp);
+    telemetry.addBatteryColumn();
+    telemetry.addColumn("compressor.enabled", () -> compressorSystem.isEnabled() ? 1 : 0);
+    telemetry.addColumn("compressor.deferred", () -> compressorSystem.isDeferred() ? 1 : 0);
+    telemetry.addColumn("pneumatics.pressureEstimate", pressureModel::getPressure);
+    telemetry.addColumn("pneumatics.remainingActuations", pressureModel::getRemainingActuations);
+    powerBudgeter.addColumns(telemetry);
+    ballHandHealth.addColumns(telemetry);
+    hatchHandHealth.addColumns(telemetry);
+    if (config.handEncodersInstalled){
+      telemetry.addColumn("ballHand.position", ballHandSystem.getPositionControl()::getPosition);
+      telemetry.addColumn("hatchHand.position", hatchHandSystem.getPositionControl()::getPosition);
     }
-
-    if (robotFuncController.getBumperPressed(Hand.kRight)){
-      ballLauncher.set(1);
+    // A replay does not write a new log, record does nothing until the logger started
+    if (!config.headless){
+      telemetry.start();
     }
+  }
 
-    if (robotFuncController.getBumperReleased(Hand.kRight)){
-      ballLauncher.set(0);
+  // This code here is used to show the compressor, the limit switches and the hands on the Dashboard table
+  // The values are sampled in robotPeriodic and sent from their own thread, only when they change
+  private void startDashboard(){
+    dashboard = new DashboardPublisher("Dashboard", config.dashboardFlushPeriod);
+    dashboard.addBoolean("Compressor/Enabled", compressorSystem::isEnabled);
+    dashboard.addBoolean("Compressor/Running", compressor::enabled);
+    dashboard.addBoolean("Compressor/Pressure Low", compressor::getPressureSwitchValue);
+    dashboard.addBoolean("Compressor/Deferred", compressorSystem::isDeferred);
+    dashboard.addEnum("Pneumatics/Pistons", DoubleSolenoid.Value.class, pneumatics::getPosition);
+    dashboard.addDouble("Pneumatics/Pressure Estimate", pressureModel::getPressure, pressureDeadbandPsi);
+    dashboard.addDouble("Pneumatics/Actuations Left", pressureModel::getRemainingActuations);
+    addHand("Ball Hand", ballHandSystem, ballHandHealth);
+    addHand("Hatch Hand", hatchHandSystem, hatchHandHealth);
+    dashboard.addDouble("Ball Launcher/Output", ballLauncherSystem::getOutput, outputEpsilon);
+    dashboard.addDouble("Drive/Heading", poseEstimator::getHeading, headingDeadbandDegrees);
+    dashboard.addDouble("Battery Voltage", RobotController::getBatteryVoltage, voltageDeadband);
+    dashboard.addBoolean("Power Limited", powerBudgeter::isLimiting);
+    if (!config.headless){
+      dashboard.start();
     }
+  }
 
-    // This code here is used to control pneumatic system
-    if (robotFuncController.getAButtonPressed()){
-      forwardPiston();
+  private void addHand(String name, MechanismSubsystem hand, MotorHealthMonitor health){
+    dashboard.addBoolean(name + "/Front Limit", hand::atForwardLimit);
+    dashboard.addBoolean(name + "/Back Limit", hand::atReverseLimit);
+    dashboard.addDouble(name + "/Output", hand::getOutput, outputEpsilon);
+    dashboard.addEnum(name + "/Health", MotorHealthMonitor.State.class, health::getState);
+    if (hand.isPositionControlled()){
+      ArmPositionController control = hand.getPositionControl();
+      dashboard.addEnum(name + "/Homing", ArmPositionController.State.class, control::getState);
+      dashboard.addDouble(name + "/Position", control::getPosition, handDeadbandDegrees);
+      dashboard.addDouble(name + "/Goal", control::getGoal);
+      dashboard.addBoolean(name + "/At Goal", control::atGoal);
     }
+  }
 
-    if (robotFuncController.getAButtonReleased()){
-      reversePiston();
-    }
+  @Override
+  public void disabledInit() {
+    scheduler.cancelAll();
+    outputs.invalidate();
+    drive.reset();
+    powerBudgeter.reset();
+    ballHandHealth.reset();
+    hatchHandHealth.reset();
+    // The hands do not go on to their last setpoint when the robot is enabled again
+    ballHandSystem.stop();
+    hatchHandSystem.stop();
+  }
 
-    // This code here is used to control the air compressor
-    compressorCtrl();
+  // This code here runs after every loop, also while disabled
+  // In teleop it is timed as the last part of the loop teleopPeriodic began
+  @Override
+  public void robotPeriodic() {
+    profiler.begin(LoopProfiler.Section.kRobotPeriodic);
+    config.applyChanges();
+    dashboard.sample();
+    profiler.end(LoopProfiler.Section.kRobotPeriodic);
+    profiler.endLoop();
+  }
 
-    // This code here is used to control the hand of the ball launcher mechanism
-    // We reduce the speed of the motor down to reduce the heat
-    if (robotFuncController.getYButton() == true){
-      if (!limitSwitchBallMeFront.get()){
-        ballHand.set(0);
-        secondaryBallHand.set(0);
-      } else {
-        ballHand.set(1);
-        secondaryBallHand.set(1);
-      }
-    }
-    
-    if (robotFuncController.getXButton() == true){
-      if (!limitSwitchBallMeBack.get()){
-        ballHand.set(0);
-        secondaryBallHand.set(0);
-      } else {
-        ballHand.set(-1);
-        secondaryBallHand.set(-1);
-      }
-    }
-    
-    if (robotFuncController.getXButtonReleased() || robotFuncController.getYButtonReleased()){
-      ballHand.set(0);
-      secondaryBallHand.set(0);
-    }
+  @Override
+  public void disabledPeriodic() {
+    startup.warmUp();
+  }
 
-    // This code here is used to control the hand of the hatch mechanism
-    if (robotFuncController.getPOV(0) == 0){
-      if (!limitSwitchHatchMeFront.get()){
-        hatchHand.set(0);
-      } else{
-        hatchHand.set(1);
-      }
-    }
-  
-    if (robotFuncController.getPOV(0) == 180){
-      if (!limitSwitchHatchMeBack.get()){
-        hatchHand.set(0);
-      } else{
-        hatchHand.set(-1);
-      }
-    }
+  @Override
+  public void teleopPeriodic() {
+    profiler.beginLoop();
 
-    if (robotFuncController.getPOV(0) == -1){
-      hatchHand.set(0);
-    }
+    // Read the controllers once, everything else in this loop uses this copy
+    profiler.begin(LoopProfiler.Section.kInputs);
+    inputs.update();
+    poseEstimator.update();
+    // The battery is read once here, the subsystems use the scales when they write
+    powerBudgeter.update();
+    // The hand currents are checked once here too, a stalled hand is slowed or cut before it writes
+    ballHandHealth.update();
+    hatchHandHealth.update();
+    profiler.end(LoopProfiler.Section.kInputs);
+
+    scheduler.run();
+
+    // The subsystems only set the wanted values, this sends the ones that changed
+    profiler.begin(LoopProfiler.Section.kOutputs);
+    outputs.flush();
+    profiler.end(LoopProfiler.Section.kOutputs);
+
+    profiler.begin(LoopProfiler.Section.kTelemetry);
+    telemetry.record();
+    profiler.end(LoopProfiler.Section.kTelemetry);
+    // robotPeriodic runs next and ends the loop
   }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package frc.robot;
+
+/**
+ * A simple model of a hand driven by one motor between two hard stops, for
+ * testing the hand control on the desktop.
+ *
+ * <p>The motor pushes with the output minus its back EMF, so the hand
+ * speeds up quickly at first and levels off at the free speed. Friction
+ * holds it still until the output is over the friction output. The limit
+ * switches read pressed within a degree of each stop, and every time the
+ * hand hits a stop the speed it hit with is kept, that is what wears the
+ * gearbox. The encoder counts from where the hand started.
+ */
+public class ArmPlant {
+  // The switches close a bit before the hand touches the stop
+  private static final double switchDegrees = 1;
+
+  private final double travelDegrees;
+  private final double freeSpeed;
+  private final double stallAcceleration;
+  private final double frictionOutput;
+  private final double startAngle;
+  private double angle;
+  private double velocity;
+  private double output;
+  private double maxImpactSpeed;
+  private int impacts;
+  private boolean touching;
+
+  /**
+   * Create the hand.
+   *
+   * @param travelDegrees degrees between the two stops
+   * @param freeSpeed speed at full output, in degrees per second
+   * @param stallAcceleration acceleration at full output from standstill, in degrees per second per second
+   * @param frictionOutput the output needed to start moving
+   * @param startAngle where the hand is when the robot turns on, in degrees from the reverse stop
+   */
+  public ArmPlant(double travelDegrees, double freeSpeed, double stallAcceleration, double frictionOutput,
+      double startAngle) {
+    this.travelDegrees = travelDegrees;
+    this.freeSpeed = freeSpeed;
+    this.stallAcceleration = stallAcceleration;
+    this.frictionOutput = frictionOutput;
+    this.startAngle = startAngle;
+    angle = startAngle;
+  }
+
+  /**
+   * Move the hand forward in time with the motor output held.
+   *
+   * @param output motor output from -1 to 1
+   * @param dtSeconds length of the step, a millisecond or less keeps it accurate
+   */
+  public void step(double output, double dtSeconds) {
+    this.output = output;
+    double drive = output - velocity / freeSpeed;
+    if (velocity == 0 && Math.abs(output) <= frictionOutput) {
+      return;
+    }
+    double friction = velocity != 0 ? Math.signum(velocity) * frictionOutput : Math.signum(output) * frictionOutput;
+    double newVelocity = velocity + stallAcceleration * (drive - friction) * dtSeconds;
+    // Friction slows the hand down to a stop but never pushes it back
+    if (velocity != 0 && Math.signum(newVelocity) != Math.signum(velocity) && Math.abs(output) <= frictionOutput) {
+      newVelocity = 0;
+    }
+    velocity = newVelocity;
+    angle += velocity * dtSeconds;
+    boolean atStop = angle <= 0 || angle >= travelDegrees;
+    if (atStop) {
+      angle = Math.max(0, Math.min(travelDegrees, angle));
+      if (!touching) {
+        maxImpactSpeed = Math.max(maxImpactSpeed, Math.abs(velocity));
+        impacts++;
+      }
+      velocity = 0;
+    }
+    touching = atStop;
+  }
+
+  /**
+   * Angle from the reverse stop in degrees.
+   */
+  public double getAngle() {
+    return angle;
+  }
+
+  public double getVelocity() {
+    return velocity;
+  }
+
+  /**
+   * What an encoder zeroed at turn on would read, in degrees.
+   */
+  public double getEncoderDegrees() {
+    return angle - startAngle;
+  }
+
+  public boolean isAtReverseLimit() {
+    return angle <= switchDegrees;
+  }
+
+  public boolean isAtForwardLimit() {
+    return angle >= travelDegrees - switchDegrees;
+  }
+
+  /**
+   * Motor current as a part of the stall current, 1 when stalled at full output.
+   */
+  public double getCurrentFraction() {
+    return Math.abs(output - velocity / freeSpeed);
+  }
+
+  /**
+   * The fastest the hand hit a stop, in degrees per second.
+   */
+  public double getMaxImpactSpeed() {
+    return maxImpactSpeed;
+  }
+
+  /**
+   * How often the hand hit a stop.
+   */
+  public int getImpactCount() {
+    return impacts;
+  }
+
+  public void resetImpacts() {
+    maxImpactSpeed = 0;
+    impacts = 0;
+  }
+}
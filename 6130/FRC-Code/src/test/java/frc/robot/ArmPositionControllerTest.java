@@ -0,0 +1,147 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArmPositionControllerTest {
+  // A small motor through a gearbox, about 360 degrees per second at full output
+  private static final double freeSpeed = 360;
+  private static final double stallAcceleration = 4000;
+  private static final double frictionOutput = 0.03;
+  private static final double startAngle = 40;
+
+  private static final double loopSeconds = 0.02;
+  private static final int plantSteps = 20;
+  private static final double maxMoveSeconds = 3;
+  private static final double toleranceDegrees = 3;
+
+  private RobotConfig config;
+  private RobotConfig.Hand hand;
+  private ArmPlant arm;
+  private ArmPositionController controller;
+  private double output;
+  private double maxSpeed;
+
+  @Before
+  public void setUp() {
+    // The hatch hand settings the robot deploys
+    config = RobotConfig.load("robotBackup");
+    hand = config.hatchHand;
+    // The hand is somewhere in the middle of its travel when the robot turns on, the encoder reads 0 there
+    arm = new ArmPlant(hand.travelDegrees, freeSpeed, stallAcceleration, frictionOutput, startAngle);
+    controller = new ArmPositionController(arm::getEncoderDegrees, arm::isAtReverseLimit, arm::isAtForwardLimit,
+        hand.travelDegrees, new MotionProfile(hand.maxVelocity, hand.maxAcceleration), hand.kP, hand.kD, hand.kV,
+        hand.kS, hand.homingSpeed);
+  }
+
+  // One robot loop, the limit switch guards stop the motor at the switches like on the robot
+  private void loop(boolean blocked) {
+    controller.update(loopSeconds);
+    output = controller.calculate(loopSeconds);
+    if (output > 0 && arm.isAtForwardLimit() || output < 0 && arm.isAtReverseLimit()) {
+      output = 0;
+    }
+    if (!blocked) {
+      for (int step = 0; step < plantSteps; step++) {
+        arm.step(output, loopSeconds / plantSteps);
+      }
+    }
+    maxSpeed = Math.max(maxSpeed, Math.abs(arm.getVelocity()));
+  }
+
+  private boolean moveTo(double goal) {
+    controller.setGoal(goal);
+    for (int loop = 0; loop < maxMoveSeconds / loopSeconds; loop++) {
+      loop(false);
+      if (controller.atGoal()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // How hard the hand hits the forward stop when it runs at full speed until the switch
+  private double fullSpeedImpact() {
+    ArmPlant plant = new ArmPlant(hand.travelDegrees, freeSpeed, stallAcceleration, frictionOutput, 0);
+    for (int loop = 0; loop < maxMoveSeconds / loopSeconds; loop++) {
+      double speed = plant.isAtForwardLimit() ? 0 : config.hatchHandSpeed.get();
+      for (int step = 0; step < plantSteps; step++) {
+        plant.step(speed, loopSeconds / plantSteps);
+      }
+    }
+    return plant.getMaxImpactSpeed();
+  }
+
+  @Test
+  public void firstGoalHomesOnTheReverseSwitch() {
+    controller.setGoal(config.hatchMidDegrees.get());
+    assertEquals(ArmPositionController.State.kHoming, controller.getState());
+    loop(false);
+    assertEquals(-hand.homingSpeed, output, 1e-9);
+
+    for (int loop = 0; loop < maxMoveSeconds / loopSeconds && !controller.isHomed(); loop++) {
+      loop(false);
+    }
+    assertTrue(controller.isHomed());
+    // The switch is the zero, not where the encoder started
+    assertEquals(arm.getAngle(), controller.getPosition(), 1);
+    // Homing is slow, so it does not slam into the stop
+    assertTrue(arm.getMaxImpactSpeed() < hand.homingSpeed * freeSpeed);
+  }
+
+  @Test
+  public void setpointsAreReachedWithinTolerance() {
+    assertTrue(moveTo(config.hatchMidDegrees.get()));
+    assertEquals(config.hatchMidDegrees.get(), arm.getAngle(), toleranceDegrees);
+    arm.resetImpacts();
+
+    double[] goals = {config.hatchLowDegrees.get(), config.hatchMidDegrees.get(), config.hatchStowDegrees.get(),
+        config.hatchMidDegrees.get()};
+    for (double goal : goals) {
+      assertTrue("not at " + goal, moveTo(goal));
+      assertEquals(goal, arm.getAngle(), toleranceDegrees);
+      assertEquals(goal, controller.getPosition(), toleranceDegrees);
+    }
+    // Once homed the moves slow down before the stops, at most they touch them a lot slower than at full speed
+    assertTrue(arm.getMaxImpactSpeed() < fullSpeedImpact() / 4);
+    assertTrue(maxSpeed <= hand.maxVelocity * 1.25);
+  }
+
+  @Test
+  public void profileStartsOverWhenTheHandLags() {
+    // Only the position error, so the output shows how far the setpoint is ahead of the hand
+    double kP = 0.01;
+    ArmPositionController held = new ArmPositionController(() -> 0, () -> true, () -> false, hand.travelDegrees,
+        new MotionProfile(hand.maxVelocity, hand.maxAcceleration), kP, 0, 0, 0, hand.homingSpeed);
+    held.update(loopSeconds);
+    held.setGoal(config.hatchMidDegrees.get());
+
+    // The hand does not move for a second, the setpoint would have been at the goal long ago
+    for (int loop = 0; loop < 50; loop++) {
+      held.update(loopSeconds);
+      assertTrue(held.calculate(loopSeconds) <= kP * 16);
+    }
+    assertFalse(held.atGoal());
+  }
+
+  @Test
+  public void handHeldOnTheWayStillGetsThere() {
+    assertTrue(moveTo(config.hatchStowDegrees.get()));
+
+    controller.setGoal(config.hatchMidDegrees.get());
+    for (int loop = 0; loop < 25; loop++) {
+      loop(true);
+    }
+    assertFalse(controller.atGoal());
+
+    for (int loop = 0; loop < maxMoveSeconds / loopSeconds && !controller.atGoal(); loop++) {
+      loop(false);
+    }
+    assertTrue(controller.atGoal());
+    assertEquals(config.hatchMidDegrees.get(), arm.getAngle(), toleranceDegrees);
+  }
+}
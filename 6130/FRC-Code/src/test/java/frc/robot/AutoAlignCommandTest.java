@@ -0,0 +1,151 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.wpilibj.interfaces.Gyro;
+
+public class AutoAlignCommandTest {
+  private static final double loopSeconds = 0.02;
+  // The robot turns right at 90 degrees per second while the frames are on their way
+  private static final double turnRate = 90;
+  private static final double cameraLatencySeconds = 0.08;
+  private static final double yawDegrees = 10;
+
+  private TestGyro gyro;
+  private PoseEstimator estimator;
+  private DriveSubsystem drive;
+  private VisionTarget target;
+  private AutoAlignCommand command;
+
+  // A gyro that reads whatever the test set
+  private static final class TestGyro implements Gyro {
+    double angle;
+
+    @Override
+    public void calibrate() {
+    }
+
+    @Override
+    public void reset() {
+      angle = 0;
+    }
+
+    @Override
+    public double getAngle() {
+      return angle;
+    }
+
+    @Override
+    public double getRate() {
+      return turnRate;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+    // The FPGA time only moves when the test steps it
+    SimulatorJNI.pauseTiming();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Before
+  public void setUp() {
+    gyro = new TestGyro();
+    // The pose history holds one second, like on the robot
+    estimator = new PoseEstimator(gyro, null, null, new PoseHistory(50));
+    drive = new DriveSubsystem(new DifferentialDrive(new CountingSpeedController(), new CountingSpeedController()),
+        new DriveController(100));
+    target = VisionTarget.none;
+    command = new AutoAlignCommand(drive, () -> target, estimator, () -> 0);
+    command.initialize();
+    for (int loop = 0; loop < 50; loop++) {
+      step();
+    }
+  }
+
+  private void step() {
+    SimulatorJNI.stepTiming((long) (loopSeconds * 1e6));
+    gyro.angle += turnRate * loopSeconds;
+    estimator.update();
+  }
+
+  private static long micros(double seconds) {
+    return Math.round(seconds * 1e6);
+  }
+
+  @Test
+  public void estimatorAddsEveryLoopToTheHistory() {
+    assertEquals(50, estimator.getHistory().getSize());
+    assertEquals(90, estimator.getHeading(), 1e-9);
+    assertTrue(estimator.getHistory().sample(estimator.getTimestamp() - 0.5));
+    assertEquals(45, estimator.getHistory().getSampledHeading(), 1e-6);
+  }
+
+  @Test
+  public void targetHeadingIsTheHeadingAtCapturePlusTheYaw() {
+    double captureTime = estimator.getTimestamp() - cameraLatencySeconds;
+    target = new VisionTarget(true, yawDegrees, 0, 2, 0, micros(captureTime));
+    command.execute();
+
+    assertTrue(command.hasTarget());
+    assertEquals(cameraLatencySeconds, command.getLatency(), 1e-6);
+    // The robot turned 7.2 degrees since the frame, so only 2.8 of the 10 degrees are left
+    double error = 90 - turnRate * cameraLatencySeconds + yawDegrees - estimator.getHeading();
+    assertEquals(2.8, error, 1e-6);
+    double turn = 0.02 * error + 0.08;
+    assertEquals(turn, drive.getController().getLeftCommand(), 1e-6);
+    assertEquals(-turn, drive.getController().getRightCommand(), 1e-6);
+  }
+
+  @Test
+  public void captureBetweenLoopsIsInterpolated() {
+    // Half way between two loops, 90 ms ago
+    double captureTime = estimator.getTimestamp() - 0.09;
+    target = new VisionTarget(true, yawDegrees, 0, 2, 0, micros(captureTime));
+    command.execute();
+
+    double error = 90 - turnRate * 0.09 + yawDegrees - estimator.getHeading();
+    assertEquals(0.02 * error + 0.08, drive.getController().getLeftCommand(), 1e-6);
+  }
+
+  @Test
+  public void sameResultIsOnlyUsedOnce() {
+    target = new VisionTarget(true, yawDegrees, 0, 2, 0, micros(estimator.getTimestamp() - cameraLatencySeconds));
+    command.execute();
+    // The robot keeps turning, the target heading stays where it was
+    step();
+    step();
+    command.execute();
+    assertEquals(cameraLatencySeconds, command.getLatency(), 1e-6);
+    // 3.6 degrees further, so the robot is now 0.8 degrees past the target and inside the tolerance
+    assertEquals(0, drive.getController().getLeftCommand(), 1e-9);
+  }
+
+  @Test
+  public void resultOlderThanTheHistoryIsNotUsed() {
+    target = new VisionTarget(true, yawDegrees, 0, 2, 0, micros(Timer.getFPGATimestamp() - 1.5));
+    command.execute();
+    assertFalse(command.hasTarget());
+    assertEquals(0, drive.getController().getLeftCommand(), 1e-9);
+  }
+}
@@ -0,0 +1,138 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+
+import edu.wpi.cscore.CvSource;
+import edu.wpi.cscore.MjpegServer;
+import edu.wpi.cscore.VideoMode;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+public class CameraManagerTest {
+  private static final int port = 1192;
+  private static final int cameraWidth = 320;
+  private static final int cameraHeight = 240;
+  private static final int streamWidth = 160;
+  private static final int streamHeight = 120;
+  // Fast, so the tests do not wait long for frames
+  private static final int fps = 100;
+
+  private CvSource streamSource;
+  private MjpegServer server;
+  private StreamManager stream;
+  private SyntheticFrameSource front;
+  private SyntheticFrameSource back;
+  private CameraManager cameras;
+
+  @BeforeClass
+  public static void initialize() {
+    assertTrue(HAL.initialize(500, 0));
+    System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+  }
+
+  @Before
+  public void setUp() {
+    streamSource = new CvSource("Driver", VideoMode.PixelFormat.kMJPEG, streamWidth, streamHeight, fps);
+    server = new MjpegServer("serve_Driver", port);
+    server.setSource(streamSource);
+    stream = new StreamManager(streamSource, server, 4);
+    front = new SyntheticFrameSource(cameraWidth, cameraHeight, fps);
+    back = new SyntheticFrameSource(cameraWidth, cameraHeight, fps);
+    cameras = new CameraManager(stream, streamWidth, streamHeight, fps, 2);
+    assertEquals(0, cameras.addCamera("Front", front, null, null));
+    assertEquals(1, cameras.addCamera("Back", back, null, null));
+  }
+
+  @After
+  public void tearDown() {
+    cameras.close();
+    server.close();
+    streamSource.close();
+  }
+
+  // Every frame offered to the driver stream, nobody watches it so they are all skipped
+  private long streamed() {
+    return stream.getFramesSent() + stream.getFramesSkipped();
+  }
+
+  private static boolean pausedEntry(String name) {
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("Cameras").getSubTable(name);
+    return table.getEntry("Paused").getBoolean(false);
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long start = System.nanoTime();
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.nanoTime() - start < 5_000_000_000L);
+      Thread.sleep(5);
+    }
+  }
+
+  @Test
+  public void switchingTheFeedPausesTheOtherCamera() throws InterruptedException {
+    // Both cameras start paused
+    assertTrue(cameras.isPaused(0));
+    assertTrue(cameras.isPaused(1));
+    assertTrue(pausedEntry("Front"));
+
+    cameras.start();
+    assertEquals(0, cameras.getActive());
+    assertFalse(cameras.isPaused(0));
+    assertTrue(cameras.isPaused(1));
+    assertFalse(pausedEntry("Front"));
+    assertTrue(pausedEntry("Back"));
+    waitFor(() -> front.getFrameCount() > 10 && streamed() > 10);
+    assertEquals(0, back.getFrameCount());
+
+    cameras.next();
+    assertEquals(1, cameras.getActive());
+    assertTrue(cameras.isPaused(0));
+    assertFalse(cameras.isPaused(1));
+    assertTrue(pausedEntry("Front"));
+    assertFalse(pausedEntry("Back"));
+    // A frame the front camera was already working on may still finish
+    Thread.sleep(50);
+    long frontFrames = front.getFrameCount();
+    long streamedBefore = streamed();
+    waitFor(() -> back.getFrameCount() > 10 && streamed() > streamedBefore + 10);
+    // The stream kept getting frames while the front camera was paused, so they came from the back camera
+    assertEquals(frontFrames, front.getFrameCount());
+
+    // After the last camera the feed goes back to the first
+    cameras.next();
+    assertEquals(0, cameras.getActive());
+    assertFalse(cameras.isPaused(0));
+    assertTrue(cameras.isPaused(1));
+  }
+
+  @Test
+  public void pausedCameraCanRunOffStream() throws InterruptedException {
+    cameras.start();
+    cameras.resume(1);
+    assertEquals(0, cameras.getActive());
+    assertFalse(cameras.isPaused(1));
+    waitFor(() -> back.getFrameCount() > 10);
+
+    // The active camera can not be paused, the others can
+    cameras.pause(0);
+    assertFalse(cameras.isPaused(0));
+    cameras.pause(1);
+    assertTrue(cameras.isPaused(1));
+    Thread.sleep(50);
+    long backFrames = back.getFrameCount();
+    long frontFrames = front.getFrameCount();
+    waitFor(() -> front.getFrameCount() > frontFrames + 10);
+    assertEquals(backFrames, back.getFrameCount());
+  }
+}
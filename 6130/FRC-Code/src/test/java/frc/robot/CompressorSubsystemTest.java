@@ -0,0 +1,107 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.PCMSim;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.Compressor;
+
+public class CompressorSubsystemTest {
+  private static final double loopSeconds = 0.02;
+  private static final double highLoadAmps = 100;
+  // Between the resume and the defer level, it keeps the compressor off but does not defer it
+  private static final double middleLoadAmps = 70;
+  private static final double lowLoadAmps = 20;
+
+  private static Compressor compressor;
+  private CoalescingCompressor output;
+  private CompressorSubsystem compressorSystem;
+  private Scheduler scheduler;
+  private OutputCoalescer outputs;
+  private double load;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+    SimulatorJNI.pauseTiming();
+    compressor = new Compressor(0);
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Before
+  public void setUp() {
+    // The switch says the tanks are full, so the model has plenty of air and deferring is allowed
+    new PCMSim(0).setPressureSwitch(false);
+    outputs = new OutputCoalescer();
+    output = outputs.add(new CoalescingCompressor(compressor));
+    compressorSystem = new CompressorSubsystem(output, true, new PressureModel(1.148, 0.087), () -> load);
+    scheduler = new Scheduler(4, new LoopProfiler(loopSeconds, 0.5));
+    scheduler.register(compressorSystem);
+  }
+
+  // One robot loop: the scheduler writes the outputs, then they are flushed
+  private void run(double amps, double seconds) {
+    load = amps;
+    for (int loop = 0; loop < Math.round(seconds / loopSeconds); loop++) {
+      SimulatorJNI.stepTiming((long) (loopSeconds * 1e6));
+      scheduler.run();
+      outputs.flush();
+    }
+  }
+
+  @Test
+  public void highLoadHoldsTheCompressorOff() {
+    run(lowLoadAmps, 0.1);
+    assertTrue(output.isEnabled());
+
+    run(highLoadAmps, 0.1);
+    assertTrue(compressorSystem.isDeferred());
+    assertFalse(output.isEnabled());
+  }
+
+  @Test
+  public void compressorRunsAgainAfterTheLoadStayedLow() {
+    run(highLoadAmps, 0.1);
+    run(lowLoadAmps, 0.48);
+    assertTrue(compressorSystem.isDeferred());
+    run(lowLoadAmps, 0.04);
+    assertFalse(compressorSystem.isDeferred());
+    assertTrue(output.isEnabled());
+  }
+
+  @Test
+  public void loadBetweenTheLevelsStartsTheDelayOver() {
+    run(highLoadAmps, 0.1);
+    run(lowLoadAmps, 0.4);
+    // A short push between the two levels does not defer again, but the low load has to start over
+    run(middleLoadAmps, 0.04);
+    run(lowLoadAmps, 0.4);
+    assertTrue(compressorSystem.isDeferred());
+    assertFalse(output.isEnabled());
+    run(lowLoadAmps, 0.12);
+    assertFalse(compressorSystem.isDeferred());
+    assertTrue(output.isEnabled());
+  }
+
+  @Test
+  public void deferredTimeOnlyCountsWhileEnabled() {
+    run(highLoadAmps, 1);
+    assertEquals(1, compressorSystem.getDeferredSeconds(), loopSeconds + 1e-9);
+
+    compressorSystem.setEnabled(false);
+    run(highLoadAmps, 1);
+    assertEquals(1, compressorSystem.getDeferredSeconds(), loopSeconds + 1e-9);
+  }
+}
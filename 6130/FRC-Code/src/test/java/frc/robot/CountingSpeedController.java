@@ -0,0 +1,65 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * A speed controller for tests that keeps the last speed and counts the
+ * writes instead of driving a motor.
+ */
+class CountingSpeedController implements SpeedController {
+  private double speed;
+  private boolean inverted;
+  private int sets;
+  private int stops;
+
+  @Override
+  public void set(double speed) {
+    this.speed = speed;
+    sets++;
+  }
+
+  @Override
+  public double get() {
+    return speed;
+  }
+
+  @Override
+  public void pidWrite(double output) {
+    set(output);
+  }
+
+  @Override
+  public void setInverted(boolean isInverted) {
+    inverted = isInverted;
+  }
+
+  @Override
+  public boolean getInverted() {
+    return inverted;
+  }
+
+  @Override
+  public void disable() {
+    speed = 0;
+    stops++;
+  }
+
+  @Override
+  public void stopMotor() {
+    speed = 0;
+    stops++;
+  }
+
+  int getSets() {
+    return sets;
+  }
+
+  int getStops() {
+    return stops;
+  }
+
+  void resetCounts() {
+    sets = 0;
+    stops = 0;
+  }
+}
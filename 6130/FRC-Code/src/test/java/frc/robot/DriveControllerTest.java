@@ -0,0 +1,74 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DriveControllerTest {
+  private static final double deadZone = 0.3;
+  private static final double dt = 0.02;
+
+  @Test
+  public void insideTheDeadZoneReadsZero() {
+    assertEquals(0, InputSnapshot.applyDeadZone(0.1, deadZone), 0);
+    assertEquals(0, InputSnapshot.applyDeadZone(-0.3, deadZone), 0);
+    assertEquals(0, InputSnapshot.applyDeadZone(0.3, deadZone), 0);
+  }
+
+  @Test
+  public void outsideTheDeadZoneGrowsFromZero() {
+    // Just past the edge is close to zero instead of jumping to the edge
+    assertEquals(0.01 / 0.7, InputSnapshot.applyDeadZone(0.31, deadZone), 1e-9);
+    assertEquals(-0.5, InputSnapshot.applyDeadZone(-0.65, deadZone), 1e-9);
+    assertEquals(1, InputSnapshot.applyDeadZone(1, deadZone), 1e-9);
+    assertEquals(-1, InputSnapshot.applyDeadZone(-1, deadZone), 1e-9);
+  }
+
+  @Test
+  public void zonedSticksDriveSmoothlyAcrossTheEdge() {
+    DriveController controller = new DriveController(100);
+    double last = 0;
+    for (int i = 0; i <= 100; i++) {
+      double stick = i / 100.0;
+      controller.tankDrive(InputSnapshot.applyDeadZone(stick, deadZone), 0);
+      double command = controller.getLeftCommand();
+      assertTrue("jumped at stick " + stick, command - last < 0.05);
+      last = command;
+    }
+    assertEquals(1, last, 1e-9);
+  }
+
+  @Test
+  public void sticksAreSquared() {
+    DriveController controller = new DriveController(100);
+    controller.tankDrive(0.5, -0.5);
+    assertEquals(0.25, controller.getLeftCommand(), 1e-9);
+    assertEquals(-0.25, controller.getRightCommand(), 1e-9);
+  }
+
+  @Test
+  public void arcadeKeepsTheRatioBetweenTheSides() {
+    DriveController controller = new DriveController(100);
+    controller.arcadeDrive(1, 1);
+    assertEquals(1, controller.getLeftCommand(), 1e-9);
+    assertEquals(0, controller.getRightCommand(), 1e-9);
+    controller.arcadeDrive(1, 0.5);
+    assertEquals(1, controller.getLeftCommand(), 1e-9);
+    assertEquals(0.6, controller.getRightCommand(), 1e-9);
+  }
+
+  @Test
+  public void outputsRampAtTheSlewRate() {
+    DriveController controller = new DriveController(2);
+    controller.tankDrive(1, -1);
+    controller.update(dt);
+    assertEquals(0.04, controller.getLeftOutput(), 1e-9);
+    assertEquals(-0.04, controller.getRightOutput(), 1e-9);
+
+    controller.reset();
+    assertEquals(0, controller.getLeftOutput(), 0);
+    controller.update(dt);
+    assertEquals(0, controller.getLeftOutput(), 0);
+  }
+}
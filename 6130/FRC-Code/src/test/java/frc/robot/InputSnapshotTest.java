@@ -0,0 +1,115 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+
+public class InputSnapshotTest {
+  private static final int port = 2;
+  private static final double deadZone = 0.3;
+
+  private InputSnapshot inputs;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Before
+  public void setUp() {
+    DriverStationDataJNI.setJoystickAxes((byte) port, new float[] {0.1f, -0.65f, 0, 0, 1, 0});
+    DriverStationDataJNI.setJoystickPOVs((byte) port, new short[] {90});
+    setButtons(0);
+    inputs = new InputSnapshot(deadZone, port);
+  }
+
+  private static void setButtons(int buttons) {
+    DriverStationDataJNI.setJoystickButtons((byte) port, buttons, 12);
+  }
+
+  @Test
+  public void axesAndPovsAreCopiedOnUpdate() {
+    inputs.update();
+    assertEquals(-0.65, inputs.getAxis(0, 1), 1e-6);
+    assertEquals(0, inputs.getZonedAxis(0, 0), 0);
+    assertEquals(-0.5, inputs.getZonedAxis(0, 1), 1e-6);
+    assertTrue(inputs.isOutsideDeathZone(0, 4));
+    // The controller has six axes and one POV, the rest read as centred
+    assertEquals(0, inputs.getAxis(0, 6), 0);
+    assertEquals(90, inputs.getPOV(0, 0));
+    assertEquals(-1, inputs.getPOV(0, 1));
+    assertTrue(inputs.getPOVChanged(0, 0));
+
+    // Nothing is read between updates
+    DriverStationDataJNI.setJoystickAxes((byte) port, new float[] {0, 0, 0, 0, 0, 0});
+    DriverStationDataJNI.setJoystickPOVs((byte) port, new short[] {-1});
+    assertEquals(-0.65, inputs.getAxis(0, 1), 1e-6);
+    inputs.update();
+    assertEquals(0, inputs.getAxis(0, 1), 0);
+    assertTrue(inputs.getPOVChanged(0, 0));
+    inputs.update();
+    assertFalse(inputs.getPOVChanged(0, 0));
+  }
+
+  @Test
+  public void heldButtonHasOneEdgeEachWay() {
+    setButtons(0b10);
+    inputs.update();
+    assertTrue(inputs.getButton(0, 2));
+    assertTrue(inputs.getButtonPressed(0, 2));
+    assertFalse(inputs.getButtonPressed(0, 1));
+
+    inputs.update();
+    assertTrue(inputs.getButton(0, 2));
+    assertFalse(inputs.getButtonPressed(0, 2));
+    assertFalse(inputs.getButtonReleased(0, 2));
+
+    setButtons(0);
+    inputs.update();
+    assertFalse(inputs.getButton(0, 2));
+    assertTrue(inputs.getButtonReleased(0, 2));
+    inputs.update();
+    assertFalse(inputs.getButtonReleased(0, 2));
+  }
+
+  @Test
+  public void pressBetweenUpdatesIsLatched() {
+    inputs.update();
+    // Two packets come in between loops, one with the button down and one with it up again
+    setButtons(0b1);
+    inputs.latchPacket();
+    setButtons(0);
+    inputs.latchPacket();
+
+    inputs.update();
+    assertTrue(inputs.getButton(0, 1));
+    assertTrue(inputs.getButtonPressed(0, 1));
+    assertTrue(inputs.getButtonReleased(0, 1));
+    assertEquals(0b1, inputs.getButtons(0));
+
+    inputs.update();
+    assertFalse(inputs.getButton(0, 1));
+    assertFalse(inputs.getButtonPressed(0, 1));
+    assertFalse(inputs.getButtonReleased(0, 1));
+  }
+
+  @Test
+  public void packetAlreadyLatchedIsNotCountedTwice() {
+    setButtons(0b1);
+    inputs.latchPacket();
+    inputs.update();
+    assertTrue(inputs.getButtonPressed(0, 1));
+    // The button thread sees the same packet again after the update
+    inputs.latchPacket();
+    inputs.update();
+    assertTrue(inputs.getButton(0, 1));
+    assertFalse(inputs.getButtonPressed(0, 1));
+  }
+}
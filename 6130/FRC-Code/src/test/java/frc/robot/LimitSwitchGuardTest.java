@@ -0,0 +1,147 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DIOSim;
+import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.SpeedController;
+
+public class LimitSwitchGuardTest {
+  private static final int channel = 0;
+  private static final int coalescedChannel = 1;
+  // The interrupt has to stop the motor well within one 20 ms loop
+  private static final long maxStopNanos = 20_000_000;
+  private static final long interruptTimeoutNanos = 1_000_000_000;
+
+  private DIOSim switchSim;
+  private DigitalInput limitSwitch;
+  private CountingSpeedController motor;
+  private LimitSwitchGuard guard;
+  private SpeedController guardedMotor;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Before
+  public void setUp() {
+    switchSim = new DIOSim(channel);
+    limitSwitch = new DigitalInput(channel);
+    // The switch reads false while it is pressed, so it starts open
+    switchSim.setValue(true);
+    motor = new CountingSpeedController();
+    guard = new LimitSwitchGuard(limitSwitch, null, motor);
+    guardedMotor = guard.getMotors()[0];
+  }
+
+  @After
+  public void tearDown() {
+    limitSwitch.close();
+  }
+
+  @Test
+  public void pressingTheSwitchStopsAMotorRunningTowardsIt() throws InterruptedException {
+    guardedMotor.set(0.8);
+    assertEquals(0.8, motor.get(), 1e-9);
+
+    switchSim.setValue(false);
+    waitForTrip();
+    assertEquals(0, motor.get(), 1e-9);
+    assertEquals(1, motor.getStops());
+    assertTrue(guard.isForwardLatched());
+    assertEquals(1, guard.getStopLatency().getTotalCount());
+    assertTrue("stopped after " + guard.getStopLatency().getMax() + " ns",
+        guard.getStopLatency().getMax() < maxStopNanos);
+  }
+
+  @Test
+  public void outputTowardsALatchedSwitchIsSentAsZero() throws InterruptedException {
+    guardedMotor.set(0.8);
+    switchSim.setValue(false);
+    waitForTrip();
+
+    // The loop may still send the output it worked out before the interrupt
+    guardedMotor.set(0.8);
+    assertEquals(0, motor.get(), 1e-9);
+    // Away from the switch is fine
+    guardedMotor.set(-0.5);
+    assertEquals(-0.5, motor.get(), 1e-9);
+  }
+
+  @Test
+  public void releasingTheSwitchClearsTheLatch() throws InterruptedException {
+    guardedMotor.set(0.8);
+    switchSim.setValue(false);
+    waitForTrip();
+    guardedMotor.set(-0.5);
+
+    switchSim.setValue(true);
+    guardedMotor.set(0.8);
+    assertFalse(guard.isForwardLatched());
+    assertEquals(0.8, motor.get(), 1e-9);
+  }
+
+  @Test
+  public void motorRunningAwayFromTheSwitchKeepsRunning() throws InterruptedException {
+    guardedMotor.set(-0.8);
+    switchSim.setValue(false);
+    // There is no trip to wait for, wait until the switch latched instead
+    long start = System.nanoTime();
+    while (!guard.isForwardLatched() && System.nanoTime() - start < interruptTimeoutNanos) {
+      Thread.sleep(1);
+    }
+    assertTrue(guard.isForwardLatched());
+    assertEquals(0, guard.getTrips());
+    assertEquals(-0.8, motor.get(), 1e-9);
+    assertEquals(0, motor.getStops());
+  }
+
+  @Test
+  public void coalescedMotorResumesAfterTheSwitchIsReleased() throws InterruptedException {
+    DIOSim coalescedSwitchSim = new DIOSim(coalescedChannel);
+    coalescedSwitchSim.setValue(true);
+    DigitalInput coalescedSwitch = new DigitalInput(coalescedChannel);
+    try {
+      CoalescingSpeedController coalesced = new CoalescingSpeedController(motor, 0.005);
+      guard = new LimitSwitchGuard(coalescedSwitch, null, coalesced);
+      LimitSwitchGuard.GuardedMotor guarded = guard.getMotors()[0];
+      guarded.set(0.8);
+      guarded.flush();
+      assertEquals(0.8, motor.get(), 1e-9);
+
+      coalescedSwitchSim.setValue(false);
+      waitForTrip();
+      assertEquals(0, motor.get(), 1e-9);
+      // The output worked out before the press is never written
+      guarded.set(0.8);
+      guarded.flush();
+      assertEquals(0, motor.get(), 1e-9);
+
+      // The wrapper saw the stop, so the same output goes out again once the switch opens
+      coalescedSwitchSim.setValue(true);
+      guarded.set(0.8);
+      guarded.flush();
+      assertEquals(0.8, motor.get(), 1e-9);
+    } finally {
+      coalescedSwitch.close();
+    }
+  }
+
+  // The interrupt fires on its own thread
+  private void waitForTrip() throws InterruptedException {
+    long start = System.nanoTime();
+    while (guard.getTrips() == 0 && System.nanoTime() - start < interruptTimeoutNanos) {
+      Thread.sleep(1);
+    }
+    assertEquals(1, guard.getTrips());
+  }
+}
@@ -0,0 +1,300 @@
+package frc.robot;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DriverStationSim;
+import edu.wpi.first.hal.sim.PWMSim;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.IterativeRobotBase;
+
+/**
+ * Plays a whole match with a robot class against RobotSimulation in the
+ * desktop simulator, for the match tests.
+ *
+ * <p>The simulator clock is paused and stepped by hand, so the match runs
+ * as fast as the robot code allows: 3 s disabled, 15 s autonomous without
+ * the controller and 135 s of teleop. Teleop repeats a 20 s script on the
+ * controller: drive, move the ball hand out and back, the hatch hand out
+ * and back, and fire the pistons. After every hand move the hand has to be
+ * at its limit switch, or close to its setpoint with the hand encoders,
+ * otherwise the match stops there with a failed assertion. After the match
+ * playMatch checks what every robot class has to do to pass: keep its loops
+ * short, drive, move the pistons and keep the air in range.
+ *
+ * <p>Every robot class allocates the same channels, so each match test runs
+ * in its own JVM, see the test block of build.gradle.
+ */
+final class MatchSimulation {
+  private static final double loopSeconds = 0.02;
+  // The physics steps in between so the 200 Hz drive loop sees them
+  private static final int stepsPerLoop = 4;
+  private static final double disabledSeconds = 3;
+  private static final double autonomousSeconds = 15;
+  private static final double teleopSeconds = 135;
+  private static final double cycleSeconds = 20;
+  private static final double dataTimeoutSeconds = 0.1;
+  private static final double handToleranceDegrees = 5;
+
+  // What the robot has to do in a match to pass
+  private static final double maxLoopMillis = 20;
+  private static final double minDriveMeters = 1;
+  private static final double minPressurePsi = 60;
+  private static final double maxPressurePsi = 125;
+
+  // Xbox controller buttons, numbered from 1, and the POV angles
+  private static final int buttonA = 1;
+  private static final int buttonX = 3;
+  private static final int buttonY = 4;
+  private static final int povUp = 0;
+  private static final int povDown = 180;
+
+  private final IterativeRobotBase robot;
+  private final RobotConfig config;
+  private final RobotSimulation sim;
+  private final DriverStationSim driverStationSim = new DriverStationSim();
+  private final int controllerPort;
+  private final boolean handEncoders;
+  private final boolean ballHandInstalled;
+  private final boolean hatchHandInstalled;
+  private final LatencyHistogram loopCost = new LatencyHistogram();
+  private final float[] axes = new float[6];
+  private final float[] lastAxes = new float[6];
+  private int buttons;
+  private int lastButtons;
+  private int pov = -1;
+  private int lastPov = -1;
+  private double minPressure = Double.MAX_VALUE;
+  private double maxPressure;
+  private int overruns;
+
+  /**
+   * Set up the simulator for a match: the HAL, a paused clock, and a driver
+   * station that is attached with the robot disabled. The robot runs
+   * headless, see RobotConfig. Call this once before the robot is created.
+   */
+  static void initialize() {
+    assertTrue(HAL.initialize(500, 0));
+    System.setProperty(RobotConfig.headlessProperty, "true");
+    SimulatorJNI.pauseTiming();
+    DriverStationSim driverStationSim = new DriverStationSim();
+    driverStationSim.setDsAttached(true);
+    driverStationSim.setEnabled(false);
+    driverStationSim.notifyNewData();
+  }
+
+  /**
+   * Wire the simulation to a robot after its robotInit. The hands the robot
+   * did not create are not moved or checked.
+   *
+   * @param robot the robot, already initialized
+   * @param config the config the robot loaded
+   * @param controllerPort port of the controller that drives and moves the hands
+   * @param driveEncoders whether the robot created the drive encoders
+   * @param handEncoders whether the robot created the hand encoders, and moves the hands to setpoints
+   * @param hatchHandChecked whether the hatch hand has to reach its switches
+   */
+  private MatchSimulation(IterativeRobotBase robot, RobotConfig config, int controllerPort, boolean driveEncoders,
+      boolean handEncoders, boolean hatchHandChecked) {
+    this.robot = robot;
+    this.config = config;
+    this.controllerPort = controllerPort;
+    this.handEncoders = handEncoders;
+    sim = new RobotSimulation(config, driveEncoders, handEncoders);
+    ballHandInstalled = new PWMSim(config.ballHandPort).getInitialized();
+    hatchHandInstalled = hatchHandChecked && new PWMSim(config.hatchHandPort).getInitialized();
+  }
+
+  /**
+   * Play a match with a robot and check that it passed, the match tests
+   * differ only in the robot and how it is wired.
+   *
+   * @param robot the robot, already initialized
+   * @param config the config the robot loaded
+   * @param controllerPort port of the controller that drives and moves the hands
+   * @param driveEncoders whether the robot created the drive encoders
+   * @param handEncoders whether the robot created the hand encoders, and moves the hands to setpoints
+   * @param hatchHandChecked whether the hatch hand has to reach its switches
+   * @return the match that was played, for more checks
+   */
+  static MatchSimulation playMatch(IterativeRobotBase robot, RobotConfig config, int controllerPort,
+      boolean driveEncoders, boolean handEncoders, boolean hatchHandChecked) {
+    MatchSimulation match = new MatchSimulation(robot, config, controllerPort, driveEncoders, handEncoders,
+        hatchHandChecked);
+    match.run();
+
+    double p99 = match.getLoopMillis(99);
+    assertTrue(String.format("p99 loop time %.3f ms is over the %.0f ms loop", p99, maxLoopMillis),
+        p99 <= maxLoopMillis);
+    RobotSimulation sim = match.getSimulation();
+    assertTrue(String.format("drove only %.2f m", sim.getDistanceDriven()), sim.getDistanceDriven() >= minDriveMeters);
+    assertTrue("the pistons never moved", sim.getActuations() > 0);
+    assertTrue(String.format("pressure went from %.0f to %.0f psi", match.getMinPressure(), match.getMaxPressure()),
+        match.getMinPressure() >= minPressurePsi && match.getMaxPressure() <= maxPressurePsi);
+    return match;
+  }
+
+  /**
+   * Play the match, disabled, autonomous, teleop and disabled again.
+   */
+  void run() {
+    robot.disabledInit();
+    play(disabledSeconds, robot::disabledPeriodic, false);
+
+    setMode(true, true);
+    robot.autonomousInit();
+    play(autonomousSeconds, robot::autonomousPeriodic, false);
+
+    setMode(true, false);
+    robot.teleopInit();
+    play(teleopSeconds, robot::teleopPeriodic, true);
+
+    setMode(false, false);
+    robot.disabledInit();
+  }
+
+  private void setMode(boolean enabled, boolean autonomous) {
+    driverStationSim.setAutonomous(autonomous);
+    driverStationSim.setEnabled(enabled);
+    driverStationSim.notifyNewData();
+    DriverStation.getInstance().waitForData(dataTimeoutSeconds);
+  }
+
+  private void play(double seconds, Runnable periodic, boolean scripted) {
+    int loops = (int) Math.round(seconds / loopSeconds);
+    for (int loop = 0; loop < loops; loop++) {
+      double time = loop * loopSeconds;
+      if (scripted) {
+        script(time);
+      } else {
+        release();
+      }
+      sendInputs();
+
+      long loopStart = System.nanoTime();
+      periodic.run();
+      robot.robotPeriodic();
+      long nanos = System.nanoTime() - loopStart;
+      loopCost.record(nanos);
+      if (nanos > loopSeconds * 1e9) {
+        overruns++;
+      }
+
+      for (int step = 0; step < stepsPerLoop; step++) {
+        SimulatorJNI.stepTiming((long) (loopSeconds / stepsPerLoop * 1e6));
+        sim.step(loopSeconds / stepsPerLoop);
+      }
+      minPressure = Math.min(minPressure, sim.getPressure());
+      maxPressure = Math.max(maxPressure, sim.getPressure());
+      if (scripted) {
+        checkHands(time + loopSeconds);
+      }
+    }
+  }
+
+  // This code here is used to play the driver, every 20 s:
+  // 0 to 4 s drive, straight in the even cycles and turning in the odd ones
+  // 5 to 7 s Y, 7 to 9 s X, 9 to 11 s up on the POV, 11 to 13 s down on the POV, 13 to 14 s A
+  // Tank drive robots use axes 1 and 5, Robot drives with axis 1 and turns with axis 4
+  private void script(double time) {
+    release();
+    int cycle = (int) (time / cycleSeconds);
+    double t = time - cycle * cycleSeconds;
+    if (t < 4) {
+      boolean turning = cycle % 2 == 1;
+      axes[1] = -0.8f;
+      axes[5] = turning ? -0.3f : -0.8f;
+      axes[4] = turning ? 0.5f : 0;
+    } else if (t >= 5 && t < 7) {
+      buttons = 1 << (buttonY - 1);
+    } else if (t >= 7 && t < 9) {
+      buttons = 1 << (buttonX - 1);
+    } else if (t >= 9 && t < 11) {
+      pov = povUp;
+    } else if (t >= 11 && t < 13) {
+      pov = povDown;
+    } else if (t >= 13 && t < 14) {
+      buttons = 1 << (buttonA - 1);
+    }
+  }
+
+  private void release() {
+    Arrays.fill(axes, 0);
+    buttons = 0;
+    pov = -1;
+  }
+
+  // The robot only sees new controller data after the driver station thread picked it up
+  private void sendInputs() {
+    if (Arrays.equals(axes, lastAxes) && buttons == lastButtons && pov == lastPov) {
+      return;
+    }
+    DriverStationDataJNI.setJoystickAxes((byte) controllerPort, axes);
+    DriverStationDataJNI.setJoystickButtons((byte) controllerPort, buttons, 10);
+    DriverStationDataJNI.setJoystickPOVs((byte) controllerPort, new short[] {(short) pov});
+    DriverStationDataJNI.notifyNewData();
+    DriverStation.getInstance().waitForData(dataTimeoutSeconds);
+    System.arraycopy(axes, 0, lastAxes, 0, axes.length);
+    lastButtons = buttons;
+    lastPov = pov;
+  }
+
+  // This code here is used to check the hands at the end of every move of the script
+  private void checkHands(double time) {
+    double t = time - Math.floor(time / cycleSeconds + 1e-9) * cycleSeconds;
+    if (ballHandInstalled && near(t, 7)) {
+      checkHand("ball hand out", time, sim.getBallHand(), config.ballCargoDegrees.get(), true);
+    } else if (ballHandInstalled && near(t, 9)) {
+      checkHand("ball hand back", time, sim.getBallHand(), config.ballStowDegrees.get(), false);
+    } else if (hatchHandInstalled && near(t, 11)) {
+      checkHand("hatch hand out", time, sim.getHatchHand(), config.hatchMidDegrees.get(), true);
+    } else if (hatchHandInstalled && near(t, 13)) {
+      checkHand("hatch hand back", time, sim.getHatchHand(), config.hatchStowDegrees.get(), false);
+    }
+  }
+
+  private void checkHand(String move, double time, ArmPlant hand, double setpoint, boolean forward) {
+    // Without encoders the hand runs until the limit switch stops it
+    boolean ok;
+    if (handEncoders) {
+      ok = Math.abs(hand.getAngle() - setpoint) <= handToleranceDegrees;
+    } else {
+      ok = forward ? hand.isAtForwardLimit() : hand.isAtReverseLimit();
+    }
+    assertTrue(String.format("%s at %.0f s of teleop ended at %.1f deg", move, time, hand.getAngle()), ok);
+  }
+
+  private static boolean near(double a, double b) {
+    return Math.abs(a - b) < loopSeconds / 2;
+  }
+
+  /**
+   * How long robot code took per loop at a percentile, in milliseconds.
+   */
+  double getLoopMillis(double percentile) {
+    return loopCost.getValueAtPercentile(percentile) / 1e6;
+  }
+
+  /**
+   * How many loops took longer than the loop period.
+   */
+  int getOverruns() {
+    return overruns;
+  }
+
+  double getMinPressure() {
+    return minPressure;
+  }
+
+  double getMaxPressure() {
+    return maxPressure;
+  }
+
+  RobotSimulation getSimulation() {
+    return sim;
+  }
+}
@@ -0,0 +1,167 @@
+package frc.robot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * Stand-in for the dashboard camera viewer. It reads an MJPEG stream on its
+ * own thread and counts the frames and bytes it receives, throwing the frames
+ * away. The tests use it to watch a stream, and main prints the bitrate and
+ * frame rate it received every second, so the stream manager can also be
+ * checked against its budget on the robot network.
+ *
+ * <p>./gradlew mjpegClient -PstreamUrl=http://10.61.30.2:1181/?action=stream
+ */
+public final class MjpegClient implements AutoCloseable {
+  private final URL url;
+  private final Thread thread;
+  private volatile InputStream in;
+  private volatile boolean closed;
+  private volatile long frames;
+  private volatile long bytes;
+  private volatile IOException error;
+
+  /**
+   * Create the client, start connects it to the stream.
+   */
+  public MjpegClient(String url) throws IOException {
+    this.url = new URL(url);
+    thread = new Thread(this::run, "MJPEG client");
+    thread.setDaemon(true);
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  private void run() {
+    try (InputStream stream = new BufferedInputStream(url.openStream())) {
+      in = stream;
+      byte[] skipBuffer = new byte[8192];
+      while (!closed) {
+        int length = readPartHeaders(stream);
+        if (length < 0) {
+          return;
+        }
+        int remaining = length;
+        while (remaining > 0) {
+          int read = stream.read(skipBuffer, 0, Math.min(skipBuffer.length, remaining));
+          if (read < 0) {
+            return;
+          }
+          remaining -= read;
+        }
+        bytes += length;
+        frames++;
+      }
+    } catch (IOException e) {
+      // Closing the stream under the reader is how close stops it
+      if (!closed) {
+        error = e;
+      }
+    }
+  }
+
+  public long getFrames() {
+    return frames;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Why the stream ended before it was closed, or null.
+   */
+  public IOException getError() {
+    return error;
+  }
+
+  /**
+   * Disconnect from the stream and wait for the reader thread to end.
+   */
+  @Override
+  public void close() throws IOException, InterruptedException {
+    closed = true;
+    InputStream stream = in;
+    if (stream != null) {
+      stream.close();
+    }
+    thread.join(1000);
+  }
+
+  public static void main(String... args) throws IOException, InterruptedException {
+    if (args.length == 0) {
+      System.err.println("Usage: MjpegClient <stream url> [seconds]");
+      System.exit(1);
+    }
+    long runNanos = args.length > 1 ? (long) (Double.parseDouble(args[1]) * 1e9) : Long.MAX_VALUE;
+
+    MjpegClient client = new MjpegClient(args[0]);
+    client.start();
+    long start = System.nanoTime();
+    long windowStart = start;
+    long windowBytes = 0;
+    long windowFrames = 0;
+    while (System.nanoTime() - start < runNanos && client.thread.isAlive()) {
+      Thread.sleep(1000);
+      long now = System.nanoTime();
+      double seconds = (now - windowStart) * 1e-9;
+      long newBytes = client.bytes - windowBytes;
+      long newFrames = client.frames - windowFrames;
+      System.out.printf("%.2f Mbps, %.1f fps, %d bytes per frame%n", newBytes * 8 / seconds / 1e6,
+          newFrames / seconds, newFrames > 0 ? newBytes / newFrames : 0);
+      windowStart = now;
+      windowBytes += newBytes;
+      windowFrames += newFrames;
+    }
+    double seconds = (System.nanoTime() - start) * 1e-9;
+    System.out.printf("Average %.2f Mbps, %.1f fps over %.0f s%n", client.bytes * 8 / seconds / 1e6,
+        client.frames / seconds, seconds);
+    client.close();
+    if (client.error != null) {
+      throw client.error;
+    }
+  }
+
+  // Read the headers of the next part and return its Content-Length, or -1 at the end of the stream
+  private static int readPartHeaders(InputStream in) throws IOException {
+    int length = -1;
+    boolean inPart = false;
+    while (true) {
+      String line = readLine(in);
+      if (line == null) {
+        return -1;
+      }
+      if (line.isEmpty()) {
+        if (inPart && length >= 0) {
+          return length;
+        }
+        continue;
+      }
+      inPart = true;
+      int colon = line.indexOf(':');
+      if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Length")) {
+        length = Integer.parseInt(line.substring(colon + 1).trim());
+      }
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) >= 0) {
+      if (c == '\n') {
+        int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+          line.setLength(end - 1);
+        }
+        return line.toString();
+      }
+      line.append((char) c);
+    }
+    return line.length() > 0 ? line.toString() : null;
+  }
+}
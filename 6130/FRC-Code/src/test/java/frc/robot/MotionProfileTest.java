@@ -0,0 +1,81 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MotionProfileTest {
+  private static final double loopSeconds = 0.02;
+  private static final double maxVelocity = 180;
+  private static final double maxAcceleration = 720;
+
+  private MotionProfile profile;
+
+  @Before
+  public void setUp() {
+    profile = new MotionProfile(maxVelocity, maxAcceleration);
+    profile.reset(0, 0);
+  }
+
+  // Runs the profile to the goal and checks the speed and acceleration on the way, returns the loops it took
+  private int runTo(double goal) {
+    double lastVelocity = profile.getVelocity();
+    for (int loop = 1; loop <= 500; loop++) {
+      profile.calculate(goal, loopSeconds);
+      assertTrue(Math.abs(profile.getVelocity()) <= maxVelocity);
+      // The last step stops on the goal, that is the only one allowed to change the speed more
+      if (!profile.isFinished(goal)) {
+        assertEquals(lastVelocity, profile.getVelocity(), maxAcceleration * loopSeconds + 1e-9);
+      } else {
+        return loop;
+      }
+      lastVelocity = profile.getVelocity();
+    }
+    return -1;
+  }
+
+  @Test
+  public void longMoveCruisesAtTheTopSpeed() {
+    int loops = runTo(90);
+    // A quarter second to speed up and to slow down each, and a quarter second at the top speed
+    assertEquals(0.75, loops * loopSeconds, 0.1);
+    assertEquals(90, profile.getPosition(), 0);
+  }
+
+  @Test
+  public void shortMoveNeverReachesTheTopSpeed() {
+    double top = 0;
+    for (int loop = 0; loop < 100 && !profile.isFinished(10); loop++) {
+      profile.calculate(10, loopSeconds);
+      top = Math.max(top, profile.getVelocity());
+    }
+    assertTrue(profile.isFinished(10));
+    // Half way at a constant acceleration
+    assertEquals(Math.sqrt(maxAcceleration * 10), top, maxAcceleration * loopSeconds);
+  }
+
+  @Test
+  public void goalChangeCarriesOnFromTheSetpoint() {
+    for (int loop = 0; loop < 20; loop++) {
+      profile.calculate(90, loopSeconds);
+    }
+    double position = profile.getPosition();
+    assertTrue(profile.getVelocity() > 0);
+    // Going back slows down first, the setpoint does not jump
+    profile.calculate(0, loopSeconds);
+    assertTrue(profile.getPosition() > position);
+    assertTrue(runTo(0) > 0);
+    assertEquals(0, profile.getPosition(), 0);
+  }
+
+  @Test
+  public void resetClampsTheSpeed() {
+    profile.reset(40, 500);
+    assertEquals(40, profile.getPosition(), 0);
+    assertEquals(maxVelocity, profile.getVelocity(), 0);
+    assertFalse(profile.isFinished(40));
+  }
+}
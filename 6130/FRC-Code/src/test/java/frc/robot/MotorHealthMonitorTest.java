@@ -0,0 +1,184 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.DIOSim;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.DigitalInput;
+
+public class MotorHealthMonitorTest {
+  private static final double loopSeconds = 0.02;
+  private static final int switchChannel = 2;
+  private static final double stallAmps = 30;
+  private static final double heatAmps = 20;
+  private static final double travelSeconds = 2;
+
+  private DIOSim switchSim;
+  private DigitalInput forwardSwitch;
+  private CountingSpeedController motor;
+  private MechanismSubsystem mechanism;
+  private MotorHealthMonitor monitor;
+  private double amps;
+  private int extraUpdates;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+    SimulatorJNI.pauseTiming();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Before
+  public void setUp() {
+    switchSim = new DIOSim(switchChannel);
+    forwardSwitch = new DigitalInput(switchChannel);
+    // The switch reads false while it is pressed, so it starts open
+    switchSim.setValue(true);
+    motor = new CountingSpeedController();
+    LimitSwitchGuard guard = new LimitSwitchGuard(forwardSwitch, null, motor);
+    mechanism = new MechanismSubsystem("Hand", LoopProfiler.Section.kBallHand, guard, guard.getMotors());
+    monitor = new MotorHealthMonitor("Hand", mechanism, stallAmps, heatAmps, travelSeconds, 0.5, () -> amps);
+    mechanism.setOutputScale(monitor::getScale);
+    monitor.update();
+  }
+
+  @After
+  public void tearDown() {
+    forwardSwitch.close();
+  }
+
+  // Loops like robotBackup does: the monitor reads the output of the loop before, then the mechanism writes
+  private void run(double speed, double current, double seconds) {
+    amps = current;
+    for (int loop = 0; loop < Math.round(seconds / loopSeconds); loop++) {
+      SimulatorJNI.stepTiming((long) (loopSeconds * 1e6));
+      monitor.update();
+      for (int i = 0; i < extraUpdates; i++) {
+        monitor.update();
+      }
+      mechanism.set(speed);
+      mechanism.writeOutputs();
+    }
+  }
+
+  @Test
+  public void stallDeratesAndThenCuts() {
+    run(1, 10, 1);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    assertEquals(1, mechanism.getOutput(), 0);
+
+    run(1, 40, 0.2);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    run(1, 40, 0.1);
+    assertEquals(MotorHealthMonitor.State.kDerated, monitor.getState());
+    assertEquals(0.5, mechanism.getOutput(), 0);
+    assertEquals(0, monitor.getStalls());
+
+    run(1, 40, 0.6);
+    assertEquals(MotorHealthMonitor.State.kDerated, monitor.getState());
+    run(1, 40, 0.2);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+    assertEquals(0, mechanism.getOutput(), 0);
+    assertEquals(1, monitor.getStalls());
+    assertEquals(40, monitor.getCurrentStats(0).getPeak(), 0);
+  }
+
+  @Test
+  public void cutHoldsUntilTheDriverLetsGoOrReverses() {
+    // Five cool seconds, so one stall does not heat the motor up
+    run(0, 0, 5);
+    run(1, 40, 1.1);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+
+    // Still held, the motor is off so it draws nothing, but the cut stays
+    run(1, 0, 1);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+    assertEquals(0, mechanism.getOutput(), 0);
+
+    // The monitor sees the speed the loop before wanted
+    run(0, 0, 2 * loopSeconds);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+
+    run(1, 40, 1.1);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+    run(-1, 5, 2 * loopSeconds);
+    // The cut ends, but two stalls within five seconds heated the motor up
+    assertTrue(monitor.isOverheated());
+    assertEquals(MotorHealthMonitor.State.kDerated, monitor.getState());
+    assertEquals(2, monitor.getStalls());
+  }
+
+  @Test
+  public void runningLongerThanTheTravelTimeCuts() {
+    run(0.8, 5, travelSeconds - 0.1);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    run(0.8, 5, 0.2);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+    assertEquals(1, monitor.getStalls());
+    // Cut, the motor is no longer under load
+    assertEquals(travelSeconds, monitor.getLoadSeconds(), 2 * loopSeconds);
+    run(0.8, 5, 1);
+    assertEquals(travelSeconds, monitor.getLoadSeconds(), 2 * loopSeconds);
+  }
+
+  @Test
+  public void reachingTheSwitchStartsTheTravelTimeOver() {
+    run(0.8, 5, travelSeconds - 0.5);
+    // At the switch the guard holds the motor, the driver may keep the button down as long as they like
+    switchSim.setValue(false);
+    run(0.8, 5, 2 * travelSeconds);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    assertEquals(0, motor.get(), 0);
+
+    // Off the switch again the whole travel time is left
+    switchSim.setValue(true);
+    run(0.8, 5, travelSeconds - 0.1);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    run(0.8, 5, 0.2);
+    assertEquals(MotorHealthMonitor.State.kCut, monitor.getState());
+  }
+
+  @Test
+  public void heatDeratesUntilFiveSecondsOfLowerCurrent() {
+    coolDown();
+  }
+
+  @Test
+  public void extraUpdatesDoNotShortenTheHeatWindow() {
+    // Like the warmup used to do, the window must still cover five seconds and not 250 samples
+    extraUpdates = 9;
+    coolDown();
+  }
+
+  private void coolDown() {
+    // Under the stall current but over the heat current, turning around before the travel time runs out
+    for (int i = 0; i < 5; i++) {
+      run(i % 2 == 0 ? 0.5 : -0.5, 25, 1);
+    }
+    assertTrue(monitor.isOverheated());
+    assertEquals(MotorHealthMonitor.State.kDerated, monitor.getState());
+    assertEquals(25, monitor.getCurrentStats(0).getRms(), 1e-6);
+
+    // The RMS of the last 5 s drops under 20 A after 2.14 s at 10 A
+    run(-0.5, 10, 1);
+    run(0.5, 10, 1);
+    assertEquals(MotorHealthMonitor.State.kDerated, monitor.getState());
+    run(-0.5, 10, 0.3);
+    assertEquals(MotorHealthMonitor.State.kOk, monitor.getState());
+    double mean = (25 * 2.7 + 10 * 2.3) / 5;
+    assertEquals(mean, monitor.getCurrentStats(0).getMean(), 0.1);
+    assertEquals(25, monitor.getCurrentStats(0).getPeak(), 0);
+  }
+}
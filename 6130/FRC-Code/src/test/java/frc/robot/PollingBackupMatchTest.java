@@ -0,0 +1,28 @@
+package frc.robot;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+
+public class PollingBackupMatchTest {
+  @BeforeClass
+  public static void initSimulation() {
+    MatchSimulation.initialize();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Test
+  public void wholeMatch() {
+    RobotBackup robot = new RobotBackup();
+    robot.robotInit();
+    RobotConfig config = robot.getConfig();
+    // RobotBackup moves the hatch hand on a second POV the controller does not have, so the hand never moves
+    MatchSimulation.playMatch(robot, config, config.driverControllerPort, false, false, false);
+  }
+}
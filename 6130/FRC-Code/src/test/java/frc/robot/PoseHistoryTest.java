@@ -0,0 +1,65 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoseHistoryTest {
+  private static final double loopSeconds = 0.02;
+  // The robot drives along x at 2 m/s while it turns right at 90 degrees per second
+  private static final double speed = 2;
+  private static final double turnRate = 90;
+
+  private PoseHistory history;
+
+  @Before
+  public void setUp() {
+    history = new PoseHistory(50);
+    for (int loop = 0; loop <= 50; loop++) {
+      double time = 10 + loop * loopSeconds;
+      history.add(time, speed * loop * loopSeconds, 0, turnRate * loop * loopSeconds);
+    }
+  }
+
+  @Test
+  public void sampleAtALoopGivesThatPose() {
+    assertTrue(history.sample(10.5));
+    assertEquals(1, history.getSampledX(), 1e-9);
+    assertEquals(0, history.getSampledY(), 1e-9);
+    assertEquals(45, history.getSampledHeading(), 1e-9);
+  }
+
+  @Test
+  public void sampleBetweenLoopsIsInterpolated() {
+    // 75 ms before the newest pose, a quarter of the way from one loop to the next
+    assertTrue(history.sample(10.925));
+    assertEquals(1.85, history.getSampledX(), 1e-9);
+    assertEquals(83.25, history.getSampledHeading(), 1e-9);
+  }
+
+  @Test
+  public void sampleAfterTheNewestGivesTheNewest() {
+    assertTrue(history.sample(12));
+    assertEquals(2, history.getSampledX(), 1e-9);
+    assertEquals(90, history.getSampledHeading(), 1e-9);
+  }
+
+  @Test
+  public void onlyTheNewestPosesAreKept() {
+    // 51 poses went into a ring of 50, so the one at 10 s is gone
+    assertEquals(50, history.getSize());
+    assertFalse(history.sample(10.01));
+    assertTrue(history.sample(10.02));
+    assertEquals(1.8, history.getSampledHeading(), 1e-9);
+  }
+
+  @Test
+  public void clearForgetsEverything() {
+    history.clear();
+    assertEquals(0, history.getSize());
+    assertFalse(history.sample(10.5));
+  }
+}
@@ -0,0 +1,136 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.DoubleSupplier;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.PDPSim;
+import edu.wpi.first.hal.sim.RoboRioSim;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.PowerDistributionPanel;
+import edu.wpi.first.wpilibj.RobotController;
+
+public class PowerBudgeterTest {
+  private static final double loopSeconds = 0.02;
+  // The same levels and priorities as robotBackup
+  private static final double guardVolts = 8;
+  private static final double currentLimitAmps = 250;
+
+  private static PowerDistributionPanel pdp;
+  private final RoboRioSim roboRio = new RoboRioSim(0);
+  private final PDPSim pdpSim = new PDPSim(0);
+  private PowerBudgeter budgeter;
+  private DoubleSupplier drive;
+  private DoubleSupplier hatchHand;
+  private DoubleSupplier ballHand;
+  private DoubleSupplier launcher;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+    SimulatorJNI.pauseTiming();
+    pdp = new PowerDistributionPanel();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Before
+  public void setUp() {
+    roboRio.setVInVoltage(12.5);
+    for (int channel = 0; channel < 16; channel++) {
+      pdpSim.setCurrent(channel, 0);
+    }
+    budgeter = new PowerBudgeter(guardVolts, currentLimitAmps, RobotController::getBatteryVoltage,
+        pdp::getTotalCurrent);
+    drive = budgeter.addConsumer("Drive", 0, 0.5);
+    hatchHand = budgeter.addConsumer("HatchHand", 1, 0);
+    ballHand = budgeter.addConsumer("BallHand", 2, 0);
+    launcher = budgeter.addConsumer("BallLauncher", 3, 0);
+    budgeter.update();
+  }
+
+  private void run(double seconds) {
+    for (int loop = 0; loop < Math.round(seconds / loopSeconds); loop++) {
+      SimulatorJNI.stepTiming((long) (loopSeconds * 1e6));
+      budgeter.update();
+    }
+  }
+
+  @Test
+  public void fullBatteryGivesEveryoneFullOutput() {
+    run(1);
+    assertFalse(budgeter.isLimiting());
+    assertEquals(1, drive.getAsDouble(), 0);
+    assertEquals(1, launcher.getAsDouble(), 0);
+    assertEquals(12.5, budgeter.getVoltage(), 1e-9);
+  }
+
+  @Test
+  public void lowPrioritiesAreScaledFirst() {
+    // Half a volt under the guard takes one priority per 0.1 s
+    roboRio.setVInVoltage(7.5);
+    run(0.1);
+    assertEquals(0, launcher.getAsDouble(), 1e-9);
+    assertEquals(1, ballHand.getAsDouble(), 1e-9);
+    run(0.1);
+    assertEquals(0, ballHand.getAsDouble(), 1e-9);
+    assertEquals(1, hatchHand.getAsDouble(), 1e-9);
+    assertEquals(1, drive.getAsDouble(), 1e-9);
+    run(1);
+    // The drive keeps its minimum even with nothing left
+    assertEquals(0, budgeter.getLevel(), 0);
+    assertEquals(0, hatchHand.getAsDouble(), 0);
+    assertEquals(0.5, drive.getAsDouble(), 0);
+    assertEquals(1.2, budgeter.getLimitedSeconds(), 1e-6);
+  }
+
+  @Test
+  public void deeperSagDropsFaster() {
+    roboRio.setVInVoltage(7);
+    run(0.1);
+    // 20 levels per second for every volt under the guard
+    assertEquals(2, budgeter.getLevel(), 1e-6);
+  }
+
+  @Test
+  public void tooMuchCurrentAlsoScales() {
+    pdpSim.setCurrent(0, 150);
+    pdpSim.setCurrent(1, 150);
+    run(0.2);
+    assertEquals(300, budgeter.getCurrent(), 1e-9);
+    assertEquals(3, budgeter.getLevel(), 1e-6);
+    assertEquals(0, launcher.getAsDouble(), 1e-9);
+  }
+
+  @Test
+  public void outputsComeBackSlowlyOnceTheBatteryRecovers() {
+    roboRio.setVInVoltage(7.5);
+    run(0.4);
+    assertEquals(0, budgeter.getLevel(), 1e-6);
+
+    // Just over the guard is not enough to come back
+    roboRio.setVInVoltage(guardVolts + 0.3);
+    run(1);
+    assertEquals(0, budgeter.getLevel(), 1e-6);
+
+    roboRio.setVInVoltage(12);
+    run(0.5);
+    assertEquals(1, budgeter.getLevel(), 1e-6);
+    assertEquals(1, drive.getAsDouble(), 1e-6);
+    assertEquals(0, hatchHand.getAsDouble(), 1e-6);
+    run(1.5);
+    assertFalse(budgeter.isLimiting());
+    assertEquals(1, launcher.getAsDouble(), 1e-6);
+  }
+}
@@ -0,0 +1,72 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RamseteControllerTest {
+  private static final double loopSeconds = 0.02;
+
+  private RamseteController controller;
+
+  @Before
+  public void setUp() {
+    controller = new RamseteController(2, 0.7);
+  }
+
+  @Test
+  public void onThePathItDrivesThePathSpeeds() {
+    controller.calculate(1, 2, 0.3, 1, 2, 0.3, 1.5, 0.4);
+    assertEquals(1.5, controller.getVelocity(), 1e-9);
+    assertEquals(0.4, controller.getAngularVelocity(), 1e-9);
+  }
+
+  @Test
+  public void errorsArePulledIn() {
+    // Behind the path it speeds up
+    controller.calculate(0, 0, 0, 0.2, 0, 0, 1, 0);
+    assertTrue(controller.getVelocity() > 1);
+    // Left of the path it turns right, towards it
+    controller.calculate(0, 0, 0, 0, 0.2, 0, 1, 0);
+    assertTrue(controller.getAngularVelocity() > 0);
+    // Pointing left of the path it turns right too
+    controller.calculate(0, 0, -0.2, 0, 0, 0, 1, 0);
+    assertTrue(controller.getAngularVelocity() > 0);
+  }
+
+  @Test
+  public void robotStartingOffThePathEndsOnIt() throws IOException {
+    float[][] samples = TrajectoryGenerator.read(new File("src/paths/habToCargoShipLeft.path")).generate();
+    File file = File.createTempFile("path", ".traj");
+    try {
+      TrajectoryGenerator.write(samples, file);
+      Trajectory trajectory = new Trajectory(file);
+
+      // The robot starts 20 cm to the side and turned 10 degrees, then drives exactly what it is told
+      double x = 0;
+      double y = 0.2;
+      double heading = Math.toRadians(10);
+      for (int loop = 0; loop * loopSeconds <= trajectory.getDuration(); loop++) {
+        trajectory.sample(loop * loopSeconds);
+        double velocity = trajectory.getSampledVelocity();
+        controller.calculate(x, y, heading, trajectory.getSampledX(), trajectory.getSampledY(),
+            trajectory.getSampledHeading(), velocity, velocity * trajectory.getSampledCurvature());
+        heading += controller.getAngularVelocity() * loopSeconds;
+        x += controller.getVelocity() * Math.cos(heading) * loopSeconds;
+        y += controller.getVelocity() * Math.sin(heading) * loopSeconds;
+      }
+
+      trajectory.sample(trajectory.getDuration());
+      assertEquals(trajectory.getSampledX(), x, 0.05);
+      assertEquals(trajectory.getSampledY(), y, 0.05);
+      assertEquals(trajectory.getSampledHeading(), heading, Math.toRadians(3));
+    } finally {
+      file.delete();
+    }
+  }
+}
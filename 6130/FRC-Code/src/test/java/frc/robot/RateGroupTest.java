@@ -0,0 +1,76 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+
+public class RateGroupTest {
+  private static final double periodSeconds = 0.005;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Test
+  public void tasksRunAtTheGroupRate() throws InterruptedException {
+    // The steps are handed to this thread like the drive loop hands the wheel speeds to the robot loop
+    StateBuffer buffer = new StateBuffer(2);
+    RateGroup group = new RateGroup("Test", periodSeconds, 1);
+    group.add(dtSeconds -> {
+      double[] values = buffer.writeBuffer();
+      values[0] = buffer.getPublishedCount() + 1;
+      values[1] = dtSeconds;
+      buffer.publish();
+    });
+    long start = System.nanoTime();
+    group.start();
+    Thread.sleep(500);
+    group.stop();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    // The desktop is not real time, so only roughly the 100 runs of half a second
+    long runs = group.getRunTime().getTotalCount();
+    assertTrue("runs " + runs, runs > 50 && runs <= seconds / periodSeconds + 5);
+    double[] latest = buffer.read();
+    assertTrue(latest[0] > 50);
+    assertTrue(latest[1] > 0 && latest[1] <= 0.1);
+    assertTrue(group.getJitter().getTotalCount() > 0);
+  }
+
+  @Test
+  public void failingTaskKeepsTheGroupRunning() throws InterruptedException {
+    int[] runs = new int[1];
+    RateGroup group = new RateGroup("Failing", periodSeconds, 1);
+    group.add(dtSeconds -> {
+      throw new IllegalStateException("broken sensor");
+    });
+    group.add(dtSeconds -> runs[0]++);
+    group.start();
+    Thread.sleep(200);
+    group.stop();
+
+    assertTrue(runs[0] > 10);
+    assertTrue(group.getFailureCount() > 10);
+  }
+
+  @Test
+  public void tasksAreAddedBeforeTheStart() {
+    RateGroup group = new RateGroup("Started", periodSeconds, 1);
+    group.start();
+    try {
+      group.add(dtSeconds -> {
+      });
+      fail("a task was added to a running group");
+    } catch (IllegalStateException e) {
+      assertEquals("Tasks must be added before the rate group starts", e.getMessage());
+    } finally {
+      group.stop();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package frc.robot;
+
+import java.util.Properties;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+
+public class RobotBackupHandEncoderMatchTest {
+  @BeforeClass
+  public static void initSimulation() {
+    MatchSimulation.initialize();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Test
+  public void wholeMatch() {
+    // The hands go to their setpoints with the encoders, so the match checks each move ended near its setpoint
+    Properties overrides = new Properties();
+    overrides.setProperty("hand.encodersInstalled", "true");
+    robotBackup robot = new robotBackup(overrides);
+    robot.robotInit();
+    RobotConfig config = robot.getConfig();
+    MatchSimulation.playMatch(robot, config, config.robotFuncControllerPort, false, true, true);
+  }
+}
@@ -0,0 +1,27 @@
+package frc.robot;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+
+public class RobotBackupMatchTest {
+  @BeforeClass
+  public static void initSimulation() {
+    MatchSimulation.initialize();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Test
+  public void wholeMatch() {
+    robotBackup robot = new robotBackup();
+    robot.robotInit();
+    RobotConfig config = robot.getConfig();
+    MatchSimulation.playMatch(robot, config, config.robotFuncControllerPort, false, config.handEncodersInstalled, true);
+  }
+}
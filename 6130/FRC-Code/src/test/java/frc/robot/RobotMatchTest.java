@@ -0,0 +1,27 @@
+package frc.robot;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+
+public class RobotMatchTest {
+  @BeforeClass
+  public static void initSimulation() {
+    MatchSimulation.initialize();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Test
+  public void wholeMatch() {
+    Robot robot = new Robot();
+    robot.robotInit();
+    RobotConfig config = robot.getConfig();
+    MatchSimulation.playMatch(robot, config, config.driverControllerPort, config.driveEncodersInstalled, false, true);
+  }
+}
@@ -0,0 +1,297 @@
+package frc.robot;
+
+import edu.wpi.first.hal.sim.DIOSim;
+import edu.wpi.first.hal.sim.EncoderSim;
+import edu.wpi.first.hal.sim.PCMSim;
+import edu.wpi.first.hal.sim.PDPSim;
+import edu.wpi.first.hal.sim.PWMSim;
+import edu.wpi.first.hal.sim.RoboRioSim;
+
+/**
+ * Stands in for the robot hardware in the desktop simulator.
+ *
+ * <p>Every step reads the motor and solenoid outputs the robot code wrote
+ * to the simulated HAL, moves simple models of the drive train, the hands
+ * and the air tanks forward, and writes back what the sensors would read:
+ * limit switches, encoders, the pressure switch, PDP currents and the
+ * battery voltage. The channels come from the same config as the robot
+ * code. Steps are pure arithmetic, so a whole match runs in a few seconds.
+ *
+ * <p>The ADXRS450 gyro has no simulation in this WPILib version, so the
+ * heading is only known here and not fed back to the robot code.
+ */
+public class RobotSimulation {
+  private static final double stepSeconds = 0.001;
+
+  // Drive train: top speed from the config, a short lag for the motors and 4 CIMs pulling 130 A each at stall
+  private static final double driveLagSeconds = 0.15;
+  private static final double driveStallAmps = 260;
+  // The PDP channels the drive motors are on, only used to add up the total current
+  private static final int[] drivePdpChannels = {0, 1, 2, 3};
+
+  // Hands: a small motor through a gearbox, see ArmPlant
+  private static final double handFreeSpeed = 360;
+  private static final double handStallAcceleration = 4000;
+  private static final double handFrictionOutput = 0.03;
+  private static final double handStallAmps = 40;
+  private static final double handStartDegrees = 40;
+
+  // Air: two 574 mL tanks, two 3/4 inch bore 6 inch stroke pistons at 60 psi, the kit compressor at 10 A
+  private static final double atmospherePsi = 14.7;
+  private static final double tankLiters = 1.148;
+  private static final double actuationLiters = 0.087;
+  private static final double workingPsi = 60;
+  private static final double cutOffPsi = 120;
+  private static final double switchResetPsi = 95;
+  private static final double compressorFlow = 0.3;
+  private static final double compressorAmps = 10;
+  private static final double startPsi = 100;
+
+  // Battery: a charged battery with its wiring
+  private static final double batteryVolts = 12.7;
+  private static final double batteryOhms = 0.018;
+
+  private final RobotConfig config;
+  private final PWMSim leftDrive;
+  private final PWMSim rightDrive;
+  private final PWMSim ballHandMotor;
+  private final PWMSim hatchHandMotor;
+  private final ArmPlant ballHand;
+  private final ArmPlant hatchHand;
+  private final DIOSim ballFrontSwitch;
+  private final DIOSim ballBackSwitch;
+  private final DIOSim hatchFrontSwitch;
+  private final DIOSim hatchBackSwitch;
+  private final EncoderSim leftEncoder;
+  private final EncoderSim rightEncoder;
+  private final EncoderSim hatchEncoder;
+  private final EncoderSim ballEncoder;
+  private final PCMSim pcm;
+  private final PDPSim pdp;
+  private final RoboRioSim roboRio;
+
+  private double leftSpeed;
+  private double rightSpeed;
+  private double leftDistance;
+  private double rightDistance;
+  private double x;
+  private double y;
+  private double heading;
+  private double pressure = startPsi;
+  private boolean pressureLow = true;
+  private boolean firstSolenoidForward;
+  private boolean secondSolenoidForward;
+  private long actuations;
+  private double batteryVoltage = batteryVolts;
+  private double minBatteryVoltage = batteryVolts;
+  private double time;
+
+  /**
+   * Wire the models to the simulated HAL. Encoders are numbered in the
+   * order the robot code creates them, the drive ones first.
+   *
+   * @param config the config the robot code loaded
+   * @param driveEncoders whether the robot code created the drive encoders
+   * @param handEncoders whether the robot code created the hand encoders, hatch first
+   */
+  public RobotSimulation(RobotConfig config, boolean driveEncoders, boolean handEncoders) {
+    this.config = config;
+    leftDrive = new PWMSim(config.masterLeftPort);
+    rightDrive = new PWMSim(config.masterRightPort);
+    ballHandMotor = new PWMSim(config.ballHandPort);
+    hatchHandMotor = new PWMSim(config.hatchHandPort);
+    ballHand = new ArmPlant(config.ballHand.travelDegrees, handFreeSpeed, handStallAcceleration,
+        handFrictionOutput, handStartDegrees);
+    hatchHand = new ArmPlant(config.hatchHand.travelDegrees, handFreeSpeed, handStallAcceleration,
+        handFrictionOutput, handStartDegrees);
+    ballFrontSwitch = new DIOSim(config.limitSwitchBallFrontPort);
+    ballBackSwitch = new DIOSim(config.limitSwitchBallBackPort);
+    hatchFrontSwitch = new DIOSim(config.limitSwitchHatchFrontPort);
+    hatchBackSwitch = new DIOSim(config.limitSwitchHatchBackPort);
+    int encoder = 0;
+    leftEncoder = driveEncoders ? new EncoderSim(encoder++) : null;
+    rightEncoder = driveEncoders ? new EncoderSim(encoder++) : null;
+    hatchEncoder = handEncoders ? new EncoderSim(encoder++) : null;
+    ballEncoder = handEncoders ? new EncoderSim(encoder++) : null;
+    pcm = new PCMSim(config.compressorModule);
+    pdp = new PDPSim(0);
+    roboRio = new RoboRioSim(0);
+    writeSensors();
+  }
+
+  /**
+   * Move the models forward and write the new sensor values.
+   *
+   * @param seconds how long to simulate, usually one loop period
+   */
+  public void step(double seconds) {
+    // DifferentialDrive inverts the right side, so a forward right side is a negative output
+    double leftOutput = leftDrive.getSpeed();
+    double rightOutput = -rightDrive.getSpeed();
+    double ballOutput = ballHandMotor.getSpeed();
+    double hatchOutput = hatchHandMotor.getSpeed();
+    updateSolenoids();
+    for (double t = 0; t < seconds - 1e-9; t += stepSeconds) {
+      stepDrive(leftOutput, rightOutput, stepSeconds);
+      ballHand.step(ballOutput, stepSeconds);
+      hatchHand.step(hatchOutput, stepSeconds);
+      stepAir(stepSeconds);
+    }
+    time += seconds;
+
+    double leftAmps = driveStallAmps / 2 * Math.abs(leftOutput - leftSpeed / config.driveMaxSpeed);
+    double rightAmps = driveStallAmps / 2 * Math.abs(rightOutput - rightSpeed / config.driveMaxSpeed);
+    double ballAmps = handStallAmps * ballHand.getCurrentFraction();
+    double hatchAmps = handStallAmps * hatchHand.getCurrentFraction();
+    double airAmps = pcm.getCompressorOn() ? compressorAmps : 0;
+    pdp.setCurrent(drivePdpChannels[0], leftAmps / 2);
+    pdp.setCurrent(drivePdpChannels[1], leftAmps / 2);
+    pdp.setCurrent(drivePdpChannels[2], rightAmps / 2);
+    pdp.setCurrent(drivePdpChannels[3], rightAmps / 2);
+    pdp.setCurrent(config.ballHandPdpChannel, ballAmps);
+    pdp.setCurrent(config.secondaryBallHandPdpChannel, ballAmps);
+    pdp.setCurrent(config.hatchHandPdpChannel, hatchAmps);
+    pcm.setCompressorCurrent(airAmps);
+    double totalAmps = leftAmps + rightAmps + 2 * ballAmps + hatchAmps + airAmps;
+    batteryVoltage = batteryVolts - batteryOhms * totalAmps;
+    minBatteryVoltage = Math.min(minBatteryVoltage, batteryVoltage);
+    writeSensors();
+  }
+
+  private void stepDrive(double leftOutput, double rightOutput, double dt) {
+    leftSpeed += (leftOutput * config.driveMaxSpeed - leftSpeed) * dt / driveLagSeconds;
+    rightSpeed += (rightOutput * config.driveMaxSpeed - rightSpeed) * dt / driveLagSeconds;
+    leftDistance += leftSpeed * dt;
+    rightDistance += rightSpeed * dt;
+    // Heading goes up turning right, y points to the right of the starting pose
+    double speed = (leftSpeed + rightSpeed) / 2;
+    heading += (leftSpeed - rightSpeed) / config.driveTrackWidth * dt;
+    x += speed * Math.cos(heading) * dt;
+    y += speed * Math.sin(heading) * dt;
+  }
+
+  private void stepAir(double dt) {
+    if (pcm.getCompressorOn()) {
+      pressure += compressorFlow * dt * atmospherePsi / tankLiters;
+    }
+    if (pressure >= cutOffPsi) {
+      pressureLow = false;
+    } else if (pressure <= switchResetPsi) {
+      pressureLow = true;
+    }
+  }
+
+  private void updateSolenoids() {
+    boolean first = pcm.getSolenoidOutput(config.firstSolenoidForward);
+    boolean second = pcm.getSolenoidOutput(config.secondSolenoidForward);
+    boolean firstReverse = pcm.getSolenoidOutput(config.firstSolenoidReverse);
+    boolean secondReverse = pcm.getSolenoidOutput(config.secondSolenoidReverse);
+    // Every change of a piston fills one side of it with air at the working pressure
+    if (first ? !firstSolenoidForward : firstReverse && firstSolenoidForward) {
+      useAir();
+      firstSolenoidForward = first;
+    }
+    if (second ? !secondSolenoidForward : secondReverse && secondSolenoidForward) {
+      useAir();
+      secondSolenoidForward = second;
+    }
+  }
+
+  private void useAir() {
+    actuations++;
+    double freeAirLiters = actuationLiters / 2 * (workingPsi + atmospherePsi) / atmospherePsi;
+    pressure = Math.max(0, pressure - freeAirLiters * atmospherePsi / tankLiters);
+  }
+
+  private void writeSensors() {
+    // The switches read false while they are pressed
+    ballFrontSwitch.setValue(!ballHand.isAtForwardLimit());
+    ballBackSwitch.setValue(!ballHand.isAtReverseLimit());
+    hatchFrontSwitch.setValue(!hatchHand.isAtForwardLimit());
+    hatchBackSwitch.setValue(!hatchHand.isAtReverseLimit());
+    if (leftEncoder != null) {
+      setEncoder(leftEncoder, leftDistance, leftSpeed);
+      setEncoder(rightEncoder, rightDistance, rightSpeed);
+    }
+    if (hatchEncoder != null) {
+      setEncoder(hatchEncoder, hatchHand.getEncoderDegrees(), hatchHand.getVelocity());
+      setEncoder(ballEncoder, ballHand.getEncoderDegrees(), ballHand.getVelocity());
+    }
+    // The robot code turns on closed loop control, the PCM then runs the compressor until the switch opens
+    pcm.setPressureSwitch(pressureLow);
+    pcm.setCompressorOn(pcm.getClosedLoopEnabled() && pressureLow);
+    pdp.setVoltage(batteryVoltage);
+    roboRio.setVInVoltage(batteryVoltage);
+  }
+
+  private static void setEncoder(EncoderSim encoder, double distance, double rate) {
+    double distancePerPulse = encoder.getDistancePerPulse();
+    if (distancePerPulse == 0) {
+      return;
+    }
+    encoder.setCount((int) Math.round(distance / distancePerPulse));
+    // The rate is the distance of one pulse over the time between pulses
+    encoder.setPeriod(rate == 0 ? Double.MAX_VALUE : distancePerPulse / rate);
+  }
+
+  /**
+   * Distance driven forward from the start, in meters.
+   */
+  public double getX() {
+    return x;
+  }
+
+  /**
+   * Distance to the right of the start, in meters.
+   */
+  public double getY() {
+    return y;
+  }
+
+  /**
+   * Heading in radians, going up when the robot turns right.
+   */
+  public double getHeading() {
+    return heading;
+  }
+
+  /**
+   * Distance the middle of the robot drove, forward and backward both count.
+   */
+  public double getDistanceDriven() {
+    return (Math.abs(leftDistance) + Math.abs(rightDistance)) / 2;
+  }
+
+  public ArmPlant getBallHand() {
+    return ballHand;
+  }
+
+  public ArmPlant getHatchHand() {
+    return hatchHand;
+  }
+
+  /**
+   * Tank pressure in psi.
+   */
+  public double getPressure() {
+    return pressure;
+  }
+
+  /**
+   * How often a piston moved.
+   */
+  public long getActuations() {
+    return actuations;
+  }
+
+  public double getMinBatteryVoltage() {
+    return minBatteryVoltage;
+  }
+
+  /**
+   * Simulated time since the start, in seconds.
+   */
+  public double getTime() {
+    return time;
+  }
+}
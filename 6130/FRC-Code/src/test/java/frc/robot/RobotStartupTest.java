@@ -0,0 +1,118 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+
+public class RobotStartupTest {
+  private static final double warmupBudgetSeconds = 0.005;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  // Warm up like disabledPeriodic does until the startup is ready, at most a few seconds
+  private static int warmUpUntilReady(RobotStartup startup) throws InterruptedException {
+    int loops = 0;
+    while (!startup.isReady() && loops < 500) {
+      startup.warmUp();
+      loops++;
+      Thread.sleep(5);
+    }
+    return loops;
+  }
+
+  @Test
+  public void backgroundTasksRunInOrderOffTheRobotThread() throws InterruptedException {
+    List<String> ran = new ArrayList<>();
+    Thread[] taskThread = new Thread[1];
+    RobotStartup startup = new RobotStartup(10, warmupBudgetSeconds);
+    startup.runInBackground("Cameras", () -> {
+      taskThread[0] = Thread.currentThread();
+      ran.add("Cameras");
+    });
+    startup.runInBackground("Vision", () -> ran.add("Vision"));
+    startup.start();
+
+    warmUpUntilReady(startup);
+    assertTrue(startup.isReady());
+    assertTrue(startup.isBackgroundDone());
+    assertFalse(taskThread[0] == Thread.currentThread());
+    assertEquals(2, ran.size());
+    assertEquals("Cameras", ran.get(0));
+    assertEquals("Vision", ran.get(1));
+    assertTrue(startup.getTimeToReady() > 0);
+  }
+
+  @Test
+  public void failingTaskDoesNotStopTheOthers() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    RobotStartup startup = new RobotStartup(10, warmupBudgetSeconds);
+    startup.runInBackground("Broken camera", () -> {
+      throw new IllegalStateException("no camera");
+    });
+    startup.runInBackground("Vision", started::countDown);
+    startup.start();
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    warmUpUntilReady(startup);
+    assertTrue(startup.isReady());
+  }
+
+  @Test
+  public void notReadyUntilTheBackgroundIsDone() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    RobotStartup startup = new RobotStartup(10, warmupBudgetSeconds);
+    startup.runInBackground("Slow camera", () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    startup.start();
+
+    for (int loop = 0; loop < 10; loop++) {
+      startup.warmUp();
+    }
+    assertEquals(10, startup.getWarmupIterations());
+    assertFalse(startup.isReady());
+    assertTrue(Double.isNaN(startup.getTimeToReady()));
+
+    release.countDown();
+    warmUpUntilReady(startup);
+    assertTrue(startup.isReady());
+  }
+
+  @Test
+  public void warmupStaysInItsBudget() {
+    int[] calls = new int[1];
+    RobotStartup startup = new RobotStartup(1000000, warmupBudgetSeconds);
+    startup.addWarmup(() -> {
+      calls[0]++;
+      long end = System.nanoTime() + 100000;
+      while (System.nanoTime() < end) {
+        Thread.onSpinWait();
+      }
+    });
+    startup.start();
+
+    startup.warmUp();
+    // A run takes 0.1 ms, so about 50 fit in the budget of one disabled loop
+    assertTrue(calls[0] > 0);
+    assertTrue(calls[0] < 1000);
+    assertEquals(calls[0], startup.getWarmupIterations());
+    assertFalse(startup.isReady());
+  }
+}
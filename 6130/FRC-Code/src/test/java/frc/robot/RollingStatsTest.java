@@ -0,0 +1,96 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RollingStatsTest {
+  // Quarter seconds add up without rounding, so the window edges are exact
+  private static final double step = 0.25;
+
+  private static void add(RollingStats stats, double value, int samples) {
+    for (int i = 0; i < samples; i++) {
+      stats.add(value, step);
+    }
+  }
+
+  @Test
+  public void samplesCountForTheTimeTheyWereHeld() {
+    RollingStats stats = new RollingStats(5, 100);
+    stats.add(10, 1);
+    stats.add(20, 3);
+    assertEquals(2, stats.getCount());
+    assertEquals(4, stats.getSeconds(), 0);
+    assertEquals((10 * 1 + 20 * 3) / 4.0, stats.getMean(), 1e-9);
+    assertEquals(Math.sqrt((100 * 1 + 400 * 3) / 4.0), stats.getRms(), 1e-9);
+    assertEquals(20, stats.getPeak(), 0);
+    assertEquals(20, stats.getLatest(), 0);
+  }
+
+  @Test
+  public void samplesOlderThanTheWindowLeaveIt() {
+    RollingStats stats = new RollingStats(1, 100);
+    add(stats, 10, 4);
+    assertEquals(10, stats.getMean(), 0);
+
+    // Half a second later half the window is new
+    add(stats, 30, 2);
+    assertEquals(1, stats.getSeconds(), 0);
+    assertEquals(20, stats.getMean(), 1e-9);
+    assertEquals(Math.sqrt((100 + 900) / 2.0), stats.getRms(), 1e-9);
+
+    add(stats, 30, 2);
+    assertEquals(4, stats.getCount());
+    assertEquals(30, stats.getMean(), 1e-9);
+    assertEquals(30, stats.getRms(), 1e-9);
+
+    // The peak stays after it left the window
+    add(stats, 0, 4);
+    assertEquals(0, stats.getMean(), 1e-9);
+    assertEquals(30, stats.getPeak(), 0);
+  }
+
+  @Test
+  public void extraSamplesInTheSameLoopDoNotShrinkTheWindow() {
+    RollingStats stats = new RollingStats(1, 4);
+    add(stats, 10, 4);
+    for (int i = 0; i < 50; i++) {
+      stats.add(30, 0);
+    }
+    // The samples of no time do not push the held ones out or change the mean
+    assertEquals(4, stats.getCount());
+    assertEquals(1, stats.getSeconds(), 0);
+    assertEquals(10, stats.getMean(), 1e-9);
+    assertEquals(10, stats.getRms(), 1e-9);
+    assertEquals(30, stats.getLatest(), 0);
+    assertEquals(30, stats.getPeak(), 0);
+  }
+
+  @Test
+  public void fullRingDropsTheOldestSampleEarly() {
+    RollingStats stats = new RollingStats(10, 4);
+    add(stats, 10, 4);
+    add(stats, 30, 1);
+    assertEquals(4, stats.getCount());
+    assertEquals(1, stats.getSeconds(), 0);
+    assertEquals((10 * 3 + 30) / 4.0, stats.getMean(), 1e-9);
+  }
+
+  @Test
+  public void noTimeHeldReadsAsZero() {
+    RollingStats stats = new RollingStats(1, 10);
+    assertEquals(0, stats.getMean(), 0);
+    assertEquals(0, stats.getRms(), 0);
+    stats.add(12, 0);
+    assertEquals(0, stats.getCount());
+    assertEquals(0, stats.getMean(), 0);
+    assertEquals(12, stats.getLatest(), 0);
+
+    add(stats, 20, 4);
+    stats.reset();
+    assertEquals(0, stats.getCount());
+    assertEquals(0, stats.getSeconds(), 0);
+    assertEquals(0, stats.getRms(), 0);
+    assertEquals(0, stats.getPeak(), 0);
+  }
+}
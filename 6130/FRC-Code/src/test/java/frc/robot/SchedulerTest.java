@@ -0,0 +1,121 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.CallbackStore;
+import edu.wpi.first.hal.sim.PWMSim;
+import edu.wpi.first.wpilibj.PWMVictorSPX;
+
+public class SchedulerTest {
+  private static final int motorChannel = 0;
+  private static final int coalescedChannel = 1;
+
+  private PWMVictorSPX motor;
+  private PWMSim motorSim;
+  // Every speed the simulated PWM changed to, the HAL only calls back on a change
+  private final List<Double> motorSpeeds = new ArrayList<>();
+  private CallbackStore motorCallback;
+  private MechanismSubsystem mechanism;
+  private Scheduler scheduler;
+  private boolean pressed;
+  private double wanted;
+
+  @BeforeClass
+  public static void initHal() {
+    assertTrue(HAL.initialize(500, 0));
+  }
+
+  @Before
+  public void setUp() {
+    motor = new PWMVictorSPX(motorChannel);
+    motorSim = new PWMSim(motorChannel);
+    motorCallback = motorSim.registerSpeedCallback((name, value) -> motorSpeeds.add(value.getDouble()), false);
+    mechanism = new MechanismSubsystem("Test", LoopProfiler.Section.kBallHand, null, motor);
+    scheduler = new Scheduler(4, new LoopProfiler(0.02, 0.5));
+    scheduler.register(mechanism);
+  }
+
+  @After
+  public void tearDown() {
+    motorCallback.close();
+    motor.close();
+  }
+
+  @Test
+  public void twoCommandsSettingOneSubsystemWriteOncePerRun() {
+    // Only the first one owns the mechanism, the other one sets it anyway
+    scheduler.schedule(new RunCommand(() -> mechanism.set(0.3), mechanism));
+    scheduler.schedule(new RunCommand(() -> mechanism.set(0.7)));
+    for (int loop = 0; loop < 10; loop++) {
+      scheduler.run();
+      // The command that ran last wins
+      assertEquals(0.7, motorSim.getSpeed(), 1e-9);
+    }
+    // Writing every set would have switched the PWM between 0.3 and 0.7 twice per run
+    assertEquals(Arrays.asList(0.7), motorSpeeds);
+  }
+
+  @Test
+  public void interruptingCommandWritesOnceInTheSameRun() {
+    mechanism.setDefaultCommand(new RunCommand(() -> mechanism.set(0.2), mechanism));
+    // The held command sets a speed when it starts and stops the mechanism when it ends,
+    // and interrupts the default command in the same run that it starts
+    scheduler.bind(() -> pressed)
+        .whileHeld(new StartEndCommand(() -> mechanism.set(1), mechanism::stop, mechanism));
+
+    scheduler.run();
+    assertEquals(0.2, motorSim.getSpeed(), 1e-9);
+
+    pressed = true;
+    scheduler.run();
+    assertEquals(1, motorSim.getSpeed(), 1e-9);
+
+    pressed = false;
+    scheduler.run();
+    // The default command is back in the same run that the held one ended
+    assertEquals(0.2, motorSim.getSpeed(), 1e-9);
+    // The stop of the held command never reached the motor
+    assertEquals(Arrays.asList(0.2, 1.0, 0.2), motorSpeeds);
+  }
+
+  @Test
+  public void coalescedOutputSkipsSmallChanges() {
+    PWMVictorSPX hardware = new PWMVictorSPX(coalescedChannel);
+    PWMSim hardwareSim = new PWMSim(coalescedChannel);
+    List<Double> hardwareSpeeds = new ArrayList<>();
+    try (CallbackStore callback = hardwareSim.registerSpeedCallback(
+        (name, value) -> hardwareSpeeds.add(value.getDouble()), false)) {
+      OutputCoalescer outputs = new OutputCoalescer();
+      MechanismSubsystem coalesced = new MechanismSubsystem("Coalesced", LoopProfiler.Section.kHatchHand, null,
+          outputs.add(new CoalescingSpeedController(hardware, 0.005)));
+      scheduler.register(coalesced);
+      scheduler.schedule(new RunCommand(() -> coalesced.set(wanted), coalesced));
+      for (int loop = 0; loop < 10; loop++) {
+        // Every other loop the speed moves by less than the epsilon
+        wanted = loop % 2 == 0 ? 0.5 : 0.502;
+        scheduler.run();
+        outputs.flush();
+        assertEquals(0.5, hardwareSim.getSpeed(), 1e-9);
+      }
+      assertEquals(Arrays.asList(0.5), hardwareSpeeds);
+
+      wanted = 0.6;
+      scheduler.run();
+      outputs.flush();
+      assertEquals(Arrays.asList(0.5, 0.6), hardwareSpeeds);
+    } finally {
+      hardware.close();
+    }
+  }
+}
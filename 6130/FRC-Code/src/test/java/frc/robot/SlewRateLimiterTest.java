@@ -0,0 +1,57 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SlewRateLimiterTest {
+  private static final double dt = 0.02;
+
+  @Test
+  public void stepRampsAtTheRate() {
+    SlewRateLimiter limiter = new SlewRateLimiter(2);
+    double last = 0;
+    for (int i = 1; i <= 25; i++) {
+      double value = limiter.calculate(1, dt);
+      assertTrue(value - last <= 2 * dt + 1e-9);
+      last = value;
+    }
+    // Stop to full speed at 2 per second takes half a second
+    assertEquals(1, last, 1e-9);
+    assertEquals(1, limiter.calculate(1, dt), 1e-9);
+  }
+
+  @Test
+  public void fullReverseToFullForwardTakesTwiceAsLong() {
+    SlewRateLimiter limiter = new SlewRateLimiter(2);
+    limiter.reset(-1);
+    for (int i = 0; i < 49; i++) {
+      limiter.calculate(1, dt);
+    }
+    assertEquals(1 - 2 * dt, limiter.get(), 1e-9);
+    assertEquals(1, limiter.calculate(1, dt), 1e-9);
+  }
+
+  @Test
+  public void smallChangesPassStraightThrough() {
+    SlewRateLimiter limiter = new SlewRateLimiter(2);
+    assertEquals(0.03, limiter.calculate(0.03, dt), 1e-9);
+    assertEquals(-0.01, limiter.calculate(-0.01, dt), 1e-9);
+  }
+
+  @Test
+  public void longerStepsMayChangeMore() {
+    SlewRateLimiter limiter = new SlewRateLimiter(2);
+    // A loop that took 50 ms instead of 20 ms
+    assertEquals(0.1, limiter.calculate(1, 0.05), 1e-9);
+  }
+
+  @Test
+  public void newRateAppliesFromTheNextCall() {
+    SlewRateLimiter limiter = new SlewRateLimiter(2);
+    limiter.calculate(1, dt);
+    limiter.setRate(5);
+    assertEquals(0.04 + 0.1, limiter.calculate(1, dt), 1e-9);
+  }
+}
@@ -0,0 +1,68 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StateBufferTest {
+  private static void write(StateBuffer buffer, double value) {
+    double[] values = buffer.writeBuffer();
+    values[0] = value;
+    values[1] = -value;
+    buffer.publish();
+  }
+
+  @Test
+  public void readGivesTheLatestPublish() {
+    StateBuffer buffer = new StateBuffer(2);
+    assertEquals(0, buffer.read()[0], 0);
+    assertEquals(0, buffer.latestTimestamp());
+
+    write(buffer, 1);
+    write(buffer, 2);
+    double[] values = buffer.read();
+    assertEquals(2, values[0], 0);
+    assertEquals(-2, values[1], 0);
+    assertTrue(buffer.latestTimestamp() > 0);
+    assertEquals(2, buffer.getPublishedCount());
+  }
+
+  @Test
+  public void readWithoutAPublishKeepsTheSameArray() {
+    StateBuffer buffer = new StateBuffer(2);
+    write(buffer, 1);
+    double[] first = buffer.read();
+    assertSame(first, buffer.read());
+    // The writer never gets the array the reader holds
+    assertNotSame(first, buffer.writeBuffer());
+    write(buffer, 2);
+    assertNotSame(first, buffer.writeBuffer());
+    assertEquals(1, first[0], 0);
+    assertEquals(2, buffer.read()[0], 0);
+  }
+
+  @Test
+  public void readerNeverSeesHalfAPublish() throws InterruptedException {
+    StateBuffer buffer = new StateBuffer(2);
+    int publishes = 200000;
+    Thread writer = new Thread(() -> {
+      for (int i = 1; i <= publishes; i++) {
+        write(buffer, i);
+      }
+    });
+    writer.start();
+    double last = 0;
+    while (writer.isAlive() || last < publishes) {
+      double[] values = buffer.read();
+      assertEquals(values[0], -values[1], 0);
+      // Newer and newer, never back to an older publish
+      assertTrue(values[0] >= last);
+      last = values[0];
+    }
+    writer.join();
+    assertEquals(publishes, last, 0);
+  }
+}
@@ -0,0 +1,168 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import edu.wpi.cscore.CvSource;
+import edu.wpi.cscore.MjpegServer;
+import edu.wpi.cscore.VideoMode;
+
+public class StreamManagerTest {
+  private static final int port = 1191;
+  private static final int width = 320;
+  private static final int height = 240;
+  private static final int fps = 30;
+  // A little over 1 / fps, so 30 frames take just over a second
+  private static final long framePeriodNanos = 1_000_000_000L / fps + 1;
+  private static final int levelCount = 5;
+
+  private CvSource source;
+  private MjpegServer server;
+  private StreamManager stream;
+  private final Mat frame = new Mat(height, width, CvType.CV_8UC3);
+  private long now = 1_000_000_000L;
+
+  @BeforeClass
+  public static void loadOpenCv() {
+    System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+  }
+
+  @Before
+  public void setUp() {
+    source = new CvSource("Test", VideoMode.PixelFormat.kMJPEG, width, height, fps);
+    server = new MjpegServer("serve_Test", port);
+    server.setSource(source);
+    // Noise does not compress, so even the lowest level is over a tiny budget
+    Core.randu(frame, 0, 256);
+    stream = new StreamManager(source, server, 0.01);
+    // The first frame starts the first measurement
+    stream.putFrame(frame, now);
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+    source.close();
+  }
+
+  // Offer a second of frames at the capture rate, the last one ends the measurement of that second
+  private void streamSecond() {
+    for (int i = 0; i < fps; i++) {
+      now += framePeriodNanos;
+      stream.putFrame(frame, now);
+    }
+  }
+
+  private MjpegClient watch() throws Exception {
+    MjpegClient client = new MjpegClient("http://localhost:" + port + "/?action=stream");
+    client.start();
+    waitFor(() -> source.isEnabled());
+    return client;
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long start = System.nanoTime();
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.nanoTime() - start < 5_000_000_000L);
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void framesAreSkippedWhileNobodyWatches() throws Exception {
+    // Within budget, so every frame of the best level is sent while the client watches
+    stream.setBudgetMbps(1000);
+    streamSecond();
+    streamSecond();
+    assertFalse(source.isEnabled());
+    assertEquals(0, stream.getFramesSent());
+    assertEquals(2 * fps + 1, stream.getFramesSkipped());
+    // Nothing was sent, so the bitrate says nothing and the level stays
+    assertEquals(0, stream.getAchievedMbps(), 0);
+    assertEquals(0, stream.getLevel());
+
+    try (MjpegClient client = watch()) {
+      streamSecond();
+      assertEquals(fps, stream.getFramesSent());
+      waitFor(() -> client.getFrames() > 0);
+      assertNull(client.getError());
+    }
+
+    // The server notices that the client is gone when it sends the next frame
+    long start = System.nanoTime();
+    while (source.isEnabled()) {
+      assertTrue("timed out", System.nanoTime() - start < 5_000_000_000L);
+      now += framePeriodNanos;
+      stream.putFrame(frame, now);
+      Thread.sleep(10);
+    }
+    long sent = stream.getFramesSent();
+    long skipped = stream.getFramesSkipped();
+    streamSecond();
+    assertEquals(sent, stream.getFramesSent());
+    assertEquals(skipped + fps, stream.getFramesSkipped());
+  }
+
+  @Test
+  public void overBudgetDropsALevelEverySecond() throws Exception {
+    try (MjpegClient client = watch()) {
+      double lastMbps = Double.MAX_VALUE;
+      for (int level = 1; level < levelCount; level++) {
+        streamSecond();
+        assertEquals(level, stream.getLevel());
+        // Each level sends fewer or smaller frames than the one before
+        assertTrue(stream.getAchievedMbps() > stream.getBudgetMbps());
+        assertTrue(stream.getAchievedMbps() < lastMbps);
+        lastMbps = stream.getAchievedMbps();
+      }
+      // The last level is as low as it goes, even over budget
+      streamSecond();
+      assertEquals(levelCount - 1, stream.getLevel());
+      assertEquals(10, stream.getAchievedFps(), 0.5);
+      waitFor(() -> client.getFrames() > 0);
+    }
+  }
+
+  @Test
+  public void underBudgetGoesUpALevelAfterThreeSeconds() throws Exception {
+    try (MjpegClient client = watch()) {
+      streamSecond();
+      streamSecond();
+      assertEquals(2, stream.getLevel());
+
+      stream.setBudgetMbps(1000);
+      streamSecond();
+      streamSecond();
+      assertEquals(2, stream.getLevel());
+      streamSecond();
+      assertEquals(1, stream.getLevel());
+      // The count starts over at the new level
+      streamSecond();
+      streamSecond();
+      assertEquals(1, stream.getLevel());
+      streamSecond();
+      assertEquals(0, stream.getLevel());
+      streamSecond();
+      assertEquals(0, stream.getLevel());
+      assertEquals(fps, stream.getAchievedFps(), 0.5);
+
+      // Back over budget it drops right away
+      stream.setBudgetMbps(0.01);
+      streamSecond();
+      assertEquals(1, stream.getLevel());
+      assertNull(client.getError());
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.RotatedRect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+public class TargetDetectorTest {
+  private static final int width = 320;
+  private static final int height = 240;
+  private static final double fovDegrees = 61;
+  private static final double focalLengthPixels = width / 2.0 / Math.tan(Math.toRadians(fovDegrees) / 2);
+  private static final double stripSeparationMeters = 0.2815;
+  // The tape is 2 by 5.5 inches and leans 14.5 degrees
+  private static final Size stripSize = new Size(12, 33);
+  private static final double stripLeanDegrees = 14.5;
+  // The green of the ring light on the tape
+  private static final Scalar tapeColor = new Scalar(0, 255, 0);
+
+  @BeforeClass
+  public static void loadOpenCv() {
+    System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+  }
+
+  // A dark frame with a pair of strips like "/ \" centred on x and y, their centers separation pixels apart
+  private static Mat drawTarget(double x, double y, double separation, boolean leaningIn) {
+    Mat frame = Mat.zeros(height, width, CvType.CV_8UC3);
+    double lean = leaningIn ? stripLeanDegrees : -stripLeanDegrees;
+    drawStrip(frame, x - separation / 2, y, lean);
+    drawStrip(frame, x + separation / 2, y, -lean);
+    return frame;
+  }
+
+  private static void drawStrip(Mat frame, double x, double y, double angle) {
+    Point[] corners = new Point[4];
+    new RotatedRect(new Point(x, y), stripSize, angle).points(corners);
+    Imgproc.fillConvexPoly(frame, new MatOfPoint(corners), tapeColor);
+  }
+
+  private static double yawOf(double x) {
+    return Math.toDegrees(Math.atan((x - width / 2.0) / focalLengthPixels));
+  }
+
+  @Test
+  public void findsTheYawAndDistanceOfADrawnTarget() {
+    TargetDetector detector = new TargetDetector(width, height, fovDegrees, null);
+    double separation = 80;
+    VisionTarget target = detector.process(drawTarget(200, 120, separation, true), 1234);
+
+    assertTrue(target.isValid());
+    assertEquals(yawOf(200), target.getYawDegrees(), 0.5);
+    assertEquals(0, target.getPitchDegrees(), 0.5);
+    double distance = stripSeparationMeters * focalLengthPixels / separation;
+    assertEquals(distance, target.getDistanceMeters(), distance * 0.03);
+    // Both strips are the same length, so the target is seen head on
+    assertEquals(0, target.getSkew(), 0.05);
+    assertEquals(1234, target.getCaptureTimeMicros());
+    assertEquals(target, detector.getLatest());
+  }
+
+  @Test
+  public void nearerTargetIsWiderAndOffToTheLeft() {
+    TargetDetector detector = new TargetDetector(width, height, fovDegrees, null);
+    VisionTarget far = detector.process(drawTarget(160, 120, 60, true), 0);
+    detector = new TargetDetector(width, height, fovDegrees, null);
+    VisionTarget near = detector.process(drawTarget(100, 120, 120, true), 0);
+
+    assertEquals(0, far.getYawDegrees(), 0.5);
+    assertEquals(yawOf(100), near.getYawDegrees(), 0.5);
+    assertTrue(near.getYawDegrees() < 0);
+    assertEquals(far.getDistanceMeters() / 2, near.getDistanceMeters(), far.getDistanceMeters() * 0.03);
+  }
+
+  @Test
+  public void nextFrameIsSearchedInTheWindowAroundTheTarget() {
+    TargetDetector detector = new TargetDetector(width, height, fovDegrees, null);
+    Mat frame = drawTarget(200, 120, 80, true);
+    assertTrue(detector.process(frame, 0).isValid());
+    assertEquals(0, detector.getRoiHits());
+    assertEquals(1, detector.getFullSearches());
+
+    // The target did not move, the window finds it again
+    assertTrue(detector.process(frame, 0).isValid());
+    assertEquals(1, detector.getRoiHits());
+    assertEquals(1, detector.getFullSearches());
+
+    // The target jumped out of the window, the whole frame is searched again and finds it
+    VisionTarget moved = detector.process(drawTarget(60, 120, 80, true), 0);
+    assertTrue(moved.isValid());
+    assertEquals(yawOf(60), moved.getYawDegrees(), 0.5);
+    assertEquals(2, detector.getRoiHits());
+    assertEquals(2, detector.getFullSearches());
+  }
+
+  @Test
+  public void stripsLeaningApartAreNotATarget() {
+    TargetDetector detector = new TargetDetector(width, height, fovDegrees, null);
+    assertFalse(detector.process(drawTarget(160, 120, 80, false), 0).isValid());
+    assertEquals(VisionTarget.none, detector.getLatest());
+
+    // Without a target there is no window, every frame is a full search
+    assertFalse(detector.process(Mat.zeros(height, width, CvType.CV_8UC3), 0).isValid());
+    assertEquals(0, detector.getRoiHits());
+    assertEquals(2, detector.getFullSearches());
+  }
+}
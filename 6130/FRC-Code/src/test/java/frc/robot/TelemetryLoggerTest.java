@@ -0,0 +1,54 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TelemetryLoggerTest {
+  private File directory;
+  private TelemetryLogger logger;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("telemetry").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    if (logger != null) {
+      logger.close();
+    }
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void startKeepsOnlyTheNewestFiles() throws IOException {
+    for (long millis = 1000; millis <= 5000; millis += 1000) {
+      new File(directory, "telemetry-" + millis + ".bin").createNewFile();
+    }
+    File other = new File(directory, "notes.txt");
+    other.createNewFile();
+
+    logger = new TelemetryLogger(directory, 10, 3);
+    logger.addColumn("value", () -> 1);
+    logger.start();
+
+    assertTrue(logger.getFile().exists());
+    assertTrue(new File(directory, "telemetry-4000.bin").exists());
+    assertTrue(new File(directory, "telemetry-5000.bin").exists());
+    assertFalse(new File(directory, "telemetry-3000.bin").exists());
+    assertTrue(other.exists());
+    assertEquals(4, directory.listFiles().length);
+  }
+}
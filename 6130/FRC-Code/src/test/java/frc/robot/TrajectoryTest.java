@@ -0,0 +1,129 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrajectoryTest {
+  private static final double maxVelocity = 2;
+  private static final double maxAcceleration = 1.5;
+  private static final double trackWidth = 0.6;
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("path", ".traj");
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private float[][] straight(double meters) {
+    TrajectoryGenerator generator = new TrajectoryGenerator(maxVelocity, maxAcceleration, trackWidth);
+    generator.addWaypoint(0, 0, 0);
+    generator.addWaypoint(meters, 0, 0);
+    return generator.generate();
+  }
+
+  @Test
+  public void straightPathSpeedsUpCruisesAndStops() {
+    float[][] samples = straight(4);
+    float[] first = samples[0];
+    float[] last = samples[samples.length - 1];
+    assertEquals(0, first[0], 1e-6);
+    assertEquals(0, first[3], 1e-6);
+    assertEquals(4, last[0], 1e-3);
+    assertEquals(0, last[3], 1e-6);
+
+    double top = 0;
+    for (int i = 1; i < samples.length; i++) {
+      assertEquals(0, samples[i][1], 1e-6);
+      assertTrue(samples[i][3] <= maxVelocity + 1e-6);
+      double acceleration = (samples[i][3] - samples[i - 1][3]) / TrajectoryGenerator.sampleSeconds;
+      assertTrue(Math.abs(acceleration) <= maxAcceleration * 1.05);
+      top = Math.max(top, samples[i][3]);
+    }
+    assertEquals(maxVelocity, top, 1e-3);
+    // 1.33 s to speed up and to slow down each, and 0.67 s at the top speed for the meters left
+    double cruiseMeters = 4 - maxVelocity * maxVelocity / maxAcceleration;
+    double seconds = 2 * maxVelocity / maxAcceleration + cruiseMeters / maxVelocity;
+    assertEquals(seconds, (samples.length - 1) * TrajectoryGenerator.sampleSeconds, 0.05);
+  }
+
+  @Test
+  public void turnsAreSlowerSoTheOuterWheelStaysUnderTheTopSpeed() {
+    TrajectoryGenerator generator = new TrajectoryGenerator(maxVelocity, maxAcceleration, trackWidth);
+    generator.addWaypoint(0, 0, 0);
+    generator.addWaypoint(2, 2, 90);
+    float[][] samples = generator.generate();
+
+    float[] last = samples[samples.length - 1];
+    assertEquals(2, last[0], 1e-3);
+    assertEquals(2, last[1], 1e-3);
+    assertEquals(Math.PI / 2, last[2], 1e-3);
+    for (float[] sample : samples) {
+      double outerWheel = sample[3] * (1 + Math.abs(sample[4]) * trackWidth / 2);
+      assertTrue(outerWheel <= maxVelocity + 1e-3);
+    }
+  }
+
+  @Test
+  public void writtenFileSamplesTheSamePath() throws IOException {
+    float[][] samples = straight(3);
+    TrajectoryGenerator.write(samples, file);
+    assertEquals(Trajectory.headerSize + samples.length * Trajectory.sampleSize, file.length());
+
+    Trajectory trajectory = new Trajectory(file);
+    assertEquals(samples.length, trajectory.getSampleCount());
+    assertEquals((samples.length - 1) * TrajectoryGenerator.sampleSeconds, trajectory.getDuration(), 1e-6);
+
+    trajectory.sample(0.5);
+    assertEquals(samples[25][0], trajectory.getSampledX(), 1e-6);
+    assertEquals(samples[25][3], trajectory.getSampledVelocity(), 1e-6);
+    // A quarter of the way between two samples
+    trajectory.sample(0.505);
+    assertEquals(samples[25][0] + (samples[26][0] - samples[25][0]) * 0.25, trajectory.getSampledX(), 1e-5);
+
+    trajectory.sample(-1);
+    assertEquals(0, trajectory.getSampledX(), 1e-6);
+    trajectory.sample(trajectory.getDuration() + 1);
+    assertEquals(3, trajectory.getSampledX(), 1e-3);
+    assertEquals(0, trajectory.getSampledVelocity(), 1e-6);
+  }
+
+  @Test
+  public void deployedPathsAreRead() throws IOException {
+    for (File path : new File("src/paths").listFiles((dir, name) -> name.endsWith(".path"))) {
+      float[][] samples = TrajectoryGenerator.read(path).generate();
+      assertTrue(path.getName(), samples.length > 1);
+    }
+  }
+
+  @Test
+  public void otherFilesAreRefused() throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+      out.writeInt(Trajectory.magic);
+      out.writeInt(Trajectory.version);
+      out.writeInt(100);
+      out.writeFloat((float) TrajectoryGenerator.sampleSeconds);
+    }
+    try {
+      new Trajectory(file);
+      fail("a cut off file was mapped");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().endsWith("is cut off"));
+    }
+  }
+}
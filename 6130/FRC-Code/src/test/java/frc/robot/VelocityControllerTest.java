@@ -0,0 +1,90 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class VelocityControllerTest {
+  private static final double dt = 0.005;
+  private static final double maxSpeed = 3.5;
+  private static final double kP = 0.1;
+  private static final double kI = 0.2;
+  private static final double kS = 0.05;
+
+  // One side of the drive train: the speed follows the output with a lag, minus the friction
+  private static final class Plant {
+    final double gain;
+    final double lagSeconds;
+    final double frictionOutput;
+    double speed;
+
+    Plant(double gain, double lagSeconds, double frictionOutput) {
+      this.gain = gain;
+      this.lagSeconds = lagSeconds;
+      this.frictionOutput = frictionOutput;
+    }
+
+    void step(double output) {
+      double driving = Math.abs(output) > frictionOutput ? output - Math.copySign(frictionOutput, output) : 0;
+      speed += (driving * gain - speed) * dt / lagSeconds;
+    }
+  }
+
+  private static double run(VelocityController controller, Plant plant, double wantedSpeed, double seconds) {
+    double output = 0;
+    for (int i = 0; i < Math.round(seconds / dt); i++) {
+      output = controller.calculate(wantedSpeed, dt);
+      plant.step(output);
+    }
+    return output;
+  }
+
+  @Test
+  public void feedforwardAloneReachesTheSpeedOfAMatchingPlant() {
+    Plant plant = new Plant(maxSpeed, 0.15, kS);
+    VelocityController controller = new VelocityController(() -> plant.speed, 0, 0, 1 / maxSpeed, kS);
+    run(controller, plant, 2, 2);
+    assertEquals(2, plant.speed, 0.01);
+  }
+
+  @Test
+  public void integralMakesUpForAWeakerPlant() {
+    // The motors are 20 % weaker than the feedforward thinks
+    Plant plant = new Plant(maxSpeed * 0.8, 0.15, kS);
+    VelocityController controller = new VelocityController(() -> plant.speed, kP, kI, 1 / maxSpeed, kS);
+    run(controller, plant, 2, 5);
+    assertEquals(2, plant.speed, 0.05);
+    assertEquals(0, controller.getError(), 0.05);
+  }
+
+  @Test
+  public void saturatedOutputDoesNotWindUp() {
+    Plant plant = new Plant(maxSpeed, 0.15, kS);
+    VelocityController controller = new VelocityController(() -> plant.speed, kP, kI, 1 / maxSpeed, kS);
+    // Faster than the plant can go, the output stays at full for seconds
+    assertEquals(1, run(controller, plant, 5, 3), 1e-9);
+
+    // Without wind up it settles at the new speed without a big overshoot
+    double lowest = Double.MAX_VALUE;
+    for (int i = 0; i < Math.round(2 / dt); i++) {
+      plant.step(controller.calculate(2, dt));
+      lowest = Math.min(lowest, plant.speed);
+    }
+    assertEquals(2, plant.speed, 0.05);
+    assertTrue("dropped to " + lowest, lowest > 1.8);
+  }
+
+  @Test
+  public void zeroSpeedCoastsAndClearsTheIntegral() {
+    Plant plant = new Plant(maxSpeed * 0.8, 0.15, kS);
+    VelocityController controller = new VelocityController(() -> plant.speed, kP, kI, 1 / maxSpeed, kS);
+    run(controller, plant, 2, 2);
+    assertEquals(0, controller.calculate(0, dt), 0);
+    assertEquals(0, controller.getError(), 0);
+
+    // With the integral gone the first output is only the feedforward and the P term
+    plant.speed = 0;
+    assertEquals(kS + 1 / maxSpeed + kP * 1 + kI * 1 * dt, controller.calculate(1, dt), 1e-9);
+  }
+}
@@ -0,0 +1,179 @@
+package frc.robot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.mockdata.SimulatorJNI;
+import edu.wpi.first.wpilibj.RobotController;
+
+public class VisionPipelineTest {
+  private static final int cameraWidth = 320;
+  private static final int cameraHeight = 240;
+  private static final int streamWidth = 160;
+  private static final int streamHeight = 120;
+  private static final double cameraFovDegrees = 61;
+  // Fast, so the tests do not wait long for frames
+  private static final int fps = 1000;
+
+  private SyntheticFrameSource source;
+  private VisionPipeline pipeline;
+
+  @BeforeClass
+  public static void initialize() {
+    assertTrue(HAL.initialize(500, 0));
+    System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    SimulatorJNI.pauseTiming();
+  }
+
+  @AfterClass
+  public static void resumeTiming() {
+    SimulatorJNI.resumeTiming();
+  }
+
+  @Before
+  public void setUp() {
+    source = new SyntheticFrameSource(cameraWidth, cameraHeight, fps);
+    pipeline = new VisionPipeline(source, null, streamWidth, streamHeight, fps);
+  }
+
+  // Every frame is filled with its number, and stamped with it, so a reader can tell them apart
+  private static final class CountingFrameSource implements FrameSource {
+    private long count;
+
+    @Override
+    public long grabFrame(Mat image, double timeoutSeconds) {
+      count++;
+      image.create(cameraHeight, cameraWidth, CvType.CV_8UC3);
+      image.setTo(new Scalar(count % 256, count % 256, count % 256));
+      return count;
+    }
+
+    @Override
+    public String getError() {
+      return "";
+    }
+  }
+
+  @Test
+  public void framesAreScaledIntoTheExchange() {
+    assertTrue(pipeline.processFrame());
+    Mat frame = pipeline.getFrames().takeLatest();
+    assertNotNull(frame);
+    assertEquals(streamWidth, frame.cols());
+    assertEquals(streamHeight, frame.rows());
+    assertEquals(CvType.CV_8UC3, frame.type());
+    // Nothing new was published since
+    assertNull(pipeline.getFrames().takeLatest());
+
+    assertEquals(1, source.getFrameCount());
+    assertEquals(1, pipeline.getGrabTimer().getCount());
+    assertEquals(1, pipeline.getScaleTimer().getCount());
+    assertEquals(1, pipeline.getConvertTimer().getCount());
+    assertEquals(1, pipeline.getPublishTimer().getCount());
+    assertEquals(1, pipeline.getLatencyTimer().getCount());
+  }
+
+  @Test
+  public void readerOnlyGetsTheNewestFrame() {
+    FrameExchange frames = pipeline.getFrames();
+    for (int frame = 0; frame < 3; frame++) {
+      SimulatorJNI.stepTiming(10_000);
+      assertTrue(pipeline.processFrame());
+    }
+    assertNotNull(frames.takeLatest());
+    assertEquals(RobotController.getFPGATime(), frames.latestTimestamp());
+    assertEquals(3, frames.getPublishedCount());
+    // The reader was too slow for the first two, they were dropped instead of queued
+    assertEquals(2, frames.getDroppedCount());
+    assertNull(frames.takeLatest());
+  }
+
+  @Test
+  public void latencyIsTheAgeOfTheFrame() {
+    source.setLatency(0.05);
+    assertTrue(pipeline.processFrame());
+    assertNotNull(pipeline.getFrames().takeLatest());
+    assertEquals(RobotController.getFPGATime() - 50_000, pipeline.getFrames().latestTimestamp());
+    // The clock is paused, so the frame is exactly as old as the camera latency
+    assertEquals(50, pipeline.getLatencyTimer().getAverageMillis(), 1e-6);
+  }
+
+  @Test
+  public void failedGrabPublishesNothing() {
+    VisionPipeline failing = new VisionPipeline(new FrameSource() {
+      @Override
+      public long grabFrame(Mat image, double timeoutSeconds) {
+        return 0;
+      }
+
+      @Override
+      public String getError() {
+        return "timed out";
+      }
+    }, null, streamWidth, streamHeight, fps);
+
+    assertFalse(failing.processFrame());
+    assertEquals(1, failing.getGrabFailures());
+    assertEquals(0, failing.getFrames().getPublishedCount());
+    assertNull(failing.getFrames().takeLatest());
+    assertEquals(0, failing.getLatencyTimer().getCount());
+  }
+
+  @Test
+  public void detectorTakesEachFrameOnce() {
+    TargetDetector detector = new TargetDetector(streamWidth, streamHeight, cameraFovDegrees, null);
+    assertFalse(detector.processLatest(pipeline.getFrames()));
+
+    assertTrue(pipeline.processFrame());
+    assertTrue(detector.processLatest(pipeline.getFrames()));
+    assertFalse(detector.processLatest(pipeline.getFrames()));
+    // One bar is not a pair of tape strips
+    assertFalse(detector.getLatest().isValid());
+    assertEquals(1, detector.getDetectTimer().getCount());
+  }
+
+  @Test
+  public void readerOnAnotherThreadGetsWholeFramesInOrder() throws InterruptedException {
+    VisionPipeline counting = new VisionPipeline(new CountingFrameSource(), null, streamWidth, streamHeight, fps);
+    FrameExchange frames = counting.getFrames();
+    Thread writer = new Thread(counting, "Vision test");
+    writer.start();
+
+    long taken = 0;
+    long lastTimestamp = 0;
+    long deadline = System.nanoTime() + 5_000_000_000L;
+    while (taken < 100 && System.nanoTime() < deadline) {
+      Mat frame = frames.takeLatest();
+      if (frame == null) {
+        Thread.yield();
+        continue;
+      }
+      long timestamp = frames.latestTimestamp();
+      assertTrue(timestamp > lastTimestamp);
+      // The pixels belong to the frame the timestamp says, the writer never touched them since
+      assertEquals(timestamp % 256, frame.get(streamHeight / 2, streamWidth / 2)[0], 0);
+      lastTimestamp = timestamp;
+      taken++;
+    }
+    writer.interrupt();
+    writer.join();
+
+    assertEquals(100, taken);
+    long fresh = frames.takeLatest() != null ? 1 : 0;
+    // Every published frame was either taken, dropped or is still waiting
+    assertEquals(frames.getPublishedCount(), taken + frames.getDroppedCount() + fresh);
+  }
+}